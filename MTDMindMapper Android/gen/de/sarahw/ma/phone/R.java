@@ -51,6 +51,8 @@ public final class R {
         public static final int progress_bar=0x7f070006;
         public static final int progress_bar_connecting=0x7f070001;
         public static final int relative_layout_top=0x7f070011;
+        public static final int send_all=0x7f070016;
+        public static final int send_selection=0x7f070017;
         public static final int table_image=0x7f070012;
         public static final int text_message=0x7f07000c;
         public static final int title_connected_devices=0x7f070003;
@@ -70,6 +72,7 @@ public final class R {
     }
     public static final class menu {
         public static final int menu=0x7f060000;
+        public static final int transfer_menu=0x7f060001;
     }
     public static final class string {
         public static final int app_name=0x7f050000;
@@ -83,11 +86,16 @@ public final class R {
         public static final int dialog_help_message_creation=0x7f05001e;
         public static final int dialog_help_message_transfer=0x7f05001f;
         public static final int dialog_help_title=0x7f05001d;
+        public static final int dialog_send_selection_bt_cancel=0x7f050037;
+        public static final int dialog_send_selection_bt_send=0x7f050036;
+        public static final int dialog_send_selection_title=0x7f050035;
         public static final int edit_text_idea_text=0x7f050001;
         public static final int info_bt_cancel_connecting=0x7f050012;
         public static final int info_bt_cancel_discovery=0x7f050013;
         public static final int info_bt_connecting=0x7f050010;
         public static final int info_bt_discovering=0x7f050011;
+        public static final int menu_send_all=0x7f050033;
+        public static final int menu_send_selection=0x7f050034;
         public static final int no_ideas=0x7f050009;
         public static final int none_connected=0x7f050007;
         public static final int none_found=0x7f05000a;
@@ -119,7 +127,10 @@ public final class R {
         public static final int toast_idea_not_transferred_pt2=0x7f050030;
         public static final int toast_idea_transferred_pt1=0x7f05002d;
         public static final int toast_idea_transferred_pt2=0x7f05002e;
+        public static final int toast_ideas_not_transferred=0x7f050038;
+        public static final int toast_ideas_transferred=0x7f050031;
         public static final int toast_new_idea_created_pt1=0x7f050029;
         public static final int toast_new_idea_created_pt2=0x7f05002a;
+        public static final int toast_no_ideas_to_transfer=0x7f050032;
     }
 }
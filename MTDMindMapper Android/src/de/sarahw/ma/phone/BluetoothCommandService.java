@@ -18,11 +18,12 @@
 
 package de.sarahw.ma.phone;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import android.bluetooth.BluetoothAdapter;
@@ -49,6 +50,14 @@ import android.util.Log;
  * Modified 2011-09-18
  * </p>
  * 
+ * <p>
+ * Messages are sent in frames of the wire protocol defined by
+ * de.sarahw.ma.pc.btServer.WireProtocol on the remote device: a preamble once
+ * per connection, then per message a type byte, the UTF-8 payload length as
+ * unsigned varint and the payload. The server can therefore separate messages
+ * sent back to back or split by the radio.
+ * </p>
+ * 
  * @author Luu Gia Thuy (BluetoothCommandService.java)
  * @author Sarah Will (BluetoothCommandService.java modifications, additional
  *         code)
@@ -87,9 +96,34 @@ public class BluetoothCommandService {
     public static final int        STATE_CONNECTED        = 3;
 
     // Constant that indicates a closed connection command
-    /** A hash value that signals that the connection has been closed. */
+    /**
+     * A hash value that signals that the connection has been closed. Sent by
+     * clients before the framed protocol, replaced by the close frame.
+     */
     public static final String     CONNECTION_CLOSED_HASH = "318ec526e76502a583acd94f49817cf2";                     //$NON-NLS-1$
 
+    // Constants of the framed wire protocol, matching the ones defined in the
+    // class de.sarahw.ma.pc.btServer.WireProtocol on the remote device
+    /** The first preamble byte */
+    private static final int       PREAMBLE_MARKER        = 0x00;
+    /** The second preamble byte ('M') */
+    private static final int       PREAMBLE_MAGIC         = 0x4D;
+    /** The protocol version, the third preamble byte */
+    private static final int       PROTOCOL_VERSION       = 1;
+    /** Frame type: an idea, the payload is its UTF-8 text */
+    private static final int       FRAME_IDEA             = 0x01;
+    /** Frame type: the client closes the connection, no payload */
+    private static final int       FRAME_CLOSE            = 0x02;
+    /**
+     * Frame type: a batch of ideas, the payload is the varint number of ideas
+     * followed by the varint length and the UTF-8 text of each idea
+     */
+    private static final int       FRAME_IDEA_BATCH       = 0x03;
+    /** The maximum payload length of a frame in bytes */
+    private static final int       MAX_PAYLOAD            = 16 * 1024;
+    /** The maximum length of an encoded varint in bytes */
+    private static final int       MAX_VARINT_LENGTH      = 5;
+
     // Member fields
     /** The bluetooth adapter instance */
     private final BluetoothAdapter mAdapter;
@@ -355,6 +389,63 @@ public class BluetoothCommandService {
         }
     }
 
+    /**
+     * Send a batch of messages to the ConnectedThread in an unsynchronized
+     * manner
+     * 
+     * @param msgs
+     *            The messages to write
+     * @return the messages that have been written, empty if not connected
+     * @see ConnectedThread#writeMessagesBuffered(List)
+     */
+    public List<String> writeMessages(List<String> msgs) {
+
+        if (Debugging.D) {
+            Log.d(TAG, "Entering writeMessages(msgs=" + msgs.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        // Create temporary object
+        ConnectedThread r;
+        // Synchronize a copy of the ConnectedThread
+        synchronized (this) {
+            if (this.mState != STATE_CONNECTED)
+                return new ArrayList<String>();
+            r = this.mConnectedThread;
+        }
+        // Perform the write unsynchronized
+        List<String> written = r.writeMessagesBuffered(msgs);
+
+        if (Debugging.D) {
+            Log.d(TAG, "Leaving writeMessages(): " + written.size()); //$NON-NLS-1$ 
+        }
+        return written;
+    }
+
+    /**
+     * Send the close frame to the ConnectedThread in an unsynchronized manner
+     * 
+     * @see ConnectedThread#writeClose()
+     */
+    public void writeClose() {
+
+        if (Debugging.D) {
+            Log.d(TAG, "Entering writeClose()"); //$NON-NLS-1$
+        }
+        // Create temporary object
+        ConnectedThread r;
+        // Synchronize a copy of the ConnectedThread
+        synchronized (this) {
+            if (this.mState != STATE_CONNECTED)
+                return;
+            r = this.mConnectedThread;
+        }
+        // Perform the write unsynchronized
+        r.writeClose();
+
+        if (Debugging.D) {
+            Log.d(TAG, "Leaving writeClose()"); //$NON-NLS-1$ 
+        }
+    }
+
     /**
      * Indicate that the connection attempt failed and notify the UI Activity.
      */
@@ -455,8 +546,7 @@ public class BluetoothCommandService {
             }
 
             try {
-                BluetoothCommandService.this
-                        .writeMessage(CONNECTION_CLOSED_HASH);
+                BluetoothCommandService.this.writeClose();
                 this.mmSocket.close();
             } catch (IOException e) {
                 Log.e(TAG, "close() of connect socket failed", e); //$NON-NLS-1$
@@ -489,8 +579,7 @@ public class BluetoothCommandService {
                 connectionFailed();
                 // Close the socket
                 try {
-                    BluetoothCommandService.this
-                            .writeMessage(CONNECTION_CLOSED_HASH);
+                    BluetoothCommandService.this.writeClose();
                     this.mmSocket.close();
                 } catch (IOException e2) {
                     Log.e(TAG,
@@ -520,11 +609,15 @@ public class BluetoothCommandService {
     private class ConnectedThread extends Thread {
 
         /** The bluetooth socket instance */
-        private final BluetoothSocket mmSocket;
+        private final BluetoothSocket       mmSocket;
         /** The input stream of the connection */
-        private final InputStream     mmInStream;
+        private final InputStream           mmInStream;
         /** The output stream of the connection */
-        private final OutputStream    mmOutStream;
+        private final OutputStream          mmOutStream;
+        /** The buffer a frame is assembled in before it is written */
+        private final ByteArrayOutputStream mmFrameBuffer;
+        /** The buffer the payload of a batch frame is assembled in */
+        private final ByteArrayOutputStream mmBatchBuffer;
 
         /* ***********Constructors*********** */
         /**
@@ -552,6 +645,11 @@ public class BluetoothCommandService {
 
             this.mmInStream = tmpIn;
             this.mmOutStream = tmpOut;
+            this.mmFrameBuffer = new ByteArrayOutputStream();
+            this.mmBatchBuffer = new ByteArrayOutputStream();
+
+            // Announce the framed protocol before the first frame
+            writePreamble();
         }
 
         /* **********Object methods********** */
@@ -580,7 +678,7 @@ public class BluetoothCommandService {
         }
 
         /**
-         * Write a String to the connected OutputStream.
+         * Write a String to the connected OutputStream as idea frame.
          * 
          * @param msg
          *            the text string to write
@@ -588,27 +686,163 @@ public class BluetoothCommandService {
         public void writeMessageBuffered(String msg) {
 
             if (Debugging.D) {
-                Log.d(TAG, "Entering writeMessageWriter(msg=" + msg + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                Log.d(TAG, "Entering writeMessageBuffered(msg=" + msg + ")"); //$NON-NLS-1$ //$NON-NLS-2$
             }
 
-            try {
+            writeFrame(FRAME_IDEA, msg);
 
-                StringBuffer buffer = new StringBuffer(msg);
-                buffer.append(0);
+            if (Debugging.D) {
+                Log.d(TAG, "Leaving writeMessageBuffered()"); //$NON-NLS-1$
+            }
+        }
 
-                Writer out = new OutputStreamWriter(this.mmOutStream, "UTF-8"); //$NON-NLS-1$
+        /**
+         * Write Strings to the connected OutputStream as batch frames. All
+         * Strings are sent in one frame unless they exceed the maximum
+         * payload, then they are split into several batch frames. Strings
+         * that do not fit into one frame are skipped, a write failure stops
+         * the batch.
+         * 
+         * @param msgs
+         *            the text strings to write
+         * @return the strings of all frames that have been written
+         */
+        public synchronized List<String> writeMessagesBuffered(
+                List<String> msgs) {
 
-                // out.write(buffer.toString());
-                out.write(msg);
-                out.flush();
+            if (Debugging.D) {
+                Log.d(TAG, "Entering writeMessagesBuffered(msgs=" + msgs.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+
+            List<String> written = new ArrayList<String>(msgs.size());
+            try {
+                List<byte[]> texts = new ArrayList<byte[]>(msgs.size());
+                for (String msg : msgs) {
+                    texts.add(msg.getBytes("UTF-8")); //$NON-NLS-1$
+                }
+
+                int start = 0;
+                while (start < texts.size()) {
+
+                    // Take as many texts as fit into one frame
+                    int end = start;
+                    int size = MAX_VARINT_LENGTH;
+                    while (end < texts.size()
+                            && size + MAX_VARINT_LENGTH
+                                    + texts.get(end).length <= MAX_PAYLOAD) {
+                        size += MAX_VARINT_LENGTH + texts.get(end).length;
+                        end++;
+                    }
+                    if (end == start) {
+                        Log.e(TAG, "Message too long for one frame, skipped"); //$NON-NLS-1$
+                        start++;
+                        continue;
+                    }
+
+                    this.mmBatchBuffer.reset();
+                    writeVarint(this.mmBatchBuffer, end - start);
+                    for (int i = start; i < end; i++) {
+                        byte[] text = texts.get(i);
+                        writeVarint(this.mmBatchBuffer, text.length);
+                        this.mmBatchBuffer.write(text, 0, text.length);
+                    }
+                    writeFrame(FRAME_IDEA_BATCH,
+                            this.mmBatchBuffer.toByteArray());
+                    written.addAll(msgs.subList(start, end));
+
+                    start = end;
+                }
 
             } catch (IOException e) {
-                Log.d(TAG, e.getMessage());
+                Log.e(TAG, "Exception during write", e); //$NON-NLS-1$
             }
 
             if (Debugging.D) {
-                Log.d(TAG, "Leaving writeMessage()"); //$NON-NLS-1$
+                Log.d(TAG, "Leaving writeMessagesBuffered(): " + written.size()); //$NON-NLS-1$
+            }
+            return written;
+        }
+
+        /**
+         * Write the close frame to the connected OutputStream.
+         */
+        public void writeClose() {
+            writeFrame(FRAME_CLOSE, null);
+        }
+
+        /**
+         * Write the preamble of the framed protocol to the connected
+         * OutputStream.
+         */
+        private synchronized void writePreamble() {
+            try {
+                this.mmOutStream.write(new byte[] { PREAMBLE_MARKER,
+                        PREAMBLE_MAGIC, PROTOCOL_VERSION });
+                this.mmOutStream.flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Exception during write", e); //$NON-NLS-1$
+            }
+        }
+
+        /**
+         * Write a frame to the connected OutputStream. The frame is assembled
+         * in the frame buffer and written at once.
+         * 
+         * @param type
+         *            the frame type
+         * @param text
+         *            the text payload, may be null for an empty payload
+         */
+        private synchronized void writeFrame(int type, String text) {
+
+            try {
+                writeFrame(type, (text == null) ? new byte[0] : text
+                        .getBytes("UTF-8")); //$NON-NLS-1$
+            } catch (IOException e) {
+                Log.e(TAG, "Exception during write", e); //$NON-NLS-1$
+            }
+        }
+
+        /**
+         * Write a frame with the given payload to the connected OutputStream.
+         * The frame is assembled in the frame buffer and written at once.
+         * 
+         * @param type
+         *            the frame type
+         * @param payload
+         *            the payload
+         * @throws IOException
+         *             if the frame cannot be written
+         */
+        private synchronized void writeFrame(int type, byte[] payload)
+                throws IOException {
+
+            this.mmFrameBuffer.reset();
+            this.mmFrameBuffer.write(type);
+
+            // Payload length as unsigned varint
+            writeVarint(this.mmFrameBuffer, payload.length);
+            this.mmFrameBuffer.write(payload, 0, payload.length);
+
+            this.mmFrameBuffer.writeTo(this.mmOutStream);
+            this.mmOutStream.flush();
+        }
+
+        /**
+         * Write the given value as unsigned varint to the given buffer.
+         * 
+         * @param out
+         *            the buffer
+         * @param value
+         *            the value, not negative
+         */
+        private void writeVarint(ByteArrayOutputStream out, int value) {
+            int rest = value;
+            while ((rest & ~0x7F) != 0) {
+                out.write((rest & 0x7F) | 0x80);
+                rest >>>= 7;
             }
+            out.write(rest);
         }
 
         /**
@@ -622,7 +856,7 @@ public class BluetoothCommandService {
             }
 
             try {
-                this.writeMessageBuffered(CONNECTION_CLOSED_HASH);
+                this.writeClose();
                 this.mmSocket.close();
             } catch (IOException e) {
                 Log.e(TAG, "close() of connect socket failed", e); //$NON-NLS-1$
@@ -16,6 +16,8 @@
 
 package de.sarahw.ma.phone;
 
+import java.util.List;
+
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -193,6 +195,28 @@ public class DBAdapter {
                 + KEY_IDEA + "='" + ideaText + "'"); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
+    /**
+     * Removes several idea items from the database in one transaction.
+     * 
+     * @param ideaTexts
+     *            the Strings of the ideas to be removed
+     */
+    public void removeIdeaItems(List<String> ideaTexts) {
+        if (Debugging.D) {
+            Log.d(TAG, "Removing ideas " + ideaTexts.size()); //$NON-NLS-1$
+        }
+        this.database.beginTransaction();
+        try {
+            for (String ideaText : ideaTexts) {
+                this.database.delete(DATABASE_TABLE, KEY_IDEA + "=?", //$NON-NLS-1$
+                        new String[] { ideaText });
+            }
+            this.database.setTransactionSuccessful();
+        } finally {
+            this.database.endTransaction();
+        }
+    }
+
     /**
      * Returns a cursor for the idea list database
      * 
@@ -18,6 +18,9 @@
 
 package de.sarahw.ma.phone;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
@@ -350,6 +353,174 @@ public class TransferActivity extends Activity {
 
     }
 
+    /**
+     * Sends the given strings to the connected bluetooth remote device (the
+     * multi touch table) in one batch, which the table adds to its MindMap at
+     * once. The strings that have been sent are removed from the database in
+     * one transaction, all others are kept and reported to the user.
+     * 
+     * @param texts
+     *            the texts to be sent
+     * 
+     * @return true if all texts could be sent successfully
+     */
+    public boolean sendStringsToRemoteDevice(List<String> texts) {
+
+        if (Debugging.D) {
+            Log.d(TAG, "Entering sendStringsToRemoteDevice(texts=" + texts.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (texts.isEmpty()) {
+            Toast.makeText(TransferActivity.this,
+                    R.string.toast_no_ideas_to_transfer, Toast.LENGTH_SHORT)
+                    .show();
+
+            if (Debugging.D) {
+                Log.d(TAG, "Leaving sendStringsToRemoteDevice(): false, no texts"); //$NON-NLS-1$
+            }
+            return false;
+        }
+
+        // Get active bluetooth command service
+        BluetoothCommandService commandService = TabBarActivity.myTabLayout
+                .getmCommandService();
+
+        // Check if we are connected to a bt server via the title
+        if (commandService != null
+                && TabBarActivity.myTabLayout.getmTitle().getText().toString()
+                        .contains(getString(R.string.title_connected_to))) {
+
+            // Send all texts as one batch
+            List<String> sent = commandService.writeMessages(texts);
+
+            if (!sent.isEmpty()) {
+                // Show one toast for the whole batch
+                Toast.makeText(TransferActivity.this,
+                        getString(R.string.toast_ideas_transferred,
+                                Integer.valueOf(sent.size())),
+                        Toast.LENGTH_SHORT).show();
+
+                // Delete only the sent strings from database
+                TabBarActivity.myTabLayout.getdBAdapter().removeIdeaItems(sent);
+
+                // Notify list adapter of changes
+                updateList();
+            }
+
+            // Report the texts that were skipped or lost by a write error
+            int notSent = texts.size() - sent.size();
+            if (notSent > 0) {
+                Toast.makeText(TransferActivity.this,
+                        getString(R.string.toast_ideas_not_transferred,
+                                Integer.valueOf(notSent)), Toast.LENGTH_LONG)
+                        .show();
+            }
+
+            if (Debugging.D) {
+                Log.d(TAG, "Leaving sendStringsToRemoteDevice(): " + (notSent == 0)); //$NON-NLS-1$
+            }
+            return notSent == 0;
+        }
+
+        // We are not connected to a remote device or there is no bluetooth
+        // available
+        // Show toast
+        String toastTxt = getString(R.string.toast_idea_not_transferred_pt1)
+                + " " //$NON-NLS-1$
+                + getString(R.string.toast_idea_not_transferred_pt2);
+        Toast.makeText(TransferActivity.this, toastTxt, Toast.LENGTH_SHORT)
+                .show();
+
+        if (Debugging.D) {
+            Log.d(TAG, "Leaving sendStringsToRemoteDevice(): false"); //$NON-NLS-1$
+        }
+        return false;
+    }
+
+    /**
+     * Returns the texts of all ideas in the database in the order they have
+     * been created.
+     * 
+     * @return the idea texts
+     */
+    private List<String> getAllIdeaTexts() {
+
+        List<String> ideaTexts = new ArrayList<String>();
+
+        Cursor dbCursor = TabBarActivity.myTabLayout.getdBAdapter()
+                .getAllIdeaItemsCursor();
+        if (dbCursor != null) {
+            try {
+                int column = dbCursor.getColumnIndex(DBAdapter.KEY_IDEA);
+                while (dbCursor.moveToNext()) {
+                    ideaTexts.add(dbCursor.getString(column));
+                }
+            } finally {
+                dbCursor.close();
+            }
+        } else {
+            Log.e(TAG, "Cursor for DB is null!"); //$NON-NLS-1$
+        }
+        return ideaTexts;
+    }
+
+    /**
+     * Shows a dialog to select the ideas that are sent to the remote device in
+     * one batch.
+     * 
+     */
+    private void showSendSelectionDialog() {
+
+        if (Debugging.D) {
+            Log.d(TAG, "Entering showSendSelectionDialog()"); //$NON-NLS-1$
+        }
+
+        final List<String> ideaTexts = getAllIdeaTexts();
+        if (ideaTexts.isEmpty()) {
+            Toast.makeText(TransferActivity.this,
+                    R.string.toast_no_ideas_to_transfer, Toast.LENGTH_SHORT)
+                    .show();
+            return;
+        }
+
+        final boolean[] selected = new boolean[ideaTexts.size()];
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.dialog_send_selection_title)
+                .setMultiChoiceItems(
+                        ideaTexts.toArray(new String[ideaTexts.size()]),
+                        selected,
+                        new DialogInterface.OnMultiChoiceClickListener() {
+
+                            @Override
+                            public void onClick(DialogInterface dialog,
+                                    int which, boolean isChecked) {
+                                selected[which] = isChecked;
+                            }
+                        })
+                .setPositiveButton(R.string.dialog_send_selection_bt_send,
+                        new DialogInterface.OnClickListener() {
+
+                            @Override
+                            public void onClick(DialogInterface dialog,
+                                    int which) {
+                                List<String> selection = new ArrayList<String>();
+                                for (int i = 0; i < selected.length; i++) {
+                                    if (selected[i]) {
+                                        selection.add(ideaTexts.get(i));
+                                    }
+                                }
+                                sendStringsToRemoteDevice(selection);
+                            }
+                        })
+                .setNegativeButton(R.string.dialog_send_selection_bt_cancel,
+                        null).show();
+
+        if (Debugging.D) {
+            Log.d(TAG, "Leaving showSendSelectionDialog()"); //$NON-NLS-1$
+        }
+    }
+
     /**
      * Shows a help dialog for the TransferActivity..
      * 
@@ -447,12 +618,12 @@ public class TransferActivity extends Activity {
     }
 
     /**
-     * Inflates an options menu.
+     * Inflates the options menu with the batch transfer actions.
      */
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
-        inflater.inflate(R.menu.menu, menu);
+        inflater.inflate(R.menu.transfer_menu, menu);
         return true;
     }
 
@@ -464,6 +635,12 @@ public class TransferActivity extends Activity {
     public boolean onOptionsItemSelected(MenuItem item) {
         // Handle item selection
         switch (item.getItemId()) {
+            case R.id.send_all:
+                sendStringsToRemoteDevice(getAllIdeaTexts());
+                return true;
+            case R.id.send_selection:
+                showSendSelectionDialog();
+                return true;
             case R.id.help:
                 showHelpDialog();
                 return true;
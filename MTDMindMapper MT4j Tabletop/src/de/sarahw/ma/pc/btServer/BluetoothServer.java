@@ -34,6 +34,12 @@ import de.sarahw.ma.pc.mindMapper.model.AppModel;
  * </p>
  * 
  * <p>
+ * The maximum number of concurrent connections and the idle timeout of a
+ * connection can be set by the system properties CONNECTIONS_MAX_PROPERTY and
+ * IDLE_TIMEOUT_PROPERTY (e.g. -Dde.sarahw.ma.pc.btServer.connectionsMax=10).
+ * </p>
+ * 
+ * <p>
  * Modified 2011-08 <br>
  * </p>
  * 
@@ -46,7 +52,26 @@ import de.sarahw.ma.pc.mindMapper.model.AppModel;
  */
 public class BluetoothServer {
 
-    private static Logger          log = Logger.getLogger(BluetoothServer.class);
+    private static Logger          log                         = Logger.getLogger(BluetoothServer.class);
+
+    /** The system property for the maximum number of concurrent connections */
+    public static final String     CONNECTIONS_MAX_PROPERTY    = "de.sarahw.ma.pc.btServer.connectionsMax"; //$NON-NLS-1$
+
+    /** The system property for the connection idle timeout in milliseconds */
+    public static final String     IDLE_TIMEOUT_PROPERTY       = "de.sarahw.ma.pc.btServer.idleTimeoutMillis"; //$NON-NLS-1$
+
+    /**
+     * The default maximum number of concurrent connections. A bluetooth
+     * adapter keeps at most 7 active links, one more is left for a device
+     * reconnecting before its old connection has timed out.
+     */
+    private static final int       CONNECTIONS_MAX_DEFAULT     = 8;
+
+    /** The default connection idle timeout in milliseconds */
+    private static final long      IDLE_TIMEOUT_MILLIS_DEFAULT = 15 * 60 * 1000;
+
+    /** The maximum time to wait for connection handlers on shutdown */
+    private static final long      SHUTDOWN_TIMEOUT_MILLIS     = 2000;
 
     /** The Bluetooth Server instance */
     private static BluetoothServer instance;
@@ -67,9 +92,16 @@ public class BluetoothServer {
 
         log.debug("Executing BluetoothServer(model" + model + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
+        ConnectionExecutor connectionExecutor = new ConnectionExecutor(
+                Integer.getInteger(CONNECTIONS_MAX_PROPERTY,
+                        CONNECTIONS_MAX_DEFAULT).intValue(), Long.getLong(
+                        IDLE_TIMEOUT_PROPERTY, IDLE_TIMEOUT_MILLIS_DEFAULT)
+                        .longValue());
+
         // Start wait thread
-        this.waitThread = new WaitBtThread(model);
-        Thread waitBtThread = new Thread(this.waitThread);
+        this.waitThread = new WaitBtThread(model, new BluetoothTransport(),
+                connectionExecutor);
+        Thread waitBtThread = new Thread(this.waitThread, "BtWaitThread"); //$NON-NLS-1$
         waitBtThread.start();
     }
 
@@ -105,4 +137,18 @@ public class BluetoothServer {
         return this.waitThread;
     }
 
+    /* **********Object methods********** */
+    /**
+     * Stops accepting connections and closes all open connections. Called
+     * before the application exits.
+     * 
+     * @return true, if all connection handlers have finished
+     */
+    public boolean shutdown() {
+        log.debug("Entering shutdown()"); //$NON-NLS-1$
+        boolean result = this.waitThread.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+        return result;
+    }
+
 }
@@ -0,0 +1,208 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.bluetooth.DiscoveryAgent;
+import javax.bluetooth.LocalDevice;
+import javax.bluetooth.RemoteDevice;
+import javax.bluetooth.UUID;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnection;
+import javax.microedition.io.StreamConnectionNotifier;
+
+import org.apache.log4j.Logger;
+
+import com.intel.bluetooth.RemoteDeviceHelper;
+
+/**
+ * <p>
+ * Accepts RFCOMM connections of bluetooth devices via BlueCove. The local
+ * device is made discoverable and a serial port service is registered when
+ * the transport is opened.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IConnectionTransport
+ */
+public final class BluetoothTransport implements IConnectionTransport {
+
+    private static Logger                     log          = Logger.getLogger(BluetoothTransport.class);
+
+    /** The UUID of the serial port service, must match the Android client */
+    private static final String               SERVICE_UUID = "fae3fa60e2ce11e095720800200c9a66"; //$NON-NLS-1$
+
+    /** The local bluetooth device, null until the transport is opened */
+    private volatile LocalDevice              localDevice;
+
+    /** The stream connection notifier which handles incoming connections */
+    private volatile StreamConnectionNotifier notifier;
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the local bluetooth device.
+     * 
+     * @return the localDevice or null if the transport has not been opened
+     *         successfully
+     */
+    public LocalDevice getLocalDevice() {
+        return this.localDevice;
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Sets the local device discoverable and registers the serial port
+     * service.
+     * 
+     * @throws IOException
+     *             if bluetooth is not available
+     */
+    @Override
+    public void open() throws IOException {
+
+        log.debug("Entering open()"); //$NON-NLS-1$
+
+        // retrieve the local Bluetooth device object
+        this.localDevice = LocalDevice.getLocalDevice();
+        this.localDevice.setDiscoverable(DiscoveryAgent.GIAC);
+
+        UUID uuid = new UUID(SERVICE_UUID, false); // fae3fa60-e2ce-11e0-9572-0800200c9a66
+
+        String url = "btspp://localhost:" + uuid.toString() //$NON-NLS-1$
+                + ";name=RemoteBluetooth" + ";authenticate=true;encrypt=true;master=true"; //$NON-NLS-1$//$NON-NLS-2$
+
+        // Open bt connection
+        this.notifier = (StreamConnectionNotifier) Connector.open(url);
+
+        log.debug("Leaving open()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Waits for the next bluetooth connection.
+     * 
+     * @return the new connection
+     * @throws IOException
+     *             if the transport has been closed or fails
+     */
+    @Override
+    public ITransportConnection accept() throws IOException {
+        StreamConnectionNotifier currentNotifier = this.notifier;
+        if (currentNotifier == null) {
+            throw new IOException("Transport not open"); //$NON-NLS-1$
+        }
+        return new BluetoothConnection(currentNotifier.acceptAndOpen());
+    }
+
+    /**
+     * Closes the connection notifier.
+     */
+    @Override
+    public void close() {
+        StreamConnectionNotifier currentNotifier = this.notifier;
+        if (currentNotifier != null) {
+            try {
+                currentNotifier.close();
+            } catch (IOException e) {
+                log.error("Exception while closing connection notifier: " + e.getMessage()); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A bluetooth stream connection.
+     */
+    private static class BluetoothConnection implements ITransportConnection {
+
+        /** The (stream) connection instance */
+        private final StreamConnection connection;
+
+        /**
+         * Constructor. Instantiates a new BluetoothConnection.
+         * 
+         * @param connection
+         *            the stream connection
+         */
+        BluetoothConnection(StreamConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return this.connection.openInputStream();
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+            return this.connection.openOutputStream();
+        }
+
+        @Override
+        public String getRemoteName() {
+            RemoteDevice remoteDevice = getRemoteDevice();
+            if (remoteDevice == null) {
+                return null;
+            }
+            try {
+                return remoteDevice.getFriendlyName(false);
+            } catch (IOException e) {
+                log.warn("Exception while getting friendly name: " + e.getMessage()); //$NON-NLS-1$
+                return ""; //$NON-NLS-1$
+            }
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            RemoteDevice remoteDevice = getRemoteDevice();
+            return (remoteDevice == null) ? null : remoteDevice
+                    .getBluetoothAddress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.connection.close();
+        }
+
+        /**
+         * Returns the remote device of the connection.
+         * 
+         * @return the remote device or null if it is unknown
+         */
+        private RemoteDevice getRemoteDevice() {
+            try {
+                return RemoteDeviceHelper.getRemoteDevice(this.connection);
+            } catch (IOException e) {
+                log.error("Exception while getting remote device: " + e.getMessage()); //$NON-NLS-1$
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BluetoothConnection [connection=" + this.connection + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+}
@@ -0,0 +1,325 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Runs the handlers of client connections on a bounded pool of named daemon
+ * threads.
+ * </p>
+ * 
+ * <p>
+ * At most connectionsMax handlers run at the same time, further connections
+ * are rejected and have to be closed by the caller. The limit is checked
+ * against the running handlers, not the pool threads: a thread whose handler
+ * has just returned may not be ready for the next connection yet, so the pool
+ * creates another thread then instead of rejecting it.
+ * </p>
+ * 
+ * <p>
+ * A watchdog thread closes connections whose last message is older than the
+ * idle timeout, so handlers of devices that vanished without closing their
+ * connection don't block a thread forever. On {@link #shutdown(long)} all
+ * connections are closed and the handlers are awaited.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IConnectionHandler
+ */
+public final class ConnectionExecutor {
+
+    private static Logger                  log                   = Logger.getLogger(ConnectionExecutor.class);
+
+    /** The time after which idle pool threads terminate in milliseconds */
+    private static final long              KEEP_ALIVE_MILLIS     = 30 * 1000;
+
+    /** The minimum interval of the idle check in milliseconds */
+    private static final long              IDLE_CHECK_MIN_MILLIS = 10;
+
+    /** The maximum number of concurrent connections */
+    private final int                      connectionsMax;
+
+    /** The executor of the connection handlers */
+    private final ThreadPoolExecutor       executor;
+
+    /** The watchdog that closes idle connections */
+    private final ScheduledExecutorService watchdog;
+
+    /** The idle timeout in milliseconds */
+    private final long                     idleTimeoutMillis;
+
+    /** The handlers that are running or about to run */
+    private final Set<IConnectionHandler>  activeHandlers        = new HashSet<IConnectionHandler>();
+
+    /** The number of connections closed because of the idle timeout */
+    private final AtomicInteger            idleClosedCount       = new AtomicInteger();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new ConnectionExecutor.
+     * 
+     * @param connectionsMax
+     *            the maximum number of concurrent connections, at least 1
+     * @param idleTimeoutMillis
+     *            the time after which a connection without messages is
+     *            closed in milliseconds, at least 1
+     */
+    public ConnectionExecutor(int connectionsMax, long idleTimeoutMillis) {
+
+        log.debug("Executing ConnectionExecutor(connectionsMax=" + connectionsMax //$NON-NLS-1$
+                + ", idleTimeoutMillis=" + idleTimeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        if (connectionsMax < 1 || idleTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Invalid connection limits"); //$NON-NLS-1$
+        }
+        this.connectionsMax = connectionsMax;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+
+        // No queue: an admitted connection gets an idle or a new thread, the
+        // number of connections is limited by execute()
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(), new ConnectionThreadFactory(
+                        "BtConnection")); //$NON-NLS-1$
+
+        long checkMillis = Math.max(IDLE_CHECK_MIN_MILLIS,
+                idleTimeoutMillis / 4);
+        this.watchdog = Executors
+                .newSingleThreadScheduledExecutor(new ConnectionThreadFactory(
+                        "BtConnectionWatchdog")); //$NON-NLS-1$
+        this.watchdog.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeIdleConnections();
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the maximum number of concurrent connections.
+     * 
+     * @return the maximum number of connections
+     */
+    public int getConnectionsMax() {
+        return this.connectionsMax;
+    }
+
+    /**
+     * Returns the idle timeout.
+     * 
+     * @return the idleTimeoutMillis
+     */
+    public long getIdleTimeoutMillis() {
+        return this.idleTimeoutMillis;
+    }
+
+    /**
+     * Returns the number of handlers that are running or about to run.
+     * 
+     * @return the number of active handlers
+     */
+    public int getActiveCount() {
+        synchronized (this.activeHandlers) {
+            return this.activeHandlers.size();
+        }
+    }
+
+    /**
+     * Returns the number of connections closed because of the idle timeout.
+     * 
+     * @return the idleClosedCount
+     */
+    public int getIdleClosedCount() {
+        return this.idleClosedCount.get();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Runs the given handler on a pool thread, if the maximum number of
+     * concurrent connections has not been reached yet.
+     * 
+     * @param handler
+     *            the handler of a new connection
+     * @return false, if the handler has been rejected, the caller has to close
+     *         its connection then
+     */
+    public boolean execute(final IConnectionHandler handler) {
+
+        log.debug("Entering execute(handler=" + handler + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        synchronized (this.activeHandlers) {
+            if (this.activeHandlers.size() >= this.connectionsMax) {
+                log.warn("Leaving execute(): false, connection rejected, " + this.connectionsMax + " connections active"); //$NON-NLS-1$ //$NON-NLS-2$
+                return false;
+            }
+            this.activeHandlers.add(handler);
+        }
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handler.run();
+                    } finally {
+                        removeHandler(handler);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            removeHandler(handler);
+            log.warn("Leaving execute(): false, connection rejected, executor has been shut down"); //$NON-NLS-1$
+            return false;
+        }
+
+        log.debug("Leaving execute(): true"); //$NON-NLS-1$
+        return true;
+    }
+
+    /**
+     * Stops accepting handlers, closes all connections and waits for the
+     * running handlers to finish.
+     * 
+     * @param timeoutMillis
+     *            the maximum time to wait in milliseconds
+     * @return true, if all handlers have finished
+     */
+    public boolean shutdown(long timeoutMillis) {
+
+        log.debug("Entering shutdown(timeoutMillis=" + timeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        this.watchdog.shutdownNow();
+        this.executor.shutdown();
+
+        // Closing the connections ends the blocking reads of the handlers
+        for (IConnectionHandler handler : copyActiveHandlers()) {
+            handler.close();
+        }
+
+        try {
+            boolean result = this.executor.awaitTermination(timeoutMillis,
+                    TimeUnit.MILLISECONDS);
+            log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Leaving shutdown(): false, interrupted"); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Closes all connections whose last message is older than the idle
+     * timeout. Called periodically by the watchdog thread.
+     */
+    private void closeIdleConnections() {
+
+        long now = System.currentTimeMillis();
+        for (IConnectionHandler handler : copyActiveHandlers()) {
+            if (now - handler.getLastActivityMillis() >= this.idleTimeoutMillis) {
+                log.info("Closing idle connection " + handler); //$NON-NLS-1$
+                this.idleClosedCount.incrementAndGet();
+                handler.close();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the active handlers, so they can be closed without
+     * holding the lock.
+     * 
+     * @return the active handlers
+     */
+    private List<IConnectionHandler> copyActiveHandlers() {
+        synchronized (this.activeHandlers) {
+            return new ArrayList<IConnectionHandler>(this.activeHandlers);
+        }
+    }
+
+    /**
+     * Removes a finished or rejected handler.
+     * 
+     * @param handler
+     *            the handler
+     */
+    private void removeHandler(IConnectionHandler handler) {
+        synchronized (this.activeHandlers) {
+            this.activeHandlers.remove(handler);
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Creates the named daemon threads of the ConnectionExecutor.
+     */
+    private static class ConnectionThreadFactory implements ThreadFactory {
+
+        /** The name prefix of the threads */
+        private final String        name;
+
+        /** The number of threads created */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Constructor. Instantiates a new ConnectionThreadFactory.
+         * 
+         * @param name
+         *            the name prefix of the threads
+         */
+        ConnectionThreadFactory(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Creates a new daemon thread. Connections still open on exit are
+         * closed by {@link ConnectionExecutor#shutdown(long)}.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.name + "-" //$NON-NLS-1$
+                    + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+/**
+ * <p>
+ * Handles the messages of one client connection. Run by the
+ * {@link ConnectionExecutor}, which closes handlers that have been idle for
+ * too long or are still running on shutdown.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see ProcessConnectionThread
+ */
+public interface IConnectionHandler extends Runnable {
+
+    /**
+     * Returns the time of the last message received from the client.
+     * 
+     * @return the time in milliseconds (see System.currentTimeMillis())
+     */
+    public long getLastActivityMillis();
+
+    /**
+     * Closes the connection. A handler blocked in reading returns from
+     * {@link #run()} soon afterwards. May be called from any thread.
+     */
+    public void close();
+
+}
@@ -0,0 +1,68 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * Accepts client connections for the btServer. The {@link WaitBtThread}
+ * accepts connections from a transport and hands each one to a
+ * {@link ProcessConnectionThread}, independent of how the bytes travel.
+ * </p>
+ * 
+ * <p>
+ * {@link BluetoothTransport} accepts the phones of the users. The
+ * {@link TcpTransport} on localhost and the {@link InMemoryTransport} let the
+ * ingest path run without a bluetooth adapter, e.g. in tests and benchmarks.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see ITransportConnection
+ */
+public interface IConnectionTransport {
+
+    /**
+     * Starts listening for connections. Must be called once before
+     * {@link #accept()}.
+     * 
+     * @throws IOException
+     *             if the transport is not available
+     */
+    public void open() throws IOException;
+
+    /**
+     * Waits for the next client connection.
+     * 
+     * @return the new connection
+     * @throws IOException
+     *             if the transport has been closed or fails
+     */
+    public ITransportConnection accept() throws IOException;
+
+    /**
+     * Stops listening for connections. A thread blocked in {@link #accept()}
+     * gets an IOException. Connections already accepted stay open.
+     */
+    public void close();
+
+}
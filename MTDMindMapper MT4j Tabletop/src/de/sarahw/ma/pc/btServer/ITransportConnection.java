@@ -0,0 +1,82 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ * A duplex byte stream connection to one client, accepted by an
+ * {@link IConnectionTransport}.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IConnectionTransport
+ */
+public interface ITransportConnection {
+
+    /**
+     * Opens the stream of the bytes sent by the client.
+     * 
+     * @return the input stream
+     * @throws IOException
+     *             if the stream cannot be opened
+     */
+    public InputStream openInputStream() throws IOException;
+
+    /**
+     * Opens the stream of the bytes sent to the client.
+     * 
+     * @return the output stream
+     * @throws IOException
+     *             if the stream cannot be opened
+     */
+    public OutputStream openOutputStream() throws IOException;
+
+    /**
+     * Returns the name of the remote device, shown in the list of connected
+     * devices.
+     * 
+     * @return the name, an empty String if the device has no name or null if
+     *         the remote device is unknown
+     */
+    public String getRemoteName();
+
+    /**
+     * Returns the address of the remote device.
+     * 
+     * @return the address or null if the remote device is unknown
+     */
+    public String getRemoteAddress();
+
+    /**
+     * Closes the connection and its streams. A read blocked on the input
+     * stream returns or fails soon afterwards.
+     * 
+     * @throws IOException
+     *             if the connection cannot be closed
+     */
+    public void close() throws IOException;
+
+}
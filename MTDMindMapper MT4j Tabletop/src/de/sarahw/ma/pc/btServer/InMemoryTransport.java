@@ -0,0 +1,445 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+
+/**
+ * <p>
+ * Connects clients and server within one process through bounded in-memory
+ * byte pipes. Has no sockets and no system resources, so tests and benchmarks
+ * measure the ingest path alone.
+ * </p>
+ * 
+ * <p>
+ * Clients connect with {@link #connect()}. Closing a side of a connection
+ * lets the other side read the remaining bytes and then the end of the
+ * stream.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IConnectionTransport
+ */
+public final class InMemoryTransport implements IConnectionTransport {
+
+    /** The default capacity of a pipe in bytes */
+    private static final int                       PIPE_CAPACITY_DEFAULT = 16 * 1024;
+
+    /** The capacity of each pipe in bytes */
+    private final int                              pipeCapacity;
+
+    /** The server ends of the connections not accepted yet */
+    private final LinkedList<ITransportConnection> pending               = new LinkedList<ITransportConnection>();
+
+    /** If the transport is open */
+    private boolean                                open;
+
+    /** The number of connections opened so far, used for the remote names */
+    private int                                    connectionCount;
+
+    /* ***********Constructors*********** */
+    /**
+     * Default constructor. Instantiates a new InMemoryTransport.
+     */
+    public InMemoryTransport() {
+        this(PIPE_CAPACITY_DEFAULT);
+    }
+
+    /**
+     * Constructor. Instantiates a new InMemoryTransport.
+     * 
+     * @param pipeCapacity
+     *            the capacity of each pipe in bytes, a writer blocks while the
+     *            pipe is full
+     */
+    public InMemoryTransport(int pipeCapacity) {
+        if (pipeCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid pipe capacity: " + pipeCapacity); //$NON-NLS-1$
+        }
+        this.pipeCapacity = pipeCapacity;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Opens a client connection to this transport. The server end is returned
+     * by the next {@link #accept()}.
+     * 
+     * @return the client end of the connection
+     * @throws IOException
+     *             if the transport is not open
+     */
+    public synchronized ITransportConnection connect() throws IOException {
+        if (!this.open) {
+            throw new IOException("Transport not open"); //$NON-NLS-1$
+        }
+        Pipe toServer = new Pipe(this.pipeCapacity);
+        Pipe toClient = new Pipe(this.pipeCapacity);
+        String name = "InMemory " + (++this.connectionCount); //$NON-NLS-1$
+
+        this.pending.add(new PipeConnection(toServer, toClient, name));
+        notifyAll();
+
+        return new PipeConnection(toClient, toServer, name);
+    }
+
+    /* ********Overridden methods******** */
+    @Override
+    public synchronized void open() {
+        this.open = true;
+    }
+
+    /**
+     * Waits for the next client connection.
+     * 
+     * @return the server end of the new connection
+     * @throws IOException
+     *             if the transport has been closed or the thread is
+     *             interrupted
+     */
+    @Override
+    public synchronized ITransportConnection accept() throws IOException {
+        while (this.open && this.pending.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for connection"); //$NON-NLS-1$
+            }
+        }
+        if (!this.open) {
+            throw new IOException("Transport closed"); //$NON-NLS-1$
+        }
+        return this.pending.removeFirst();
+    }
+
+    /**
+     * Closes the transport. Connections not accepted yet are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        this.open = false;
+        for (ITransportConnection connection : this.pending) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // Pipes do not fail on close
+            }
+        }
+        this.pending.clear();
+        notifyAll();
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A bounded ring buffer of bytes with one writer and one reader.
+     */
+    private static class Pipe {
+
+        /** The buffer */
+        private final byte[] buffer;
+
+        /** The index of the next byte to read */
+        private int          readIndex;
+
+        /** The number of buffered bytes */
+        private int          count;
+
+        /** If the writer has closed the pipe */
+        private boolean      writerClosed;
+
+        /** If the reader has closed the pipe */
+        private boolean      readerClosed;
+
+        /**
+         * Constructor. Instantiates a new, empty Pipe.
+         * 
+         * @param capacity
+         *            the capacity in bytes
+         */
+        Pipe(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Writes bytes, blocks while the pipe is full.
+         * 
+         * @param b
+         *            the bytes
+         * @param off
+         *            the offset of the first byte
+         * @param len
+         *            the number of bytes
+         * @throws IOException
+         *             if a side of the pipe has been closed
+         */
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            int written = 0;
+            while (written < len) {
+                while (this.count == this.buffer.length && !this.readerClosed
+                        && !this.writerClosed) {
+                    waitForChange();
+                }
+                if (this.writerClosed || this.readerClosed) {
+                    throw new IOException("Pipe closed"); //$NON-NLS-1$
+                }
+                int writeIndex = (this.readIndex + this.count)
+                        % this.buffer.length;
+                int chunk = Math.min(len - written, Math.min(
+                        this.buffer.length - this.count, this.buffer.length
+                                - writeIndex));
+                System.arraycopy(b, off + written, this.buffer, writeIndex,
+                        chunk);
+                this.count += chunk;
+                written += chunk;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Reads bytes, blocks while the pipe is empty and open.
+         * 
+         * @param b
+         *            the buffer
+         * @param off
+         *            the offset in the buffer
+         * @param len
+         *            the maximum number of bytes
+         * @return the number of bytes read or -1 at the end of the stream
+         * @throws IOException
+         *             if the reader has closed the pipe
+         */
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            while (this.count == 0 && !this.writerClosed && !this.readerClosed) {
+                waitForChange();
+            }
+            if (this.readerClosed) {
+                throw new IOException("Pipe closed"); //$NON-NLS-1$
+            }
+            if (this.count == 0) {
+                return -1;
+            }
+            int chunk = Math.min(len, Math.min(this.count, this.buffer.length
+                    - this.readIndex));
+            System.arraycopy(this.buffer, this.readIndex, b, off, chunk);
+            this.readIndex = (this.readIndex + chunk) % this.buffer.length;
+            this.count -= chunk;
+            notifyAll();
+            return chunk;
+        }
+
+        /**
+         * Returns the number of bytes that can be read without blocking.
+         * 
+         * @return the number of buffered bytes
+         */
+        synchronized int available() {
+            return this.count;
+        }
+
+        /**
+         * Closes the writing side.
+         */
+        synchronized void closeWriter() {
+            this.writerClosed = true;
+            notifyAll();
+        }
+
+        /**
+         * Closes the reading side, buffered bytes are dropped.
+         */
+        synchronized void closeReader() {
+            this.readerClosed = true;
+            this.count = 0;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the other side changes the pipe.
+         * 
+         * @throws IOException
+         *             if the thread is interrupted
+         */
+        private void waitForChange() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for pipe"); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * The input stream reading from a pipe.
+     */
+    private static class PipeInputStream extends InputStream {
+
+        /** The pipe */
+        private final Pipe   pipe;
+
+        /** The buffer for single byte reads */
+        private final byte[] single = new byte[1];
+
+        /**
+         * Constructor. Instantiates a new PipeInputStream.
+         * 
+         * @param pipe
+         *            the pipe to read from
+         */
+        PipeInputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (this.single) {
+                return (this.pipe.read(this.single, 0, 1) < 0) ? -1
+                        : this.single[0] & 0xFF;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return this.pipe.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return this.pipe.available();
+        }
+
+        @Override
+        public void close() {
+            this.pipe.closeReader();
+        }
+    }
+
+    /**
+     * The output stream writing to a pipe.
+     */
+    private static class PipeOutputStream extends OutputStream {
+
+        /** The pipe */
+        private final Pipe   pipe;
+
+        /** The buffer for single byte writes */
+        private final byte[] single = new byte[1];
+
+        /**
+         * Constructor. Instantiates a new PipeOutputStream.
+         * 
+         * @param pipe
+         *            the pipe to write to
+         */
+        PipeOutputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (this.single) {
+                this.single[0] = (byte) b;
+                this.pipe.write(this.single, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.pipe.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            this.pipe.closeWriter();
+        }
+    }
+
+    /**
+     * One end of an in-memory connection.
+     */
+    private static class PipeConnection implements ITransportConnection {
+
+        /** The input stream of this end */
+        private final PipeInputStream  inputStream;
+
+        /** The output stream of this end */
+        private final PipeOutputStream outputStream;
+
+        /** The name of the connection */
+        private final String           name;
+
+        /**
+         * Constructor. Instantiates a new PipeConnection.
+         * 
+         * @param in
+         *            the pipe this end reads from
+         * @param out
+         *            the pipe this end writes to
+         * @param name
+         *            the name of the connection
+         */
+        PipeConnection(Pipe in, Pipe out, String name) {
+            this.inputStream = new PipeInputStream(in);
+            this.outputStream = new PipeOutputStream(out);
+            this.name = name;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return this.inputStream;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return this.outputStream;
+        }
+
+        @Override
+        public String getRemoteName() {
+            return this.name;
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "memory"; //$NON-NLS-1$
+        }
+
+        @Override
+        public void close() {
+            this.inputStream.close();
+            this.outputStream.close();
+        }
+
+        @Override
+        public String toString() {
+            return "PipeConnection [name=" + this.name + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+}
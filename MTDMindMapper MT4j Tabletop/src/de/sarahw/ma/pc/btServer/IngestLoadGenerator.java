@@ -0,0 +1,831 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import de.sarahw.ma.pc.mindMapper.IModelEventListener;
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
+import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+import de.sarahw.ma.pc.mindMapper.model.AppModel;
+import de.sarahw.ma.pc.mindMapper.model.EMindMapChangeStatus;
+import de.sarahw.ma.pc.mindMapper.model.IdeaNode;
+import de.sarahw.ma.pc.mindMapper.model.MindMap;
+import de.sarahw.ma.pc.mindMapper.model.ModelChangeSet;
+import de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue;
+import de.sarahw.ma.pc.mindMapper.model.NodeContent;
+
+/**
+ * <p>
+ * Generates the load of many phones sending ideas at the same time and
+ * measures the whole ingest path: transport, {@link WaitBtThread},
+ * {@link ConnectionExecutor}, {@link ProcessConnectionThread}, the model
+ * command queue and the MindMap.
+ * </p>
+ * 
+ * <p>
+ * Every client sends its ideas in bursts of burstSize ideas, burstsPerSecond
+ * times a second, either as single idea frames or as one batch frame per
+ * burst like the send-all of the phone. The latency of an idea is the time
+ * from writing it to the MIND_MAP_IDEA_NODE_ADDED notification of the loaded
+ * MindMap, whether delivered alone or in a MIND_MAP_CHANGES_COMMITTED change
+ * set.
+ * </p>
+ * 
+ * <p>
+ * {@link #run(AppModel, long)} must be called on the thread that owns the
+ * model, as it drains the command queue in place of the render thread. It
+ * drains continuously, so the frame rate of the render thread is not part of
+ * the latencies. The texts and the schedule only depend on the settings and
+ * the seed, so runs with the same settings are comparable. The generated
+ * IdeaNodes are removed from the MindMap after the run.
+ * </p>
+ * 
+ * <p>
+ * Can be run from the command line:<br>
+ * IngestLoadGenerator [clients [ideasPerClient [burstSize [burstsPerSecond
+ * [textLength [batch|single [memory|tcp]]]]]]]
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see InMemoryTransport
+ * @see TcpTransport
+ */
+public final class IngestLoadGenerator {
+
+    private static Logger       log                       = Logger.getLogger(IngestLoadGenerator.class);
+
+    /** The default number of ideas sent at once */
+    public static final int     DEFAULT_BURST_SIZE        = 1;
+
+    /** The default number of bursts per second and client, 0 for no pause */
+    public static final int     DEFAULT_BURSTS_PER_SECOND = 0;
+
+    /** The default length of the idea texts */
+    public static final int     DEFAULT_TEXT_LENGTH       = 20;
+
+    /** The default seed of the idea texts */
+    public static final long    DEFAULT_SEED              = 42;
+
+    /** The maximum number of model commands executed per drain */
+    private static final int    COMMANDS_PER_DRAIN_MAX    = 16;
+
+    /** The pause of the draining thread if no command is pending */
+    private static final long   IDLE_PAUSE_NANOS          = 100 * 1000;
+
+    /** The idle timeout of the connections in milliseconds */
+    private static final long   IDLE_TIMEOUT_MILLIS       = 60 * 1000;
+
+    /** The prefix of the idea texts, followed by the idea index */
+    private static final char   INDEX_PREFIX              = '#';
+
+    /** The characters of the idea texts */
+    private static final String TEXT_CHARACTERS           = "abcdefghijklmnopqrstuvwxyz \u00E4\u00F6\u00FC\u00DF"; //$NON-NLS-1$
+
+    /** The number of concurrent clients */
+    private final int           clients;
+
+    /** The number of ideas each client sends */
+    private final int           ideasPerClient;
+
+    /** The number of ideas sent at once */
+    private int                 burstSize                 = DEFAULT_BURST_SIZE;
+
+    /** The number of bursts per second and client, 0 for no pause */
+    private int                 burstsPerSecond           = DEFAULT_BURSTS_PER_SECOND;
+
+    /** The length of the idea texts */
+    private int                 textLength                = DEFAULT_TEXT_LENGTH;
+
+    /** Flag indicating if a burst is sent as one batch frame */
+    private boolean             batchFrames;
+
+    /** Flag indicating if the clients connect via TCP instead of in memory */
+    private boolean             tcp;
+
+    /** The seed of the idea texts */
+    private long                seed                      = DEFAULT_SEED;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new IngestLoadGenerator.
+     * 
+     * @param clients
+     *            the number of concurrent clients
+     * @param ideasPerClient
+     *            the number of ideas each client sends
+     */
+    public IngestLoadGenerator(int clients, int ideasPerClient) {
+        if (clients <= 0 || ideasPerClient <= 0) {
+            throw new IllegalArgumentException("Invalid load: " + clients //$NON-NLS-1$
+                    + " clients, " + ideasPerClient + " ideas per client"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.clients = clients;
+        this.ideasPerClient = ideasPerClient;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Sets the number of ideas sent at once.
+     * 
+     * @param burstSize
+     *            the burstSize to set
+     */
+    public void setBurstSize(int burstSize) {
+        if (burstSize <= 0) {
+            throw new IllegalArgumentException("Invalid burst size: " + burstSize); //$NON-NLS-1$
+        }
+        this.burstSize = burstSize;
+    }
+
+    /**
+     * Sets the number of bursts per second and client.
+     * 
+     * @param burstsPerSecond
+     *            the burstsPerSecond to set, 0 for no pause between bursts
+     */
+    public void setBurstsPerSecond(int burstsPerSecond) {
+        if (burstsPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid rate: " + burstsPerSecond); //$NON-NLS-1$
+        }
+        this.burstsPerSecond = burstsPerSecond;
+    }
+
+    /**
+     * Sets the length of the idea texts. Texts start with their index, which
+     * may make short texts longer.
+     * 
+     * @param textLength
+     *            the textLength to set, at most NodeContent.IDEA_TXT_LNGTH_MAX
+     */
+    public void setTextLength(int textLength) {
+        if (textLength <= 0 || textLength > NodeContent.IDEA_TXT_LNGTH_MAX) {
+            throw new IllegalArgumentException("Invalid text length: " + textLength); //$NON-NLS-1$
+        }
+        this.textLength = textLength;
+    }
+
+    /**
+     * Sets if a burst is sent as one batch frame instead of single idea
+     * frames.
+     * 
+     * @param batchFrames
+     *            the batchFrames to set
+     */
+    public void setBatchFrames(boolean batchFrames) {
+        this.batchFrames = batchFrames;
+    }
+
+    /**
+     * Sets if the clients connect via TCP on localhost instead of in memory.
+     * 
+     * @param tcp
+     *            the tcp to set
+     */
+    public void setTcp(boolean tcp) {
+        this.tcp = tcp;
+    }
+
+    /**
+     * Sets the seed of the idea texts.
+     * 
+     * @param seed
+     *            the seed to set
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Runs the load against the loaded MindMap of the given model and waits
+     * until all ideas have been added or the timeout has passed.
+     * 
+     * @param model
+     *            the application model instance
+     * @param timeoutMillis
+     *            the maximum duration of the run in milliseconds
+     * @return the result of the run
+     * @throws IOException
+     *             if the transport cannot be opened
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Result run(AppModel model, long timeoutMillis) throws IOException,
+            InterruptedException {
+
+        log.debug("Entering run(model=" + model + ", timeoutMillis=" + timeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        int ideaCount = this.clients * this.ideasPerClient;
+        String[] texts = createTexts(ideaCount);
+        AtomicLongArray sendNanos = new AtomicLongArray(ideaCount);
+        long[] latencyNanos = new long[ideaCount];
+
+        MindMap mindMap = model.getLoadedMindMap();
+        AddedIdeaListener listener = new AddedIdeaListener(sendNanos,
+                latencyNanos);
+        mindMap.getEventBus().addListener(EMindMapChangeStatus.class, listener);
+
+        IConnectionTransport transport = this.tcp ? new TcpTransport(0)
+                : new InMemoryTransport();
+        WaitBtThread waitThread = new WaitBtThread(model, transport,
+                new ConnectionExecutor(this.clients, IDLE_TIMEOUT_MILLIS));
+        Thread waitBtThread = new Thread(waitThread, "IngestLoadWaitThread"); //$NON-NLS-1$
+        waitBtThread.setDaemon(true);
+        waitBtThread.start();
+
+        ModelCommandQueue commandQueue = model.getCommandQueue();
+        long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+        try {
+            // The first connection waits until the wait thread has opened
+            // the transport
+            ITransportConnection firstConnection = awaitConnection(
+                    transport, deadline);
+
+            // Start all clients at once
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<LoadClient> loadClients = new ArrayList<LoadClient>(
+                    this.clients);
+            for (int i = 0; i < this.clients; i++) {
+                LoadClient client = new LoadClient((i == 0) ? firstConnection
+                        : connect(transport), i, texts, sendNanos, startSignal);
+                loadClients.add(client);
+                Thread clientThread = new Thread(client,
+                        "IngestLoadClient-" + (i + 1)); //$NON-NLS-1$
+                clientThread.setDaemon(true);
+                clientThread.start();
+            }
+            long startNanos = System.nanoTime();
+            startSignal.countDown();
+
+            // Execute the commands like the render thread, the listener
+            // records the latencies
+            ModelEventBus btEventBus = waitThread.getEventBus();
+            while (listener.getObservedCount() < ideaCount
+                    && System.nanoTime() < deadline) {
+                int executed = commandQueue.drain(COMMANDS_PER_DRAIN_MAX);
+                btEventBus.dispatchPending();
+                if (executed == 0) {
+                    LockSupport.parkNanos(IDLE_PAUSE_NANOS);
+                }
+            }
+            long endNanos = System.nanoTime();
+
+            int failedClients = 0;
+            for (LoadClient client : loadClients) {
+                if (client.getFailure() != null) {
+                    failedClients++;
+                    log.warn("Client failed: " + client.getFailure()); //$NON-NLS-1$
+                }
+            }
+
+            Result result = new Result(ideaCount, listener.getObservedCount(),
+                    endNanos - startNanos, listener.getSortedLatencies(),
+                    failedClients);
+            log.debug("Leaving run(): " + result); //$NON-NLS-1$
+            return result;
+
+        } finally {
+            // Execute the commands of ideas received after the timeout, so
+            // all generated IdeaNodes are removed
+            waitThread.shutdown(timeoutMillis);
+            commandQueue.drain(ModelCommandQueue.UNBOUNDED);
+            mindMap.getEventBus().removeListener(EMindMapChangeStatus.class,
+                    listener);
+            removeIdeaNodes(mindMap, listener.getAddedIdeaNodes());
+        }
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Runs the load generator with the settings given as arguments and
+     * prints the result.
+     * 
+     * @param args
+     *            [clients [ideasPerClient [burstSize [burstsPerSecond
+     *            [textLength [batch|single [memory|tcp]]]]]]]
+     * @throws Exception
+     *             if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+
+        IngestLoadGenerator generator = new IngestLoadGenerator(intArgument(
+                args, 0, 50), intArgument(args, 1, 100));
+        generator.setBurstSize(intArgument(args, 2, DEFAULT_BURST_SIZE));
+        generator.setBurstsPerSecond(intArgument(args, 3,
+                DEFAULT_BURSTS_PER_SECOND));
+        generator.setTextLength(intArgument(args, 4, DEFAULT_TEXT_LENGTH));
+        generator.setBatchFrames(args.length > 5 && "batch".equals(args[5])); //$NON-NLS-1$
+        generator.setTcp(args.length > 6 && "tcp".equals(args[6])); //$NON-NLS-1$
+
+        AppModel model = AppModel.getInstance();
+        System.out.println(generator.run(model, 5 * 60 * 1000));
+        model.shutdown();
+        System.exit(0);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns an int command line argument.
+     * 
+     * @param args
+     *            the arguments
+     * @param index
+     *            the index of the argument
+     * @param defaultValue
+     *            the value if the argument is missing
+     * @return the value
+     */
+    private static int intArgument(String[] args, int index, int defaultValue) {
+        return (args.length > index) ? Integer.parseInt(args[index])
+                : defaultValue;
+    }
+
+    /**
+     * Creates the idea texts. Each text starts with its index, so the added
+     * IdeaNode can be matched with its send time.
+     * 
+     * @param ideaCount
+     *            the number of texts
+     * @return the texts
+     */
+    private String[] createTexts(int ideaCount) {
+        Random random = new Random(this.seed);
+        String[] texts = new String[ideaCount];
+        StringBuilder builder = new StringBuilder(
+                NodeContent.IDEA_TXT_LNGTH_MAX);
+        for (int i = 0; i < ideaCount; i++) {
+            builder.setLength(0);
+            builder.append(INDEX_PREFIX).append(i).append(' ');
+            while (builder.length() < this.textLength) {
+                builder.append(TEXT_CHARACTERS.charAt(random
+                        .nextInt(TEXT_CHARACTERS.length())));
+            }
+            texts[i] = builder.toString();
+        }
+        return texts;
+    }
+
+    /**
+     * Returns the index of a generated idea text.
+     * 
+     * @param text
+     *            the idea text
+     * @return the index or -1 if the text has not been generated
+     */
+    private static int parseIndex(String text) {
+        if (text == null || text.length() < 2 || text.charAt(0) != INDEX_PREFIX) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                return index;
+            }
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    /**
+     * Opens a client connection as soon as the wait thread has opened the
+     * transport.
+     * 
+     * @param transport
+     *            the transport
+     * @param deadline
+     *            the deadline in System.nanoTime()
+     * @return the client end of the connection
+     * @throws IOException
+     *             if the transport has not been opened before the deadline
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private static ITransportConnection awaitConnection(
+            IConnectionTransport transport, long deadline) throws IOException,
+            InterruptedException {
+        while (true) {
+            try {
+                return connect(transport);
+            } catch (IOException e) {
+                if (System.nanoTime() >= deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Opens a client connection to the transport.
+     * 
+     * @param transport
+     *            the in memory or TCP transport
+     * @return the client end of the connection
+     * @throws IOException
+     *             if the transport is not open
+     */
+    private static ITransportConnection connect(IConnectionTransport transport)
+            throws IOException {
+        if (transport instanceof TcpTransport) {
+            return ((TcpTransport) transport).connect();
+        }
+        return ((InMemoryTransport) transport).connect();
+    }
+
+    /**
+     * Removes the generated IdeaNodes from the MindMap in one batch.
+     * 
+     * @param mindMap
+     *            the MindMap
+     * @param ideaNodes
+     *            the generated IdeaNodes
+     */
+    private static void removeIdeaNodes(MindMap mindMap,
+            List<IdeaNode> ideaNodes) {
+        mindMap.beginBatch();
+        try {
+            for (IdeaNode ideaNode : ideaNodes) {
+                mindMap.removeIdeaNode(ideaNode);
+            }
+        } finally {
+            mindMap.commit();
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * The result of a run.
+     */
+    public static final class Result {
+
+        /** The number of ideas sent */
+        private final int    sentCount;
+
+        /** The number of ideas added to the MindMap */
+        private final int    observedCount;
+
+        /** The duration from the start of the clients to the last idea */
+        private final long   elapsedNanos;
+
+        /** The sorted latencies of the added ideas */
+        private final long[] latencyNanos;
+
+        /** The number of clients that failed */
+        private final int    failedClients;
+
+        /**
+         * Constructor. Instantiates a new Result.
+         * 
+         * @param sentCount
+         *            the number of ideas sent
+         * @param observedCount
+         *            the number of ideas added to the MindMap
+         * @param elapsedNanos
+         *            the duration of the run
+         * @param latencyNanos
+         *            the sorted latencies of the added ideas
+         * @param failedClients
+         *            the number of clients that failed
+         */
+        Result(int sentCount, int observedCount, long elapsedNanos,
+                long[] latencyNanos, int failedClients) {
+            this.sentCount = sentCount;
+            this.observedCount = observedCount;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos;
+            this.failedClients = failedClients;
+        }
+
+        /**
+         * Returns the number of ideas sent.
+         * 
+         * @return the sentCount
+         */
+        public int getSentCount() {
+            return this.sentCount;
+        }
+
+        /**
+         * Returns the number of ideas added to the MindMap.
+         * 
+         * @return the observedCount
+         */
+        public int getObservedCount() {
+            return this.observedCount;
+        }
+
+        /**
+         * Returns the number of clients that failed.
+         * 
+         * @return the failedClients
+         */
+        public int getFailedClients() {
+            return this.failedClients;
+        }
+
+        /**
+         * Returns the duration from the start of the clients to the last
+         * added idea.
+         * 
+         * @return the elapsedNanos
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * Returns the number of ideas added per second.
+         * 
+         * @return the throughput
+         */
+        public double getIdeasPerSecond() {
+            return (this.elapsedNanos <= 0) ? 0 : this.observedCount
+                    * 1000000000.0 / this.elapsedNanos;
+        }
+
+        /**
+         * Returns a latency percentile of the added ideas.
+         * 
+         * @param percentile
+         *            the percentile, greater than 0 and at most 100
+         * @return the latency in nanoseconds or -1 if no idea was added
+         */
+        public long getLatencyNanos(double percentile) {
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile); //$NON-NLS-1$
+            }
+            if (this.latencyNanos.length == 0) {
+                return -1;
+            }
+            int rank = (int) Math.ceil(percentile / 100
+                    * this.latencyNanos.length);
+            return this.latencyNanos[Math.max(rank, 1) - 1];
+        }
+
+        @Override
+        public String toString() {
+            return "Result [sent=" + this.sentCount + ", added=" + this.observedCount //$NON-NLS-1$ //$NON-NLS-2$
+                    + ", failedClients=" + this.failedClients //$NON-NLS-1$
+                    + ", elapsedMillis=" + this.elapsedNanos / 1000000 //$NON-NLS-1$
+                    + ", ideasPerSecond=" + Math.round(getIdeasPerSecond()) //$NON-NLS-1$
+                    + ", p50Micros=" + getLatencyNanos(50) / 1000 //$NON-NLS-1$
+                    + ", p99Micros=" + getLatencyNanos(99) / 1000 //$NON-NLS-1$
+                    + ", maxMicros=" + getLatencyNanos(100) / 1000 + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Records the latency of every generated IdeaNode added to the MindMap.
+     * Runs on the draining thread.
+     */
+    private static class AddedIdeaListener implements
+            IModelEventListener<EMindMapChangeStatus> {
+
+        /** The send times, written by the clients before sending */
+        private final AtomicLongArray sendNanos;
+
+        /** The latencies in the order the IdeaNodes have been added */
+        private final long[]          latencyNanos;
+
+        /** The generated IdeaNodes added to the MindMap */
+        private final List<IdeaNode>  addedIdeaNodes = new ArrayList<IdeaNode>();
+
+        /**
+         * Constructor. Instantiates a new AddedIdeaListener.
+         * 
+         * @param sendNanos
+         *            the send times
+         * @param latencyNanos
+         *            the latencies to fill
+         */
+        AddedIdeaListener(AtomicLongArray sendNanos, long[] latencyNanos) {
+            this.sendNanos = sendNanos;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void handleModelEvent(Object source,
+                EMindMapChangeStatus status, Object content) {
+            long nowNanos = System.nanoTime();
+            if (status == EMindMapChangeStatus.MIND_MAP_IDEA_NODE_ADDED) {
+                record(content, nowNanos);
+            } else if (status == EMindMapChangeStatus.MIND_MAP_CHANGES_COMMITTED
+                    && content instanceof ModelChangeSet) {
+                for (ObserverNotificationObject change : ((ModelChangeSet) content)
+                        .getChanges()) {
+                    if (change.getEnumStatus() == EMindMapChangeStatus.MIND_MAP_IDEA_NODE_ADDED) {
+                        record(change.getContent(), nowNanos);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Records the latency of an added IdeaNode, if it has been generated.
+         * 
+         * @param content
+         *            the added IdeaNode
+         * @param nowNanos
+         *            the time of the notification
+         */
+        private void record(Object content, long nowNanos) {
+            if (!(content instanceof IdeaNode)) {
+                return;
+            }
+            IdeaNode ideaNode = (IdeaNode) content;
+            int index = parseIndex(ideaNode.getIdeaText());
+            if (index < 0 || index >= this.sendNanos.length()) {
+                return;
+            }
+            this.latencyNanos[this.addedIdeaNodes.size()] = nowNanos
+                    - this.sendNanos.get(index);
+            this.addedIdeaNodes.add(ideaNode);
+        }
+
+        /**
+         * Returns the number of generated IdeaNodes added so far.
+         * 
+         * @return the observed count
+         */
+        int getObservedCount() {
+            return this.addedIdeaNodes.size();
+        }
+
+        /**
+         * Returns the generated IdeaNodes added so far.
+         * 
+         * @return the addedIdeaNodes
+         */
+        List<IdeaNode> getAddedIdeaNodes() {
+            return this.addedIdeaNodes;
+        }
+
+        /**
+         * Returns the sorted latencies of the generated IdeaNodes added so
+         * far.
+         * 
+         * @return a new sorted array of latencies in nanoseconds
+         */
+        long[] getSortedLatencies() {
+            long[] sorted = Arrays.copyOf(this.latencyNanos,
+                    this.addedIdeaNodes.size());
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * A client sending its ideas on its own thread, like one phone.
+     */
+    private final class LoadClient implements Runnable {
+
+        /** The client end of the connection */
+        private final ITransportConnection connection;
+
+        /** The index of the client */
+        private final int                  clientIndex;
+
+        /** The texts of all clients */
+        private final String[]             texts;
+
+        /** The send times of all clients */
+        private final AtomicLongArray      sendNanos;
+
+        /** Signals the start of the load */
+        private final CountDownLatch       startSignal;
+
+        /** The exception that ended the client or null */
+        private volatile Exception         failure;
+
+        /**
+         * Constructor. Instantiates a new LoadClient.
+         * 
+         * @param connection
+         *            the client end of the connection
+         * @param clientIndex
+         *            the index of the client
+         * @param texts
+         *            the texts of all clients
+         * @param sendNanos
+         *            the send times of all clients
+         * @param startSignal
+         *            signals the start of the load
+         */
+        LoadClient(ITransportConnection connection, int clientIndex,
+                String[] texts, AtomicLongArray sendNanos,
+                CountDownLatch startSignal) {
+            this.connection = connection;
+            this.clientIndex = clientIndex;
+            this.texts = texts;
+            this.sendNanos = sendNanos;
+            this.startSignal = startSignal;
+        }
+
+        /**
+         * Returns the exception that ended the client.
+         * 
+         * @return the failure or null
+         */
+        Exception getFailure() {
+            return this.failure;
+        }
+
+        @Override
+        public void run() {
+            int size = IngestLoadGenerator.this.burstSize;
+            int rate = IngestLoadGenerator.this.burstsPerSecond;
+            int ideas = IngestLoadGenerator.this.ideasPerClient;
+            boolean batch = IngestLoadGenerator.this.batchFrames;
+
+            List<String> burst = new ArrayList<String>(size);
+            try {
+                WireFrameWriter writer = new WireFrameWriter(
+                        this.connection.openOutputStream());
+                writer.writePreamble();
+
+                if (!this.startSignal.await(IDLE_TIMEOUT_MILLIS,
+                        TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Load not started"); //$NON-NLS-1$
+                }
+
+                // Spread the clients over the burst period, so they do not
+                // send in lockstep
+                long periodNanos = (rate == 0) ? 0 : 1000000000L / rate;
+                long nextBurstNanos = System.nanoTime() + periodNanos
+                        * this.clientIndex / IngestLoadGenerator.this.clients;
+
+                int first = this.clientIndex * ideas;
+                int end = first + ideas;
+                for (int i = first; i < end; i += size) {
+                    long waitNanos = nextBurstNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                    nextBurstNanos += periodNanos;
+
+                    int burstEnd = Math.min(end, i + size);
+                    long nowNanos = System.nanoTime();
+                    burst.clear();
+                    for (int j = i; j < burstEnd; j++) {
+                        this.sendNanos.set(j, nowNanos);
+                        if (batch) {
+                            burst.add(this.texts[j]);
+                        } else {
+                            writer.writeIdea(this.texts[j]);
+                        }
+                    }
+                    if (batch) {
+                        writer.writeIdeaBatch(burst);
+                    }
+                    writer.flush();
+                }
+
+                writer.writeClose();
+                writer.flush();
+            } catch (Exception e) {
+                this.failure = e;
+            } finally {
+                try {
+                    this.connection.close();
+                } catch (IOException e) {
+                    log.warn("Exception while closing client connection: " + e.getMessage()); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+}
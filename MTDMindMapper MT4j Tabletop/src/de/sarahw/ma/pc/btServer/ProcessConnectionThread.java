@@ -24,15 +24,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.io.UnsupportedEncodingException;
-
-import javax.microedition.io.StreamConnection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import de.sarahw.ma.pc.mindMapper.model.AppModel;
 import de.sarahw.ma.pc.mindMapper.model.EIdeaNodeCreator;
+import de.sarahw.ma.pc.mindMapper.model.IModelCommand;
 import de.sarahw.ma.pc.mindMapper.model.IdeaNode;
+import de.sarahw.ma.pc.mindMapper.model.MindMap;
 import de.sarahw.ma.pc.mindMapper.model.NodeContent;
 import de.sarahw.ma.pc.mindMapper.model.NodeData;
 import de.sarahw.ma.pc.mindMapper.model.NodeMetaData;
@@ -53,36 +56,52 @@ import de.sarahw.ma.pc.mindMapper.model.NodeMetaData;
  * - added readInputStreamString() method
  * </p>
  * 
+ * <p>
+ * Clients that announce the {@link WireProtocol} by its preamble send framed
+ * messages, which are read by a {@link WireFrameReader}. The ideas of a batch
+ * frame are added to the MindMap in one batch. Connections without the
+ * preamble are read as bare text as before.
+ * </p>
+ * 
  * @author Luu Gia Thuy
  * @author (Modified by) Sarah Will
  * 
  * @version 1.0
  * 
  */
-public class ProcessConnectionThread implements Runnable {
+public class ProcessConnectionThread implements IConnectionHandler {
 
-    private static Logger       log                    = Logger.getLogger(ProcessConnectionThread.class);
+    private static Logger        log                    = Logger.getLogger(ProcessConnectionThread.class);
 
     /** A hash value that signals that the connection has been closed. */
-    private static final String CONNECTION_CLOSED_HASH = "318ec526e76502a583acd94f49817cf2";             //$NON-NLS-1$
+    private static final String  CONNECTION_CLOSED_HASH = "318ec526e76502a583acd94f49817cf2";             //$NON-NLS-1$
 
     /** The (stream) connection instance */
-    private StreamConnection    mConnection;
+    private ITransportConnection mConnection;
 
     /** The application model instance. */
-    private AppModel            model;
+    private AppModel             model;
 
     /** The thread that handles connection requests. */
-    private WaitBtThread        waitThread;
+    private WaitBtThread         waitThread;
+
+    /** The input stream of the connection, null until it has been opened */
+    private volatile InputStream inputStream;
+
+    /** The time of the last message received from the client */
+    private volatile long        lastActivityMillis;
+
+    /** If the connection has been closed by {@link #close()} */
+    private volatile boolean     closed;
 
     /* ***********Constructors*********** */
     /**
      * Constructor. Instantiates a new ProcessConnectionThread for the given
-     * StreamConnection object.
+     * connection.
      * 
      */
-    public ProcessConnectionThread(StreamConnection connection, AppModel model,
-            WaitBtThread waitThread) {
+    public ProcessConnectionThread(ITransportConnection connection,
+            AppModel model, WaitBtThread waitThread) {
 
         log.debug("Executing ProcessConnectionThread(connection=" + connection //$NON-NLS-1$
                 + ", model=" + model + ", waitThread=" + waitThread + ")"); //$NON-NLS-1$  //$NON-NLS-2$  //$NON-NLS-3$
@@ -91,6 +110,18 @@ public class ProcessConnectionThread implements Runnable {
         this.model = model;
         this.mConnection = connection;
         this.waitThread = waitThread;
+        this.lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the time of the last message received from the client.
+     * 
+     * @return the lastActivityMillis
+     */
+    @Override
+    public long getLastActivityMillis() {
+        return this.lastActivityMillis;
     }
 
     /* ********Overridden methods******** */
@@ -103,56 +134,236 @@ public class ProcessConnectionThread implements Runnable {
         log.debug("Entering run()"); //$NON-NLS-1$ 
         try {
             // prepare to receive data
-            InputStream inputStream = this.mConnection.openInputStream();
+            this.inputStream = this.mConnection.openInputStream();
+            PushbackInputStream inputStream = new PushbackInputStream(
+                    this.inputStream);
 
             log.debug("Waiting for input."); //$NON-NLS-1$
 
-            while (true) {
+            // Framed clients start with the preamble marker, older clients
+            // send bare text
+            int first = inputStream.read();
+            if (first == WireProtocol.PREAMBLE_MARKER) {
+                inputStream.unread(first);
+                processFrames(inputStream);
+            } else if (first != -1) {
+                inputStream.unread(first);
+                processUnframedMessages(inputStream);
+            }
+
+            // If the connection has been closed
+            // remove the connection from the list
+            log.debug("Connection closed. Finish process."); //$NON-NLS-1$
+
+            this.waitThread.removeConnectionFromList(this.mConnection);
+
+        } catch (Exception e) {
+            if (this.closed) {
+                log.debug("Connection closed by server: " + e.getMessage()); //$NON-NLS-1$
+            } else {
+                log.warn("Exception encountered while opening file stream" + e.getMessage()); //$NON-NLS-1$
+                e.printStackTrace();
+            }
+
+            log.debug("Connection closed. Finish process."); //$NON-NLS-1$
 
-                // Read the string from the input stream
-                String text = readInputStreamStringUnicode(inputStream);
+            this.waitThread.removeConnectionFromList(this.mConnection);
+        }
+        log.debug("Leaving run()"); //$NON-NLS-1$ 
+    }
 
-                // If the connection has been closed
-                // remove the connection from the list
-                if (text.equals(CONNECTION_CLOSED_HASH)) {
+    /* *********Utility methods********* */
+    /**
+     * Reads framed messages until the client closes the connection.
+     * 
+     * @param inputStream
+     *            the input stream, starting with the preamble
+     * @throws IOException
+     *             if the stream cannot be read or a frame is malformed
+     */
+    private void processFrames(InputStream inputStream) throws IOException {
+
+        log.debug("Entering processFrames()"); //$NON-NLS-1$
 
-                    log.debug("Connection closed. Finish process."); //$NON-NLS-1$
+        WireFrameReader reader = new WireFrameReader(inputStream);
+        int version = reader.readPreamble();
+        log.debug("Framed connection, protocol version " + version); //$NON-NLS-1$
 
-                    this.waitThread.removeConnectionFromList(this.mConnection);
-                    break;
+        // Reused for all batch frames of the connection
+        List<String> batchTexts = new ArrayList<String>();
+
+        try {
+            int type;
+            while ((type = reader.readFrame()) != WireFrameReader.END_OF_STREAM) {
+                this.lastActivityMillis = System.currentTimeMillis();
+                switch (type) {
+                    case WireProtocol.FRAME_IDEA:
+                        addIdeaText(reader.getText());
+                        break;
+                    case WireProtocol.FRAME_IDEA_BATCH:
+                        batchTexts.clear();
+                        reader.getTexts(batchTexts);
+                        addIdeaTexts(batchTexts);
+                        break;
+                    case WireProtocol.FRAME_CLOSE:
+                        log.debug("Leaving processFrames(): closed by client after " + reader.getFrameCount() + " frames"); //$NON-NLS-1$ //$NON-NLS-2$
+                        return;
+                    default:
+                        log.warn("Skipping frame of unknown type " + type); //$NON-NLS-1$
+                        break;
                 }
+            }
+            log.debug("Leaving processFrames(): end of stream after " + reader.getFrameCount() + " frames"); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            closeConnection();
+        }
+    }
+
+    /**
+     * Reads bare text messages of clients without framing until the
+     * connection is closed.
+     * 
+     * @param inputStream
+     *            the input stream
+     */
+    private void processUnframedMessages(InputStream inputStream) {
+
+        log.debug("Entering processUnframedMessages()"); //$NON-NLS-1$
+
+        while (true) {
 
-                // Check if the length does not exceed the max length
-                if (text.length() <= NodeContent.IDEA_TXT_LNGTH_MAX) {
+            // Read the string from the input stream
+            String text = readInputStreamStringUnicode(inputStream);
 
-                    // Create a new model idea node with the text
-                    // from the input stream
-                    createNewIdeaNode(text);
+            // If the connection has been closed, stop reading
+            if (text.equals(CONNECTION_CLOSED_HASH)) {
+                break;
+            }
+            this.lastActivityMillis = System.currentTimeMillis();
+
+            addIdeaText(text);
+        }
 
-                } else {
-                    log.error("Input text from remote device is too long! No idea node created."); //$NON-NLS-1$
+        log.debug("Leaving processUnframedMessages()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Creates a new IdeaNode for a received idea text, if the text does not
+     * exceed the maximum length.
+     * 
+     * @param text
+     *            the ideaText from the client
+     */
+    private void addIdeaText(String text) {
+
+        // Check if the length does not exceed the max length
+        if (text.length() <= NodeContent.IDEA_TXT_LNGTH_MAX) {
+
+            // Create a new model idea node with the text
+            // from the input stream
+            createNewIdeaNode(text);
+
+        } else {
+            log.error("Input text from remote device is too long! No idea node created."); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Creates new IdeaNodes for a batch of received idea texts. Texts that
+     * exceed the maximum length or are empty are skipped, all other IdeaNodes
+     * are added to the MindMap in one batch.
+     * 
+     * @param texts
+     *            the ideaTexts from the client
+     */
+    private void addIdeaTexts(List<String> texts) {
+
+        log.debug("Entering addIdeaTexts(texts=" + texts.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final List<String> validTexts = new ArrayList<String>(texts.size());
+        for (String text : texts) {
+            if (text.length() > NodeContent.IDEA_TXT_LNGTH_MAX) {
+                log.error("Input text from remote device is too long! No idea node created."); //$NON-NLS-1$
+            } else if (text.length() > 0) {
+                validTexts.add(text);
+            }
+        }
+
+        if (validTexts.isEmpty()) {
+            log.debug("Leaving addIdeaTexts(): no valid texts"); //$NON-NLS-1$
+            return;
+        }
+        if (this.model == null) {
+            log.error("The model reference is invalid! (null)"); //$NON-NLS-1$
+            return;
+        }
+
+        // Add all new IdeaNodes in one batch on the render thread, the view
+        // receives them as one ModelChangeSet
+        this.model.submitCommand(new IModelCommand() {
+            @Override
+            public void execute(AppModel appModel) {
+                MindMap mindMap = appModel.getLoadedMindMap();
+                mindMap.beginBatch();
+                try {
+                    for (String text : validTexts) {
+                        mindMap.addIdeaNode(new IdeaNode(new NodeData(
+                                new NodeContent(text), new NodeMetaData(0, 0,
+                                        0.0f,
+                                        EIdeaNodeCreator.BLUETOOTH_SERVER))));
+                    }
+                } finally {
+                    mindMap.commit();
                 }
+            }
+        });
+
+        log.debug("Leaving addIdeaTexts(): " + validTexts.size() + " IdeaNodes submitted"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Closes the input stream and the connection, so a blocking read returns.
+     * Called by the ConnectionExecutor on idle timeout and shutdown.
+     */
+    @Override
+    public void close() {
+
+        log.debug("Entering close()"); //$NON-NLS-1$
 
+        this.closed = true;
+        InputStream in = this.inputStream;
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.error("Exception while closing bluetooth input stream:" + e.getMessage()); //$NON-NLS-1$
             }
-        } catch (Exception e) {
-            log.warn("Exception encountered while opening file stream" + e.getMessage()); //$NON-NLS-1$
+        }
+        closeConnection();
 
-            log.debug("Connection closed. Finish process."); //$NON-NLS-1$
+        log.debug("Leaving close()"); //$NON-NLS-1$
+    }
 
-            this.waitThread.removeConnectionFromList(this.mConnection);
-            e.printStackTrace();
+    /**
+     * Closes the connection.
+     */
+    private void closeConnection() {
+        try {
+            this.mConnection.close();
+        } catch (IOException e) {
+            log.error("Exception while closing bluetooth connection:" + e.getMessage()); //$NON-NLS-1$
         }
-        log.debug("Leaving run()"); //$NON-NLS-1$ 
     }
 
-    /* *********Utility methods********* */
     /**
-     * Create a new IdeaNodeView from the received text.
+     * Create a new IdeaNodeView from the received text. The IdeaNode is
+     * created and added to the model by a command executed on the render
+     * thread, the bluetooth thread never mutates the model directly.
      * 
      * @param text
      *            the ideaText from the client
      */
-    private void createNewIdeaNode(String text) {
+    private void createNewIdeaNode(final String text) {
 
         log.debug("Entering createNewIdeaNode(text=" + text + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -160,13 +371,19 @@ public class ProcessConnectionThread implements Runnable {
 
             if (this.model != null) {
 
-                // Add new IdeaNode to the model
-                // changes will be picked up by the observer in the view
-                IdeaNode newIdeaNode = new IdeaNode(new NodeData(
-                        new NodeContent(text), new NodeMetaData(0, 0, 0.0f,
-                                EIdeaNodeCreator.BLUETOOTH_SERVER)));
-
-                this.model.getLoadedMindMap().addIdeaNode(newIdeaNode);
+                // Add new IdeaNode to the model on the render thread
+                // changes will be picked up by the listener in the view
+                this.model.submitCommand(new IModelCommand() {
+                    @Override
+                    public void execute(AppModel appModel) {
+                        IdeaNode newIdeaNode = new IdeaNode(new NodeData(
+                                new NodeContent(text), new NodeMetaData(0, 0,
+                                        0.0f,
+                                        EIdeaNodeCreator.BLUETOOTH_SERVER)));
+
+                        appModel.getLoadedMindMap().addIdeaNode(newIdeaNode);
+                    }
+                });
 
             } else {
                 log.error("The model reference is invalid! (null)"); //$NON-NLS-1$
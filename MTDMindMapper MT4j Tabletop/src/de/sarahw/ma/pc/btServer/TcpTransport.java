@@ -0,0 +1,206 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Accepts TCP connections on the loopback interface. Clients in the same
+ * process or on the same machine connect with {@link #connect()} and speak the
+ * same protocol as the phones, so the ingest path can be run and measured
+ * without a bluetooth adapter.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IConnectionTransport
+ */
+public final class TcpTransport implements IConnectionTransport {
+
+    private static Logger         log     = Logger.getLogger(TcpTransport.class);
+
+    /** The maximum number of pending connections */
+    private static final int      BACKLOG = 50;
+
+    /** The requested port, 0 for any free port */
+    private final int             port;
+
+    /** The server socket, null until the transport is opened */
+    private volatile ServerSocket serverSocket;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new TcpTransport.
+     * 
+     * @param port
+     *            the port to listen on, 0 for any free port
+     */
+    public TcpTransport(int port) {
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + port); //$NON-NLS-1$
+        }
+        this.port = port;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the port the transport listens on.
+     * 
+     * @return the local port or -1 if the transport has not been opened
+     */
+    public int getLocalPort() {
+        ServerSocket currentSocket = this.serverSocket;
+        return (currentSocket == null) ? -1 : currentSocket.getLocalPort();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Opens a client connection to this transport.
+     * 
+     * @return the client end of the connection
+     * @throws IOException
+     *             if the transport has not been opened or the connection
+     *             fails
+     */
+    public ITransportConnection connect() throws IOException {
+        int localPort = getLocalPort();
+        if (localPort < 0) {
+            throw new IOException("Transport not open"); //$NON-NLS-1$
+        }
+        return new SocketConnection(new Socket(InetAddress.getByName(null),
+                localPort));
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Binds the server socket to the loopback interface.
+     * 
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    @Override
+    public void open() throws IOException {
+
+        log.debug("Entering open()"); //$NON-NLS-1$
+
+        ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getByName(null),
+                this.port), BACKLOG);
+        this.serverSocket = socket;
+
+        log.debug("Leaving open(): port " + socket.getLocalPort()); //$NON-NLS-1$
+    }
+
+    /**
+     * Waits for the next TCP connection.
+     * 
+     * @return the new connection
+     * @throws IOException
+     *             if the transport has been closed or fails
+     */
+    @Override
+    public ITransportConnection accept() throws IOException {
+        ServerSocket currentSocket = this.serverSocket;
+        if (currentSocket == null) {
+            throw new IOException("Transport not open"); //$NON-NLS-1$
+        }
+        return new SocketConnection(currentSocket.accept());
+    }
+
+    /**
+     * Closes the server socket.
+     */
+    @Override
+    public void close() {
+        ServerSocket currentSocket = this.serverSocket;
+        if (currentSocket != null) {
+            try {
+                currentSocket.close();
+            } catch (IOException e) {
+                log.error("Exception while closing server socket: " + e.getMessage()); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A TCP socket connection.
+     */
+    private static class SocketConnection implements ITransportConnection {
+
+        /** The socket */
+        private final Socket socket;
+
+        /**
+         * Constructor. Instantiates a new SocketConnection. Disables Nagle's
+         * algorithm, as the protocol sends small frames.
+         * 
+         * @param socket
+         *            the connected socket
+         * @throws IOException
+         *             if the socket options cannot be set
+         */
+        SocketConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socket.setTcpNoDelay(true);
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return this.socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+            return this.socket.getOutputStream();
+        }
+
+        @Override
+        public String getRemoteName() {
+            return "TCP " + this.socket.getPort(); //$NON-NLS-1$
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return this.socket.getInetAddress().getHostAddress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+
+        @Override
+        public String toString() {
+            return "SocketConnection [socket=" + this.socket + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+}
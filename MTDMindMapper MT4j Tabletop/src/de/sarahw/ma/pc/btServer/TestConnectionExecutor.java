@@ -0,0 +1,235 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.btServer.ConnectionExecutor}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestConnectionExecutor {
+
+    /** The maximum time to wait for a handler in milliseconds */
+    private static final long  WAIT_MILLIS = 5000;
+
+    /** Test executor */
+    private ConnectionExecutor testExecutor;
+
+    /* *********Fixture methods********* */
+    /**
+     * Tears down the fixture. Shuts the executor down. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        if (this.testExecutor != null) {
+            this.testExecutor.shutdown(WAIT_MILLIS);
+        }
+        this.testExecutor = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.ConnectionExecutor#execute(IConnectionHandler)}
+     * and {@link de.sarahw.ma.pc.btServer.ConnectionExecutor#shutdown(long)}.
+     * 
+     * Connections beyond the maximum have to be rejected, shutdown has to
+     * close all running connections and reject new ones.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testConnectionsAreBoundedAndClosedOnShutdown()
+            throws InterruptedException {
+
+        this.testExecutor = new ConnectionExecutor(2, 60 * 1000);
+
+        BlockingHandler first = new BlockingHandler();
+        BlockingHandler second = new BlockingHandler();
+        BlockingHandler third = new BlockingHandler();
+
+        assertTrue("Error: first connection must be accepted",
+                this.testExecutor.execute(first));
+        assertTrue("Error: second connection must be accepted",
+                this.testExecutor.execute(second));
+        assertTrue("Error: handlers must run", first.awaitStarted()
+                && second.awaitStarted());
+        assertTrue("Error: connection beyond the maximum must be rejected",
+                !this.testExecutor.execute(third));
+        assertTrue("Error: two connections must be active",
+                this.testExecutor.getActiveCount() == 2);
+
+        assertTrue("Error: shutdown must finish all handlers",
+                this.testExecutor.shutdown(WAIT_MILLIS));
+        assertTrue("Error: running connections must be closed",
+                first.isClosed() && second.isClosed() && !third.isClosed());
+        assertTrue("Error: no connection may be active after shutdown",
+                this.testExecutor.getActiveCount() == 0);
+        assertTrue("Error: connections after shutdown must be rejected",
+                !this.testExecutor.execute(new BlockingHandler()));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.ConnectionExecutor#getIdleClosedCount()}
+     * .
+     * 
+     * A connection without messages has to be closed after the idle timeout,
+     * which frees its thread for a new connection.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testIdleConnectionsAreClosed() throws InterruptedException {
+
+        this.testExecutor = new ConnectionExecutor(1, 50);
+
+        BlockingHandler idle = new BlockingHandler();
+        assertTrue("Error: connection must be accepted",
+                this.testExecutor.execute(idle));
+        assertTrue("Error: idle connection must be closed",
+                idle.awaitClosed());
+        assertTrue("Error: idle close must be counted",
+                this.testExecutor.getIdleClosedCount() >= 1);
+
+        // The thread becomes available again once the handler has returned
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (this.testExecutor.getActiveCount() > 0
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue("Error: thread of the idle connection must be freed",
+                this.testExecutor.execute(new BlockingHandler()));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.ConnectionExecutor#execute(IConnectionHandler)}
+     * .
+     * 
+     * A connection made right after the previous one has ended has to be
+     * accepted, even if the thread of the previous one isn't ready yet.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testReconnectIsAccepted() throws InterruptedException {
+
+        this.testExecutor = new ConnectionExecutor(1, 60 * 1000);
+
+        for (int i = 0; i < 200; i++) {
+            BlockingHandler handler = new BlockingHandler();
+            assertTrue("Error: connection " + i + " must be accepted",
+                    this.testExecutor.execute(handler));
+            assertTrue("Error: handler must run", handler.awaitStarted());
+            handler.close();
+
+            long end = System.currentTimeMillis() + WAIT_MILLIS;
+            while (this.testExecutor.getActiveCount() > 0
+                    && System.currentTimeMillis() < end) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A connection handler that blocks until it is closed, like a handler
+     * blocked in reading.
+     */
+    private static class BlockingHandler implements IConnectionHandler {
+
+        /** Counted down when the handler runs */
+        private final CountDownLatch started      = new CountDownLatch(1);
+
+        /** Counted down when the handler is closed */
+        private final CountDownLatch closed       = new CountDownLatch(1);
+
+        /** The time of the last activity */
+        private final long           lastActivity = System.currentTimeMillis();
+
+        @Override
+        public void run() {
+            this.started.countDown();
+            try {
+                this.closed.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public long getLastActivityMillis() {
+            return this.lastActivity;
+        }
+
+        @Override
+        public void close() {
+            this.closed.countDown();
+        }
+
+        /**
+         * Waits until the handler runs.
+         * 
+         * @return true, if the handler runs
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        boolean awaitStarted() throws InterruptedException {
+            return this.started.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Waits until the handler is closed.
+         * 
+         * @return true, if the handler has been closed
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        boolean awaitClosed() throws InterruptedException {
+            return this.closed.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Returns if the handler has been closed.
+         * 
+         * @return true, if closed
+         */
+        boolean isClosed() {
+            return this.closed.getCount() == 0;
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.sarahw.ma.pc.mindMapper.model.AppModel;
+import de.sarahw.ma.pc.mindMapper.model.IdeaNode;
+import de.sarahw.ma.pc.mindMapper.model.MindMap;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.btServer.InMemoryTransport},
+ * {@link de.sarahw.ma.pc.btServer.TcpTransport} and the ingest of
+ * {@link de.sarahw.ma.pc.btServer.WaitBtThread} without bluetooth.
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestConnectionTransports {
+
+    /** The maximum time to wait for another thread in milliseconds */
+    private static final long    WAIT_MILLIS    = 5000;
+
+    /** Test transport */
+    private IConnectionTransport testTransport;
+
+    /** The IdeaNodes added to the loaded MindMap by the test */
+    private List<IdeaNode>       addedIdeaNodes = new ArrayList<IdeaNode>();
+
+    /* *********Fixture methods********* */
+    /**
+     * Tears down the fixture. Closes the transport, removes the added
+     * IdeaNodes from the loaded MindMap and sets all members null. This
+     * method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        if (this.testTransport != null) {
+            this.testTransport.close();
+        }
+        MindMap mindMap = AppModel.getInstance().getLoadedMindMap();
+        for (IdeaNode ideaNode : this.addedIdeaNodes) {
+            mindMap.removeIdeaNode(ideaNode);
+        }
+        this.testTransport = null;
+        this.addedIdeaNodes = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.InMemoryTransport#connect()} and
+     * {@link de.sarahw.ma.pc.btServer.InMemoryTransport#accept()}.
+     * 
+     * @throws IOException
+     *             if the transport fails
+     */
+    @Test
+    public void testInMemoryRoundTrip() throws IOException {
+
+        InMemoryTransport transport = new InMemoryTransport();
+        this.testTransport = transport;
+        transport.open();
+
+        ITransportConnection client = transport.connect();
+        assertRoundTrip(client, transport.accept());
+    }
+
+    /**
+     * Test method for {@link de.sarahw.ma.pc.btServer.TcpTransport#connect()}
+     * and {@link de.sarahw.ma.pc.btServer.TcpTransport#accept()}.
+     * 
+     * @throws IOException
+     *             if the transport fails
+     */
+    @Test
+    public void testTcpRoundTrip() throws IOException {
+
+        TcpTransport transport = new TcpTransport(0);
+        this.testTransport = transport;
+        transport.open();
+        assertTrue("Error: transport must listen on a port",
+                transport.getLocalPort() > 0);
+
+        ITransportConnection client = transport.connect();
+        assertRoundTrip(client, transport.accept());
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.IConnectionTransport#close()} and
+     * {@link de.sarahw.ma.pc.btServer.ITransportConnection#close()}.
+     * 
+     * Closing has to end a blocked accept and a blocked read, as the server
+     * relies on it to shut down.
+     * 
+     * @throws Exception
+     *             if the transport fails or the test is interrupted
+     */
+    @Test
+    public void testCloseUnblocksAcceptAndRead() throws Exception {
+
+        InMemoryTransport transport = new InMemoryTransport();
+        this.testTransport = transport;
+        transport.open();
+
+        ITransportConnection client = transport.connect();
+        final ITransportConnection server = transport.accept();
+        final CountDownLatch readEnded = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.openInputStream().read();
+                } catch (IOException e) {
+                    // Expected, the connection is closed while reading
+                }
+                readEnded.countDown();
+            }
+        });
+        reader.start();
+
+        final CountDownLatch acceptEnded = new CountDownLatch(1);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TestConnectionTransports.this.testTransport.accept();
+                } catch (IOException e) {
+                    acceptEnded.countDown();
+                }
+            }
+        });
+        acceptor.start();
+
+        server.close();
+        transport.close();
+
+        assertTrue("Error: close must end a blocked read",
+                readEnded.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue("Error: close must end a blocked accept with an exception",
+                acceptEnded.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+        boolean failed = false;
+        try {
+            client.openOutputStream().write(1);
+        } catch (IOException e) {
+            failed = true;
+        }
+        assertTrue("Error: write to a closed connection must fail", failed);
+    }
+
+    /**
+     * Test method for {@link de.sarahw.ma.pc.btServer.WaitBtThread#run()}.
+     * 
+     * Ideas sent over the in-memory transport have to be added to the loaded
+     * MindMap once the command queue is drained.
+     * 
+     * @throws Exception
+     *             if the transport fails or the test is interrupted
+     */
+    @Test
+    public void testIdeasAreAddedToLoadedMindMap() throws Exception {
+
+        AppModel model = AppModel.getInstance();
+        MindMap mindMap = model.getLoadedMindMap();
+        int ideaCount = mindMap.getMindMapIdeaNodeList().size();
+
+        InMemoryTransport transport = new InMemoryTransport();
+        this.testTransport = transport;
+        WaitBtThread waitThread = new WaitBtThread(model, transport,
+                new ConnectionExecutor(2, 60 * 1000));
+        new Thread(waitThread, "TestWaitThread").start();
+
+        // The wait thread opens the transport
+        ITransportConnection client = null;
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (client == null) {
+            try {
+                client = transport.connect();
+            } catch (IOException e) {
+                assertTrue("Error: transport has not been opened",
+                        System.currentTimeMillis() < end);
+                Thread.sleep(10);
+            }
+        }
+
+        WireFrameWriter writer = new WireFrameWriter(client.openOutputStream());
+        writer.writePreamble();
+        writer.writeIdea("single");
+        writer.writeIdeaBatch(Arrays.asList("first", "second"));
+        writer.writeClose();
+        writer.flush();
+
+        List<String> texts = new ArrayList<String>();
+        end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (mindMap.getMindMapIdeaNodeList().size() < ideaCount + 3
+                && System.currentTimeMillis() < end) {
+            model.getCommandQueue().drain(Integer.MAX_VALUE);
+            Thread.sleep(10);
+        }
+        List<IdeaNode> ideaNodes = mindMap.getMindMapIdeaNodeList();
+        this.addedIdeaNodes.addAll(ideaNodes.subList(ideaCount,
+                ideaNodes.size()));
+        for (IdeaNode ideaNode : this.addedIdeaNodes) {
+            texts.add(ideaNode.getIdeaText());
+        }
+
+        assertTrue("Error: all ideas must be added, got " + texts,
+                texts.size() == 3 && texts.contains("single")
+                        && texts.contains("first") && texts.contains("second"));
+        assertTrue("Error: wait thread must shut down",
+                waitThread.shutdown(WAIT_MILLIS));
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Sends frames from the client to the server and a byte back, then closes
+     * the client.
+     * 
+     * @param client
+     *            the client end of the connection
+     * @param server
+     *            the server end of the connection
+     * @throws IOException
+     *             if the connection fails
+     */
+    private static void assertRoundTrip(ITransportConnection client,
+            ITransportConnection server) throws IOException {
+
+        assertTrue("Error: server must know the remote name",
+                server.getRemoteName() != null);
+
+        WireFrameWriter writer = new WireFrameWriter(client.openOutputStream());
+        writer.writePreamble();
+        writer.writeIdea("Idee mit \u00DCmlaut");
+        writer.writeIdeaBatch(Arrays.asList("a", "b", "c"));
+        writer.writeClose();
+        writer.flush();
+
+        WireFrameReader reader = new WireFrameReader(server.openInputStream());
+        assertTrue("Error: wrong protocol version",
+                reader.readPreamble() == WireProtocol.VERSION);
+        assertTrue("Error: idea frame expected",
+                reader.readFrame() == WireProtocol.FRAME_IDEA);
+        assertTrue("Error: idea text differs",
+                "Idee mit \u00DCmlaut".equals(reader.getText()));
+        assertTrue("Error: batch frame expected",
+                reader.readFrame() == WireProtocol.FRAME_IDEA_BATCH);
+        List<String> texts = new ArrayList<String>();
+        assertTrue("Error: batch must contain three ideas",
+                reader.getTexts(texts) == 3 && texts.get(2).equals("c"));
+        assertTrue("Error: close frame expected",
+                reader.readFrame() == WireProtocol.FRAME_CLOSE);
+
+        // The other direction
+        server.openOutputStream().write(42);
+        server.openOutputStream().flush();
+        InputStream clientIn = client.openInputStream();
+        assertTrue("Error: byte to the client differs", clientIn.read() == 42);
+
+        // Closing the client ends the stream of the server
+        client.close();
+        assertTrue("Error: end of stream expected",
+                reader.readFrame() == WireFrameReader.END_OF_STREAM);
+        server.close();
+    }
+
+}
@@ -0,0 +1,133 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import de.sarahw.ma.pc.mindMapper.model.AppModel;
+import de.sarahw.ma.pc.mindMapper.model.MindMap;
+import de.sarahw.ma.pc.mindMapper.model.NodeContent;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.btServer.IngestLoadGenerator}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestIngestLoadGenerator {
+
+    private static Logger     log            = Logger.getLogger(TestIngestLoadGenerator.class);
+
+    /** The number of phones of the benchmark */
+    private static final int  PHONES         = 50;
+
+    /** The number of ideas each phone sends in the benchmark */
+    private static final int  IDEAS          = 40;
+
+    /** The maximum duration of a run in milliseconds */
+    private static final long TIMEOUT_MILLIS = 60 * 1000;
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.IngestLoadGenerator#run(AppModel, long)}
+     * .
+     * 
+     * All ideas sent in bursts at a fixed rate have to be added and removed
+     * from the loaded MindMap again after the run.
+     * 
+     * @throws IOException
+     *             if the transport fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testAllIdeasAreAddedAndRemoved() throws IOException,
+            InterruptedException {
+
+        AppModel model = AppModel.getInstance();
+        MindMap mindMap = model.getLoadedMindMap();
+        int ideaCount = mindMap.getMindMapIdeaNodeList().size();
+
+        IngestLoadGenerator generator = new IngestLoadGenerator(4, 20);
+        generator.setBurstSize(5);
+        generator.setBurstsPerSecond(100);
+        generator.setTextLength(NodeContent.IDEA_TXT_LNGTH_MAX);
+        generator.setBatchFrames(true);
+        IngestLoadGenerator.Result result = generator.run(model,
+                TIMEOUT_MILLIS);
+
+        assertTrue("Error: all ideas must be added, " + result,
+                result.getObservedCount() == 80
+                        && result.getSentCount() == 80
+                        && result.getFailedClients() == 0);
+        assertTrue("Error: latency percentiles out of order, " + result,
+                result.getLatencyNanos(50) > 0
+                        && result.getLatencyNanos(50) <= result
+                                .getLatencyNanos(99));
+        assertTrue("Error: generated IdeaNodes must be removed",
+                mindMap.getMindMapIdeaNodeList().size() == ideaCount);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.IngestLoadGenerator#run(AppModel, long)}
+     * .
+     * 
+     * Sends the ideas of PHONES phones at once over both transports, as
+     * single idea frames and as batch frames. Throughput and latencies are
+     * logged only, as they depend on the machine.
+     * 
+     * @throws IOException
+     *             if the transport fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testIngestBenchmark() throws IOException, InterruptedException {
+
+        for (int tcp = 0; tcp < 2; tcp++) {
+            for (int batch = 0; batch < 2; batch++) {
+                IngestLoadGenerator generator = new IngestLoadGenerator(
+                        PHONES, IDEAS);
+                generator.setBurstSize(10);
+                generator.setTcp(tcp == 1);
+                generator.setBatchFrames(batch == 1);
+                IngestLoadGenerator.Result result = generator.run(
+                        AppModel.getInstance(), TIMEOUT_MILLIS);
+
+                log.info(PHONES + " phones, " + (tcp == 1 ? "tcp" : "memory")
+                        + ", " + (batch == 1 ? "batch" : "single")
+                        + " frames: " + result);
+                assertTrue("Error: all ideas must be added, " + result,
+                        result.getObservedCount() == PHONES * IDEAS
+                                && result.getFailedClients() == 0);
+            }
+        }
+    }
+
+}
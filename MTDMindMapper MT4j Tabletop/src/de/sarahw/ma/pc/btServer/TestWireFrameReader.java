@@ -0,0 +1,295 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.btServer.WireFrameReader} and
+ * {@link de.sarahw.ma.pc.btServer.WireFrameWriter}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestWireFrameReader {
+
+    /** Test idea texts, including multi-byte characters and long texts */
+    private static final String[] TEST_TEXTS = { "Idee", "Idee",
+            "Gr\u00FC\u00DFe \u20AC \uD83D\uDE00", "", createText(300),
+            createText(5000) };
+
+    /** Test stream the frames are written to */
+    private ByteArrayOutputStream testOut;
+
+    /** Test writer */
+    private WireFrameWriter       testWriter;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a WireFrameWriter on a byte array
+     * stream.
+     */
+    @Before
+    public void setUp() {
+        this.testOut = new ByteArrayOutputStream();
+        this.testWriter = new WireFrameWriter(this.testOut);
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testOut = null;
+        this.testWriter = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.WireFrameReader#readFrame()}.
+     * 
+     * Frames sent back to back have to be read as separate messages, both if
+     * all frames arrive in one read and if every read delivers a single byte.
+     * 
+     * @throws IOException
+     *             if reading fails
+     */
+    @Test
+    public void testFramesAreSeparated() throws IOException {
+
+        this.testWriter.writePreamble();
+        for (String text : TEST_TEXTS) {
+            this.testWriter.writeIdea(text);
+        }
+        this.testWriter.writeClose();
+        byte[] bytes = this.testOut.toByteArray();
+
+        assertFrames(new ByteArrayInputStream(bytes));
+        assertFrames(new SingleByteInputStream(bytes));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.WireFrameReader#readFrame()}.
+     * 
+     * Truncated and oversized frames and unknown protocol versions have to be
+     * rejected.
+     * 
+     * @throws IOException
+     *             if writing the test frames fails
+     */
+    @Test
+    public void testMalformedStreamsAreRejected() throws IOException {
+
+        this.testWriter.writePreamble();
+        this.testWriter.writeIdea(createText(200));
+        this.testWriter.flush();
+        byte[] bytes = this.testOut.toByteArray();
+
+        // Truncated payload
+        WireFrameReader reader = new WireFrameReader(new ByteArrayInputStream(
+                Arrays.copyOf(bytes, bytes.length - 1)));
+        reader.readPreamble();
+        assertTrue("Error: truncated frame must be rejected",
+                readFails(reader, EOFException.class));
+
+        // Payload length above the maximum
+        reader = new WireFrameReader(new ByteArrayInputStream(new byte[] {
+                WireProtocol.PREAMBLE_MARKER, WireProtocol.PREAMBLE_MAGIC,
+                WireProtocol.VERSION, WireProtocol.FRAME_IDEA, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0x7F }));
+        reader.readPreamble();
+        assertTrue("Error: oversized frame must be rejected",
+                readFails(reader, IOException.class));
+
+        // Unknown version
+        reader = new WireFrameReader(new ByteArrayInputStream(new byte[] {
+                WireProtocol.PREAMBLE_MARKER, WireProtocol.PREAMBLE_MAGIC,
+                WireProtocol.VERSION + 1 }));
+        boolean rejected = false;
+        try {
+            reader.readPreamble();
+        } catch (IOException ex) {
+            rejected = true;
+        }
+        assertTrue("Error: unknown version must be rejected", rejected);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.btServer.WireFrameReader#getTexts(java.util.List)}
+     * .
+     * 
+     * A batch frame has to deliver all texts in order, also if every read
+     * delivers a single byte. Batches whose lengths exceed the payload have to
+     * be rejected.
+     * 
+     * @throws IOException
+     *             if reading fails
+     */
+    @Test
+    public void testBatchFramesAreRead() throws IOException {
+
+        List<String> expected = Arrays.asList(TEST_TEXTS);
+        this.testWriter.writePreamble();
+        this.testWriter.writeIdeaBatch(expected);
+        this.testWriter.writeIdeaBatch(new ArrayList<String>());
+        this.testWriter.writeIdea("Idee");
+        this.testWriter.writeClose();
+        byte[] bytes = this.testOut.toByteArray();
+
+        WireFrameReader reader = new WireFrameReader(new SingleByteInputStream(
+                bytes));
+        reader.readPreamble();
+        List<String> texts = new ArrayList<String>();
+        assertTrue("Error: batch frame expected",
+                reader.readFrame() == WireProtocol.FRAME_IDEA_BATCH);
+        assertTrue("Error: wrong number of batch texts",
+                reader.getTexts(texts) == TEST_TEXTS.length);
+        assertTrue("Error: batch texts differ", expected.equals(texts));
+        assertTrue("Error: empty batch frame expected",
+                reader.readFrame() == WireProtocol.FRAME_IDEA_BATCH);
+        texts.clear();
+        assertTrue("Error: empty batch must not contain texts",
+                reader.getTexts(texts) == 0 && texts.isEmpty());
+        assertTrue("Error: idea frame expected after batches",
+                reader.readFrame() == WireProtocol.FRAME_IDEA
+                        && "Idee".equals(reader.getText()));
+        assertTrue("Error: close frame expected",
+                reader.readFrame() == WireProtocol.FRAME_CLOSE);
+
+        // Batch announcing more texts than its payload contains
+        reader = new WireFrameReader(new ByteArrayInputStream(new byte[] {
+                WireProtocol.PREAMBLE_MARKER, WireProtocol.PREAMBLE_MAGIC,
+                WireProtocol.VERSION, WireProtocol.FRAME_IDEA_BATCH, 3, 2, 1,
+                'a' }));
+        reader.readPreamble();
+        reader.readFrame();
+        boolean rejected = false;
+        try {
+            reader.getTexts(texts);
+        } catch (IOException ex) {
+            rejected = true;
+        }
+        assertTrue("Error: malformed batch must be rejected", rejected);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Reads the test frames from the given stream and compares them.
+     * 
+     * @param in
+     *            the stream
+     * @throws IOException
+     *             if reading fails
+     */
+    private static void assertFrames(InputStream in) throws IOException {
+
+        WireFrameReader reader = new WireFrameReader(in);
+        assertTrue("Error: wrong version",
+                reader.readPreamble() == WireProtocol.VERSION);
+        for (String text : TEST_TEXTS) {
+            assertTrue("Error: idea frame expected",
+                    reader.readFrame() == WireProtocol.FRAME_IDEA);
+            assertTrue("Error: wrong text " + reader.getText(), reader
+                    .getText().equals(text));
+        }
+        assertTrue("Error: close frame expected",
+                reader.readFrame() == WireProtocol.FRAME_CLOSE);
+        assertTrue("Error: end of stream expected",
+                reader.readFrame() == WireFrameReader.END_OF_STREAM);
+        assertTrue("Error: wrong frame count",
+                reader.getFrameCount() == TEST_TEXTS.length + 1);
+    }
+
+    /**
+     * Returns if reading the next frame fails with the given exception.
+     * 
+     * @param reader
+     *            the reader
+     * @param expected
+     *            the expected exception class
+     * @return true, if the expected exception has been thrown
+     */
+    private static boolean readFails(WireFrameReader reader,
+            Class<? extends IOException> expected) {
+        try {
+            reader.readFrame();
+            return false;
+        } catch (IOException ex) {
+            return expected.isInstance(ex);
+        }
+    }
+
+    /**
+     * Creates a text of the given length.
+     * 
+     * @param length
+     *            the length
+     * @return the text
+     */
+    private static String createText(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        return text.toString();
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * An input stream that delivers one byte per read, like a slow radio.
+     */
+    private static class SingleByteInputStream extends ByteArrayInputStream {
+
+        /**
+         * Constructor. Instantiates a new SingleByteInputStream.
+         * 
+         * @param bytes
+         *            the bytes to deliver
+         */
+        SingleByteInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+}
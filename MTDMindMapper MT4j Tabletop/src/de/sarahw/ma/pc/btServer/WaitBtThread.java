@@ -23,21 +23,12 @@ package de.sarahw.ma.pc.btServer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Observable;
 
-import javax.bluetooth.DiscoveryAgent;
 import javax.bluetooth.LocalDevice;
-import javax.bluetooth.RemoteDevice;
-import javax.bluetooth.UUID;
-import javax.microedition.io.Connector;
-import javax.microedition.io.StreamConnection;
-import javax.microedition.io.StreamConnectionNotifier;
 
 import org.apache.log4j.Logger;
 
-import com.intel.bluetooth.RemoteDeviceHelper;
-
-import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
 import de.sarahw.ma.pc.mindMapper.model.AppModel;
 
 /**
@@ -57,30 +48,51 @@ import de.sarahw.ma.pc.mindMapper.model.AppModel;
  * - added Observable extension and methods <br>
  * </p>
  * 
+ * <p>
+ * Accepted connections are handled by a {@link ProcessConnectionThread} on the
+ * bounded {@link ConnectionExecutor}. Connections beyond its maximum are
+ * closed right away.
+ * </p>
+ * 
+ * <p>
+ * Connections are accepted from an {@link IConnectionTransport}, the
+ * {@link BluetoothTransport} in the application.
+ * </p>
+ * 
  * @author Luu Gia Thuy
  * @author (Modified by) Sarah Will
  * 
  * @version 1.0
  * 
  */
-public class WaitBtThread extends Observable implements Runnable {
+public class WaitBtThread implements Runnable {
 
-    private static Logger            log                  = Logger.getLogger(WaitBtThread.class);
+    private static Logger              log                  = Logger.getLogger(WaitBtThread.class);
 
     /** The application model instance */
-    private AppModel                 model;
+    private AppModel                   model;
+
+    /** The transport which accepts incoming connections */
+    private final IConnectionTransport transport;
 
-    /** The local bluetooth device */
-    private LocalDevice              localDevice;
+    /** The executor that runs the handlers of the connections */
+    private final ConnectionExecutor   connectionExecutor;
 
-    /** The stream connection notifier which handles incoming connections */
-    private StreamConnectionNotifier notifier;
+    /** If the server is shut down */
+    private volatile boolean           shutdown;
 
-    /** The list of active stream connections */
-    private List<StreamConnection>   connectionList       = new ArrayList<StreamConnection>();
+    /** The list of active connections */
+    private List<ITransportConnection> connectionList       = new ArrayList<ITransportConnection>();
 
     /** The list of connected devices */
-    private List<String>             connectionStringList = new ArrayList<String>();
+    private List<String>               connectionStringList = new ArrayList<String>();
+
+    /**
+     * The event bus for connection list changes. Deferred, as changes occur on
+     * the bluetooth thread and are dispatched on the render thread.
+     */
+    private final ModelEventBus        eventBus             = new ModelEventBus(
+                                                                    true);
 
     /* ***********Constructors*********** */
     /**
@@ -88,16 +100,33 @@ public class WaitBtThread extends Observable implements Runnable {
      * 
      * @param model
      *            the application model instance
+     * @param transport
+     *            the transport which accepts incoming connections
+     * @param connectionExecutor
+     *            the executor that runs the handlers of the connections
      */
-    public WaitBtThread(AppModel model) {
+    public WaitBtThread(AppModel model, IConnectionTransport transport,
+            ConnectionExecutor connectionExecutor) {
 
-        log.debug("Executing WaitBtThread(model=" + model + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        log.debug("Executing WaitBtThread(model=" + model + ", transport=" + transport + ", connectionExecutor=" + connectionExecutor + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
         // Set model reference
         this.model = model;
+        this.transport = transport;
+        this.connectionExecutor = connectionExecutor;
     }
 
     /* ********Getters & Setters******** */
+    /**
+     * Returns the deferred event bus on which connection list changes are
+     * published. Events are delivered by {@link ModelEventBus#dispatchPending()}.
+     * 
+     * @return the eventBus
+     */
+    public ModelEventBus getEventBus() {
+        return this.eventBus;
+    }
+
     /**
      * Sets the connectionList.
      * 
@@ -105,7 +134,7 @@ public class WaitBtThread extends Observable implements Runnable {
      *            the connectionList to set
      */
     public synchronized void setConnectionList(
-            List<StreamConnection> connectionList) {
+            List<ITransportConnection> connectionList) {
 
         log.trace("Entering setConnectionList(connectionList=" + connectionList + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -114,22 +143,43 @@ public class WaitBtThread extends Observable implements Runnable {
         // Update the connection string list
         updateConnectionStringList();
 
-        // Communicate changed string list to observer
-        communicateChangesToObserver(new ObserverNotificationObject(
-                EBluetoothConnectionListState.CONNECTION_LIST_SET,
-                this.connectionStringList));
+        // Communicate changed string list to listeners
+        communicateChanges(EBluetoothConnectionListState.CONNECTION_LIST_SET,
+                this.connectionStringList);
 
         log.trace("Leaving setConnectionList()"); //$NON-NLS-1$
 
     }
 
+    /**
+     * Returns the executor that runs the handlers of the connections.
+     * 
+     * @return the connectionExecutor
+     */
+    public ConnectionExecutor getConnectionExecutor() {
+        return this.connectionExecutor;
+    }
+
+    /**
+     * Returns the transport which accepts incoming connections.
+     * 
+     * @return the transport
+     */
+    public IConnectionTransport getTransport() {
+        return this.transport;
+    }
+
     /**
      * Returns the localDevice.
      * 
-     * @return the localDevice
+     * @return the localDevice or null if the transport is not bluetooth or
+     *         bluetooth is not available
      */
-    public synchronized LocalDevice getLocalDevice() {
-        return this.localDevice;
+    public LocalDevice getLocalDevice() {
+        if (this.transport instanceof BluetoothTransport) {
+            return ((BluetoothTransport) this.transport).getLocalDevice();
+        }
+        return null;
     }
 
     /* **********Utility methods********** */
@@ -141,22 +191,11 @@ public class WaitBtThread extends Observable implements Runnable {
 
         log.debug("Entering waitForConnection()"); //$NON-NLS-1$
 
-        // retrieve the local Bluetooth device object
-        this.localDevice = null;
-        setConnectionList(new ArrayList<StreamConnection>());
+        setConnectionList(new ArrayList<ITransportConnection>());
 
-        // setup the server to listen for connections / set discoverable
+        // setup the server to listen for connections
         try {
-            this.localDevice = LocalDevice.getLocalDevice();
-            this.localDevice.setDiscoverable(DiscoveryAgent.GIAC);
-
-            UUID uuid = new UUID("fae3fa60e2ce11e095720800200c9a66", false); // fae3fa60-e2ce-11e0-9572-0800200c9a66 //$NON-NLS-1$
-
-            String url = "btspp://localhost:" + uuid.toString() //$NON-NLS-1$
-                    + ";name=RemoteBluetooth" + ";authenticate=true;encrypt=true;master=true"; //$NON-NLS-1$//$NON-NLS-2$
-
-            // Open bt connection
-            this.notifier = (StreamConnectionNotifier) Connector.open(url);
+            this.transport.open();
 
         } catch (Exception e) {
 
@@ -167,27 +206,33 @@ public class WaitBtThread extends Observable implements Runnable {
         }
 
         // waiting for connection
-        while (true) {
+        while (!this.shutdown) {
             try {
                 log.debug("Waiting for BT connection..."); //$NON-NLS-1$
 
-                StreamConnection connection = this.notifier.acceptAndOpen();
-
-                if (connection != null) {
-
-                    // Add the new connection to the list
-                    // required for the bluetooth overlay view
-                    addConnectionToList(connection);
+                ITransportConnection connection = this.transport.accept();
 
+                if (connection == null) {
+                    continue;
                 }
 
-                // Start a new process thread for the new connection
-                Thread processThread = new Thread(new ProcessConnectionThread(
-                        connection, this.model, this));
-
-                processThread.start();
+                // Add the new connection to the list
+                // required for the bluetooth overlay view
+                addConnectionToList(connection);
+
+                // Run the handler of the new connection on the connection
+                // executor, close the connection if all threads are busy
+                if (!this.connectionExecutor
+                        .execute(new ProcessConnectionThread(connection,
+                                this.model, this))) {
+                    removeConnectionFromList(connection);
+                    closeConnection(connection);
+                }
 
             } catch (Exception e) {
+                if (this.shutdown) {
+                    break;
+                }
                 e.printStackTrace();
                 log.warn("Leaving waitForConnection()#waiting; Exception encountered: \n" + e.toString()); //$NON-NLS-1$
 
@@ -196,6 +241,45 @@ public class WaitBtThread extends Observable implements Runnable {
 
         }
 
+        log.debug("Leaving waitForConnection(): shut down"); //$NON-NLS-1$
+
+    }
+
+    /**
+     * Stops waiting for connections, closes all connections and waits for
+     * their handlers to finish.
+     * 
+     * @param timeoutMillis
+     *            the maximum time to wait for the handlers in milliseconds
+     * @return true, if all handlers have finished
+     */
+    public boolean shutdown(long timeoutMillis) {
+
+        log.debug("Entering shutdown(timeoutMillis=" + timeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        this.shutdown = true;
+
+        // Closing the transport ends a blocking accept()
+        this.transport.close();
+
+        boolean result = this.connectionExecutor.shutdown(timeoutMillis);
+
+        log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+        return result;
+    }
+
+    /**
+     * Closes a connection that is not handled by a ProcessConnectionThread.
+     * 
+     * @param connection
+     *            the connection
+     */
+    private static void closeConnection(ITransportConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            log.error("Exception while closing connection: " + e.getMessage()); //$NON-NLS-1$
+        }
     }
 
     /**
@@ -205,7 +289,8 @@ public class WaitBtThread extends Observable implements Runnable {
      * @param connection
      *            the new connection to be added
      */
-    public synchronized void addConnectionToList(StreamConnection connection) {
+    public synchronized void addConnectionToList(
+            ITransportConnection connection) {
 
         log.debug("Entering addConnection(connection=" + connection //$NON-NLS-1$
                 + ")"); //$NON-NLS-1$
@@ -218,10 +303,9 @@ public class WaitBtThread extends Observable implements Runnable {
             // Update the connection string list
             updateConnectionStringList();
 
-            // Communicate connection string list changes to observer
-            communicateChangesToObserver(new ObserverNotificationObject(
-                    EBluetoothConnectionListState.CONNECTION_ADDED,
-                    this.connectionStringList));
+            // Communicate connection string list changes to listeners
+            communicateChanges(EBluetoothConnectionListState.CONNECTION_ADDED,
+                    this.connectionStringList);
         } else {
             log.debug("The connectionList already contains this connection!"); //$NON-NLS-1$
         }
@@ -238,7 +322,7 @@ public class WaitBtThread extends Observable implements Runnable {
      *            the connection to be removed
      */
     public synchronized void removeConnectionFromList(
-            StreamConnection connection) {
+            ITransportConnection connection) {
 
         log.debug("Entering removeConnection(connection=" + connection //$NON-NLS-1$
                 + ")"); //$NON-NLS-1$
@@ -251,10 +335,9 @@ public class WaitBtThread extends Observable implements Runnable {
             // Update the connection string list
             updateConnectionStringList();
 
-            // Communicate connection string list changes to observer
-            communicateChangesToObserver(new ObserverNotificationObject(
-                    EBluetoothConnectionListState.CONNECTION_REMOVED,
-                    this.connectionStringList));
+            // Communicate connection string list changes to listeners
+            communicateChanges(EBluetoothConnectionListState.CONNECTION_REMOVED,
+                    this.connectionStringList);
         } else {
             log.debug("The connectionList does not contain this connection!"); //$NON-NLS-1$
         }
@@ -264,53 +347,32 @@ public class WaitBtThread extends Observable implements Runnable {
 
     /**
      * Updates the connectionStringList by getting all current connection remote
-     * devices friendlyNames and bluetooth addresses (anew).
+     * devices names and addresses (anew).
      * 
      */
     private synchronized void updateConnectionStringList() {
 
         log.debug("Entering updateConnectionStringList()"); //$NON-NLS-1$
 
-        RemoteDevice remoteDevice = null;
-
         if (this.connectionList != null) {
 
             // Clear list
             this.connectionStringList = new ArrayList<String>();
 
             // Get remote device for every connection
-            for (StreamConnection connection : this.connectionList) {
-
-                try {
-                    remoteDevice = RemoteDeviceHelper
-                            .getRemoteDevice(connection);
-                } catch (IOException e) {
-
-                    e.printStackTrace();
-                    log.error("Exception while getting remote device: " + e.getMessage()); //$NON-NLS-1$
-
-                }
-
-                if (remoteDevice != null) {
-
-                    // Get friendly name and bluetooth address
-                    String remoteDeviceFriendlyName = ""; //$NON-NLS-1$
-                    try {
-                        remoteDeviceFriendlyName = remoteDevice
-                                .getFriendlyName(false);
-                    } catch (IOException e) {
-                        e.printStackTrace();
+            for (ITransportConnection connection : this.connectionList) {
 
-                        log.warn("Exception while getting friendly name: " + e.getMessage()); //$NON-NLS-1$
+                // Get name and address
+                String remoteName = connection.getRemoteName();
 
-                    }
+                if (remoteName != null) {
 
                     // Add to connection string list
                     this.connectionStringList
-                            .add(remoteDeviceFriendlyName.isEmpty() ? Messages
+                            .add(remoteName.isEmpty() ? Messages
                                     .getString("WaitBtThread.updateConnectionStringList.unknownDevice.0") //$NON-NLS-1$
-                                    : remoteDeviceFriendlyName
-                                            + "\n" + remoteDevice.getBluetoothAddress()); //$NON-NLS-1$
+                                    : remoteName
+                                            + "\n" + connection.getRemoteAddress()); //$NON-NLS-1$
 
                 }
 
@@ -325,20 +387,23 @@ public class WaitBtThread extends Observable implements Runnable {
     }
 
     /**
-     * Communicates changes to all registered Observers.
+     * Publishes changes on the deferred event bus. The connection string list
+     * is copied, as it is read on the render thread.
      * 
-     * @param object
-     *            the observer notification object
+     * @param status
+     *            the connection list state
+     * @param connectionStrings
+     *            the current connection string list
      * 
      */
-    protected void communicateChangesToObserver(
-            ObserverNotificationObject object) {
-        log.debug("Entering communicateChangesToObserver()"); //$NON-NLS-1$
+    protected void communicateChanges(EBluetoothConnectionListState status,
+            List<String> connectionStrings) {
+        log.debug("Entering communicateChanges(status=" + status + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-        setChanged();
-        notifyObservers(object);
+        this.eventBus.publish(this, status, new ArrayList<String>(
+                connectionStrings));
 
-        log.debug("Leaving communicateChangesToObserver()"); //$NON-NLS-1$
+        log.debug("Leaving communicateChanges()"); //$NON-NLS-1$
     }
 
     /* ********Overridden methods******** */
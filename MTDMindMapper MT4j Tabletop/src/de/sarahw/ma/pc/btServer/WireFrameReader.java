@@ -0,0 +1,344 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * <p>
+ * Reads frames of the {@link WireProtocol} from the input stream of one
+ * connection.
+ * </p>
+ * 
+ * <p>
+ * The reader owns a read buffer that holds the largest possible frame, a
+ * UTF-8 decoder and a char buffer, all reused for every frame. Each read from
+ * the stream takes as many bytes as are available, so a burst of frames is
+ * parsed from the buffer without further reads. Apart from the decoded
+ * Strings, reading frames allocates nothing. Not thread safe.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see WireProtocol
+ */
+public final class WireFrameReader {
+
+    /** Returned by {@link #readFrame()} at the end of the stream */
+    public static final int      END_OF_STREAM = -1;
+
+    /** The input stream of the connection */
+    private final InputStream    in;
+
+    /** The read buffer, in read mode between calls */
+    private final ByteBuffer     buffer;
+
+    /** The decoder of text payloads */
+    private final CharsetDecoder decoder;
+
+    /** The decoded text of the current frame */
+    private final CharBuffer     chars;
+
+    /** The type of the current frame */
+    private int                  frameType     = END_OF_STREAM;
+
+    /** The buffer index of the payload of the current frame */
+    private int                  payloadStart;
+
+    /** The payload length of the current frame */
+    private int                  payloadLength;
+
+    /** The buffer index of the next unread byte of a batch payload */
+    private int                  payloadCursor;
+
+    /** The number of frames read */
+    private long                 frameCount;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new WireFrameReader.
+     * 
+     * @param in
+     *            the input stream of the connection
+     */
+    public WireFrameReader(InputStream in) {
+        this.in = in;
+        this.buffer = ByteBuffer.allocate(1 + WireProtocol.MAX_VARINT_LENGTH
+                + WireProtocol.MAX_PAYLOAD);
+        this.buffer.flip();
+        this.decoder = Charset.forName("UTF-8").newDecoder() //$NON-NLS-1$
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(WireProtocol.MAX_PAYLOAD);
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the type of the current frame.
+     * 
+     * @return the frame type or END_OF_STREAM
+     */
+    public int getFrameType() {
+        return this.frameType;
+    }
+
+    /**
+     * Returns the payload length of the current frame.
+     * 
+     * @return the payload length in bytes
+     */
+    public int getPayloadLength() {
+        return this.payloadLength;
+    }
+
+    /**
+     * Returns the number of frames read.
+     * 
+     * @return the frameCount
+     */
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Reads and checks the preamble. Must be called once before the first
+     * frame is read.
+     * 
+     * @return the protocol version of the client
+     * @throws IOException
+     *             if the stream does not start with a valid preamble or
+     *             cannot be read
+     */
+    public int readPreamble() throws IOException {
+
+        if (!fill(3)) {
+            throw new EOFException("Stream ended in preamble"); //$NON-NLS-1$
+        }
+        int marker = this.buffer.get() & 0xFF;
+        int magic = this.buffer.get() & 0xFF;
+        int version = this.buffer.get() & 0xFF;
+        if (marker != WireProtocol.PREAMBLE_MARKER
+                || magic != WireProtocol.PREAMBLE_MAGIC) {
+            throw new IOException("Invalid preamble"); //$NON-NLS-1$
+        }
+        if (version < 1 || version > WireProtocol.VERSION) {
+            throw new IOException("Unsupported protocol version " + version); //$NON-NLS-1$
+        }
+        return version;
+    }
+
+    /**
+     * Reads the next frame. Blocks until the whole frame has been received.
+     * The payload of the previous frame is no longer available afterwards.
+     * 
+     * @return the frame type or END_OF_STREAM if the stream ended between two
+     *         frames
+     * @throws IOException
+     *             if the stream ended within a frame, the frame is malformed
+     *             or the stream cannot be read
+     */
+    public int readFrame() throws IOException {
+
+        this.frameType = END_OF_STREAM;
+        this.payloadLength = 0;
+
+        if (!fill(1)) {
+            return END_OF_STREAM;
+        }
+        int type = this.buffer.get() & 0xFF;
+
+        // Unsigned varint length
+        int length = 0;
+        for (int i = 0;; i++) {
+            if (i == WireProtocol.MAX_VARINT_LENGTH) {
+                throw new IOException("Malformed frame length"); //$NON-NLS-1$
+            }
+            if (!fill(1)) {
+                throw new EOFException("Stream ended in frame header"); //$NON-NLS-1$
+            }
+            int b = this.buffer.get() & 0xFF;
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length < 0 || length > WireProtocol.MAX_PAYLOAD) {
+            throw new IOException("Frame too long: " + length); //$NON-NLS-1$
+        }
+
+        if (!fill(length)) {
+            throw new EOFException("Stream ended in frame payload"); //$NON-NLS-1$
+        }
+        this.payloadStart = this.buffer.position();
+        this.buffer.position(this.payloadStart + length);
+
+        this.frameType = type;
+        this.payloadLength = length;
+        this.frameCount++;
+        return type;
+    }
+
+    /**
+     * Decodes the payload of the current frame as UTF-8 text. Malformed input
+     * is replaced.
+     * 
+     * @return the text
+     */
+    public String getText() {
+        return decodeText(this.payloadStart, this.payloadLength);
+    }
+
+    /**
+     * Decodes the payload of the current frame as a batch of UTF-8 texts and
+     * adds them to the given list in the order they were sent. Malformed
+     * input within a text is replaced.
+     * 
+     * @param texts
+     *            the list the texts are added to
+     * @return the number of texts added
+     * @throws IOException
+     *             if the payload is not a well-formed batch
+     */
+    public int getTexts(List<String> texts) throws IOException {
+
+        int end = this.payloadStart + this.payloadLength;
+        this.payloadCursor = this.payloadStart;
+
+        int count = readPayloadVarint(end);
+        // Every text needs at least its length byte
+        if (count > end - this.payloadCursor) {
+            throw new IOException("Malformed batch count: " + count); //$NON-NLS-1$
+        }
+        for (int i = 0; i < count; i++) {
+            int length = readPayloadVarint(end);
+            if (length > end - this.payloadCursor) {
+                throw new IOException("Malformed batch text length: " + length); //$NON-NLS-1$
+            }
+            texts.add(decodeText(this.payloadCursor, length));
+            this.payloadCursor += length;
+        }
+        if (this.payloadCursor != end) {
+            throw new IOException("Trailing bytes in batch"); //$NON-NLS-1$
+        }
+        return count;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Decodes the given range of the buffer as UTF-8 text. The buffer is
+     * decoded in place and restored afterwards.
+     * 
+     * @param start
+     *            the buffer index of the first byte
+     * @param length
+     *            the number of bytes
+     * @return the text
+     */
+    private String decodeText(int start, int length) {
+
+        int position = this.buffer.position();
+        int limit = this.buffer.limit();
+        this.buffer.position(start);
+        this.buffer.limit(start + length);
+
+        this.chars.clear();
+        this.decoder.reset();
+        this.decoder.decode(this.buffer, this.chars, true);
+        this.decoder.flush(this.chars);
+        this.chars.flip();
+
+        this.buffer.limit(limit);
+        this.buffer.position(position);
+        return this.chars.toString();
+    }
+
+    /**
+     * Reads an unsigned varint from the payload of the current frame at the
+     * payloadCursor and advances the cursor past it.
+     * 
+     * @param end
+     *            the buffer index after the payload
+     * @return the value
+     * @throws IOException
+     *             if the varint is malformed or exceeds the payload
+     */
+    private int readPayloadVarint(int end) throws IOException {
+
+        byte[] bytes = this.buffer.array();
+        int value = 0;
+        for (int i = 0; i < WireProtocol.MAX_VARINT_LENGTH; i++) {
+            if (this.payloadCursor >= end) {
+                throw new IOException("Payload ended in varint"); //$NON-NLS-1$
+            }
+            int b = bytes[this.payloadCursor++] & 0xFF;
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in payload"); //$NON-NLS-1$
+    }
+
+    /**
+     * Makes sure the given number of bytes can be read from the buffer.
+     * Compacts the buffer and reads as many bytes as the stream delivers at
+     * once until enough bytes are available.
+     * 
+     * @param count
+     *            the number of bytes needed
+     * @return false, if the stream ended before
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    private boolean fill(int count) throws IOException {
+
+        if (this.buffer.remaining() >= count) {
+            return true;
+        }
+        this.buffer.compact();
+        try {
+            while (this.buffer.position() < count) {
+                int read = this.in.read(this.buffer.array(),
+                        this.buffer.position(), this.buffer.remaining());
+                if (read < 0) {
+                    return false;
+                }
+                this.buffer.position(this.buffer.position() + read);
+            }
+            return true;
+        } finally {
+            this.buffer.flip();
+        }
+    }
+
+}
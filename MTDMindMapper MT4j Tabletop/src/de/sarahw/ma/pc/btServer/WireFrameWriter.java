@@ -0,0 +1,267 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * <p>
+ * Writes frames of the {@link WireProtocol} to an output stream. Counterpart
+ * of {@link WireFrameReader}, used to talk to the server without a phone, e.g.
+ * in tests.
+ * </p>
+ * 
+ * <p>
+ * Frames are collected in a reusable buffer and written to the stream when
+ * the buffer is full or {@link #flush()} is called, so many frames can be sent
+ * in one write. Not thread safe.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see WireProtocol
+ */
+public final class WireFrameWriter {
+
+    /** The output stream */
+    private final OutputStream   out;
+
+    /** The collected frames */
+    private final ByteBuffer     frames;
+
+    /** The encoded payload of the current frame */
+    private final ByteBuffer     payload;
+
+    /** The encoded text of the current batch entry */
+    private final ByteBuffer     text;
+
+    /** The encoder of text payloads */
+    private final CharsetEncoder encoder;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new WireFrameWriter.
+     * 
+     * @param out
+     *            the output stream
+     */
+    public WireFrameWriter(OutputStream out) {
+        this.out = out;
+        this.frames = ByteBuffer.allocate(2 * (1
+                + WireProtocol.MAX_VARINT_LENGTH + WireProtocol.MAX_PAYLOAD));
+        this.payload = ByteBuffer.allocate(WireProtocol.MAX_PAYLOAD);
+        this.text = ByteBuffer.allocate(WireProtocol.MAX_PAYLOAD);
+        this.encoder = Charset.forName("UTF-8").newEncoder() //$NON-NLS-1$
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Writes the preamble. Must be called once before the first frame.
+     * 
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void writePreamble() throws IOException {
+        ensureSpace(3);
+        this.frames.put((byte) WireProtocol.PREAMBLE_MARKER);
+        this.frames.put((byte) WireProtocol.PREAMBLE_MAGIC);
+        this.frames.put((byte) WireProtocol.VERSION);
+    }
+
+    /**
+     * Writes an idea frame.
+     * 
+     * @param text
+     *            the idea text
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void writeIdea(String text) throws IOException {
+        writeTextFrame(WireProtocol.FRAME_IDEA, text);
+    }
+
+    /**
+     * Writes a batch frame with the given idea texts.
+     * 
+     * @param texts
+     *            the idea texts
+     * @throws IOException
+     *             if the stream cannot be written
+     * @throws IllegalArgumentException
+     *             if the encoded texts do not fit into one frame
+     */
+    public void writeIdeaBatch(List<String> texts) throws IOException {
+
+        this.payload.clear();
+        putVarint(this.payload, texts.size());
+        for (String ideaText : texts) {
+            if (!encode(ideaText, this.text)
+                    || this.payload.remaining() < WireProtocol.MAX_VARINT_LENGTH
+                            + this.text.remaining()) {
+                throw new IllegalArgumentException("Batch too long for one frame"); //$NON-NLS-1$
+            }
+            putVarint(this.payload, this.text.remaining());
+            this.payload.put(this.text);
+        }
+        this.payload.flip();
+        writeFrame(WireProtocol.FRAME_IDEA_BATCH);
+    }
+
+    /**
+     * Writes a close frame and flushes the stream.
+     * 
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void writeClose() throws IOException {
+        this.payload.clear();
+        this.payload.flip();
+        writeFrame(WireProtocol.FRAME_CLOSE);
+        flush();
+    }
+
+    /**
+     * Writes a frame with a text payload.
+     * 
+     * @param type
+     *            the frame type
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void writeTextFrame(int type, String text) throws IOException {
+
+        if (!encode(text, this.payload)) {
+            throw new IllegalArgumentException("Text too long for one frame"); //$NON-NLS-1$
+        }
+        writeFrame(type);
+    }
+
+    /**
+     * Writes all collected frames to the stream and flushes it.
+     * 
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void flush() throws IOException {
+        writeFrames();
+        this.out.flush();
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Encodes the given text as UTF-8 into the given buffer, which is cleared
+     * before and flipped afterwards.
+     * 
+     * @param text
+     *            the text
+     * @param target
+     *            the buffer
+     * @return false, if the text does not fit into the buffer
+     */
+    private boolean encode(String text, ByteBuffer target) {
+
+        target.clear();
+        this.encoder.reset();
+        CoderResult result = this.encoder.encode(CharBuffer.wrap(text),
+                target, true);
+        if (!result.isOverflow()) {
+            result = this.encoder.flush(target);
+        }
+        target.flip();
+        return !result.isOverflow();
+    }
+
+    /**
+     * Puts the given value as unsigned varint into the given buffer.
+     * 
+     * @param target
+     *            the buffer
+     * @param value
+     *            the value, not negative
+     */
+    private static void putVarint(ByteBuffer target, int value) {
+        int rest = value;
+        while ((rest & ~0x7F) != 0) {
+            target.put((byte) ((rest & 0x7F) | 0x80));
+            rest >>>= 7;
+        }
+        target.put((byte) rest);
+    }
+
+    /**
+     * Adds a frame with the current payload to the collected frames.
+     * 
+     * @param type
+     *            the frame type
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    private void writeFrame(int type) throws IOException {
+
+        int length = this.payload.remaining();
+        ensureSpace(1 + WireProtocol.MAX_VARINT_LENGTH + length);
+
+        this.frames.put((byte) type);
+        putVarint(this.frames, length);
+        this.frames.put(this.payload);
+    }
+
+    /**
+     * Writes the collected frames to the stream if the given number of bytes
+     * does not fit into the buffer anymore.
+     * 
+     * @param count
+     *            the number of bytes to add
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    private void ensureSpace(int count) throws IOException {
+        if (this.frames.remaining() < count) {
+            writeFrames();
+        }
+    }
+
+    /**
+     * Writes the collected frames to the stream.
+     * 
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    private void writeFrames() throws IOException {
+        if (this.frames.position() > 0) {
+            this.out.write(this.frames.array(), 0, this.frames.position());
+            this.frames.clear();
+        }
+    }
+
+}
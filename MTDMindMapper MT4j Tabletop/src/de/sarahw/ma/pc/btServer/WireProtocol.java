@@ -0,0 +1,95 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.btServer;
+
+/**
+ * <p>
+ * Constants of the framed wire protocol between the Android client and the
+ * bluetooth server.
+ * </p>
+ * 
+ * <p>
+ * A connection starts with the preamble PREAMBLE_MARKER, PREAMBLE_MAGIC and
+ * the protocol VERSION. It is followed by frames of a type byte, the payload
+ * length as unsigned varint (7 bits per byte, least significant group first,
+ * high bit set on all but the last byte) and the payload. Text payloads are
+ * encoded in UTF-8. Frames are self-delimiting, so any number of them can be
+ * sent in one write and a frame may be split across several reads.
+ * </p>
+ * 
+ * <p>
+ * A batch frame carries many ideas that are added to the MindMap in one
+ * transaction. Batches larger than MAX_PAYLOAD are split into several batch
+ * frames by the client.
+ * </p>
+ * 
+ * <p>
+ * Clients of version 1.0 send bare UTF-8 text without a preamble. Their first
+ * byte is never PREAMBLE_MARKER, so the server can still read them as before.
+ * </p>
+ * 
+ * <p>
+ * Must match the constants of de.sarahw.ma.phone.BluetoothCommandService.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see WireFrameReader
+ * @see WireFrameWriter
+ */
+public final class WireProtocol {
+
+    /** The first preamble byte, never sent first by unframed clients */
+    public static final int PREAMBLE_MARKER   = 0x00;
+
+    /** The second preamble byte ('M') */
+    public static final int PREAMBLE_MAGIC    = 0x4D;
+
+    /** The protocol version, the third preamble byte */
+    public static final int VERSION           = 1;
+
+    /** Frame type: an idea, the payload is its UTF-8 text */
+    public static final int FRAME_IDEA        = 0x01;
+
+    /** Frame type: the client closes the connection, no payload */
+    public static final int FRAME_CLOSE       = 0x02;
+
+    /**
+     * Frame type: a batch of ideas, the payload is the varint number of ideas
+     * followed by the varint length and the UTF-8 text of each idea
+     */
+    public static final int FRAME_IDEA_BATCH  = 0x03;
+
+    /** The maximum payload length in bytes */
+    public static final int MAX_PAYLOAD       = 16 * 1024;
+
+    /** The maximum length of an encoded varint in bytes */
+    public static final int MAX_VARINT_LENGTH = 5;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private WireProtocol() {
+        //
+    }
+
+}
@@ -0,0 +1,51 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper;
+
+/**
+ * <p>
+ * Listener for typed model events delivered by a {@link ModelEventBus}. The
+ * event type is the enumeration class of the event status, e.g.
+ * EMindMapChangeStatus.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @param <E>
+ *            the event status enumeration
+ * 
+ * @see ModelEventBus
+ */
+public interface IModelEventListener<E extends Enum<E>> {
+
+    /**
+     * Handles a model event.
+     * 
+     * @param source
+     *            the model object that has published the event
+     * @param status
+     *            the event status
+     * @param content
+     *            the event content, may be null
+     */
+    public void handleModelEvent(Object source, E status, Object content);
+
+}
@@ -0,0 +1,409 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Typed event bus for model notifications, replacing java.util.Observable.
+ * Listeners are registered per event type (the status enumeration class) and
+ * optionally for a single source object only, e.g. one IdeaNode.
+ * </p>
+ * 
+ * <p>
+ * Listener lists are copy-on-write arrays, so publishing an event neither
+ * locks nor allocates and listeners may be (un)registered from any thread.
+ * </p>
+ * 
+ * <p>
+ * In deferred mode, published events are queued and delivered on the thread
+ * that calls {@link #dispatchPending()}, e.g. the render thread once per frame.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IModelEventListener
+ */
+public class ModelEventBus {
+
+    private static Logger                                           log       = Logger.getLogger(ModelEventBus.class);
+
+    /** The empty listener array */
+    private static final IModelEventListener<?>[]                   NO_LISTENERS = new IModelEventListener<?>[0];
+
+    /** The listener registrations by event type */
+    private final ConcurrentHashMap<Class<?>, TypeRegistration>     registrations = new ConcurrentHashMap<Class<?>, TypeRegistration>();
+
+    /** Flag indicating if events are queued until dispatchPending() */
+    private final boolean                                           deferred;
+
+    /** The queued events in deferred mode */
+    private final ConcurrentLinkedQueue<PendingEvent>               pending   = new ConcurrentLinkedQueue<PendingEvent>();
+
+    /* ***********Constructors*********** */
+    /**
+     * Default constructor. Instantiates a new ModelEventBus that delivers
+     * events immediately on the publishing thread.
+     */
+    public ModelEventBus() {
+        this(false);
+    }
+
+    /**
+     * Constructor. Instantiates a new ModelEventBus.
+     * 
+     * @param deferred
+     *            if true, events are queued and delivered by dispatchPending()
+     */
+    public ModelEventBus(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns if events are queued until dispatchPending() is called.
+     * 
+     * @return true, if the bus is in deferred mode
+     */
+    public boolean isDeferred() {
+        return this.deferred;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Registers a listener for all events of the given type.
+     * 
+     * @param <E>
+     *            the event status enumeration
+     * @param type
+     *            the event type
+     * @param listener
+     *            the listener to register
+     */
+    public <E extends Enum<E>> void addListener(Class<E> type,
+            IModelEventListener<E> listener) {
+        addListener(type, null, listener);
+    }
+
+    /**
+     * Registers a listener for events of the given type published by the given
+     * source only.
+     * 
+     * @param <E>
+     *            the event status enumeration
+     * @param type
+     *            the event type
+     * @param source
+     *            the source object or null for all sources
+     * @param listener
+     *            the listener to register
+     */
+    public <E extends Enum<E>> void addListener(Class<E> type, Object source,
+            IModelEventListener<E> listener) {
+
+        log.debug("Entering addListener(type=" + type + ", source=" + source + ", listener=" + listener + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        if (type == null || listener == null) {
+            log.error("Leaving addListener(): invalid null input"); //$NON-NLS-1$
+            return;
+        }
+        TypeRegistration registration = this.registrations.get(type);
+        if (registration == null) {
+            TypeRegistration newRegistration = new TypeRegistration();
+            registration = this.registrations.putIfAbsent(type,
+                    newRegistration);
+            if (registration == null) {
+                registration = newRegistration;
+            }
+        }
+        registration.add(source, listener);
+        log.debug("Leaving addListener()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Unregisters a listener for all events of the given type.
+     * 
+     * @param <E>
+     *            the event status enumeration
+     * @param type
+     *            the event type
+     * @param listener
+     *            the listener to unregister
+     */
+    public <E extends Enum<E>> void removeListener(Class<E> type,
+            IModelEventListener<E> listener) {
+        removeListener(type, null, listener);
+    }
+
+    /**
+     * Unregisters a listener for events of the given type and source.
+     * 
+     * @param <E>
+     *            the event status enumeration
+     * @param type
+     *            the event type
+     * @param source
+     *            the source object the listener has been registered for or
+     *            null
+     * @param listener
+     *            the listener to unregister
+     */
+    public <E extends Enum<E>> void removeListener(Class<E> type,
+            Object source, IModelEventListener<E> listener) {
+
+        log.debug("Entering removeListener(type=" + type + ", source=" + source + ", listener=" + listener + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        TypeRegistration registration = (type == null) ? null
+                : this.registrations.get(type);
+        if (registration != null) {
+            registration.remove(source, listener);
+        }
+        log.debug("Leaving removeListener()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Publishes an event. Delivers it to all listeners registered for its type
+     * and all listeners registered for its type and source, or queues it in
+     * deferred mode.
+     * 
+     * @param source
+     *            the model object that publishes the event
+     * @param status
+     *            the event status, its declaring enumeration is the event
+     *            type
+     * @param content
+     *            the event content, may be null
+     */
+    public void publish(Object source, Enum<?> status, Object content) {
+
+        if (status == null) {
+            log.error("Invalid null status published by " + source); //$NON-NLS-1$
+            return;
+        }
+        if (this.deferred) {
+            this.pending.add(new PendingEvent(source, status, content));
+        } else {
+            dispatch(source, status, content);
+        }
+    }
+
+    /**
+     * Delivers all events queued in deferred mode on the calling thread.
+     * 
+     * @return the number of delivered events
+     */
+    public int dispatchPending() {
+        int count = 0;
+        PendingEvent event;
+        while ((event = this.pending.poll()) != null) {
+            dispatch(event.source, event.status, event.content);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns if any listener is registered for the given type, regardless of
+     * the source.
+     * 
+     * @param type
+     *            the event type
+     * @return true, if at least one listener is registered
+     */
+    public boolean hasListeners(Class<?> type) {
+        TypeRegistration registration = this.registrations.get(type);
+        return registration != null && !registration.isEmpty();
+    }
+
+    /**
+     * Delivers an event to all matching listeners.
+     * 
+     * @param source
+     *            the source of the event
+     * @param status
+     *            the event status
+     * @param content
+     *            the event content
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void dispatch(Object source, Enum status, Object content) {
+        TypeRegistration registration = this.registrations.get(status
+                .getDeclaringClass());
+        if (registration == null) {
+            return;
+        }
+        IModelEventListener[] listeners = registration.allSources;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].handleModelEvent(source, status, content);
+        }
+        if (source != null) {
+            listeners = registration.bySource.get(source);
+            if (listeners != null) {
+                for (int i = 0; i < listeners.length; i++) {
+                    listeners[i].handleModelEvent(source, status, content);
+                }
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * The listeners registered for one event type.
+     */
+    private static class TypeRegistration {
+
+        /** The listeners for all sources (copy-on-write) */
+        private volatile IModelEventListener<?>[]                            allSources = NO_LISTENERS;
+
+        /** The listeners for single sources (copy-on-write arrays) */
+        private final ConcurrentHashMap<Object, IModelEventListener<?>[]> bySource   = new ConcurrentHashMap<Object, IModelEventListener<?>[]>();
+
+        /**
+         * Adds a listener.
+         * 
+         * @param source
+         *            the source or null for all sources
+         * @param listener
+         *            the listener
+         */
+        synchronized void add(Object source, IModelEventListener<?> listener) {
+            if (source == null) {
+                this.allSources = append(this.allSources, listener);
+            } else {
+                IModelEventListener<?>[] current = this.bySource.get(source);
+                this.bySource.put(source, append(
+                        (current == null) ? NO_LISTENERS : current, listener));
+            }
+        }
+
+        /**
+         * Removes a listener.
+         * 
+         * @param source
+         *            the source or null for all sources
+         * @param listener
+         *            the listener
+         */
+        synchronized void remove(Object source, IModelEventListener<?> listener) {
+            if (source == null) {
+                this.allSources = without(this.allSources, listener);
+            } else {
+                IModelEventListener<?>[] current = this.bySource.get(source);
+                if (current != null) {
+                    IModelEventListener<?>[] reduced = without(current,
+                            listener);
+                    if (reduced.length == 0) {
+                        this.bySource.remove(source);
+                    } else {
+                        this.bySource.put(source, reduced);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns if no listener is registered.
+         * 
+         * @return true, if no listener is registered
+         */
+        boolean isEmpty() {
+            return this.allSources.length == 0 && this.bySource.isEmpty();
+        }
+
+        /**
+         * Returns a copy of the array with the listener appended.
+         * 
+         * @param listeners
+         *            the listener array
+         * @param listener
+         *            the listener to append
+         * @return the new array
+         */
+        private static IModelEventListener<?>[] append(
+                IModelEventListener<?>[] listeners,
+                IModelEventListener<?> listener) {
+            IModelEventListener<?>[] result = new IModelEventListener<?>[listeners.length + 1];
+            System.arraycopy(listeners, 0, result, 0, listeners.length);
+            result[listeners.length] = listener;
+            return result;
+        }
+
+        /**
+         * Returns a copy of the array without the first occurrence of the
+         * listener.
+         * 
+         * @param listeners
+         *            the listener array
+         * @param listener
+         *            the listener to remove
+         * @return the new array or the given array if the listener is not
+         *         contained
+         */
+        private static IModelEventListener<?>[] without(
+                IModelEventListener<?>[] listeners,
+                IModelEventListener<?> listener) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    IModelEventListener<?>[] result = new IModelEventListener<?>[listeners.length - 1];
+                    System.arraycopy(listeners, 0, result, 0, i);
+                    System.arraycopy(listeners, i + 1, result, i,
+                            listeners.length - i - 1);
+                    return result;
+                }
+            }
+            return listeners;
+        }
+    }
+
+    /**
+     * An event queued in deferred mode.
+     */
+    private static class PendingEvent {
+
+        /** The source of the event */
+        private final Object  source;
+
+        /** The event status */
+        private final Enum<?> status;
+
+        /** The event content */
+        private final Object  content;
+
+        /**
+         * Constructor. Instantiates a new PendingEvent.
+         * 
+         * @param source
+         *            the source of the event
+         * @param status
+         *            the event status
+         * @param content
+         *            the event content
+         */
+        PendingEvent(Object source, Enum<?> status, Object content) {
+            this.source = source;
+            this.status = status;
+            this.content = content;
+        }
+    }
+
+}
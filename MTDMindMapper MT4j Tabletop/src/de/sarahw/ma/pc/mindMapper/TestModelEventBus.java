@@ -0,0 +1,229 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.mindMapper.ModelEventBus}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestModelEventBus {
+
+    /** Test event type */
+    private enum ETestStatus {
+        FIRST, SECOND
+    }
+
+    /** Other test event type */
+    private enum EOtherStatus {
+        OTHER
+    }
+
+    /** Test bus */
+    private ModelEventBus testBus;
+
+    /** Test event sources */
+    private Object        source1;
+    private Object        source2;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new immediate ModelEventBus and two
+     * event sources.
+     */
+    @Before
+    public void setUp() {
+        this.testBus = new ModelEventBus();
+        this.source1 = new Object();
+        this.source2 = new Object();
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testBus = null;
+        this.source1 = null;
+        this.source2 = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.ModelEventBus#publish(Object, Enum, Object)}
+     * .
+     * 
+     * Checks that events are delivered by type and, for source listeners, by
+     * source only.
+     */
+    @Test
+    public void testPublishByTypeAndSource() {
+
+        RecordingListener<ETestStatus> all = new RecordingListener<ETestStatus>();
+        RecordingListener<ETestStatus> only1 = new RecordingListener<ETestStatus>();
+        RecordingListener<EOtherStatus> other = new RecordingListener<EOtherStatus>();
+        this.testBus.addListener(ETestStatus.class, all);
+        this.testBus.addListener(ETestStatus.class, this.source1, only1);
+        this.testBus.addListener(EOtherStatus.class, other);
+
+        this.testBus.publish(this.source1, ETestStatus.FIRST, "a");
+        this.testBus.publish(this.source2, ETestStatus.SECOND, "b");
+        this.testBus.publish(this.source2, EOtherStatus.OTHER, null);
+
+        assertTrue("Error: type listener must receive all events of its type",
+                all.statuses.size() == 2
+                        && all.statuses.get(1) == ETestStatus.SECOND
+                        && "b".equals(all.contents.get(1)));
+        assertTrue("Error: source listener must only receive its source",
+                only1.statuses.size() == 1
+                        && only1.sources.get(0) == this.source1);
+        assertTrue("Error: other type must be delivered separately",
+                other.statuses.size() == 1
+                        && other.statuses.get(0) == EOtherStatus.OTHER);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.ModelEventBus#removeListener(Class, Object, IModelEventListener)}
+     * .
+     * 
+     * Also checks that a listener may remove itself while an event is
+     * dispatched.
+     */
+    @Test
+    public void testRemoveListener() {
+
+        final RecordingListener<ETestStatus> first = new RecordingListener<ETestStatus>();
+        RecordingListener<ETestStatus> second = new RecordingListener<ETestStatus>();
+        IModelEventListener<ETestStatus> selfRemoving = new IModelEventListener<ETestStatus>() {
+            @Override
+            public void handleModelEvent(Object source, ETestStatus status,
+                    Object content) {
+                TestModelEventBus.this.testBus.removeListener(
+                        ETestStatus.class, this);
+                TestModelEventBus.this.testBus.removeListener(
+                        ETestStatus.class, first);
+            }
+        };
+        this.testBus.addListener(ETestStatus.class, selfRemoving);
+        this.testBus.addListener(ETestStatus.class, first);
+        this.testBus.addListener(ETestStatus.class, this.source1, second);
+
+        this.testBus.publish(this.source1, ETestStatus.FIRST, null);
+        assertTrue("Error: removal during dispatch must not affect the event",
+                first.statuses.size() == 1 && second.statuses.size() == 1);
+
+        this.testBus.removeListener(ETestStatus.class, this.source1, second);
+        this.testBus.publish(this.source1, ETestStatus.SECOND, null);
+        assertTrue("Error: removed listeners must not receive events",
+                first.statuses.size() == 1 && second.statuses.size() == 1);
+        assertTrue("Error: bus must not have listeners left",
+                !this.testBus.hasListeners(ETestStatus.class));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.ModelEventBus#dispatchPending()}.
+     * 
+     * Checks that a deferred bus delivers events published on another thread
+     * in order on the dispatching thread.
+     * 
+     * @throws InterruptedException
+     *             if the publishing thread is interrupted
+     */
+    @Test
+    public void testDeferredDispatch() throws InterruptedException {
+
+        final ModelEventBus deferredBus = new ModelEventBus(true);
+        final RecordingListener<ETestStatus> listener = new RecordingListener<ETestStatus>();
+        deferredBus.addListener(ETestStatus.class, listener);
+
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    deferredBus.publish(TestModelEventBus.this.source1,
+                            ETestStatus.FIRST, Integer.valueOf(i));
+                }
+            }
+        });
+        publisher.start();
+        publisher.join();
+
+        assertTrue("Error: no event must be delivered before dispatch",
+                listener.statuses.isEmpty());
+        assertTrue("Error: all events must be dispatched",
+                deferredBus.dispatchPending() == 100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue("Error: events must be delivered in order",
+                    Integer.valueOf(i).equals(listener.contents.get(i)));
+        }
+        assertTrue("Error: queue must be empty after dispatch",
+                deferredBus.dispatchPending() == 0);
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Listener that records all received events.
+     * 
+     * @param <E>
+     *            the event status enumeration
+     */
+    private static class RecordingListener<E extends Enum<E>> implements
+            IModelEventListener<E> {
+
+        /** The received sources */
+        private final ArrayList<Object> sources  = new ArrayList<Object>();
+
+        /** The received statuses */
+        private final ArrayList<E>      statuses = new ArrayList<E>();
+
+        /** The received contents */
+        private final ArrayList<Object> contents = new ArrayList<Object>();
+
+        /**
+         * Constructor. Instantiates a new RecordingListener.
+         */
+        RecordingListener() {
+            super();
+        }
+
+        @Override
+        public void handleModelEvent(Object source, E status, Object content) {
+            this.sources.add(source);
+            this.statuses.add(status);
+            this.contents.add(content);
+        }
+    }
+
+}
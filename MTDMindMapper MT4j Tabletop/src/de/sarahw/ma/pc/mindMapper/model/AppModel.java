@@ -24,7 +24,15 @@ import org.apache.log4j.Logger;
  * <p>
  * Application model class. Initializes a new MindMapCollection. The application
  * model is completely independent of the and View component. Communication
- * about model changes to the View are realized via the Observer pattern.
+ * about model changes to the View are realized via typed event buses (see
+ * ModelEventBus).
+ * </p>
+ * 
+ * <p>
+ * The model is mutated by the render thread only. Other threads submit their
+ * changes as commands to the ModelCommandQueue, which is drained once per
+ * frame. MindMaps are saved on a save thread by the MindMapSaveExecutor,
+ * which delivers its results through the same queue.
  * </p>
  * 
  * @author Sarah Will
@@ -35,13 +43,37 @@ import org.apache.log4j.Logger;
 
 public class AppModel {
 
-    private static Logger     log = Logger.getLogger(AppModel.class);
+    private static Logger         log                     = Logger.getLogger(AppModel.class);
+
+    /** The maximum time to wait for running saves on shutdown. */
+    private static final long     SHUTDOWN_TIMEOUT_MILLIS = 10000;
+
+    /** The maximum memory used by cached thumbnails in bytes. */
+    private static final long     THUMBNAIL_CACHE_BYTES   = 4 * 1024 * 1024;
+
+    /** Flag indicating if saved MindMaps are compressed. */
+    private static final boolean  COMPRESS_SAVES          = true;
 
     /** The mindMapCollection instance. */
-    private MindMapCollection mindMapCollection;
+    private MindMapCollection     mindMapCollection;
 
     /** The application model instance. */
-    private static AppModel   instance;
+    private static AppModel       instance;
+
+    /** The queue of model commands submitted by other threads. */
+    private ModelCommandQueue     commandQueue;
+
+    /** The executor saving MindMaps on the save thread. */
+    private MindMapSaveExecutor   saveExecutor;
+
+    /** The executor loading MindMaps on the load thread. */
+    private MindMapLoadExecutor   loadExecutor;
+
+    /** The periodic autosave of the loaded MindMap. */
+    private MindMapAutosave       autosave;
+
+    /** The cache of the thumbnails of the saved MindMaps. */
+    private MindMapThumbnailCache thumbnailCache;
 
     /* ***********Constructors*********** */
     /**
@@ -51,7 +83,14 @@ public class AppModel {
     private AppModel() {
 
         log.debug("Executing AppModel()"); //$NON-NLS-1$
+        MindMapSerializer.setCompressionEnabled(COMPRESS_SAVES);
         this.mindMapCollection = MindMapCollection.getInstance();
+        this.commandQueue = new ModelCommandQueue(this);
+        this.saveExecutor = new MindMapSaveExecutor(this.commandQueue);
+        this.loadExecutor = new MindMapLoadExecutor(this.commandQueue);
+        this.autosave = new MindMapAutosave(this.saveExecutor);
+        this.thumbnailCache = new MindMapThumbnailCache(this.commandQueue,
+                THUMBNAIL_CACHE_BYTES);
 
     }
 
@@ -91,6 +130,63 @@ public class AppModel {
         log.trace("Leaving setMindMapCollection()"); //$NON-NLS-1$
     }
 
+    /**
+     * Returns the queue of model commands submitted by other threads than the
+     * render thread.
+     * 
+     * @return the commandQueue
+     */
+    public ModelCommandQueue getCommandQueue() {
+        log.trace("Entering getCommandQueue()"); //$NON-NLS-1$
+        log.trace("Leaving getCommandQueue()"); //$NON-NLS-1$
+        return this.commandQueue;
+    }
+
+    /**
+     * Returns the executor saving MindMaps on the save thread.
+     * 
+     * @return the saveExecutor
+     */
+    public MindMapSaveExecutor getSaveExecutor() {
+        log.trace("Entering getSaveExecutor()"); //$NON-NLS-1$
+        log.trace("Leaving getSaveExecutor()"); //$NON-NLS-1$
+        return this.saveExecutor;
+    }
+
+    /**
+     * Returns the executor loading MindMaps on the load thread.
+     * 
+     * @return the loadExecutor
+     */
+    public MindMapLoadExecutor getLoadExecutor() {
+        log.trace("Entering getLoadExecutor()"); //$NON-NLS-1$
+        log.trace("Leaving getLoadExecutor()"); //$NON-NLS-1$
+        return this.loadExecutor;
+    }
+
+    /**
+     * Returns the cache of the thumbnails of the saved MindMaps.
+     * 
+     * @return the thumbnailCache
+     */
+    public MindMapThumbnailCache getThumbnailCache() {
+        log.trace("Entering getThumbnailCache()"); //$NON-NLS-1$
+        log.trace("Leaving getThumbnailCache()"); //$NON-NLS-1$
+        return this.thumbnailCache;
+    }
+
+    /**
+     * Returns the periodic autosave of the loaded MindMap, which is driven by
+     * the render thread.
+     * 
+     * @return the autosave
+     */
+    public MindMapAutosave getAutosave() {
+        log.trace("Entering getAutosave()"); //$NON-NLS-1$
+        log.trace("Leaving getAutosave()"); //$NON-NLS-1$
+        return this.autosave;
+    }
+
     /* *************Delegates************** */
     /**
      * Returns the loadedMindMap MindMap in the MindMapCollection.
@@ -118,4 +214,60 @@ public class AppModel {
         return getMindMapCollection().getLoadedMindMapTitle();
     }
 
+    /**
+     * Submits a command for execution on the render thread. May be called
+     * from any thread.
+     * 
+     * @param command
+     *            the command to submit
+     * 
+     * @see de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue#submit(IModelCommand)
+     */
+    public void submitCommand(IModelCommand command) {
+        log.trace("Entering submitCommand(command=" + command + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.commandQueue.submit(command);
+        log.trace("Leaving submitCommand()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Saves the loadedMindMap on the save thread. Must be called on the render
+     * thread after the model has been updated; the callback is called on the
+     * render thread when the save has finished.
+     * 
+     * @param callback
+     *            the callback, may be null
+     * @return false, if there is no loadedMindMap
+     * 
+     * @see de.sarahw.ma.pc.mindMapper.model.MindMapSaveExecutor#save(MindMap,
+     *      IMindMapSaveCallback)
+     */
+    public boolean saveLoadedMindMap(IMindMapSaveCallback callback) {
+        log.debug("Entering saveLoadedMindMap(callback=" + callback + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        MindMap loadedMindMap = getLoadedMindMap();
+        if (loadedMindMap == null) {
+            log.error("Leaving saveLoadedMindMap(): false, no loaded MindMap"); //$NON-NLS-1$
+            return false;
+        }
+        this.saveExecutor.save(loadedMindMap, callback);
+        log.debug("Leaving saveLoadedMindMap(): true"); //$NON-NLS-1$
+        return true;
+    }
+
+    /**
+     * Shuts the model down before the application exits. Waits for saves that
+     * are still running on the save thread, stops the load threads and stops
+     * polling the save folder.
+     * 
+     * @return true, if all saves have been finished
+     */
+    public boolean shutdown() {
+        log.debug("Entering shutdown()"); //$NON-NLS-1$
+        this.mindMapCollection.getCatalog().stopPolling();
+        this.thumbnailCache.shutdown();
+        this.loadExecutor.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        boolean result = this.saveExecutor.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+        return result;
+    }
+
 }
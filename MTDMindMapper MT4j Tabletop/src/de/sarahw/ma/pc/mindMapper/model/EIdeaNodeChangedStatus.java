@@ -43,4 +43,10 @@ public enum EIdeaNodeChangedStatus {
     /** The children list of the IdeaNode has been set anew */
     // TODO: currently not used or handled!
     IDEA_NODE_CHILD_LIST_SET, //
+
+    /**
+     * A batch of changes has been committed, the content is a ModelChangeSet
+     * with all changes of the IdeaNode
+     */
+    IDEA_NODE_CHANGES_COMMITTED, //
 }
@@ -52,4 +52,10 @@ public enum EMindMapChangeStatus {
     /** A map has been removed from the mindMap */
     MIND_MAP_MAP_REMOVED, //
 
+    /**
+     * A batch of changes has been committed, the content is a ModelChangeSet
+     * with all changes of the mindMap
+     */
+    MIND_MAP_CHANGES_COMMITTED, //
+
 }
@@ -0,0 +1,90 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Enumeration representing the file formats MindMaps can be exported to and
+ * imported from (see {@link MindMapExporter} and {@link MindMapImporter}).
+ * </p>
+ * 
+ * @author Sarah Will
+ * @version 1.0
+ * @see MindMapExporter
+ * @see MindMapImporter
+ * 
+ */
+public enum EMindMapExchangeFormat {
+
+    /** FreeMind mind map, text and tree structure only */
+    FREEMIND(".mm"), //$NON-NLS-1$
+
+    /** OPML outline, text and tree structure only */
+    OPML(".opml"), //$NON-NLS-1$
+
+    /** JSON, text, tree structure, position, rotation, owner and state */
+    JSON(".json"), //$NON-NLS-1$
+
+    ;
+
+    /** The file extension of the format */
+    private final String extension;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor.
+     * 
+     * @param extension
+     *            the file extension of the format
+     */
+    private EMindMapExchangeFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the file extension of the format.
+     * 
+     * @return the extension
+     */
+    public String getExtension() {
+        return this.extension;
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Returns the format of a file by its extension.
+     * 
+     * @param file
+     *            the file
+     * @return the format or null if the extension is unknown
+     */
+    public static EMindMapExchangeFormat forFile(File file) {
+        String name = file.getName().toLowerCase();
+        for (EMindMapExchangeFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,43 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+/**
+ * <p>
+ * Enumeration representing the order in which a NodeIterator visits the nodes
+ * of a tree.
+ * </p>
+ * 
+ * @author Sarah Will
+ * @version 1.0
+ * @see de.sarahw.ma.pc.mindMapper.model.NodeIterator
+ * 
+ */
+public enum ETraversalOrder {
+
+    /** A node is visited before its children (depth-first) */
+    PRE_ORDER, //
+
+    /** A node is visited after all of its children (depth-first) */
+    POST_ORDER, //
+
+    /** All nodes of a level are visited before the nodes of the next level */
+    BREADTH_FIRST, //
+
+}
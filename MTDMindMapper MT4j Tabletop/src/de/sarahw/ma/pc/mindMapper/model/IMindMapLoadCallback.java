@@ -0,0 +1,55 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Callback for loads run by the {@link MindMapLoadExecutor}. Called on the
+ * render thread when the ModelCommandQueue is drained.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapLoadExecutor
+ */
+public interface IMindMapLoadCallback {
+
+    /**
+     * Called when the MindMap has been loaded, right before it is set as the
+     * loaded MindMap of the MindMapCollection.
+     * 
+     * @param plan
+     *            the view plan of the loaded MindMap
+     */
+    public void loadSucceeded(MindMapViewPlan plan);
+
+    /**
+     * Called when loading the MindMap failed. The loaded MindMap of the
+     * MindMapCollection is unchanged.
+     * 
+     * @param file
+     *            the file that could not be loaded
+     */
+    public void loadFailed(File file);
+
+}
@@ -0,0 +1,52 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+/**
+ * <p>
+ * Callback for saves run by the {@link MindMapSaveExecutor}. Called on the
+ * render thread when the ModelCommandQueue is drained.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapSaveExecutor
+ */
+public interface IMindMapSaveCallback {
+
+    /**
+     * Called when the MindMap has been saved.
+     * 
+     * @param snapshot
+     *            the saved snapshot, may be newer than the one taken for the
+     *            request if requests have been coalesced
+     */
+    public void saveSucceeded(MindMapSnapshot snapshot);
+
+    /**
+     * Called when saving the MindMap failed.
+     * 
+     * @param snapshot
+     *            the snapshot that could not be saved
+     */
+    public void saveFailed(MindMapSnapshot snapshot);
+
+}
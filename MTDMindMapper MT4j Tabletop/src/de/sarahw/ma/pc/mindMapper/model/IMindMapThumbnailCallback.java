@@ -0,0 +1,48 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+/**
+ * <p>
+ * Callback for thumbnails loaded by the {@link MindMapThumbnailCache}. Called
+ * on the render thread when the ModelCommandQueue is drained.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapThumbnailCache
+ */
+public interface IMindMapThumbnailCallback {
+
+    /**
+     * Called when the thumbnail of a .mindMap file has been loaded.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @param thumbnail
+     *            the thumbnail or null if the file has no thumbnail
+     */
+    public void thumbnailLoaded(File file, BufferedImage thumbnail);
+
+}
@@ -19,11 +19,10 @@
 package de.sarahw.ma.pc.mindMapper.model;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
-import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
-
 /**
  * <p>
  * Non-generic subclass of Node<NodeData> Represents a single node of an idea,
@@ -48,28 +47,45 @@ import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
 
 public class IdeaNode extends Node<NodeData> {
 
-    private static Logger       log              = Logger.getLogger(IdeaNode.class);
+    private static Logger              log              = Logger.getLogger(IdeaNode.class);
 
     /** The serial version UID -9146795148351052192L */
-    private static final long   serialVersionUID = -9146795148351052192L;
+    private static final long          serialVersionUID = -9146795148351052192L;
 
     /** Constant representing the state "no parent" */
-    protected static final long NO_PARENT        = -1;
+    protected static final long        NO_PARENT        = -1;
 
-    /** The total count of all created IdeaNodes */
+    /**
+     * The total count of all created IdeaNodes, atomic as IdeaNodes are also
+     * created by the load threads
+     */
     // TODO: On removal?
-    private static int          ideaCount        = 0;
+    private static final AtomicInteger ideaCount        = new AtomicInteger();
 
     /** The ID of the parent ideaNode, if applicable */
-    // TODO: problematic because two IdeaNodes can have the same ID ?
-    private long                parentID;
+    private long                       parentID;
 
-    /** The ID of the IdeaNode (hashValue) */
-    // TODO: problematic because two IdeaNodes can have the same ID ?
-    private long                ideaID;
+    /** The unique ID of the IdeaNode (issued by ModelIDGenerator) */
+    private long                       ideaID;
 
     /** Flag indicating if the ideaNode is a child of another ideaNode */
-    private boolean             isChild;
+    private boolean                    isChild;
+
+    /**
+     * The Map the ideaNode is a member of or null for single ideaNodes,
+     * maintained by addIdeaChild()/removeIdeaChild() and rebuilt upon
+     * deserialization of the MindMap
+     */
+    private transient Map              containingMap;
+
+    /** The MindMap the ideaNode has been added to or null */
+    private transient MindMap          mindMap;
+
+    /**
+     * Flag indicating if the ideaNode has changed since the last snapshot of
+     * the MindMap (see {@link MindMap#snapshot()})
+     */
+    private transient boolean          snapshotDirty;
 
     /* ***********Constructors*********** */
     /**
@@ -88,12 +104,27 @@ public class IdeaNode extends Node<NodeData> {
      *            the data of the ideaNode
      */
     public IdeaNode(NodeData nodeData) {
+        this(nodeData, ModelIDGenerator.nextID());
+    }
+
+    /**
+     * Instantiates a new IdeaNode with the given NodeData and an already
+     * issued ideaID. Used when reading a MindMap file.
+     * 
+     * @param nodeData
+     *            the data of the ideaNode
+     * @param ideaID
+     *            the unique ID of the ideaNode
+     */
+    protected IdeaNode(NodeData nodeData, long ideaID) {
         super(nodeData);
 
-        log.trace("Executing IdeaNode(nodeData=" + nodeData + ")"); //$NON-NLS-1$//$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Executing IdeaNode(nodeData=" + nodeData + ", ideaID=" + ideaID + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
 
-        ideaCount++;
-        setIdeaID(this.hashCode());
+        ideaCount.incrementAndGet();
+        setIdeaID(ideaID);
         setParentID(NO_PARENT);
         setIsChild(false);
 
@@ -108,7 +139,7 @@ public class IdeaNode extends Node<NodeData> {
     public static int getIdeaCount() {
         log.trace("Entering getIdeaCount()"); //$NON-NLS-1$
         log.trace("Leaving getIdeaCount(): " + ideaCount); //$NON-NLS-1$
-        return ideaCount;
+        return ideaCount.get();
 
     }
 
@@ -120,7 +151,7 @@ public class IdeaNode extends Node<NodeData> {
      */
     private static void setIdeaCount(int count) {
         log.trace("Entering setIdeaCount(count=" + count + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
-        ideaCount = count;
+        ideaCount.set(count);
         log.trace("Leaving setIdeaCount()"); //$NON-NLS-1$
     }
 
@@ -168,6 +199,7 @@ public class IdeaNode extends Node<NodeData> {
     private void setIsChild(boolean isChild) {
         log.trace("Entering setIsChild(isChild=" + isChild + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         this.isChild = isChild;
+        markSnapshotDirty();
         log.trace("Leaving setIsChild()"); //$NON-NLS-1$
     }
 
@@ -192,9 +224,65 @@ public class IdeaNode extends Node<NodeData> {
     private void setParentID(long parentID) {
         log.trace("Entering setParentID(parentID=" + parentID + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         this.parentID = parentID;
+        markSnapshotDirty();
         log.trace("Leaving getParentID()"); //$NON-NLS-1$
     }
 
+    /**
+     * Returns the Map the IdeaNode is a member of (as root or as child).
+     * 
+     * @return the containing Map or null if the IdeaNode is a single IdeaNode
+     */
+    protected Map getContainingMap() {
+        log.trace("Entering getContainingMap()"); //$NON-NLS-1$
+        log.trace("Leaving getContainingMap(): " + this.containingMap); //$NON-NLS-1$
+        return this.containingMap;
+    }
+
+    /**
+     * Sets the Map the IdeaNode is a member of. Handled exclusively by the Map
+     * and IdeaNode classes upon Map structure changes.
+     * 
+     * @param containingMap
+     *            the containing Map or null for a single IdeaNode
+     */
+    protected void setContainingMap(Map containingMap) {
+        if (log.isTraceEnabled()) {
+            log.trace("Entering setContainingMap(containingMap=" + containingMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.containingMap = containingMap;
+        log.trace("Leaving setContainingMap()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the MindMap the IdeaNode has been added to.
+     * 
+     * @return the MindMap or null
+     */
+    protected MindMap getMindMap() {
+        log.trace("Entering getMindMap()"); //$NON-NLS-1$
+        log.trace("Leaving getMindMap(): " + this.mindMap); //$NON-NLS-1$
+        return this.mindMap;
+    }
+
+    /**
+     * Sets the MindMap the IdeaNode has been added to. Handled exclusively by
+     * the MindMap class upon adding and removing IdeaNodes.
+     * 
+     * @param mindMap
+     *            the MindMap or null if the IdeaNode has been removed
+     */
+    protected void setMindMap(MindMap mindMap) {
+        if (log.isTraceEnabled()) {
+            log.trace("Entering setMindMap(mindMap=" + mindMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (this.mindMap != mindMap) {
+            this.mindMap = mindMap;
+            this.snapshotDirty = false;
+        }
+        log.trace("Leaving setMindMap()"); //$NON-NLS-1$
+    }
+
     /* *************Delegates************** */
     /**
      * Returns the idea text within the NodeData.
@@ -224,8 +312,20 @@ public class IdeaNode extends Node<NodeData> {
      */
     public boolean setIdeaText(String ideaText) {
         log.trace("Entering setIdeaText(ideaText=" + ideaText + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-        log.trace("Leaving setIdeaText()"); //$NON-NLS-1$
-        return getData().setIdeaText(ideaText);
+        String oldIdeaText = getData().getIdeaText();
+        if (getData().setIdeaText(ideaText)) {
+            // Syncing unchanged values from the view must not dirty the
+            // snapshot
+            String newIdeaText = getData().getIdeaText();
+            if (newIdeaText == null ? oldIdeaText != null : !newIdeaText
+                    .equals(oldIdeaText)) {
+                markSnapshotDirty();
+            }
+            log.trace("Leaving setIdeaText()"); //$NON-NLS-1$
+            return true;
+        }
+        log.trace("Leaving setIdeaText(): false"); //$NON-NLS-1$
+        return false;
 
     }
 
@@ -254,8 +354,16 @@ public class IdeaNode extends Node<NodeData> {
      */
     public boolean setIdeaRotationInDegrees(float ideaRotationInDegrees) {
         log.trace("Entering setIdeaRotationInDegrees(ideaRotationInDegrees=" + ideaRotationInDegrees + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-        log.trace("Entering setIdeaRotationInDegrees()"); //$NON-NLS-1$
-        return getData().setIdeaRotationInDegrees(ideaRotationInDegrees);
+        float oldRotation = getData().getIdeaRotationInDegrees();
+        if (getData().setIdeaRotationInDegrees(ideaRotationInDegrees)) {
+            if (getData().getIdeaRotationInDegrees() != oldRotation) {
+                markSnapshotDirty();
+            }
+            log.trace("Leaving setIdeaRotationInDegrees()"); //$NON-NLS-1$
+            return true;
+        }
+        log.trace("Leaving setIdeaRotationInDegrees(): false"); //$NON-NLS-1$
+        return false;
 
     }
 
@@ -281,6 +389,7 @@ public class IdeaNode extends Node<NodeData> {
     protected void setIdeaOwner(EIdeaNodeCreator ideaOwner) {
         log.trace("Entering setIdeaOwner(ideaOwner=" + ideaOwner + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         getData().setIdeaOwner(ideaOwner);
+        markSnapshotDirty();
         log.trace("Leaving setIdeaOwner()"); //$NON-NLS-1$
     }
 
@@ -308,8 +417,17 @@ public class IdeaNode extends Node<NodeData> {
      */
     public boolean setIdeaPositionX(float x) {
         log.trace("Entering setIdeaPositionX(x" + x + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-        log.trace("Leaving setIdeaPositionX()"); //$NON-NLS-1$
-        return getData().setIdeaPositionX(x);
+        float oldX = getData().getIdeaPositionX();
+        if (getData().setIdeaPositionX(x)) {
+            if (getData().getIdeaPositionX() != oldX) {
+                invalidateAggregate();
+                markSnapshotDirty();
+            }
+            log.trace("Leaving setIdeaPositionX()"); //$NON-NLS-1$
+            return true;
+        }
+        log.trace("Leaving setIdeaPositionX(): false"); //$NON-NLS-1$
+        return false;
 
     }
 
@@ -338,8 +456,17 @@ public class IdeaNode extends Node<NodeData> {
      */
     public boolean setIdeaPositionY(float y) {
         log.trace("Entering setIdeaPositionY(y" + y + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-        log.trace("Leaving setIdeaPositionY()"); //$NON-NLS-1$
-        return getData().setIdeaPositionY(y);
+        float oldY = getData().getIdeaPositionY();
+        if (getData().setIdeaPositionY(y)) {
+            if (getData().getIdeaPositionY() != oldY) {
+                invalidateAggregate();
+                markSnapshotDirty();
+            }
+            log.trace("Leaving setIdeaPositionY()"); //$NON-NLS-1$
+            return true;
+        }
+        log.trace("Leaving setIdeaPositionY(): false"); //$NON-NLS-1$
+        return false;
 
     }
 
@@ -365,6 +492,7 @@ public class IdeaNode extends Node<NodeData> {
     public void setIdeaState(EIdeaState ideaState) {
         log.trace("Entering setIdeaState(ideaState=" + ideaState + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         getData().setIdeaState(ideaState);
+        markSnapshotDirty();
         log.trace("Leaving setIdeaState()"); //$NON-NLS-1$
     }
 
@@ -409,9 +537,11 @@ public class IdeaNode extends Node<NodeData> {
      */
     @Override
     protected void setData(NodeData nodeData) {
-        log.trace("Entering setData(nodeData=" + nodeData + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        if (log.isTraceEnabled()) {
+            log.trace("Entering setData(nodeData=" + nodeData + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        }
         super.setData(nodeData);
-
+        markSnapshotDirty();
         log.trace("Leaving setData()"); //$NON-NLS-1$
     }
 
@@ -449,28 +579,24 @@ public class IdeaNode extends Node<NodeData> {
                 return EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT;
             }
 
-            // newChild is parent of this IdeaNode
-            if (newChild.getChildren().contains(this)) {
-                log.warn("Leaving addChild(): false, on error, newChild is parent of this IdeaNode!"); //$NON-NLS-1$
+            // newChild is this IdeaNode or an ancestor of this IdeaNode
+            if (newChild == this || newChild.isAncestorOf(this)) {
+                log.warn("Leaving addChild(): false, on error, newChild is this IdeaNode or an ancestor of it!"); //$NON-NLS-1$
                 // TODO message to view to show a error overlay?
                 return EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT;
             }
 
             // newChild is already part of the Map that this IdeaNode is in
             if (this.isChild) {
-                // Search for new IdeaNode in the Map for this IdeaNode
-                Map resultingMap = mindMap.findMapByChildNode(this);
-                if (resultingMap != null) {
-
-                    if (resultingMap.containsIdeaNode(newChild)) {
-                        log.debug("Leaving addChild(): false, newChild is part of the Map that this IdeaNode is part of"); //$NON-NLS-1$
-                        return EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT;
-                    }
-
-                } else {
-                    log.error("Leaving addChild() false; on error"); //$NON-NLS-1$
+                if (this.containingMap == null) {
+                    log.error("Leaving addChild() false; on error, no Map found for this IdeaNode"); //$NON-NLS-1$
                     return EAddChildIdeaNodeResultCase.NO_ADD_ON_ERROR;
                 }
+
+                if (mindMap.isInSameMap(this, newChild)) {
+                    log.debug("Leaving addChild(): false, newChild is part of the Map that this IdeaNode is part of"); //$NON-NLS-1$
+                    return EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT;
+                }
             }
 
             // Check for constraints and update Maps accordingly
@@ -494,10 +620,17 @@ public class IdeaNode extends Node<NodeData> {
                 // Set properties
                 newChild.setIsChild(true);
                 newChild.setParentID(this.ideaID);
+                markSnapshotDirty();
 
-                // Communicate changes to observers
-                communicateChangesToObserver(new ObserverNotificationObject(
-                        EIdeaNodeChangedStatus.IDEA_NODE_CHILD_ADDED, newChild));
+                // Update Map membership, newChild and its children are now
+                // part of the Map containing this IdeaNode
+                if (newChild.getContainingMap() != this.containingMap) {
+                    this.containingMap.assignMembership(newChild);
+                }
+
+                // Communicate changes to listeners
+                mindMap.communicateIdeaNodeChanges(this,
+                        EIdeaNodeChangedStatus.IDEA_NODE_CHILD_ADDED, newChild);
 
                 log.debug("Leaving addChild()"); //$NON-NLS-1$
                 return result;
@@ -560,11 +693,30 @@ public class IdeaNode extends Node<NodeData> {
 
                 toBeRemovedChild.setIsChild(false);
                 toBeRemovedChild.setParentID(NO_PARENT);
+                markSnapshotDirty();
+
+                // Update Map membership for IdeaNodes that became single
+                // IdeaNodes (a new Map for toBeRemovedChild and its children
+                // in case 2.2 has already been assigned on Map creation)
+                switch (result) {
+                    case C1_1_P_SINGLE_C_SINGLE_REMOVE_MAP:
+                        this.setContainingMap(null);
+                        toBeRemovedChild.setContainingMap(null);
+                        break;
+                    case C1_2_P_MAP_C_SINGLE_NOTHING:
+                        toBeRemovedChild.setContainingMap(null);
+                        break;
+                    case C2_1_P_SINGLE_C_MAP_MODIFY_MAP:
+                        this.setContainingMap(null);
+                        break;
+                    default:
+                        break;
+                }
 
-                // Communicate changes to observers
-                communicateChangesToObserver(new ObserverNotificationObject(
+                // Communicate changes to listeners
+                mindMap.communicateIdeaNodeChanges(this,
                         EIdeaNodeChangedStatus.IDEA_NODE_CHILD_REMOVED,
-                        toBeRemovedChild));
+                        toBeRemovedChild);
 
                 log.debug("Leaving removeIdeaChild(): true"); //$NON-NLS-1$
                 return result;
@@ -581,6 +733,24 @@ public class IdeaNode extends Node<NodeData> {
 
     }
 
+    /**
+     * Appends a child IdeaNode read from a MindMap file without any Map
+     * constraint checks or notifications. The Maps of the MindMap are created
+     * by the reader after all children have been restored.
+     * 
+     * @param child
+     *            the child IdeaNode, not yet a child of another IdeaNode
+     * @return true if the child has been appended
+     */
+    protected boolean restoreIdeaChild(IdeaNode child) {
+        if (super.addChild(child)) {
+            child.setIsChild(true);
+            child.setParentID(this.ideaID);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Returns the number of immediate children of this Node<T> via the
      * superclass Node<NodeContentContainer>.
@@ -866,20 +1036,42 @@ public class IdeaNode extends Node<NodeData> {
     }
 
     /**
-     * Communicates changes to all registered Observers.
+     * Registers the IdeaNode as changed with its MindMap, so the next snapshot
+     * of the MindMap copies its state. Repeated changes between two snapshots
+     * only register the IdeaNode once.
      * 
-     * @param object
-     *            the observer notification object
+     * @see MindMap#snapshot()
+     */
+    protected void markSnapshotDirty() {
+        if (!this.snapshotDirty && this.mindMap != null) {
+            this.snapshotDirty = true;
+            this.mindMap.addSnapshotDirtyIdeaNode(this);
+        }
+    }
+
+    /**
+     * Resets the changed flag after the state of the IdeaNode has been copied
+     * into a snapshot.
      */
-    protected void communicateChangesToObserver(
-            ObserverNotificationObject object) {
-        log.debug("Entering communicateChangesToObserver()"); //$NON-NLS-1$
-        setChanged();
-        notifyObservers(object);
-        log.debug("Leaving communicateChangesToObserver()"); //$NON-NLS-1$
+    protected void clearSnapshotDirty() {
+        this.snapshotDirty = false;
     }
 
     /* ********Overridden methods******** */
+    /**
+     * Adds the position of the IdeaNode to the bounds of its SubtreeAggregate.
+     * 
+     * @param nodeAggregate
+     *            the reset aggregate of this IdeaNode
+     */
+    @Override
+    protected void contributeToAggregate(SubtreeAggregate nodeAggregate) {
+        if (getData() != null) {
+            nodeAggregate.includePosition(getIdeaPositionX(),
+                    getIdeaPositionY());
+        }
+    }
+
     /**
      * Returns a String representation of an IdeaNode object and its values.
      * 
@@ -892,24 +1084,21 @@ public class IdeaNode extends Node<NodeData> {
     }
 
     /**
-     * Returns a hash code value for the IdeaNode.
+     * Returns a hash code value for the IdeaNode, based on the unique ideaID
+     * only.
      * 
      * @return a hash code value for this IdeaNode.
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (this.isChild ? 1231 : 1237);
-        result = prime * result
-                + (int) (this.parentID ^ (this.parentID >>> 32));
-        return result;
+        return (int) (this.ideaID ^ (this.ideaID >>> 32));
     }
 
     /**
      * Compares the specified object with this IdeaNode for equality. Returns
      * true if and only if the specified object is also a IdeaNode with the same
-     * elements.
+     * ideaID, which also holds for a deserialized copy of this IdeaNode. Use
+     * {@link StructuralComparator} to compare children and data as well.
      * 
      * @return true if the specified object is equal to this IdeaNode.
      */
@@ -920,11 +1109,6 @@ public class IdeaNode extends Node<NodeData> {
             log.trace("Leaving equals(): true; same reference"); //$NON-NLS-1$
             return true;
         }
-
-        if (!super.equals(obj)) {
-            log.trace("Leaving equals(): false; equals() false for superclass"); //$NON-NLS-1$
-            return false;
-        }
         if (!(obj instanceof IdeaNode)) {
             log.trace("Leaving equals(): false; no istanceof IdeaNode"); //$NON-NLS-1$
             return false;
@@ -934,15 +1118,7 @@ public class IdeaNode extends Node<NodeData> {
             log.trace("Leaving equals(): false; Different ideaID! this: " + this.ideaID + ", other: " + other.ideaID); //$NON-NLS-1$//$NON-NLS-2$
             return false;
         }
-        if (this.isChild != other.isChild) {
-            log.trace("Leaving equals(): false; Different isChild! this: " + this.isChild + ", other: " + other.isChild); //$NON-NLS-1$//$NON-NLS-2$
-            return false;
-        }
-        if (this.parentID != other.parentID) {
-            log.trace("Leaving equals(): false; Different parentID! this: " + this.parentID + ", other: " + other.parentID); //$NON-NLS-1$//$NON-NLS-2$
-            return false;
-        }
-        log.trace("Leaving equals(): true; same object"); //$NON-NLS-1$
+        log.trace("Leaving equals(): true; same ideaID"); //$NON-NLS-1$
         return true;
     }
 
@@ -0,0 +1,273 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Immutable copy of the state of an IdeaNode at the time a
+ * {@link MindMapSnapshot} was taken. Children are referenced by their IDs, so
+ * an unchanged IdeaNodeSnapshot can be shared by consecutive MindMap
+ * snapshots even if other IdeaNodes have changed.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapSnapshot
+ */
+public final class IdeaNodeSnapshot {
+
+    /** The unique ID of the ideaNode */
+    private final long             ideaID;
+
+    /** The unique ID of the ideaNode's nodeData */
+    private final long             nodeDataID;
+
+    /** The ID of the parent ideaNode or NO_PARENT */
+    private final long             parentID;
+
+    /** Flag indicating if the ideaNode is a child of another ideaNode */
+    private final boolean          isChild;
+
+    /** The idea text */
+    private final String           ideaText;
+
+    /** The x position */
+    private final float            positionX;
+
+    /** The y position */
+    private final float            positionY;
+
+    /** The rotation in degrees */
+    private final float            rotationInDegrees;
+
+    /** The ideaNode creator */
+    private final EIdeaNodeCreator ideaOwner;
+
+    /** The state of the ideaNode */
+    private final EIdeaState       ideaState;
+
+    /** The IDs of the children in order */
+    private final long[]           childIDs;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new IdeaNodeSnapshot with the current state
+     * of the given IdeaNode. Must be called on the thread that mutates the
+     * model.
+     * 
+     * @param ideaNode
+     *            the live ideaNode
+     */
+    IdeaNodeSnapshot(IdeaNode ideaNode) {
+        this.ideaID = ideaNode.getIdeaID();
+        this.nodeDataID = ideaNode.getData().getNodeDataID();
+        this.parentID = ideaNode.getParentID();
+        this.isChild = ideaNode.getIsChild();
+        this.ideaText = ideaNode.getIdeaText();
+        this.positionX = ideaNode.getIdeaPositionX();
+        this.positionY = ideaNode.getIdeaPositionY();
+        this.rotationInDegrees = ideaNode.getIdeaRotationInDegrees();
+        this.ideaOwner = ideaNode.getIdeaOwner();
+        this.ideaState = ideaNode.getIdeaState();
+
+        ArrayList<Node<NodeData>> children = ideaNode.getChildren();
+        this.childIDs = new long[children.size()];
+        for (int i = 0; i < this.childIDs.length; i++) {
+            this.childIDs[i] = ((IdeaNode) children.get(i)).getIdeaID();
+        }
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the unique ID of the ideaNode.
+     * 
+     * @return the ideaID
+     */
+    public long getIdeaID() {
+        return this.ideaID;
+    }
+
+    /**
+     * Returns the unique ID of the ideaNode's nodeData.
+     * 
+     * @return the nodeDataID
+     */
+    public long getNodeDataID() {
+        return this.nodeDataID;
+    }
+
+    /**
+     * Returns the ID of the parent ideaNode.
+     * 
+     * @return the parentID or -1 if the ideaNode has no parent
+     */
+    public long getParentID() {
+        return this.parentID;
+    }
+
+    /**
+     * Returns if the ideaNode is a child of another ideaNode.
+     * 
+     * @return isChild true/false
+     */
+    public boolean getIsChild() {
+        return this.isChild;
+    }
+
+    /**
+     * Returns the idea text.
+     * 
+     * @return the ideaText
+     */
+    public String getIdeaText() {
+        return this.ideaText;
+    }
+
+    /**
+     * Returns the x position.
+     * 
+     * @return the positionX
+     */
+    public float getIdeaPositionX() {
+        return this.positionX;
+    }
+
+    /**
+     * Returns the y position.
+     * 
+     * @return the positionY
+     */
+    public float getIdeaPositionY() {
+        return this.positionY;
+    }
+
+    /**
+     * Returns the rotation in degrees.
+     * 
+     * @return the rotationInDegrees
+     */
+    public float getIdeaRotationInDegrees() {
+        return this.rotationInDegrees;
+    }
+
+    /**
+     * Returns the ideaNode creator.
+     * 
+     * @return the ideaOwner
+     */
+    public EIdeaNodeCreator getIdeaOwner() {
+        return this.ideaOwner;
+    }
+
+    /**
+     * Returns the state of the ideaNode.
+     * 
+     * @return the ideaState
+     */
+    public EIdeaState getIdeaState() {
+        return this.ideaState;
+    }
+
+    /**
+     * Returns the number of children.
+     * 
+     * @return the number of children
+     */
+    public int getChildCount() {
+        return this.childIDs.length;
+    }
+
+    /**
+     * Returns the ID of the child at the given index.
+     * 
+     * @param index
+     *            the index of the child
+     * @return the ideaID of the child
+     */
+    public long getChildID(int index) {
+        return this.childIDs[index];
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a String representation of the IdeaNodeSnapshot.
+     * 
+     * @return String representation of the IdeaNodeSnapshot.
+     */
+    @Override
+    public String toString() {
+        return "IdeaNodeSnapshot [ideaID=" + this.ideaID + ", ideaText=" //$NON-NLS-1$ //$NON-NLS-2$
+                + this.ideaText + "]"; //$NON-NLS-1$
+    }
+
+    /**
+     * Returns a hash code value for the IdeaNodeSnapshot, based on the ideaID
+     * only.
+     * 
+     * @return a hash code value for this IdeaNodeSnapshot.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (this.ideaID ^ (this.ideaID >>> 32));
+    }
+
+    /**
+     * Compares the specified object with this IdeaNodeSnapshot for equality.
+     * Returns true if and only if the specified object is also an
+     * IdeaNodeSnapshot with equal values.
+     * 
+     * @return true if the specified object is equal to this IdeaNodeSnapshot.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IdeaNodeSnapshot)) {
+            return false;
+        }
+        IdeaNodeSnapshot other = (IdeaNodeSnapshot) obj;
+        if (this.ideaID != other.ideaID || this.nodeDataID != other.nodeDataID
+                || this.parentID != other.parentID
+                || this.isChild != other.isChild
+                || this.ideaOwner != other.ideaOwner
+                || this.ideaState != other.ideaState) {
+            return false;
+        }
+        if (Float.floatToIntBits(this.positionX) != Float
+                .floatToIntBits(other.positionX)
+                || Float.floatToIntBits(this.positionY) != Float
+                        .floatToIntBits(other.positionY)
+                || Float.floatToIntBits(this.rotationInDegrees) != Float
+                        .floatToIntBits(other.rotationInDegrees)) {
+            return false;
+        }
+        if (this.ideaText == null ? other.ideaText != null : !this.ideaText
+                .equals(other.ideaText)) {
+            return false;
+        }
+        return Arrays.equals(this.childIDs, other.childIDs);
+    }
+
+}
@@ -0,0 +1,296 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * A hash map with primitive long keys. Uses open addressing with linear probing
+ * so no entry objects and no boxed keys are allocated on insertion or lookup.
+ * </p>
+ * 
+ * <p>
+ * Used as ID index for model objects, e.g. in
+ * {@link MindMap#findIdeaNodeByID(long)}. Not thread safe.
+ * </p>
+ * 
+ * <p>
+ * Will not be serialized, owners rebuild the index upon deserialization.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @param <V>
+ *            the type of the mapped values
+ */
+public class LongHashMap<V> {
+
+    /** The default initial capacity (must be a power of two) */
+    private static final int   DEFAULT_CAPACITY = 16;
+
+    /** The maximum load factor before the tables are grown */
+    private static final float MAX_LOAD_FACTOR  = 0.6f;
+
+    /** The key table */
+    private long[]             keys;
+
+    /** The value table, a null value marks a free slot */
+    private Object[]           values;
+
+    /** The number of mapped keys */
+    private int                size;
+
+    /** The number of mapped keys that triggers growing the tables */
+    private int                threshold;
+
+    /* ***********Constructors*********** */
+    /**
+     * Default constructor. Instantiates a new, empty LongHashMap.
+     */
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor. Instantiates a new, empty LongHashMap which can hold the
+     * given number of keys without growing.
+     * 
+     * @param expectedSize
+     *            the expected number of keys
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Returns the number of mapped keys.
+     * 
+     * @return the number of mapped keys
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns if the map contains no keys.
+     * 
+     * @return true, if the map is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     * 
+     * @param key
+     *            the key
+     * @return the mapped value or null if the key is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = this.keys.length - 1;
+        int i = indexFor(key, mask);
+        Object value;
+        while ((value = this.values[i]) != null) {
+            if (this.keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns if the given key is mapped.
+     * 
+     * @param key
+     *            the key
+     * @return true, if the key is mapped
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given value to the given key. Null values are not permitted.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the value, not null
+     * @return the value previously mapped to the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted"); //$NON-NLS-1$
+        }
+        int mask = this.keys.length - 1;
+        int i = indexFor(key, mask);
+        Object old;
+        while ((old = this.values[i]) != null) {
+            if (this.keys[i] == key) {
+                this.values[i] = value;
+                return (V) old;
+            }
+            i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        if (++this.size > this.threshold) {
+            rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     * 
+     * @param key
+     *            the key
+     * @return the value that was mapped to the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = this.keys.length - 1;
+        int i = indexFor(key, mask);
+        Object value;
+        while ((value = this.values[i]) != null) {
+            if (this.keys[i] == key) {
+                this.size--;
+                closeGap(i, mask);
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public void clear() {
+        for (int i = 0; i < this.values.length; i++) {
+            this.values[i] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns all mapped values in table order.
+     * 
+     * @return a new ArrayList with the mapped values
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<V> values() {
+        ArrayList<V> result = new ArrayList<V>(this.size);
+        for (Object value : this.values) {
+            if (value != null) {
+                result.add((V) value);
+            }
+        }
+        return result;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the table slot for the given key.
+     * 
+     * @param key
+     *            the key
+     * @param mask
+     *            the table length - 1
+     * @return the slot index
+     */
+    private static int indexFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Allocates new, empty tables of the given capacity.
+     * 
+     * @param capacity
+     *            the capacity, a power of two
+     */
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.threshold = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Grows the tables and reinserts all mappings.
+     * 
+     * @param capacity
+     *            the new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = indexFor(oldKeys[j], mask);
+                while (this.values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Frees the given slot and shifts following entries of the probe sequence
+     * back, so lookups never stop at a freed slot too early.
+     * 
+     * @param free
+     *            the slot to free
+     * @param mask
+     *            the table length - 1
+     */
+    private void closeGap(int free, int mask) {
+        int gap = free;
+        int i = (gap + 1) & mask;
+        while (this.values[i] != null) {
+            int home = indexFor(this.keys[i], mask);
+            // move entry i into the gap if its home slot is not within
+            // (gap, i] (cyclic)
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                this.keys[gap] = this.keys[i];
+                this.values[gap] = this.values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        this.values[gap] = null;
+    }
+
+}
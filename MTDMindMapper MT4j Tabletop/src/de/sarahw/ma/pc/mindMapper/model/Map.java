@@ -19,6 +19,7 @@
 package de.sarahw.ma.pc.mindMapper.model;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -46,18 +47,20 @@ import de.sarahw.ma.pc.mindMapper.view.IdeaNodeView;
 
 public class Map extends Tree<NodeData> {
 
-    private static Logger     log              = Logger.getLogger(Map.class);
+    private static Logger              log              = Logger.getLogger(Map.class);
 
     /** The serial version UID -6455981371831948355L */
-    private static final long serialVersionUID = -6455981371831948355L;
+    private static final long          serialVersionUID = -6455981371831948355L;
 
-    /** The total count of all created Maps */
+    /**
+     * The total count of all created Maps, atomic as Maps are also created by
+     * the load threads
+     */
     // TODO: On removal?
-    private static int        mapCount         = 0;
+    private static final AtomicInteger mapCount         = new AtomicInteger();
 
-    /** The ID of the Map (hashValue) */
-    // TODO: problematic because two Maps can have the same ID ?
-    private long              mapID;
+    /** The unique ID of the Map (issued by ModelIDGenerator) */
+    private long                       mapID;
 
     /* ***********Constructors*********** */
     /**
@@ -77,15 +80,32 @@ public class Map extends Tree<NodeData> {
      *            object
      */
     protected Map(IdeaNode root) {
+        this(root, ModelIDGenerator.nextID());
+    }
+
+    /**
+     * Instantiates a new Map with a root IdeaNodeView and an already issued
+     * mapID. Used when reading a MindMap file.
+     * 
+     * @param root
+     *            the IdeaNodeView object which is the root node of the Map
+     *            object
+     * @param mapID
+     *            the unique ID of the Map
+     */
+    protected Map(IdeaNode root, long mapID) {
         super(root);
 
-        log.debug("Executing Map(root=" + root + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        log.debug("Executing Map(root=" + root + ", mapID=" + mapID + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
         // set map count
-        mapCount++;
+        mapCount.incrementAndGet();
 
         // set unique object id
-        setMapID(this.hashCode());
+        setMapID(mapID);
+
+        // the root node and all its children are members of this Map
+        assignMembership(root);
 
     }
 
@@ -98,19 +118,19 @@ public class Map extends Tree<NodeData> {
     public static int getMapCount() {
         log.trace("Entering getMapCount()"); //$NON-NLS-1$ 
         log.trace("Leaving getMapCount(): " + mapCount); //$NON-NLS-1$ 
-        return mapCount;
+        return mapCount.get();
 
     }
 
     /**
      * Sets the number of Map objects.
      * 
-     * @param mapCount
-     *            the mapCount to set
+     * @param count
+     *            the number of Maps
      */
-    protected static void setMapCount(int mapCount) {
-        log.trace("Entering setMapCount(mapCount=" + mapCount + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-        Map.mapCount = mapCount;
+    protected static void setMapCount(int count) {
+        log.trace("Entering setMapCount(count=" + count + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        mapCount.set(count);
         log.trace("Leaving setMapCount()"); //$NON-NLS-1$ 
     }
 
@@ -163,6 +183,7 @@ public class Map extends Tree<NodeData> {
         log.trace("Entering setRootNode(rootIdeaNode=" + rootIdeaNode + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         if (rootIdeaNode != null) {
             if (super.setRootElement(rootIdeaNode)) {
+                rootIdeaNode.setContainingMap(this);
                 log.trace("Leaving setRootNode()"); //$NON-NLS-1$
                 return true;
             }
@@ -175,7 +196,8 @@ public class Map extends Tree<NodeData> {
     }
 
     /**
-     * Checks whether a certain Node<NodeData> is part of the Map.
+     * Checks whether a certain Node<NodeData> is part of the Map. Answered in
+     * constant time via the Map membership of IdeaNodes.
      * 
      * @param element
      *            the Node<NodeData> to be searched
@@ -185,10 +207,39 @@ public class Map extends Tree<NodeData> {
 
         log.debug("Entering containsIdeaNode()"); //$NON-NLS-1$
 
+        if (element instanceof IdeaNode) {
+            log.debug("Leaving containsIdeaNode(): result of membership check"); //$NON-NLS-1$
+            return ((IdeaNode) element).getContainingMap() == this;
+        }
+
         log.debug("Leaving containsIdeaNode(): result of contains"); //$NON-NLS-1$
         return super.containsNode(element);
     }
 
+    /**
+     * Sets this Map as the containing Map of the given IdeaNode and all of its
+     * children. Called upon Map creation and whenever a subtree is moved into
+     * this Map.
+     * 
+     * @param subtreeRoot
+     *            the root of the subtree that is part of this Map
+     */
+    protected void assignMembership(IdeaNode subtreeRoot) {
+
+        log.debug("Entering assignMembership(subtreeRoot=" + subtreeRoot + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        NodeIterator<NodeData> it = new NodeIterator<NodeData>(subtreeRoot,
+                ETraversalOrder.PRE_ORDER);
+        while (it.hasNext()) {
+            Node<NodeData> node = it.next();
+            if (node instanceof IdeaNode) {
+                ((IdeaNode) node).setContainingMap(this);
+            }
+        }
+
+        log.debug("Leaving assignMembership()"); //$NON-NLS-1$
+    }
+
     /* ********Overridden methods******** */
     /**
      * Returns the Map as a List of Node<NodeData> objects. The elements of the
@@ -217,21 +268,19 @@ public class Map extends Tree<NodeData> {
     }
 
     /**
-     * Returns a hash code value for the Map.
+     * Returns a hash code value for the Map, based on the unique mapID only.
      * 
      * @return a hash code value for this Map.
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result;
-        return result;
+        return (int) (this.mapID ^ (this.mapID >>> 32));
     }
 
     /**
      * Compares the specified object with this Map for equality. Returns true if
-     * and only if the specified object is also a Map with the same elements.
+     * and only if the specified object is also a Map with the same mapID. Use
+     * {@link StructuralComparator} to compare the elements of two Maps.
      * 
      * @return true if the specified object is equal to this Map.
      */
@@ -240,14 +289,11 @@ public class Map extends Tree<NodeData> {
         if (this == obj) {
             return true;
         }
-        if (!super.equals(obj)) {
-            return false;
-        }
         if (!(obj instanceof Map)) {
             return false;
         }
 
-        return true;
+        return this.mapID == ((Map) obj).mapID;
     }
 
 }
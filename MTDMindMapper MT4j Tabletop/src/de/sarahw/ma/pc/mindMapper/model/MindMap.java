@@ -18,13 +18,16 @@
 
 package de.sarahw.ma.pc.mindMapper.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Observable;
 
 import org.apache.log4j.Logger;
 
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
 import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
 import de.sarahw.ma.pc.mindMapper.ToolsTimestamp;
 
@@ -36,7 +39,13 @@ import de.sarahw.ma.pc.mindMapper.ToolsTimestamp;
  * 
  * <p>
  * Contains methods to add and remove IdeaNodes and Maps as well as save a
- * MindMap via object serialization.
+ * MindMap in the binary .mindMap format (see MindMapSerializer).
+ * </p>
+ * 
+ * <p>
+ * Changes of the MindMap (EMindMapChangeStatus) and of its IdeaNodes
+ * (EIdeaNodeChangedStatus, published with the IdeaNode as source) are
+ * published on the MindMap's ModelEventBus.
  * </p>
  * 
  * <p>
@@ -49,17 +58,22 @@ import de.sarahw.ma.pc.mindMapper.ToolsTimestamp;
  * 
  */
 
-public class MindMap extends Observable implements Serializable {
+public class MindMap implements Serializable {
 
     private static Logger     log                 = Logger.getLogger(MindMap.class);
 
     /** The serial version UID -7908634461693811066L */
     private static final long serialVersionUID    = -7908634461693811066L;
 
-    /** The ID of the mindMap */
-    // TODO: problematic because two mindMaps can have the same ID ?
+    /** The unique ID of the mindMap (issued by ModelIDGenerator) */
     private long              mindMapId;
 
+    /**
+     * The last ID issued by the ModelIDGenerator when the mindMap was
+     * serialized
+     */
+    private long              lastIssuedID;
+
     /** The title of the mindMap */
     private String            mindMapTitle;
 
@@ -69,6 +83,36 @@ public class MindMap extends Observable implements Serializable {
     /** The list of maps contained in the mindMap */
     private List<Map>         mindMapList         = new ArrayList<Map>();
 
+    /**
+     * The index of all ideaNodes in the mindMapIdeaNodeList by ideaID, rebuilt
+     * upon deserialization
+     */
+    private transient LongHashMap<IdeaNode> ideaNodeIndex = new LongHashMap<IdeaNode>();
+
+    /** The nesting depth of open batches, 0 if no batch is open */
+    private transient int     batchDepth;
+
+    /** The notifications collected during the open batch */
+    private transient List<PendingChange> pendingChanges;
+
+    /** The event bus for changes of the mindMap and its ideaNodes */
+    private transient ModelEventBus eventBus = new ModelEventBus();
+
+    /** The last snapshot taken of the mindMap or null */
+    private transient MindMapSnapshot lastSnapshot;
+
+    /** The ideaNodes changed since the last snapshot */
+    private transient List<IdeaNode> snapshotDirtyIdeaNodes = new ArrayList<IdeaNode>();
+
+    /** Flag indicating if title or maps have changed since the last snapshot */
+    private transient boolean snapshotMetaDirty;
+
+    /**
+     * The journal of the file the mindMap was last loaded from or saved to,
+     * also set by the save thread
+     */
+    private transient volatile MindMapJournal journal;
+
     /* ***********Constructors*********** */
     /**
      * Default constructor. Instantiates a new MindMap.
@@ -82,7 +126,28 @@ public class MindMap extends Observable implements Serializable {
                 .fetchTimestamp()));
 
         // Set unique object id
-        setMindMapId(this.hashCode());
+        setMindMapId(ModelIDGenerator.nextID());
+    }
+
+    /**
+     * Constructor. Instantiates a new, empty MindMap with an already issued
+     * mindMapId. Used when reading a MindMap file.
+     * 
+     * @param mindMapId
+     *            the unique ID of the mindMap
+     * @param mindMapTitle
+     *            the title of the mindMap
+     * @param lastIssuedID
+     *            the last ID issued by the ModelIDGenerator when the mindMap
+     *            was written
+     */
+    protected MindMap(long mindMapId, String mindMapTitle, long lastIssuedID) {
+        super();
+        log.debug("Executing MindMap(mindMapId=" + mindMapId + ", mindMapTitle=" + mindMapTitle + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        setMindMapTitle(mindMapTitle);
+        setMindMapId(mindMapId);
+        this.lastIssuedID = lastIssuedID;
     }
 
     /* ********Getters & Setters******** */
@@ -110,6 +175,55 @@ public class MindMap extends Observable implements Serializable {
         log.trace("Leaving setMindMapId()"); //$NON-NLS-1$
     }
 
+    /**
+     * Returns the last ID issued by the ModelIDGenerator at the time the
+     * MindMap was serialized.
+     * 
+     * @return the lastIssuedID
+     */
+    public long getLastIssuedID() {
+        log.trace("Entering getLastIssuedID()"); //$NON-NLS-1$
+        log.trace("Leaving getLastIssuedID(): " + this.lastIssuedID); //$NON-NLS-1$
+        return this.lastIssuedID;
+    }
+
+    /**
+     * Returns the event bus on which changes of the MindMap and its IdeaNodes
+     * are published.
+     * 
+     * @return the eventBus
+     */
+    public ModelEventBus getEventBus() {
+        log.trace("Entering getEventBus()"); //$NON-NLS-1$
+        log.trace("Leaving getEventBus()"); //$NON-NLS-1$
+        return this.eventBus;
+    }
+
+    /**
+     * Returns the journal of the file the MindMap was last loaded from or
+     * saved to.
+     * 
+     * @return the journal or null
+     */
+    protected MindMapJournal getJournal() {
+        log.trace("Entering getJournal()"); //$NON-NLS-1$
+        log.trace("Leaving getJournal(): " + this.journal); //$NON-NLS-1$
+        return this.journal;
+    }
+
+    /**
+     * Sets the journal of the file the MindMap was last loaded from or saved
+     * to.
+     * 
+     * @param journal
+     *            the journal to set
+     */
+    protected void setJournal(MindMapJournal journal) {
+        log.trace("Entering setJournal(journal=" + journal + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.journal = journal;
+        log.trace("Leaving setJournal()"); //$NON-NLS-1$
+    }
+
     /**
      * Returns the title of the MindMap.
      * 
@@ -132,10 +246,11 @@ public class MindMap extends Observable implements Serializable {
         if (mindMapTitle.length() > 0
                 && mindMapTitle.length() <= MindMapSerializer.MAX_FILENAME_LENGTH) {
             this.mindMapTitle = mindMapTitle;
+            this.snapshotMetaDirty = true;
 
             log.debug("Communicate changes to observer for setMindMapTitle()"); //$NON-NLS-1$
-            communicateChangesToObserver(new ObserverNotificationObject(
-                    EMindMapChangeStatus.MIND_MAP_TITLE_SET, getMindMapTitle()));
+            communicateChanges(EMindMapChangeStatus.MIND_MAP_TITLE_SET,
+                    getMindMapTitle());
             log.trace("Leaving setMindMapTitle()"); //$NON-NLS-1$
         }
         log.trace("Leaving setMindMapTitle(), param String too long"); //$NON-NLS-1$   
@@ -176,16 +291,25 @@ public class MindMap extends Observable implements Serializable {
      */
     public boolean addIdeaNode(IdeaNode ideaNode) {
 
-        log.debug("Entering addIdeaNode(ideaNode=" + ideaNode + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Entering addIdeaNode(ideaNode=" + ideaNode + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         if (ideaNode != null) {
 
             if (this.mindMapIdeaNodeList.add(ideaNode)) {
 
-                log.debug("Communicate changes to observer for addIdeaNode()"); //$NON-NLS-1$
-                communicateChangesToObserver(new ObserverNotificationObject(
-                        EMindMapChangeStatus.MIND_MAP_IDEA_NODE_ADDED, ideaNode));
+                // Add to ID index
+                if (this.ideaNodeIndex.put(ideaNode.getIdeaID(), ideaNode) != null) {
+                    log.warn("IdeaNode ID " + ideaNode.getIdeaID() + " is not unique in the MindMap!"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                ideaNode.setMindMap(this);
+                ideaNode.markSnapshotDirty();
+
+                log.trace("Communicate changes to observer for addIdeaNode()"); //$NON-NLS-1$
+                communicateChanges(
+                        EMindMapChangeStatus.MIND_MAP_IDEA_NODE_ADDED, ideaNode);
 
-                log.debug("Leaving addIdeaNode(): true"); //$NON-NLS-1$
+                log.trace("Leaving addIdeaNode(): true"); //$NON-NLS-1$
                 return true;
             }
             log.error("Leaving addIdeaNode(): false, IdeaNode could not be added to List"); //$NON-NLS-1$
@@ -224,6 +348,7 @@ public class MindMap extends Observable implements Serializable {
             // check if the map has a root node
             if (map.getRootNode() != null) {
                 if (this.mindMapList.add(map)) {
+                    this.snapshotMetaDirty = true;
                     log.debug("Leaving addMap(): true"); //$NON-NLS-1$
                     return true;
                 }
@@ -254,27 +379,41 @@ public class MindMap extends Observable implements Serializable {
         log.debug("Entering removeIdeaNode(ideaNode=" + ideaNode + ")"); //$NON-NLS-1$//$NON-NLS-2$
         if (ideaNode != null) {
 
-            // check if IdeaNodeView is part of a Map and delete relations
-            // accordingly
-            if (!checkAndUpdateMapStructuresOnRemove(ideaNode)) {
-                log.error("Leaving removeIdeaNode(): false, on error"); //$NON-NLS-1$
-                // TODO send message?
-                return false;
-            }
-            // remove ideaNode from list
-            if (this.mindMapIdeaNodeList.remove(ideaNode)) {
-                ideaNode.setIdeaState(EIdeaState.DELETED);
+            // Deliver all relation removals and the removal of the IdeaNode
+            // as one batch
+            beginBatch();
+            try {
+                // check if IdeaNodeView is part of a Map and delete relations
+                // accordingly
+                if (!checkAndUpdateMapStructuresOnRemove(ideaNode)) {
+                    log.error("Leaving removeIdeaNode(): false, on error"); //$NON-NLS-1$
+                    // TODO send message?
+                    return false;
+                }
+                // remove ideaNode from list
+                if (this.mindMapIdeaNodeList.remove(ideaNode)) {
+                    ideaNode.setIdeaState(EIdeaState.DELETED);
 
-                log.debug("Communicate changes to observer for removeIdeaNode()"); //$NON-NLS-1$
-                communicateChangesToObserver(new ObserverNotificationObject(
-                        EMindMapChangeStatus.MIND_MAP_IDEA_NODE_REMOVED,
-                        ideaNode));
+                    // Remove from ID index
+                    if (this.ideaNodeIndex.get(ideaNode.getIdeaID()) == ideaNode) {
+                        this.ideaNodeIndex.remove(ideaNode.getIdeaID());
+                    }
+                    ideaNode.markSnapshotDirty();
+                    ideaNode.setMindMap(null);
 
-                log.debug("Leaving removeIdeaNode(): true"); //$NON-NLS-1$
-                return true;
+                    log.debug("Communicate changes to observer for removeIdeaNode()"); //$NON-NLS-1$
+                    communicateChanges(
+                            EMindMapChangeStatus.MIND_MAP_IDEA_NODE_REMOVED,
+                            ideaNode);
+
+                    log.debug("Leaving removeIdeaNode(): true"); //$NON-NLS-1$
+                    return true;
+                }
+                log.error("Leaving removeIdeaNode(): false, IdeaNodeView could not be removed from List"); //$NON-NLS-1$
+                return false;
+            } finally {
+                commit();
             }
-            log.error("Leaving removeIdeaNode(): false, IdeaNodeView could not be removed from List"); //$NON-NLS-1$
-            return false;
 
         }
         log.error("Leaving removeIdeaNode(): false, invalid null input"); //$NON-NLS-1$
@@ -306,6 +445,7 @@ public class MindMap extends Observable implements Serializable {
         log.debug("Entering removeMap(map=" + map + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         if (map != null) {
             if (this.mindMapList.remove(map)) {
+                this.snapshotMetaDirty = true;
                 log.debug("Leaving removeMap(): true"); //$NON-NLS-1$
                 return true;
             }
@@ -349,24 +489,23 @@ public class MindMap extends Observable implements Serializable {
     }
 
     /**
-     * Finds a Map object by its root IeaNode.
+     * Finds a Map object by its root IdeaNode via the Map membership of the
+     * IdeaNode.
      * 
      * @param idea
-     *            the IdeaNodeView which is root node of the Map
-     * @return the Map object with the given IdeaNodeView as root or null if it
+     *            the IdeaNode which is root node of the Map
+     * @return the Map object with the given IdeaNode as root or null if it
      *         hasn't been found
      */
     public Map findMapByRootNode(IdeaNode idea) {
 
         log.debug("Entering findMapByRootNode(idea=" + idea + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         if (idea != null) {
-            // Search the list of Maps for a Map with the given root node
-            for (int i = 0; i < getMindMapList().size(); i++) {
-                if (getMindMapList().get(i).getRootElement() == idea) {
+            Map map = idea.getContainingMap();
+            if (map != null && map.getRootElement() == idea) {
 
-                    log.debug("Leaving findMapByRootNode(): " + getMindMapList().get(i)); //$NON-NLS-1$ 
-                    return getMindMapList().get(i);
-                }
+                log.debug("Leaving findMapByRootNode(): " + map); //$NON-NLS-1$ 
+                return map;
             }
             log.error("Leaving findMapByRootNode(): null, object not found"); //$NON-NLS-1$
             return null;
@@ -377,29 +516,23 @@ public class MindMap extends Observable implements Serializable {
     }
 
     /**
-     * Finds a Map object by a child IeaNode.
+     * Finds a Map object by a child IdeaNode via the Map membership of the
+     * IdeaNode.
      * 
      * @param idea
-     *            the IdeaNodeView which is a child of the Map
-     * @return the Map object with the given IdeaNodeView as child or null if it
+     *            the IdeaNode which is a child of the Map
+     * @return the Map object with the given IdeaNode as child or null if it
      *         hasn't been found
      */
     protected Map findMapByChildNode(IdeaNode idea) {
 
         log.debug("Entering findMapByChildNode(idea=" + idea + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         if (idea != null) {
+            Map map = idea.getContainingMap();
+            if (map != null) {
 
-            // search the list of Maps for a Map with the given child node
-            for (int i = 0; i < getMindMapList().size(); i++) {
-                ArrayList<Node<NodeData>> listOfNodes = getMindMapList().get(i)
-                        .toList();
-                for (int j = 0; i < listOfNodes.size(); j++) {
-                    if (listOfNodes.get(j) == idea) {
-
-                        log.debug("Leaving findMapByChildNode(): " + getMindMapList().get(i)); //$NON-NLS-1$
-                        return getMindMapList().get(i);
-                    }
-                }
+                log.debug("Leaving findMapByChildNode(): " + map); //$NON-NLS-1$
+                return map;
             }
             log.error("Leaving findMapByChildNode(): null, object not found"); //$NON-NLS-1$
             return null;
@@ -409,24 +542,45 @@ public class MindMap extends Observable implements Serializable {
     }
 
     /**
-     * Finds an IdeaNodeView object by a given ideaNodeID.
+     * Checks if two IdeaNodes are members of the same Map.
+     * 
+     * @param first
+     *            the first IdeaNode
+     * @param second
+     *            the second IdeaNode
+     * @return true, if both IdeaNodes are part of the same Map
+     */
+    public boolean isInSameMap(IdeaNode first, IdeaNode second) {
+
+        log.debug("Entering isInSameMap(first=" + first + ", second=" + second + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        if (first != null && second != null) {
+            Map map = first.getContainingMap();
+            boolean result = map != null && map == second.getContainingMap();
+
+            log.debug("Leaving isInSameMap(): " + result); //$NON-NLS-1$
+            return result;
+        }
+        log.error("Leaving isInSameMap(): false, invalid null input"); //$NON-NLS-1$
+        return false;
+    }
+
+    /**
+     * Finds an IdeaNode object by a given ideaNodeID via the ID index.
      * 
      * @param ideaNodeID
-     *            the desired IdeaNodeView
-     * @return the IdeaNodeView with the given ideaNodeID or null if it hasn't
-     *         been found
+     *            the ID of the desired IdeaNode
+     * @return the IdeaNode with the given ideaNodeID or null if it hasn't been
+     *         found
      */
     protected IdeaNode findIdeaNodeByID(long ideaNodeID) {
 
         log.debug("Entering findIdeaNodeByID(idea=" + ideaNodeID + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-        // Search the list of IdeaNodes for the IdeaNodeView with the given ID
-        for (int i = 0; i < getMindMapIdeaNodeList().size(); i++) {
-            if (getMindMapIdeaNodeList().get(i).getIdeaID() == ideaNodeID) {
-
-                log.debug("Leaving findIdeaNodeByID(): " + getMindMapIdeaNodeList().get(i)); //$NON-NLS-1$
-                return getMindMapIdeaNodeList().get(i);
-            }
+        // Look up the IdeaNode with the given ID in the index
+        IdeaNode result = this.ideaNodeIndex.get(ideaNodeID);
+        if (result != null) {
+            log.debug("Leaving findIdeaNodeByID(): " + result); //$NON-NLS-1$
+            return result;
         }
 
         log.error("Leaving findIdeaNodeByID(): null, object not found"); //$NON-NLS-1$
@@ -434,7 +588,10 @@ public class MindMap extends Observable implements Serializable {
     }
 
     /**
-     * Saves the current MindMap to disc via object serialization.
+     * Saves the current MindMap to disc in the binary .mindMap format. If the
+     * MindMap has been loaded from or saved to the same file before, only the
+     * changes are appended to the journal of the file (see
+     * {@link MindMapJournal}).
      * 
      * @return result of saving
      */
@@ -450,6 +607,91 @@ public class MindMap extends Observable implements Serializable {
 
     }
 
+    /**
+     * <p>
+     * Returns an immutable snapshot of the current state of the MindMap.
+     * </p>
+     * 
+     * <p>
+     * Only the IdeaNodes changed since the last snapshot are copied, all other
+     * IdeaNodeSnapshots are shared with the last snapshot. If nothing has
+     * changed, the last snapshot itself is returned.
+     * </p>
+     * 
+     * <p>
+     * Must be called on the thread that mutates the model (the render thread,
+     * see {@link AppModel#submitCommand(IModelCommand)}). The returned snapshot
+     * can be read by any thread without locking.
+     * </p>
+     * 
+     * @return the current snapshot
+     */
+    public MindMapSnapshot snapshot() {
+
+        log.debug("Entering snapshot()"); //$NON-NLS-1$
+
+        if (this.lastSnapshot != null && this.snapshotDirtyIdeaNodes.isEmpty()
+                && !this.snapshotMetaDirty) {
+            log.debug("Leaving snapshot(): unchanged " + this.lastSnapshot); //$NON-NLS-1$
+            return this.lastSnapshot;
+        }
+
+        PersistentLongMap<IdeaNodeSnapshot> ideaNodes;
+        long version;
+        if (this.lastSnapshot == null) {
+            // First snapshot, copy all ideaNodes
+            ideaNodes = PersistentLongMap.empty();
+            for (IdeaNode ideaNode : this.mindMapIdeaNodeList) {
+                ideaNodes = ideaNodes.put(ideaNode.getIdeaID(),
+                        new IdeaNodeSnapshot(ideaNode));
+                ideaNode.clearSnapshotDirty();
+            }
+            version = 1;
+        } else {
+            // Copy changed ideaNodes only
+            ideaNodes = this.lastSnapshot.getIdeaNodeMap();
+            for (IdeaNode ideaNode : this.snapshotDirtyIdeaNodes) {
+                long ideaID = ideaNode.getIdeaID();
+                if (this.ideaNodeIndex.get(ideaID) == ideaNode) {
+                    ideaNodes = ideaNodes.put(ideaID, new IdeaNodeSnapshot(
+                            ideaNode));
+                    ideaNode.clearSnapshotDirty();
+                } else if (this.ideaNodeIndex.get(ideaID) == null) {
+                    ideaNodes = ideaNodes.remove(ideaID);
+                }
+            }
+            version = this.lastSnapshot.getVersion() + 1;
+        }
+        this.snapshotDirtyIdeaNodes.clear();
+        this.snapshotMetaDirty = false;
+
+        long[] mapIDs = new long[this.mindMapList.size()];
+        long[] mapRootIDs = new long[mapIDs.length];
+        for (int i = 0; i < mapIDs.length; i++) {
+            Map map = this.mindMapList.get(i);
+            mapIDs[i] = map.getMapID();
+            mapRootIDs[i] = map.getRootNode().getIdeaID();
+        }
+
+        this.lastSnapshot = new MindMapSnapshot(version, this.mindMapId,
+                this.mindMapTitle, ModelIDGenerator.getLastID(), ideaNodes,
+                mapIDs, mapRootIDs);
+
+        log.debug("Leaving snapshot(): " + this.lastSnapshot); //$NON-NLS-1$
+        return this.lastSnapshot;
+    }
+
+    /**
+     * Registers a changed IdeaNode for the next snapshot. Called by
+     * {@link IdeaNode#markSnapshotDirty()} once per IdeaNode and snapshot.
+     * 
+     * @param ideaNode
+     *            the changed IdeaNode
+     */
+    protected void addSnapshotDirtyIdeaNode(IdeaNode ideaNode) {
+        this.snapshotDirtyIdeaNodes.add(ideaNode);
+    }
+
     /* **********Utility methods********** */
     /**
      * <p>
@@ -559,19 +801,231 @@ public class MindMap extends Observable implements Serializable {
     }
 
     /**
-     * Communicates changes to all registered Observers.
+     * <p>
+     * Opens a batch. Until the matching {@link #commit()}, notifications of
+     * this MindMap and of IdeaNodes changed via this MindMap are collected
+     * instead of being delivered one by one. Batches may be nested, only the
+     * outermost commit() delivers the changes.
+     * </p>
+     * 
+     * <p>
+     * Callers must always call commit(), even if an operation within the batch
+     * fails.
+     * </p>
+     */
+    public void beginBatch() {
+
+        log.debug("Entering beginBatch()"); //$NON-NLS-1$
+        if (this.batchDepth == 0) {
+            this.pendingChanges = new ArrayList<PendingChange>();
+        }
+        this.batchDepth++;
+        log.debug("Leaving beginBatch(): depth " + this.batchDepth); //$NON-NLS-1$
+    }
+
+    /**
+     * <p>
+     * Closes a batch opened by {@link #beginBatch()}. The outermost commit
+     * delivers all collected notifications in their original order, where all
+     * consecutive notifications of the same source are consolidated into a
+     * single MIND_MAP_CHANGES_COMMITTED or IDEA_NODE_CHANGES_COMMITTED
+     * notification with a ModelChangeSet.
+     * </p>
+     */
+    public void commit() {
+
+        log.debug("Entering commit()"); //$NON-NLS-1$
+        if (this.batchDepth == 0) {
+            log.error("Leaving commit(): no batch open"); //$NON-NLS-1$
+            return;
+        }
+        this.batchDepth--;
+        if (this.batchDepth > 0) {
+            log.debug("Leaving commit(): nested batch, depth " + this.batchDepth); //$NON-NLS-1$
+            return;
+        }
+
+        List<PendingChange> changes = this.pendingChanges;
+        this.pendingChanges = null;
+
+        // Deliver runs of notifications with the same source
+        int i = 0;
+        while (i < changes.size()) {
+            Object source = changes.get(i).source;
+            ModelChangeSet changeSet = new ModelChangeSet();
+            while (i < changes.size() && changes.get(i).source == source) {
+                changeSet.add(changes.get(i).notification);
+                i++;
+            }
+            deliverChangeSet(source, changeSet);
+        }
+
+        log.debug("Leaving commit(): " + changes.size() + " notifications delivered"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Returns if a batch is currently open.
+     * 
+     * @return true, if a batch is open
+     */
+    public boolean isBatchOpen() {
+        return this.batchDepth > 0;
+    }
+
+    /**
+     * Publishes changes of an IdeaNode on the event bus with the IdeaNode as
+     * source, or collects them if a batch is open.
+     * 
+     * @param ideaNode
+     *            the changed IdeaNode
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
+     */
+    protected void communicateIdeaNodeChanges(IdeaNode ideaNode,
+            EIdeaNodeChangedStatus status, Object content) {
+
+        if (this.batchDepth > 0) {
+            this.pendingChanges.add(new PendingChange(ideaNode,
+                    new ObserverNotificationObject(status, content)));
+        } else {
+            this.eventBus.publish(ideaNode, status, content);
+        }
+    }
+
+    /**
+     * Publishes a ModelChangeSet on the event bus with the given source. A
+     * change set with a single notification is published as plain event.
+     * 
+     * @param source
+     *            this mindMap or an IdeaNode
+     * @param changeSet
+     *            the change set to deliver
+     */
+    private void deliverChangeSet(Object source, ModelChangeSet changeSet) {
+
+        if (changeSet.size() == 1) {
+            ObserverNotificationObject notification = changeSet.getChanges()
+                    .get(0);
+            this.eventBus.publish(source,
+                    (Enum<?>) notification.getEnumStatus(),
+                    notification.getContent());
+        } else if (source == this) {
+            this.eventBus.publish(source,
+                    EMindMapChangeStatus.MIND_MAP_CHANGES_COMMITTED, changeSet);
+        } else {
+            this.eventBus.publish(source,
+                    EIdeaNodeChangedStatus.IDEA_NODE_CHANGES_COMMITTED,
+                    changeSet);
+        }
+    }
+
+    /**
+     * Rebuilds the ideaNodeIndex from the mindMapIdeaNodeList.
+     */
+    private void rebuildIdeaNodeIndex() {
+
+        log.debug("Entering rebuildIdeaNodeIndex()"); //$NON-NLS-1$
+
+        this.ideaNodeIndex = new LongHashMap<IdeaNode>(
+                this.mindMapIdeaNodeList.size());
+        for (IdeaNode ideaNode : this.mindMapIdeaNodeList) {
+            if (this.ideaNodeIndex.put(ideaNode.getIdeaID(), ideaNode) != null) {
+                log.warn("IdeaNode ID " + ideaNode.getIdeaID() + " is not unique in the MindMap!"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        log.debug("Leaving rebuildIdeaNodeIndex()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Advances the ModelIDGenerator past all IDs used in this MindMap.
+     * Required for MindMaps saved before IDs were issued by the
+     * ModelIDGenerator, which do not carry a lastIssuedID.
+     */
+    private void advanceIDGenerator() {
+
+        log.debug("Entering advanceIDGenerator()"); //$NON-NLS-1$
+
+        ModelIDGenerator.ensureAbove(this.lastIssuedID);
+        ModelIDGenerator.ensureAbove(this.mindMapId);
+        for (IdeaNode ideaNode : this.mindMapIdeaNodeList) {
+            ModelIDGenerator.ensureAbove(ideaNode.getIdeaID());
+            ModelIDGenerator.ensureAbove(ideaNode.getData().getNodeDataID());
+        }
+        for (Map map : this.mindMapList) {
+            ModelIDGenerator.ensureAbove(map.getMapID());
+        }
+
+        log.debug("Leaving advanceIDGenerator()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Writes the MindMap via default serialization and persists the last
+     * issued ID of the ModelIDGenerator.
      * 
-     * @param object
-     *            the observer notification object
+     * @param out
+     *            the object output stream
+     * @throws IOException
+     *             on write errors
      */
-    private void communicateChangesToObserver(ObserverNotificationObject object) {
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        this.lastIssuedID = ModelIDGenerator.getLastID();
+        out.defaultWriteObject();
+    }
 
-        log.debug("Entering communicateChangesToObserver()"); //$NON-NLS-1$
+    /**
+     * Reads the MindMap via default deserialization, rebuilds the transient
+     * ideaNodeIndex and Map memberships, creates a new event bus, attaches
+     * the ideaNodes to the mindMap for snapshots and advances the
+     * ModelIDGenerator.
+     * 
+     * @param in
+     *            the object input stream
+     * @throws IOException
+     *             on read errors
+     * @throws ClassNotFoundException
+     *             if a serialized class cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        this.eventBus = new ModelEventBus();
+        this.snapshotDirtyIdeaNodes = new ArrayList<IdeaNode>();
+        rebuildIdeaNodeIndex();
+        for (IdeaNode ideaNode : this.mindMapIdeaNodeList) {
+            ideaNode.setMindMap(this);
+        }
+        for (Map map : this.mindMapList) {
+            map.assignMembership(map.getRootNode());
+        }
+        advanceIDGenerator();
+    }
 
-        setChanged();
-        notifyObservers(object);
+    /**
+     * Publishes changes of the MindMap on the event bus, or collects them if a
+     * batch is open.
+     * 
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
+     */
+    private void communicateChanges(EMindMapChangeStatus status, Object content) {
+
+        if (log.isTraceEnabled()) {
+            log.trace("Entering communicateChanges(status=" + status + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (this.batchDepth > 0) {
+            this.pendingChanges.add(new PendingChange(this,
+                    new ObserverNotificationObject(status, content)));
+        } else {
+            this.eventBus.publish(this, status, content);
+        }
 
-        log.debug("Leaving communicateChangesToObserver()"); //$NON-NLS-1$
+        log.trace("Leaving communicateChanges()"); //$NON-NLS-1$
     }
 
     /* ********Overridden methods******** */
@@ -656,4 +1110,30 @@ public class MindMap extends Observable implements Serializable {
         return true;
     }
 
+    /* **********Inner classes********** */
+    /**
+     * A notification collected during an open batch together with its source.
+     */
+    private static class PendingChange {
+
+        /** The source of the notification, the mindMap or an IdeaNode */
+        private final Object                     source;
+
+        /** The notification */
+        private final ObserverNotificationObject notification;
+
+        /**
+         * Constructor. Instantiates a new PendingChange.
+         * 
+         * @param source
+         *            the source of the notification
+         * @param notification
+         *            the notification
+         */
+        PendingChange(Object source, ObserverNotificationObject notification) {
+            this.source = source;
+            this.notification = notification;
+        }
+    }
+
 }
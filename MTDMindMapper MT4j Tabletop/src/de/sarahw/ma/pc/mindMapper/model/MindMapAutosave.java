@@ -0,0 +1,287 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Saves the loaded MindMap periodically in the background. Autosaves are
+ * rate-limited to one per interval and only written if the MindMap has
+ * changed since the last autosave.
+ * </p>
+ * 
+ * <p>
+ * Must be driven by the render thread, which calls {@link #isDue(long)} once
+ * per frame and {@link #run(MindMap, long)} when an autosave is due. The only
+ * work on the render thread is taking the snapshot, which copies the changed
+ * ideaNodes only; encoding and writing run on the save thread of the
+ * {@link MindMapSaveExecutor}. If taking the snapshot exceeds the frame
+ * budget, the interval is doubled (up to MAX_INTERVAL_FACTOR times the
+ * configured interval) until a snapshot fits the budget again.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapSaveExecutor
+ */
+public final class MindMapAutosave {
+
+    private static Logger             log                        = Logger.getLogger(MindMapAutosave.class);
+
+    /** The default interval between two autosaves in milliseconds */
+    public static final long          DEFAULT_INTERVAL_MILLIS    = 60 * 1000;
+
+    /** The default render thread time budget for an autosave in nanoseconds */
+    public static final long          DEFAULT_FRAME_BUDGET_NANOS = 4 * 1000 * 1000;
+
+    /** The maximum factor the interval is increased by */
+    private static final int          MAX_INTERVAL_FACTOR        = 8;
+
+    /** Constant for "no autosave has been run yet" */
+    private static final long         NOT_STARTED                = Long.MIN_VALUE;
+
+    /** The executor writing the autosaves */
+    private final MindMapSaveExecutor saveExecutor;
+
+    /** The callback of the autosaves */
+    private final AutosaveCallback    callback                   = new AutosaveCallback();
+
+    /** Flag indicating if autosaving is enabled */
+    private boolean                   enabled                    = true;
+
+    /** The configured interval between two autosaves in milliseconds */
+    private long                      intervalMillis             = DEFAULT_INTERVAL_MILLIS;
+
+    /** The current interval, increased while the frame budget is exceeded */
+    private long                      currentIntervalMillis      = DEFAULT_INTERVAL_MILLIS;
+
+    /** The render thread time budget for an autosave in nanoseconds */
+    private long                      frameBudgetNanos           = DEFAULT_FRAME_BUDGET_NANOS;
+
+    /** The time of the last autosave check in milliseconds */
+    private long                      lastRunMillis              = NOT_STARTED;
+
+    /** The last snapshot handed to the save thread, null after a failure */
+    private MindMapSnapshot           lastSnapshot;
+
+    /** Flag indicating if an autosave is being written */
+    private boolean                   saving;
+
+    /** The number of autosaves written successfully */
+    private int                       savedCount;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapAutosave with the default
+     * interval and frame budget.
+     * 
+     * @param saveExecutor
+     *            the executor writing the autosaves
+     */
+    public MindMapAutosave(MindMapSaveExecutor saveExecutor) {
+        log.debug("Executing MindMapAutosave()"); //$NON-NLS-1$
+        this.saveExecutor = saveExecutor;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns if autosaving is enabled.
+     * 
+     * @return the enabled flag
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Enables or disables autosaving.
+     * 
+     * @param enabled
+     *            the enabled flag to set
+     */
+    public void setEnabled(boolean enabled) {
+        log.debug("Entering setEnabled(enabled=" + enabled + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.enabled = enabled;
+        log.debug("Leaving setEnabled()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the configured interval between two autosaves.
+     * 
+     * @return the intervalMillis
+     */
+    public long getIntervalMillis() {
+        return this.intervalMillis;
+    }
+
+    /**
+     * Sets the interval between two autosaves.
+     * 
+     * @param intervalMillis
+     *            the intervalMillis to set, must be positive
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        log.debug("Entering setIntervalMillis(intervalMillis=" + intervalMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive"); //$NON-NLS-1$
+        }
+        this.intervalMillis = intervalMillis;
+        this.currentIntervalMillis = intervalMillis;
+        log.debug("Leaving setIntervalMillis()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the current interval, which is increased while taking the
+     * snapshots exceeds the frame budget.
+     * 
+     * @return the currentIntervalMillis
+     */
+    public long getCurrentIntervalMillis() {
+        return this.currentIntervalMillis;
+    }
+
+    /**
+     * Sets the render thread time budget for an autosave.
+     * 
+     * @param frameBudgetNanos
+     *            the frameBudgetNanos to set
+     */
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        log.debug("Entering setFrameBudgetNanos(frameBudgetNanos=" + frameBudgetNanos + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.frameBudgetNanos = frameBudgetNanos;
+        log.debug("Leaving setFrameBudgetNanos()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the number of autosaves written successfully.
+     * 
+     * @return the savedCount
+     */
+    public int getSavedCount() {
+        return this.savedCount;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Checks if an autosave is due. The first call starts the interval.
+     * Called by the render thread once per frame.
+     * 
+     * @param nowMillis
+     *            the current time in milliseconds (monotonic)
+     * @return true, if {@link #run(MindMap, long)} should be called
+     */
+    public boolean isDue(long nowMillis) {
+        if (!this.enabled || this.saving) {
+            return false;
+        }
+        if (this.lastRunMillis == NOT_STARTED) {
+            this.lastRunMillis = nowMillis;
+            return false;
+        }
+        return nowMillis - this.lastRunMillis >= this.currentIntervalMillis;
+    }
+
+    /**
+     * Takes a snapshot of the MindMap and hands it to the save thread if the
+     * MindMap has changed since the last autosave. Called by the render
+     * thread when {@link #isDue(long)} returned true, after the model has been
+     * updated.
+     * 
+     * @param mindMap
+     *            the MindMap to save
+     * @param nowMillis
+     *            the current time in milliseconds (monotonic)
+     * @return true, if an autosave has been started
+     */
+    public boolean run(MindMap mindMap, long nowMillis) {
+
+        log.debug("Entering run(mindMap=" + mindMap + ", nowMillis=" + nowMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        this.lastRunMillis = nowMillis;
+        if (mindMap == null) {
+            log.debug("Leaving run(): false, no MindMap"); //$NON-NLS-1$
+            return false;
+        }
+
+        long start = System.nanoTime();
+        MindMapSnapshot snapshot = mindMap.snapshot();
+        long snapshotNanos = System.nanoTime() - start;
+
+        // Back off while the snapshots don't fit the frame budget
+        if (snapshotNanos > this.frameBudgetNanos) {
+            this.currentIntervalMillis = Math.min(
+                    this.currentIntervalMillis * 2, this.intervalMillis
+                            * MAX_INTERVAL_FACTOR);
+            log.warn("Autosave snapshot took " + snapshotNanos / 1000 //$NON-NLS-1$
+                    + " us, interval increased to " + this.currentIntervalMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+        } else {
+            this.currentIntervalMillis = this.intervalMillis;
+        }
+
+        // An unchanged MindMap returns the same snapshot
+        if (snapshot == this.lastSnapshot) {
+            log.debug("Leaving run(): false, no changes"); //$NON-NLS-1$
+            return false;
+        }
+
+        this.lastSnapshot = snapshot;
+        this.saving = true;
+        this.saveExecutor.save(mindMap, this.callback);
+
+        log.debug("Leaving run(): true"); //$NON-NLS-1$
+        return true;
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Receives the results of the autosaves on the render thread.
+     */
+    private class AutosaveCallback implements IMindMapSaveCallback {
+
+        /**
+         * Counts the successful autosave.
+         * 
+         * @param snapshot
+         *            the saved snapshot
+         */
+        @Override
+        public void saveSucceeded(MindMapSnapshot snapshot) {
+            MindMapAutosave.this.saving = false;
+            MindMapAutosave.this.savedCount++;
+        }
+
+        /**
+         * Forgets the last snapshot, so the next autosave is written even if
+         * the MindMap doesn't change anymore.
+         * 
+         * @param snapshot
+         *            the snapshot that could not be saved
+         */
+        @Override
+        public void saveFailed(MindMapSnapshot snapshot) {
+            log.error("Autosave of " + snapshot + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
+            MindMapAutosave.this.saving = false;
+            MindMapAutosave.this.lastSnapshot = null;
+        }
+    }
+
+}
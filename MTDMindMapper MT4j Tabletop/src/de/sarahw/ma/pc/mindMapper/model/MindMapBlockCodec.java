@@ -0,0 +1,283 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * A fast LZ77 block codec in the style of LZ4, used for the compressed
+ * sections of .mindMap files (see {@link MindMapBlockOutputStream}) and the
+ * frames of the {@link MindMapJournal}.
+ * </p>
+ * 
+ * <p>
+ * A compressed block is a sequence of sequences. Every sequence starts with a
+ * token: the high nibble is the number of literals, the low nibble the match
+ * length - MIN_MATCH. A nibble of 15 is followed by extension bytes, which
+ * are added until a byte is less than 255. The literals follow the literal
+ * length, the match offset (2 bytes, little endian) and the match length
+ * extension follow the literals. The last sequence consists of literals only.
+ * </p>
+ * 
+ * <p>
+ * Matches are found with a hash table of 4 byte sequences, so compressing
+ * costs time linear to the block size. Not thread safe, every thread must use
+ * its own instance.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+final class MindMapBlockCodec {
+
+    /** The minimum match length */
+    private static final int MIN_MATCH     = 4;
+
+    /** The number of bytes at the end of a block that are always literals */
+    private static final int LAST_LITERALS = 5;
+
+    /** The maximum match offset */
+    private static final int MAX_OFFSET    = 0xFFFF;
+
+    /** The number of bits of the hash table index */
+    private static final int HASH_BITS     = 12;
+
+    /** The maximum value of a nibble, followed by extension bytes */
+    private static final int NIBBLE_MAX    = 15;
+
+    /** The hash table, positions + 1 of the last 4 byte sequences */
+    private final int[]      hashTable     = new int[1 << HASH_BITS];
+
+    /* **********Class methods********** */
+    /**
+     * Returns the maximum length of a compressed block.
+     * 
+     * @param length
+     *            the length of the uncompressed block
+     * @return the maximum compressed length
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Decompresses a block.
+     * 
+     * @param src
+     *            the compressed block
+     * @param srcOffset
+     *            the offset of the compressed block
+     * @param srcLength
+     *            the length of the compressed block
+     * @param dst
+     *            the array for the uncompressed block
+     * @param dstOffset
+     *            the offset of the uncompressed block
+     * @param dstLength
+     *            the length of the uncompressed block
+     * @throws IOException
+     *             if the block is corrupt
+     */
+    static void decompress(byte[] src, int srcOffset, int srcLength,
+            byte[] dst, int dstOffset, int dstLength) throws IOException {
+
+        int s = srcOffset;
+        int srcEnd = srcOffset + srcLength;
+        int d = dstOffset;
+        int dstEnd = dstOffset + dstLength;
+
+        try {
+            while (true) {
+                int token = src[s++] & 0xFF;
+
+                // Literals
+                int literals = token >>> 4;
+                if (literals == NIBBLE_MAX) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (literals > srcEnd - s || literals > dstEnd - d) {
+                    throw new IOException("Corrupt compressed block"); //$NON-NLS-1$
+                }
+                System.arraycopy(src, s, dst, d, literals);
+                s += literals;
+                d += literals;
+                if (s == srcEnd) {
+                    break;
+                }
+
+                // Match
+                int offset = (src[s++] & 0xFF) | ((src[s++] & 0xFF) << 8);
+                int match = (token & NIBBLE_MAX) + MIN_MATCH;
+                if ((token & NIBBLE_MAX) == NIBBLE_MAX) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xFF;
+                        match += b;
+                    } while (b == 255);
+                }
+                int ref = d - offset;
+                if (offset == 0 || ref < dstOffset || match > dstEnd - d) {
+                    throw new IOException("Corrupt compressed block"); //$NON-NLS-1$
+                }
+                // Byte by byte, the match may overlap the output
+                for (int i = 0; i < match; i++) {
+                    dst[d++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt compressed block"); //$NON-NLS-1$
+        }
+
+        if (d != dstEnd) {
+            throw new IOException("Corrupt compressed block, " + (dstEnd - d) + " bytes missing"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Compresses a block.
+     * 
+     * @param src
+     *            the uncompressed block
+     * @param srcOffset
+     *            the offset of the uncompressed block
+     * @param srcLength
+     *            the length of the uncompressed block
+     * @param dst
+     *            the array for the compressed block, must have room for
+     *            maxCompressedLength(srcLength) bytes
+     * @param dstOffset
+     *            the offset of the compressed block
+     * @return the length of the compressed block
+     */
+    int compress(byte[] src, int srcOffset, int srcLength, byte[] dst,
+            int dstOffset) {
+
+        int[] table = this.hashTable;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+
+        int srcEnd = srcOffset + srcLength;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int anchor = srcOffset;
+        int s = srcOffset;
+        int d = dstOffset;
+
+        while (s + MIN_MATCH <= matchLimit) {
+            int sequence = readInt(src, s);
+            int h = hash(sequence);
+            int ref = table[h] - 1;
+            table[h] = s + 1;
+
+            if (ref < srcOffset || s - ref > MAX_OFFSET
+                    || readInt(src, ref) != sequence) {
+                s++;
+                continue;
+            }
+
+            int match = MIN_MATCH;
+            while (s + match < matchLimit && src[ref + match] == src[s + match]) {
+                match++;
+            }
+
+            // Sequence: token, literals, offset, match length
+            int literals = s - anchor;
+            int tokenPosition = d++;
+            d = writeLength(dst, d, literals);
+            System.arraycopy(src, anchor, dst, d, literals);
+            d += literals;
+            dst[d++] = (byte) (s - ref);
+            dst[d++] = (byte) ((s - ref) >>> 8);
+            d = writeLength(dst, d, match - MIN_MATCH);
+            dst[tokenPosition] = (byte) ((Math.min(literals, NIBBLE_MAX) << 4) | Math
+                    .min(match - MIN_MATCH, NIBBLE_MAX));
+
+            s += match;
+            anchor = s;
+        }
+
+        // Last literals
+        int literals = srcEnd - anchor;
+        dst[d++] = (byte) (Math.min(literals, NIBBLE_MAX) << 4);
+        d = writeLength(dst, d, literals);
+        System.arraycopy(src, anchor, dst, d, literals);
+        d += literals;
+
+        return d - dstOffset;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Writes the extension bytes of a length that doesn't fit into a nibble.
+     * 
+     * @param dst
+     *            the array
+     * @param d
+     *            the position
+     * @param length
+     *            the length
+     * @return the position after the extension bytes
+     */
+    private static int writeLength(byte[] dst, int d, int length) {
+        int pos = d;
+        if (length >= NIBBLE_MAX) {
+            int rest = length - NIBBLE_MAX;
+            while (rest >= 255) {
+                dst[pos++] = (byte) 255;
+                rest -= 255;
+            }
+            dst[pos++] = (byte) rest;
+        }
+        return pos;
+    }
+
+    /**
+     * Reads 4 bytes little endian.
+     * 
+     * @param src
+     *            the array
+     * @param s
+     *            the position
+     * @return the int value
+     */
+    private static int readInt(byte[] src, int s) {
+        return (src[s] & 0xFF) | ((src[s + 1] & 0xFF) << 8)
+                | ((src[s + 2] & 0xFF) << 16) | ((src[s + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * Returns the hash table index of a 4 byte sequence.
+     * 
+     * @param sequence
+     *            the sequence
+     * @return the index
+     */
+    private static int hash(int sequence) {
+        return (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+}
@@ -0,0 +1,282 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * Reads a stream written by {@link MindMapBlockOutputStream}. Blocks are read
+ * from the underlying stream only when their first byte is needed, so the
+ * underlying stream is never read past the last block that is used.
+ * </p>
+ * 
+ * <p>
+ * {@link #skip(long)} passes whole blocks without decompressing them, so
+ * reading a single section decompresses only the blocks of that section.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapBlockOutputStream
+ */
+final class MindMapBlockInputStream extends FilterInputStream {
+
+    /** The underlying stream */
+    private final DataInputStream data;
+
+    /** The uncompressed bytes of the current block */
+    private byte[]                block            = new byte[0];
+
+    /** The compressed bytes of the current block */
+    private byte[]                compressed       = new byte[0];
+
+    /** The number of bytes in the current block */
+    private int                   blockLength;
+
+    /** The position in the current block */
+    private int                   position;
+
+    /** The uncompressed length of the next block or -1 if not read yet */
+    private int                   pendingRawLength = -1;
+
+    /** The number of blocks decompressed */
+    private int                   decodedCount;
+
+    /** The number of blocks skipped without decompressing */
+    private int                   skippedCount;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapBlockInputStream.
+     * 
+     * @param in
+     *            the underlying stream, positioned at a block header
+     */
+    MindMapBlockInputStream(InputStream in) {
+        super(in);
+        this.data = new DataInputStream(in);
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of blocks decompressed.
+     * 
+     * @return the decodedCount
+     */
+    int getDecodedCount() {
+        return this.decodedCount;
+    }
+
+    /**
+     * Returns the number of blocks skipped without decompressing.
+     * 
+     * @return the skippedCount
+     */
+    int getSkippedCount() {
+        return this.skippedCount;
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Reads a byte.
+     * 
+     * @return the byte or -1 at the end of the stream
+     * @throws IOException
+     *             on read errors or if a block is corrupt
+     */
+    @Override
+    public int read() throws IOException {
+        if (this.position == this.blockLength && !nextBlock(true)) {
+            return -1;
+        }
+        return this.block[this.position++] & 0xFF;
+    }
+
+    /**
+     * Reads bytes into an array.
+     * 
+     * @param b
+     *            the array
+     * @param off
+     *            the offset
+     * @param len
+     *            the maximum number of bytes
+     * @return the number of bytes read or -1 at the end of the stream
+     * @throws IOException
+     *             on read errors or if a block is corrupt
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.position == this.blockLength && !nextBlock(true)) {
+            return -1;
+        }
+        int count = Math.min(len, this.blockLength - this.position);
+        System.arraycopy(this.block, this.position, b, off, count);
+        this.position += count;
+        return count;
+    }
+
+    /**
+     * Skips bytes. Blocks that are skipped completely are not decompressed.
+     * 
+     * @param n
+     *            the number of bytes to skip
+     * @return the number of bytes skipped
+     * @throws IOException
+     *             on read errors or if a block is corrupt
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            if (this.position == this.blockLength) {
+                // Skip the next block if it ends before the target
+                int rawLength = peekRawLength();
+                if (rawLength < 0) {
+                    break;
+                }
+                if (rawLength <= remaining) {
+                    nextBlock(false);
+                    remaining -= rawLength;
+                    continue;
+                }
+                nextBlock(true);
+            }
+            int count = (int) Math.min(remaining, this.blockLength
+                    - this.position);
+            this.position += count;
+            remaining -= count;
+        }
+        return n - remaining;
+    }
+
+    /**
+     * Returns the number of bytes left in the current block.
+     * 
+     * @return the number of bytes available without reading
+     */
+    @Override
+    public int available() {
+        return this.blockLength - this.position;
+    }
+
+    /**
+     * Marks are not supported.
+     * 
+     * @return false
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Reads the uncompressed length of the next block.
+     * 
+     * @return the length or -1 at the end of the stream
+     * @throws IOException
+     *             on read errors
+     */
+    private int peekRawLength() throws IOException {
+        if (this.pendingRawLength < 0) {
+            int b = this.data.read();
+            if (b < 0) {
+                return -1;
+            }
+            this.pendingRawLength = (b << 24) | (this.data.readUnsignedByte() << 16)
+                    | (this.data.readUnsignedByte() << 8)
+                    | this.data.readUnsignedByte();
+            if (this.pendingRawLength <= 0
+                    || this.pendingRawLength > MindMapFileFormat.BLOCK_SIZE) {
+                throw new IOException("Corrupt block length " + this.pendingRawLength); //$NON-NLS-1$
+            }
+        }
+        return this.pendingRawLength;
+    }
+
+    /**
+     * Reads the next block.
+     * 
+     * @param decode
+     *            false, to skip the block without decompressing it
+     * @return false at the end of the stream
+     * @throws IOException
+     *             on read errors or if the block is corrupt
+     */
+    private boolean nextBlock(boolean decode) throws IOException {
+
+        int rawLength = peekRawLength();
+        if (rawLength < 0) {
+            return false;
+        }
+        this.pendingRawLength = -1;
+        int storedLength = this.data.readInt();
+        if (storedLength <= 0 || storedLength > rawLength) {
+            throw new IOException("Corrupt block length " + storedLength); //$NON-NLS-1$
+        }
+
+        if (!decode) {
+            long remaining = storedLength;
+            while (remaining > 0) {
+                long skipped = this.data.skip(remaining);
+                if (skipped <= 0) {
+                    if (this.data.read() < 0) {
+                        throw new EOFException();
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+            this.blockLength = 0;
+            this.position = 0;
+            this.skippedCount++;
+            return true;
+        }
+
+        if (this.block.length < rawLength) {
+            this.block = new byte[rawLength];
+        }
+        if (storedLength == rawLength) {
+            this.data.readFully(this.block, 0, rawLength);
+        } else {
+            if (this.compressed.length < storedLength) {
+                this.compressed = new byte[storedLength];
+            }
+            this.data.readFully(this.compressed, 0, storedLength);
+            MindMapBlockCodec.decompress(this.compressed, 0, storedLength,
+                    this.block, 0, rawLength);
+        }
+        this.blockLength = rawLength;
+        this.position = 0;
+        this.decodedCount++;
+        return true;
+    }
+
+}
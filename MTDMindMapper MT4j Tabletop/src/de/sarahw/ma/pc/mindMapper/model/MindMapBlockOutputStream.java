@@ -0,0 +1,221 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ * Writes a stream as a sequence of independently compressed blocks (see
+ * {@link MindMapFileFormat}). Every block starts with its uncompressed and
+ * its stored length, so readers can skip blocks without decompressing them.
+ * Blocks that don't get smaller are stored uncompressed.
+ * </p>
+ * 
+ * <p>
+ * {@link #flush()} ends the current block. Closing the stream closes the
+ * underlying stream, {@link #finish()} ends the last block without closing
+ * it.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapBlockInputStream
+ * @see MindMapBlockCodec
+ */
+final class MindMapBlockOutputStream extends FilterOutputStream {
+
+    /** The codec */
+    private final MindMapBlockCodec codec = new MindMapBlockCodec();
+
+    /** The uncompressed bytes of the current block */
+    private final byte[]            block;
+
+    /** The compressed bytes of the current block and its lengths */
+    private final byte[]            compressed;
+
+    /** The number of bytes in the current block */
+    private int                     blockLength;
+
+    /** The number of blocks written */
+    private int                     blockCount;
+
+    /** The number of bytes written to the underlying stream */
+    private long                    storedBytes;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapBlockOutputStream with blocks of
+     * BLOCK_SIZE bytes.
+     * 
+     * @param out
+     *            the underlying stream
+     */
+    MindMapBlockOutputStream(OutputStream out) {
+        this(out, MindMapFileFormat.BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor. Instantiates a new MindMapBlockOutputStream.
+     * 
+     * @param out
+     *            the underlying stream
+     * @param blockSize
+     *            the maximum number of uncompressed bytes per block, not
+     *            greater than BLOCK_SIZE
+     */
+    MindMapBlockOutputStream(OutputStream out, int blockSize) {
+        super(out);
+        this.block = new byte[blockSize];
+        this.compressed = new byte[MindMapFileFormat.BLOCK_HEADER_SIZE
+                + MindMapBlockCodec.maxCompressedLength(blockSize)];
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of blocks written.
+     * 
+     * @return the blockCount
+     */
+    int getBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * Returns the number of bytes written to the underlying stream, including
+     * the block headers.
+     * 
+     * @return the storedBytes
+     */
+    long getStoredBytes() {
+        return this.storedBytes;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Ends the current block without flushing the underlying stream.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    void finish() throws IOException {
+
+        if (this.blockLength == 0) {
+            return;
+        }
+
+        int length = this.codec.compress(this.block, 0, this.blockLength,
+                this.compressed, MindMapFileFormat.BLOCK_HEADER_SIZE);
+        if (length >= this.blockLength) {
+            // Store uncompressed
+            length = this.blockLength;
+            System.arraycopy(this.block, 0, this.compressed,
+                    MindMapFileFormat.BLOCK_HEADER_SIZE, length);
+        }
+        putInt(this.compressed, 0, this.blockLength);
+        putInt(this.compressed, 4, length);
+
+        int total = MindMapFileFormat.BLOCK_HEADER_SIZE + length;
+        this.out.write(this.compressed, 0, total);
+        this.storedBytes += total;
+        this.blockCount++;
+        this.blockLength = 0;
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Writes a byte.
+     * 
+     * @param b
+     *            the byte
+     * @throws IOException
+     *             on write errors
+     */
+    @Override
+    public void write(int b) throws IOException {
+        if (this.blockLength == this.block.length) {
+            finish();
+        }
+        this.block[this.blockLength++] = (byte) b;
+    }
+
+    /**
+     * Writes bytes of an array.
+     * 
+     * @param b
+     *            the array
+     * @param off
+     *            the offset
+     * @param len
+     *            the number of bytes
+     * @throws IOException
+     *             on write errors
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (this.blockLength == this.block.length) {
+                finish();
+            }
+            int count = Math.min(remaining, this.block.length
+                    - this.blockLength);
+            System.arraycopy(b, offset, this.block, this.blockLength, count);
+            this.blockLength += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Ends the current block and flushes the underlying stream.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Override
+    public void flush() throws IOException {
+        finish();
+        this.out.flush();
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Stores an int big endian in a byte array.
+     * 
+     * @param buffer
+     *            the byte array
+     * @param offset
+     *            the offset
+     * @param value
+     *            the value
+     */
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,511 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * The catalog of the .mindMap files in the save folder, indexed by title and
+ * sorted by modification time (latest first).
+ * </p>
+ * 
+ * <p>
+ * The catalog is built once and then updated incrementally: files written by
+ * the application are updated on their own (see {@link #update(File)}), and
+ * {@link #refresh()} only rescans the folder if its modification time has
+ * changed, e.g. because files have been copied into it. A rescan reuses the
+ * entries of unchanged files, so only the headers of new and changed files
+ * are read. Refreshes can run periodically on a background thread (see
+ * {@link #startPolling(long)}).
+ * </p>
+ * 
+ * <p>
+ * The entries are published as an immutable state, so reading the catalog
+ * never locks and never touches the disc. Updates are serialized.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapCatalogEntry
+ */
+public final class MindMapCatalog {
+
+    private static Logger                                log                      = Logger.getLogger(MindMapCatalog.class);
+
+    /**
+     * The time within which changes of a folder may not change its
+     * modification time, depending on the file system
+     */
+    private static final long                            MODIFIED_GRANULARITY     = 2000;
+
+    /** Constant for "the folder has not been scanned yet" */
+    private static final long                            NOT_SCANNED              = Long.MIN_VALUE;
+
+    /** Sorts entries by modification time, latest first, then by title */
+    private static final Comparator<MindMapCatalogEntry> LAST_MODIFIED_COMPARATOR = new LastModifiedComparator();
+
+    /** The save folder */
+    private final File                                   directory;
+
+    /** The published entries, replaced as a whole on every change */
+    private volatile CatalogState                        state;
+
+    /** The modification time of the folder at the last scan (guarded by this) */
+    private long                                         scannedDirectoryModified = NOT_SCANNED;
+
+    /** The number of folder scans (guarded by this) */
+    private int                                          scanCount;
+
+    /** The executor of the polling thread or null (guarded by this) */
+    private ScheduledExecutorService                     pollingExecutor;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new, empty MindMapCatalog of the given
+     * folder. Call {@link #refresh()} to build it.
+     * 
+     * @param directory
+     *            the save folder
+     */
+    public MindMapCatalog(File directory) {
+        log.debug("Executing MindMapCatalog(directory=" + directory + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.directory = directory;
+        this.state = new CatalogState(
+                new HashMap<String, MindMapCatalogEntry>());
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the save folder of the catalog.
+     * 
+     * @return the directory
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Returns the entries sorted by modification time, latest first. Doesn't
+     * lock, the list is not modified by later updates.
+     * 
+     * @return an unmodifiable list of the entries
+     */
+    public List<MindMapCatalogEntry> getEntries() {
+        return this.state.sorted;
+    }
+
+    /**
+     * Returns the entry with the given title. Doesn't lock.
+     * 
+     * @param title
+     *            the title (file name without the .mindMap extension)
+     * @return the entry or null
+     */
+    public MindMapCatalogEntry getEntry(String title) {
+        return this.state.byTitle.get(title);
+    }
+
+    /**
+     * Returns the number of entries. Doesn't lock.
+     * 
+     * @return the number of entries
+     */
+    public int size() {
+        return this.state.sorted.size();
+    }
+
+    /**
+     * Returns the number of folder scans.
+     * 
+     * @return the scanCount
+     */
+    synchronized int getScanCount() {
+        return this.scanCount;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Rescans the folder if it has changed since the last scan. Backups of
+     * files whose save has been interrupted are restored.
+     * 
+     * @return true, if the entries have changed
+     */
+    public synchronized boolean refresh() {
+
+        log.debug("Entering refresh()"); //$NON-NLS-1$
+
+        long directoryModified = this.directory.lastModified();
+        if (directoryModified == this.scannedDirectoryModified) {
+            log.debug("Leaving refresh(): false, folder unchanged"); //$NON-NLS-1$
+            return false;
+        }
+
+        File[] files = this.directory.listFiles();
+        if (files != null && restoreBackupFiles(files)) {
+            directoryModified = this.directory.lastModified();
+            files = this.directory.listFiles();
+        }
+        this.scanCount++;
+
+        // Changes made right after the scan might not change the modification
+        // time again, so a recent modification is scanned again next time
+        this.scannedDirectoryModified = (System.currentTimeMillis()
+                - directoryModified < MODIFIED_GRANULARITY) ? NOT_SCANNED
+                : directoryModified;
+
+        HashMap<String, MindMapCatalogEntry> byTitle = new HashMap<String, MindMapCatalogEntry>();
+        if (files != null) {
+            HashSet<String> journalNames = new HashSet<String>();
+            for (File file : files) {
+                if (file.getName().endsWith(MindMapJournal.JOURNAL_EXTENSION)) {
+                    journalNames.add(file.getName());
+                }
+            }
+            for (File file : files) {
+                String title = getTitle(file);
+                if (title != null && file.isFile()) {
+                    MindMapCatalogEntry entry = createEntry(file, title,
+                            journalNames.contains(file.getName()
+                                    + MindMapJournal.JOURNAL_EXTENSION));
+                    byTitle.put(title, entry);
+                }
+            }
+        }
+
+        boolean changed = !byTitle.equals(this.state.byTitle);
+        if (changed) {
+            this.state = new CatalogState(byTitle);
+        }
+
+        log.debug("Leaving refresh(): " + changed + ", " + byTitle.size() + " entries"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        return changed;
+    }
+
+    /**
+     * Updates the entry of a single file of the folder after it has been
+     * written, replaced or deleted. Files of other folders are ignored.
+     * 
+     * @param file
+     *            the .mindMap file
+     */
+    public synchronized void update(File file) {
+
+        log.debug("Entering update(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        String title = getTitle(file);
+        if (title == null || !isInDirectory(file)) {
+            log.debug("Leaving update(): not a file of the catalog"); //$NON-NLS-1$
+            return;
+        }
+
+        HashMap<String, MindMapCatalogEntry> byTitle = new HashMap<String, MindMapCatalogEntry>(
+                this.state.byTitle);
+        if (file.isFile()) {
+            byTitle.put(title, createEntry(file, title, MindMapJournal
+                    .getJournalFile(file).isFile()));
+        } else {
+            byTitle.remove(title);
+        }
+        this.state = new CatalogState(byTitle);
+
+        log.debug("Leaving update()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the header of a .mindMap file. The header of a file of the
+     * folder is taken from its entry, which is updated first if the file has
+     * changed since its header was read. The header of a file of another
+     * folder is read every time.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the header or null if the file has no header or can't be read
+     */
+    public MindMapFileHeader getHeader(File file) {
+
+        log.debug("Entering getHeader(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        String title = getTitle(file);
+        if (title != null) {
+            MindMapCatalogEntry entry = getEntry(title);
+            if (!isEntryOf(entry, file) && isInDirectory(file)) {
+                update(file);
+                entry = getEntry(title);
+            }
+            if (isEntryOf(entry, file)) {
+                log.debug("Leaving getHeader(): catalog header"); //$NON-NLS-1$
+                return entry.getHeader();
+            }
+        }
+
+        MindMapFileHeader header = null;
+        try {
+            header = MindMapFileHeader.readHeader(file);
+        } catch (IOException ex) {
+            log.debug(" No header for file " + file + ": " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        log.debug("Leaving getHeader(): " + header); //$NON-NLS-1$
+        return header;
+    }
+
+    /**
+     * Starts refreshing the catalog periodically on a background thread.
+     * 
+     * @param periodMillis
+     *            the time between two refreshes in milliseconds
+     */
+    public synchronized void startPolling(long periodMillis) {
+
+        log.debug("Entering startPolling(periodMillis=" + periodMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        if (this.pollingExecutor == null) {
+            this.pollingExecutor = Executors
+                    .newSingleThreadScheduledExecutor(new PollingThreadFactory());
+            this.pollingExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        log.debug("Leaving startPolling()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Stops the periodic refreshes.
+     */
+    public synchronized void stopPolling() {
+
+        log.debug("Entering stopPolling()"); //$NON-NLS-1$
+
+        if (this.pollingExecutor != null) {
+            this.pollingExecutor.shutdown();
+            this.pollingExecutor = null;
+        }
+
+        log.debug("Leaving stopPolling()"); //$NON-NLS-1$
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates the entry of a file. The entry of an unchanged file is reused,
+     * so its header is not read again.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @param title
+     *            the title
+     * @param hasJournal
+     *            true, if the file has a journal
+     * @return the entry
+     */
+    private MindMapCatalogEntry createEntry(File file, String title,
+            boolean hasJournal) {
+
+        long fileModified = file.lastModified();
+        long fileLength = file.length();
+        long lastModified = fileModified;
+        if (hasJournal) {
+            lastModified = Math.max(lastModified, MindMapJournal
+                    .getJournalFile(file).lastModified());
+        }
+
+        MindMapCatalogEntry previous = this.state.byTitle.get(title);
+        if (previous != null && previous.getLastModified() == lastModified
+                && previous.getFileModified() == fileModified
+                && previous.getFileLength() == fileLength) {
+            return previous;
+        }
+
+        MindMapFileHeader header = null;
+        try {
+            header = MindMapFileHeader.readHeader(file);
+        } catch (IOException ex) {
+            log.debug(" No header for file " + file + ": " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return new MindMapCatalogEntry(file, title, lastModified,
+                fileModified, fileLength, header);
+    }
+
+    /**
+     * Checks if an entry has been created from the current version of a file.
+     * 
+     * @param entry
+     *            the entry or null
+     * @param file
+     *            the .mindMap file
+     * @return true, if the entry belongs to the file and the file is
+     *         unchanged
+     */
+    private static boolean isEntryOf(MindMapCatalogEntry entry, File file) {
+        return entry != null && entry.getFile().equals(file)
+                && entry.getFileModified() == file.lastModified()
+                && entry.getFileLength() == file.length();
+    }
+
+    /**
+     * Checks if a file is located in the folder of the catalog.
+     * 
+     * @param file
+     *            the file
+     * @return true, if the file is located in the folder
+     */
+    private boolean isInDirectory(File file) {
+        try {
+            File parent = file.getCanonicalFile().getParentFile();
+            return parent != null
+                    && parent.equals(this.directory.getCanonicalFile());
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the title of a .mindMap file.
+     * 
+     * @param file
+     *            the file
+     * @return the file name without the .mindMap extension or null if the
+     *         file is no .mindMap file
+     */
+    private static String getTitle(File file) {
+        String name = file.getName();
+        if (!name.endsWith(MindMapSerializer.FILE_EXTENSION)) {
+            return null;
+        }
+        return name.substring(0, name.length()
+                - MindMapSerializer.FILE_EXTENSION.length());
+    }
+
+    /**
+     * Restores the backups of .mindMap files that are missing.
+     * 
+     * @param files
+     *            the files of the folder
+     * @return true, if a backup has been restored
+     * 
+     * @see MindMapSerializer#restoreBackupFile(File)
+     */
+    private static boolean restoreBackupFiles(File[] files) {
+
+        String backupExtension = MindMapSerializer.FILE_EXTENSION
+                + MindMapSerializer.BACKUP_EXTENSION;
+        boolean restored = false;
+        for (File file : files) {
+            String path = file.getPath();
+            if (path.endsWith(backupExtension)) {
+                restored |= MindMapSerializer.restoreBackupFile(new File(path
+                        .substring(0, path.length()
+                                - MindMapSerializer.BACKUP_EXTENSION.length())));
+            }
+        }
+        return restored;
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * The immutable entries of the catalog.
+     */
+    private static class CatalogState {
+
+        /** The entries by title, not modified after construction */
+        private final HashMap<String, MindMapCatalogEntry> byTitle;
+
+        /** The entries sorted by modification time, latest first */
+        private final List<MindMapCatalogEntry>            sorted;
+
+        /**
+         * Constructor. Instantiates a new CatalogState.
+         * 
+         * @param byTitle
+         *            the entries by title, must not be modified afterwards
+         */
+        CatalogState(HashMap<String, MindMapCatalogEntry> byTitle) {
+            this.byTitle = byTitle;
+            ArrayList<MindMapCatalogEntry> entries = new ArrayList<MindMapCatalogEntry>(
+                    byTitle.values());
+            Collections.sort(entries, LAST_MODIFIED_COMPARATOR);
+            this.sorted = Collections.unmodifiableList(entries);
+        }
+    }
+
+    /**
+     * Sorts entries by modification time, latest first, then by title.
+     */
+    private static class LastModifiedComparator implements
+            Comparator<MindMapCatalogEntry> {
+
+        /**
+         * Compares two entries.
+         * 
+         * @param a
+         *            the first entry
+         * @param b
+         *            the second entry
+         * @return a negative value if a was modified later than b
+         */
+        @Override
+        public int compare(MindMapCatalogEntry a, MindMapCatalogEntry b) {
+            if (a.getLastModified() != b.getLastModified()) {
+                return (a.getLastModified() > b.getLastModified()) ? -1 : 1;
+            }
+            return a.getTitle().compareTo(b.getTitle());
+        }
+    }
+
+    /**
+     * Creates the daemon thread for polling the folder.
+     */
+    private static class PollingThreadFactory implements ThreadFactory {
+
+        /**
+         * Creates a new daemon thread with minimal priority.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MindMapCatalog polling"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+}
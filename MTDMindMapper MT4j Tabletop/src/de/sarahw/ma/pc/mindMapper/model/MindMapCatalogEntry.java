@@ -0,0 +1,150 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+
+/**
+ * <p>
+ * An entry of the {@link MindMapCatalog}: a saved .mindMap file with its
+ * title, modification time and header. Immutable.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class MindMapCatalogEntry {
+
+    /** The .mindMap file */
+    private final File              file;
+
+    /** The title, i.e. the file name without extension */
+    private final String            title;
+
+    /** The last modification of the file or its journal */
+    private final long              lastModified;
+
+    /** The modification time of the .mindMap file itself */
+    private final long              fileModified;
+
+    /** The length of the .mindMap file */
+    private final long              fileLength;
+
+    /** The header or null if the file has no header */
+    private final MindMapFileHeader header;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapCatalogEntry.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @param title
+     *            the title
+     * @param lastModified
+     *            the last modification of the file or its journal
+     * @param fileModified
+     *            the modification time of the .mindMap file
+     * @param fileLength
+     *            the length of the .mindMap file
+     * @param header
+     *            the header or null
+     */
+    MindMapCatalogEntry(File file, String title, long lastModified,
+            long fileModified, long fileLength, MindMapFileHeader header) {
+        this.file = file;
+        this.title = title;
+        this.lastModified = lastModified;
+        this.fileModified = fileModified;
+        this.fileLength = fileLength;
+        this.header = header;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the .mindMap file.
+     * 
+     * @return the file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the title, i.e. the file name without extension.
+     * 
+     * @return the title
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Returns the time of the last save, i.e. the last modification of the
+     * .mindMap file or its journal.
+     * 
+     * @return the lastModified time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Returns the header of the file, read when the entry was created.
+     * 
+     * @return the header or null if the file has no header (files of the
+     *         former object serialization and of format version 1)
+     */
+    public MindMapFileHeader getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Returns the modification time of the .mindMap file itself.
+     * 
+     * @return the fileModified
+     */
+    long getFileModified() {
+        return this.fileModified;
+    }
+
+    /**
+     * Returns the length of the .mindMap file.
+     * 
+     * @return the fileLength
+     */
+    long getFileLength() {
+        return this.fileLength;
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a simple String representation of the MindMapCatalogEntry.
+     * 
+     * @return the simple String representation
+     */
+    @Override
+    public String toString() {
+        return "MindMapCatalogEntry [title=" + this.title + ", lastModified=" //$NON-NLS-1$ //$NON-NLS-2$
+                + this.lastModified + "]"; //$NON-NLS-1$
+    }
+
+}
@@ -20,12 +20,10 @@ package de.sarahw.ma.pc.mindMapper.model;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Observable;
 
 import org.apache.log4j.Logger;
 
-import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
 
 /**
  * <p>
@@ -37,7 +35,15 @@ import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
  * </p>
  * 
  * <p>
- * Contains methods for loading a MindMap from disc via object Deserialization.
+ * Contains methods for loading a MindMap from disc via the MindMapDeserializer.
+ * The headers of the save files (see {@link MindMapFileHeader}) are cached, so
+ * listing the saved MindMaps doesn't read a file again until it changes.
+ * </p>
+ * 
+ * <p>
+ * The saved MindMaps are listed by a {@link MindMapCatalog}, which is updated
+ * whenever the application writes a file and polls the save folder for
+ * changes made by others.
  * </p>
  * 
  * @author Sarah Will
@@ -46,12 +52,15 @@ import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
  * 
  */
 
-public class MindMapCollection extends Observable {
+public class MindMapCollection {
+
+    private static Logger            log                 = Logger.getLogger(MindMapCollection.class);
 
-    private static Logger            log       = Logger.getLogger(MindMapCollection.class);
+    /** The time between two polls of the save folder in milliseconds */
+    private static final long        CATALOG_POLL_MILLIS = 2000;
 
     /** The file path for the save files */
-    public static final String       FILE_PATH = "." + File.separator + "save";            //$NON-NLS-1$ //$NON-NLS-2$
+    public static final String       FILE_PATH           = "." + File.separator + "save";            //$NON-NLS-1$ //$NON-NLS-2$
 
     /** The mindMapCollection instance */
     private static MindMapCollection instance;
@@ -59,11 +68,11 @@ public class MindMapCollection extends Observable {
     /** The currently loaded mindMap instance */
     private MindMap                  loadedMindMap;
 
-    /** The list of mindMap files in the mindMapCollection */
-    private List<File>               mindMapCollectionFiles;
+    /** The catalog of the saved mindMaps */
+    private final MindMapCatalog     catalog;
 
-    /** The list of mindMap names in the mindMapCollection */
-    private List<String>             mindMapFileNames;                                     // files
+    /** The event bus for changes of the mindMapCollection */
+    private final ModelEventBus      eventBus            = new ModelEventBus();
 
     /* ***********Constructors*********** */
     /**
@@ -74,8 +83,10 @@ public class MindMapCollection extends Observable {
         super();
         log.debug("Executing MindMapCollection()"); //$NON-NLS-1$     
 
-        // Initialize arrays and get saved files from disc
-        updateMindMapFilesList();
+        // Build the catalog of the saved files and keep it up to date
+        this.catalog = new MindMapCatalog(new File(FILE_PATH));
+        this.catalog.refresh();
+        this.catalog.startPolling(CATALOG_POLL_MILLIS);
 
         // Initialize empty mindMap
         setLoadedMindMap(new MindMap());
@@ -95,6 +106,29 @@ public class MindMapCollection extends Observable {
         return instance;
     }
 
+    /**
+     * Returns the catalog of the saved MindMaps.
+     * 
+     * @return the catalog
+     */
+    public MindMapCatalog getCatalog() {
+        log.trace("Entering getCatalog()"); //$NON-NLS-1$
+        log.trace("Leaving getCatalog()"); //$NON-NLS-1$
+        return this.catalog;
+    }
+
+    /**
+     * Returns the event bus on which changes of the MindMapCollection are
+     * published.
+     * 
+     * @return the eventBus
+     */
+    public ModelEventBus getEventBus() {
+        log.trace("Entering getEventBus()"); //$NON-NLS-1$
+        log.trace("Leaving getEventBus()"); //$NON-NLS-1$
+        return this.eventBus;
+    }
+
     /**
      * Returns the loadedMindMap MindMap in the MindMapCollection.
      * 
@@ -118,9 +152,9 @@ public class MindMapCollection extends Observable {
             this.loadedMindMap = loadedMindMap;
 
             log.debug("Communicate changes to observer for setLoadedMindMap()"); //$NON-NLS-1$
-            communicateChangesToObserver(new ObserverNotificationObject(
+            communicateChanges(
                     EMindMapCollectionChangeStatus.NEW_MIND_MAP_LOADED,
-                    loadedMindMap));
+                    loadedMindMap);
 
             log.trace("Leaving setLoadedMindMap()"); //$NON-NLS-1$
         }
@@ -128,54 +162,40 @@ public class MindMapCollection extends Observable {
     }
 
     /**
-     * Returns the list of individual MindMaps in the MindMapCollection.
+     * Returns the list of individual MindMaps in the MindMapCollection, latest
+     * first.
      * 
      * @return the mindMapCollectionFiles
      */
     public ArrayList<File> getMindMapCollectionFiles() {
         log.trace("Entering getMindMapCollectionFiles()"); //$NON-NLS-1$
-        log.trace("Leaving getMindMapCollectionFiles(): filelist"); //$NON-NLS-1$
-        return (ArrayList<File>) this.mindMapCollectionFiles;
-
-    }
 
-    /**
-     * Sets the list of individual MindMaps in the MindMapCollection.
-     * 
-     * @param mindMapCollectionFiles
-     *            the mindMapCollectionFiles to set
-     */
-    protected void setMindMapCollectionFiles(List<File> mindMapCollectionFiles) {
-        log.trace("Entering setMindMapCollection(mindMapCollectionFiles=)"); //$NON-NLS-1$
+        ArrayList<File> files = new ArrayList<File>(this.catalog.size());
+        for (MindMapCatalogEntry entry : this.catalog.getEntries()) {
+            files.add(entry.getFile());
+        }
 
-        this.mindMapCollectionFiles = mindMapCollectionFiles;
+        log.trace("Leaving getMindMapCollectionFiles(): filelist"); //$NON-NLS-1$
+        return files;
 
-        log.trace("Leaving setMindMapCollection()"); //$NON-NLS-1$
     }
 
     /**
      * Returns the array list of the names of the individual MindMaps in the
-     * MindMapCollection.
+     * MindMapCollection, latest first.
      * 
      * @return the mindMapFileNames as a ArrayList of Strings
      */
     public ArrayList<String> getMindMapFileNames() {
         log.trace("Entering getMindMapFileNames()"); //$NON-NLS-1$
-        log.trace("Leaving getMindMapFileNames(): file name list"); //$NON-NLS-1$
-        return (ArrayList<String>) this.mindMapFileNames;
-    }
 
-    /**
-     * Sets the list of the names of the individual MindMaps in the
-     * MindMapCollection.
-     * 
-     * @param mindMapFileNames
-     *            the mindMapFileNames to set
-     */
-    protected void setMindMapFileNames(List<String> mindMapFileNames) {
-        log.trace("Entering setMindMapFileNames(mindMapFileNames=)"); //$NON-NLS-1$
-        this.mindMapFileNames = mindMapFileNames;
-        log.trace("Leaving getMindMapFileNames()"); //$NON-NLS-1$
+        ArrayList<String> names = new ArrayList<String>(this.catalog.size());
+        for (MindMapCatalogEntry entry : this.catalog.getEntries()) {
+            names.add(entry.getFile().getName());
+        }
+
+        log.trace("Leaving getMindMapFileNames(): file name list"); //$NON-NLS-1$
+        return names;
     }
 
     /* *************Delegates************** */
@@ -222,61 +242,83 @@ public class MindMapCollection extends Observable {
     }
 
     /**
-     * Updates the current file list of the MindMapCollection.
+     * Updates the current file list of the MindMapCollection. Only rescans the
+     * save folder if it has changed.
      * 
      */
     public void updateMindMapFilesList() {
 
         log.debug("Entering updateMindMapFilesList()"); //$NON-NLS-1$
 
-        File folder = new File(FILE_PATH);
-        File[] listOfFiles = folder.listFiles();
-        String fileName;
+        this.catalog.refresh();
+        log.debug(" Found " + this.catalog.size() + " .mindMap files"); //$NON-NLS-1$ //$NON-NLS-2$
 
-        // clear / (re-) initialize arrays
-        this.mindMapCollectionFiles = new ArrayList<File>();
-        this.mindMapFileNames = new ArrayList<String>();
+        log.debug("Leaving updateMindMapFilesList()"); //$NON-NLS-1$
 
-        if (listOfFiles != null) {
+    }
 
-            // Get paths and names for all .mindMap files in the directory
-            int i, j;
-            for (i = 0, j = 0; i < listOfFiles.length; i++) {
-                if (listOfFiles[i].isFile()) {
-                    fileName = listOfFiles[i].getName();
+    /**
+     * Updates the catalog entry of a file that has been written, replaced or
+     * deleted by the application. Has no effect if the MindMapCollection
+     * hasn't been created yet.
+     * 
+     * @param file
+     *            the .mindMap file
+     */
+    static void notifyFileChanged(File file) {
 
-                    // TODO: Change to interface filenamefilter ??
-                    // Check if files are .mindMap files, add to lists
-                    if (fileName.endsWith(MindMapSerializer.FILE_EXTENSION)) {
-                        this.mindMapFileNames.add(fileName);
-                        this.mindMapCollectionFiles.add(listOfFiles[i]);
-                        j++;
+        MindMapCollection collection;
+        synchronized (MindMapCollection.class) {
+            collection = instance;
+        }
+        if (collection != null) {
+            collection.catalog.update(file);
+        }
+    }
 
-                    }
+    /**
+     * Returns the header of the given .mindMap file. Only the header is read,
+     * the headers of the saved files are cached by the catalog until the file
+     * is modified.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the header or null if the file has no header (files of the
+     *         former object serialization and of format version 1) or can't
+     *         be read
+     * 
+     * @see MindMapCatalog#getHeader(File)
+     */
+    public MindMapFileHeader getMindMapFileHeader(File file) {
 
-                }
-            }
-            log.debug(" Found " + j + " .mindMap files"); //$NON-NLS-1$ //$NON-NLS-2$
-        }
-        log.debug("Leaving updateMindMapFilesList()"); //$NON-NLS-1$
+        log.debug("Entering getMindMapFileHeader(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
+        if (file != null) {
+            MindMapFileHeader header = this.catalog.getHeader(file);
+            log.debug("Leaving getMindMapFileHeader(): " + header); //$NON-NLS-1$
+            return header;
+        }
+        log.error("Leaving getMindMapFileHeader(): null, invalid input parameter (null)"); //$NON-NLS-1$
+        return null;
     }
 
     /**
-     * Communicates changes to all registered Observers.
+     * Publishes changes on the event bus.
      * 
-     * @param object
-     *            the observer notification object
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
      * 
      */
-    private void communicateChangesToObserver(ObserverNotificationObject object) {
+    private void communicateChanges(EMindMapCollectionChangeStatus status,
+            Object content) {
 
-        log.debug("Entering communicateChangesToObserver()"); //$NON-NLS-1$
+        log.debug("Entering communicateChanges(status=" + status + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-        setChanged();
-        notifyObservers(object);
+        this.eventBus.publish(this, status, content);
 
-        log.debug("Leaving communicateChangesToObserver()"); //$NON-NLS-1$
+        log.debug("Leaving communicateChanges()"); //$NON-NLS-1$
     }
 
     /**
@@ -293,24 +335,16 @@ public class MindMapCollection extends Observable {
 
         if (name != null) {
 
-            // Update file list
-            this.updateMindMapFilesList();
-
-            List<File> fileList = this.mindMapCollectionFiles;
-
-            // Search for the file with the given name and return if found
-            int i = 0;
-            for (File file : fileList) {
-                i++;
-                log.trace("File Nr. " + i + " has name:" + file.getName()); //$NON-NLS-1$//$NON-NLS-2$
+            MindMapCatalogEntry entry = this.catalog.getEntry(name);
 
-                if (file.getName().equals(
-                        name + MindMapSerializer.FILE_EXTENSION)) {
-
-                    log.debug("Leaving getFileByName()"); //$NON-NLS-1$
-                    return file;
-                }
+            // Rescan the save folder if the file has been added recently
+            if (entry == null && this.catalog.refresh()) {
+                entry = this.catalog.getEntry(name);
+            }
 
+            if (entry != null) {
+                log.debug("Leaving getFileByName()"); //$NON-NLS-1$
+                return entry.getFile();
             }
             log.warn("Leaving getFileByName(): null - file not found!"); //$NON-NLS-1$
             return null;
@@ -320,4 +354,5 @@ public class MindMapCollection extends Observable {
         return null;
 
     }
+
 }
@@ -18,16 +18,38 @@
 
 package de.sarahw.ma.pc.mindMapper.model;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import org.apache.log4j.Logger;
 
 /**
  * <p>
- * Used to deserialize a MindMap object.
+ * Used to read a MindMap from disc in the binary .mindMap format (see
+ * {@link MindMapFileFormat}).
+ * </p>
+ * 
+ * <p>
+ * The ideaNodes are read as flat records and linked afterwards, so reading
+ * doesn't recurse the tree. The {@link MindMapJournal} of the file is replayed
+ * before the ideaNodes are linked. Files written by the former object
+ * serialization are converted by the {@link MindMapMigrator}.
+ * </p>
+ * 
+ * <p>
+ * Files with a checksum are verified. If a file is damaged, the previous
+ * generation kept by the {@link MindMapSerializer} is read instead.
+ * Compressed files are decompressed block by block while reading.
  * </p>
  * 
  * @author Sarah Will
@@ -37,7 +59,10 @@ import org.apache.log4j.Logger;
  */
 public class MindMapDeserializer {
 
-    private static Logger log = Logger.getLogger(MindMapDeserializer.class);
+    private static Logger    log         = Logger.getLogger(MindMapDeserializer.class);
+
+    /** The size of the input buffer in bytes */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /* ***********Constructors*********** */
     /**
@@ -49,11 +74,12 @@ public class MindMapDeserializer {
 
     /* **********Class methods********** */
     /**
-     * Deserializes a MindMap object.
+     * Reads a MindMap object. Legacy files are migrated to the binary format.
+     * If the file can't be read, its backup is read instead.
      * 
      * @param file
      *            the MindMap file
-     * @return the loaded MindMap or null if deserialization failed
+     * @return the loaded MindMap or null if reading failed
      */
     public static MindMap getMindMapFromDisc(File file) {
 
@@ -62,33 +88,32 @@ public class MindMapDeserializer {
         if (file != null) {
 
             MindMap loadedMindMap = null;
-            FileInputStream fis = null;
-            ObjectInputStream in = null;
 
             // Read MindMap object
             try {
-                // Create new object input stream
-                fis = new FileInputStream(file);
-                in = new ObjectInputStream(fis);
-
-                // Try to read object
-                loadedMindMap = (MindMap) in.readObject();
+                loadedMindMap = readMindMapFile(file, file);
 
-                // Close object input stream
-                in.close();
             } catch (IOException ex) {
 
-                log.error("Leaving getMindMapFromDisc(): null; on error, deserialization not successful:" + //$NON-NLS-1$ 
-                        ex.getMessage());
-                ex.printStackTrace();
-                return null;
-
-            } catch (ClassNotFoundException ex) {
+                File backup = MindMapSerializer.getBackupFile(file);
+                if (!backup.isFile()) {
+                    log.error("Leaving getMindMapFromDisc(): null; on error, reading not successful:" + //$NON-NLS-1$ 
+                            ex.getMessage());
+                    ex.printStackTrace();
+                    return null;
+                }
 
-                log.error("Leaving getMindMapFromDisc(): null; on error, deserialization not successful" + //$NON-NLS-1$ 
-                        ex.getMessage());
-                ex.printStackTrace();
-                return null;
+                // Fall back to the previous generation
+                log.warn("Reading " + file + " not successful (" + ex.getMessage() //$NON-NLS-1$ //$NON-NLS-2$
+                        + "), reading backup " + backup); //$NON-NLS-1$
+                try {
+                    loadedMindMap = readMindMapFile(backup, file);
+                } catch (IOException backupEx) {
+                    log.error("Leaving getMindMapFromDisc(): null; on error, reading backup not successful:" + //$NON-NLS-1$ 
+                            backupEx.getMessage());
+                    backupEx.printStackTrace();
+                    return null;
+                }
             }
 
             log.debug("Leaving getMindMapFromDisc(): " + loadedMindMap); //$NON-NLS-1$ 
@@ -100,4 +125,416 @@ public class MindMapDeserializer {
 
     }
 
+    /**
+     * Reads a MindMap in the binary .mindMap format from the given stream and
+     * advances the ModelIDGenerator past all IDs of the MindMap. The stream is
+     * not closed.
+     * 
+     * @param in
+     *            the input stream, should be buffered
+     * @return the MindMap
+     * @throws IOException
+     *             on read errors or if the stream is not a valid MindMap
+     */
+    public static MindMap readMindMap(InputStream in) throws IOException {
+
+        log.debug("Entering readMindMap()"); //$NON-NLS-1$
+
+        MindMap mindMap = createMindMap(readImage(in));
+
+        log.debug("Leaving readMindMap(): " + mindMap); //$NON-NLS-1$
+        return mindMap;
+    }
+
+    /**
+     * Reads the records of a MindMap in the binary .mindMap format from the
+     * given stream without linking them. The stream is not closed.
+     * 
+     * @param in
+     *            the input stream, should be buffered
+     * @return the MindMapImage
+     * @throws IOException
+     *             on read errors or if the stream is not a valid MindMap
+     */
+    static MindMapImage readImage(InputStream in) throws IOException {
+
+        log.debug("Entering readImage()"); //$NON-NLS-1$
+
+        CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+
+        // Header
+        if (data.readInt() != MindMapFileFormat.MAGIC) {
+            throw new IOException("Not a MindMap file"); //$NON-NLS-1$
+        }
+        short version = data.readShort();
+        long mindMapId;
+        long savedTime = 0;
+        long lastIssuedID;
+        int titleIndex;
+        int ideaNodeCount;
+        int mapCount;
+        String[] strings;
+        long mapGap = 0;
+        boolean hasChecksum = false;
+
+        if (version == MindMapFileFormat.VERSION) {
+            byte[] headerBytes = new byte[MindMapFileFormat.HEADER_SIZE];
+            data.readFully(headerBytes, 6, headerBytes.length - 6);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(headerBytes);
+            headerBuffer.putInt(MindMapFileFormat.MAGIC);
+            headerBuffer.putShort(version);
+            headerBuffer.rewind();
+            MindMapFileHeader header = MindMapFileHeader.parse(headerBuffer);
+
+            mindMapId = header.getMindMapId();
+            savedTime = header.getLastModified();
+            hasChecksum = header.hasChecksum();
+            lastIssuedID = header.getLastIssuedID();
+            titleIndex = header.getTitleIndex();
+            ideaNodeCount = header.getIdeaNodeCount();
+            mapCount = header.getMapCount();
+
+            // Sections after the header may be stored in compressed blocks,
+            // the checksum covers the stored bytes
+            if (header.isCompressed()) {
+                data = new DataInputStream(new MindMapBlockInputStream(checked));
+            }
+
+            // Sections are located by the offsets of the header
+            skipFully(data, header.getStringTableOffset()
+                    - MindMapFileFormat.HEADER_SIZE);
+            long stringTableSize = header.getIdeaNodeOffset()
+                    - header.getStringTableOffset();
+            if (stringTableSize > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt MindMap file header"); //$NON-NLS-1$
+            }
+            byte[] stringBytes = new byte[(int) stringTableSize];
+            data.readFully(stringBytes);
+            strings = readStrings(new DataInputStream(
+                    new ByteArrayInputStream(stringBytes)),
+                    header.getStringCount());
+
+            mapGap = header.getMapOffset() - header.getIdeaNodeOffset()
+                    - (long) ideaNodeCount
+                    * MindMapFileFormat.IDEA_NODE_RECORD_SIZE;
+            if (mapGap < 0) {
+                throw new IOException("Corrupt MindMap file header"); //$NON-NLS-1$
+            }
+
+        } else if (version == MindMapFileFormat.VERSION_1) {
+            data.readShort(); // flags
+            mindMapId = data.readLong();
+            lastIssuedID = data.readLong();
+            titleIndex = data.readInt();
+            int stringCount = data.readInt();
+            ideaNodeCount = data.readInt();
+            mapCount = data.readInt();
+            if (stringCount < 0 || ideaNodeCount < 0 || mapCount < 0) {
+                throw new IOException("Corrupt MindMap file header"); //$NON-NLS-1$
+            }
+            strings = readStrings(data, stringCount);
+
+        } else {
+            throw new IOException("Unsupported MindMap file version " + version); //$NON-NLS-1$
+        }
+
+        // IdeaNode records
+        byte[] recordBytes = new byte[ideaNodeCount
+                * MindMapFileFormat.IDEA_NODE_RECORD_SIZE];
+        data.readFully(recordBytes);
+        ByteBuffer records = ByteBuffer.wrap(recordBytes);
+
+        EIdeaNodeCreator[] owners = EIdeaNodeCreator.values();
+        EIdeaState[] states = EIdeaState.values();
+        MindMapImage image = new MindMapImage(mindMapId, savedTime, string(
+                strings, titleIndex), lastIssuedID, ideaNodeCount);
+        long[] parentIDs = new long[ideaNodeCount];
+        int[] childIndex = new int[ideaNodeCount];
+
+        for (int i = 0; i < ideaNodeCount; i++) {
+            long ideaID = records.getLong();
+            long nodeDataID = records.getLong();
+            parentIDs[i] = records.getLong();
+            String text = string(strings, records.getInt());
+            float x = records.getFloat();
+            float y = records.getFloat();
+            float rotation = records.getFloat();
+            childIndex[i] = records.getInt();
+            int childCount = records.getInt();
+            int owner = records.get();
+            int state = records.get();
+            records.get(); // flags, isChild is restored from the parentID
+            records.get(); // reserved
+
+            if (owner < 0 || owner >= owners.length || state < 0
+                    || state >= states.length || childCount < 0) {
+                throw new IOException("Corrupt ideaNode record " + i); //$NON-NLS-1$
+            }
+
+            if (!image.addIdeaNode(createIdeaNode(ideaID, nodeDataID, text, x,
+                    y, rotation, owners[owner], states[state]))) {
+                throw new IOException("Duplicate ideaNode record " + i); //$NON-NLS-1$
+            }
+            if (childCount > 0) {
+                image.setChildIDs(ideaID, new long[childCount]);
+            }
+        }
+
+        // Sort the children into the child lists of their parents
+        for (int i = 0; i < ideaNodeCount; i++) {
+            if (parentIDs[i] != IdeaNode.NO_PARENT) {
+                long[] children = image.getChildIDs(parentIDs[i]);
+                if (children == null || childIndex[i] < 0
+                        || childIndex[i] >= children.length
+                        || children[childIndex[i]] != ModelIDGenerator.NO_ID) {
+                    throw new IOException("Corrupt parent reference in ideaNode record " + i); //$NON-NLS-1$
+                }
+                children[childIndex[i]] = image.getIdeaNodes().get(i)
+                        .getIdeaID();
+            }
+        }
+
+        // Map records
+        skipFully(data, mapGap);
+        for (int i = 0; i < mapCount; i++) {
+            long mapID = data.readLong();
+            image.addMap(i, mapID, data.readLong());
+        }
+
+        // Checksum of all preceding bytes
+        if (hasChecksum) {
+            int checksum = (int) checked.getChecksum().getValue();
+            if (new DataInputStream(in).readInt() != checksum) {
+                throw new IOException("Checksum mismatch, MindMap file is damaged"); //$NON-NLS-1$
+            }
+        }
+
+        log.debug("Leaving readImage()"); //$NON-NLS-1$
+        return image;
+    }
+
+    /**
+     * Links the ideaNodes of a MindMapImage and creates the MindMap with its
+     * Maps. Advances the ModelIDGenerator past all IDs of the MindMap.
+     * 
+     * @param image
+     *            the MindMapImage, can't be used afterwards
+     * @return the MindMap
+     * @throws IOException
+     *             if the image is not a valid MindMap
+     */
+    static MindMap createMindMap(MindMapImage image) throws IOException {
+
+        log.debug("Entering createMindMap()"); //$NON-NLS-1$
+
+        ArrayList<IdeaNode> ideaNodes = image.getIdeaNodes();
+
+        // Link the children in order
+        int linkedChildren = 0;
+        for (IdeaNode parent : ideaNodes) {
+            long[] children = image.getChildIDs(parent.getIdeaID());
+            if (children != null) {
+                for (long childID : children) {
+                    IdeaNode child = image.getIdeaNode(childID);
+                    if (child == null || child.getIsChild()) {
+                        throw new IOException("Corrupt child reference " + childID //$NON-NLS-1$
+                                + " of ideaNode " + parent.getIdeaID()); //$NON-NLS-1$
+                    }
+                    parent.restoreIdeaChild(child);
+                    linkedChildren++;
+                }
+            }
+        }
+
+        // Every child must be reachable from an ideaNode without parent
+        int reachableChildren = 0;
+        for (IdeaNode ideaNode : ideaNodes) {
+            if (!ideaNode.getIsChild()) {
+                NodeIterator<NodeData> it = new NodeIterator<NodeData>(
+                        ideaNode, ETraversalOrder.PRE_ORDER);
+                it.next();
+                while (it.hasNext()) {
+                    it.next();
+                    reachableChildren++;
+                }
+            }
+        }
+        if (reachableChildren != linkedChildren) {
+            throw new IOException("Corrupt MindMap file, cyclic parent references"); //$NON-NLS-1$
+        }
+
+        // Create the MindMap
+        ModelIDGenerator.ensureAbove(image.getMaxID());
+        MindMap mindMap = new MindMap(image.getMindMapId(), image.getTitle(),
+                image.getLastIssuedID());
+        for (IdeaNode ideaNode : ideaNodes) {
+            mindMap.addIdeaNode(ideaNode);
+        }
+
+        // Maps
+        for (long[] map : image.getMaps()) {
+            IdeaNode root = mindMap.findIdeaNodeByID(map[1]);
+            if (root == null || root.getIsChild()) {
+                throw new IOException("Corrupt map record " + map[0]); //$NON-NLS-1$
+            }
+            mindMap.addMap(new Map(root, map[0]));
+        }
+
+        log.debug("Leaving createMindMap(): " + mindMap); //$NON-NLS-1$
+        return mindMap;
+    }
+
+    /**
+     * Creates an unlinked ideaNode with already issued IDs.
+     * 
+     * @param ideaID
+     *            the ideaID
+     * @param nodeDataID
+     *            the nodeDataID
+     * @param text
+     *            the idea text
+     * @param x
+     *            the x position
+     * @param y
+     *            the y position
+     * @param rotation
+     *            the rotation in degrees
+     * @param owner
+     *            the creator
+     * @param state
+     *            the state
+     * @return the ideaNode
+     */
+    static IdeaNode createIdeaNode(long ideaID, long nodeDataID, String text,
+            float x, float y, float rotation, EIdeaNodeCreator owner,
+            EIdeaState state) {
+        NodeMetaData metaData = new NodeMetaData(x, y, rotation, owner);
+        metaData.setIdeaState(state);
+        return new IdeaNode(new NodeData(new NodeContent(text), metaData,
+                nodeDataID), ideaID);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Reads the string table.
+     * 
+     * @param data
+     *            the input stream, positioned at the string table
+     * @param stringCount
+     *            the number of strings
+     * @return the string table
+     * @throws IOException
+     *             on read errors
+     */
+    private static String[] readStrings(DataInputStream data, int stringCount)
+            throws IOException {
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = data.readUTF();
+        }
+        return strings;
+    }
+
+    /**
+     * Reads a MindMap from a file and replays the journal of the .mindMap
+     * file it belongs to. Legacy files are migrated to the binary format.
+     * 
+     * @param source
+     *            the file to read, the .mindMap file or its backup
+     * @param file
+     *            the .mindMap file
+     * @return the loaded MindMap or null if a legacy file couldn't be read
+     * @throws IOException
+     *             on read errors or if the file is not a valid MindMap
+     */
+    private static MindMap readMindMapFile(File source, File file)
+            throws IOException {
+
+        InputStream in = new BufferedInputStream(new FileInputStream(source),
+                BUFFER_SIZE);
+        try {
+            // Check the file format
+            in.mark(4);
+            DataInputStream data = new DataInputStream(in);
+            int magic = data.readInt();
+            in.reset();
+
+            if (magic == MindMapFileFormat.MAGIC) {
+                MindMapImage image = readImage(in);
+                MindMapJournal journal = MindMapJournal.open(file, image);
+                MindMap mindMap = createMindMap(image);
+                journal.attach(mindMap);
+                return mindMap;
+            } else if ((short) (magic >>> 16) == MindMapFileFormat.LEGACY_STREAM_MAGIC) {
+                in.close();
+                if (source.equals(file)) {
+                    log.debug("Legacy file, result of migration"); //$NON-NLS-1$
+                    return MindMapMigrator.migrateLegacyMindMap(file);
+                }
+                return MindMapMigrator.readLegacyMindMap(source);
+            } else {
+                throw new IOException("Unknown file format"); //$NON-NLS-1$
+            }
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Skips the given number of bytes.
+     * 
+     * @param data
+     *            the input stream
+     * @param count
+     *            the number of bytes to skip
+     * @throws IOException
+     *             on read errors or if the stream ends before
+     */
+    private static void skipFully(DataInputStream data, long count)
+            throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            if (data.read() < 0) {
+                throw new EOFException();
+            }
+            remaining -= 1 + data.skip(remaining - 1);
+        }
+    }
+
+    /**
+     * Returns the string with the given index from the string table.
+     * 
+     * @param strings
+     *            the string table
+     * @param index
+     *            the index
+     * @return the string
+     * @throws IOException
+     *             if the index is out of range
+     */
+    private static String string(String[] strings, int index)
+            throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Corrupt string index " + index); //$NON-NLS-1$
+        }
+        return strings[index];
+    }
+
+    /**
+     * Closes the given stream and ignores errors.
+     * 
+     * @param in
+     *            the stream or null
+     */
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                log.warn("Input stream could not be closed: " + ex.getMessage()); //$NON-NLS-1$
+            }
+        }
+    }
+
 }
@@ -0,0 +1,450 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Exports MindMaps to the formats of other tools (see
+ * {@link EMindMapExchangeFormat}).
+ * </p>
+ * 
+ * <p>
+ * The exporters write a {@link MindMapSnapshot}, so they can run on any
+ * thread. The trees are walked iteratively and written directly to the
+ * stream, no document is built in memory. Every IdeaNode without a parent,
+ * i.e. the root of every Map and every single IdeaNode, becomes a top-level
+ * node of the document.
+ * </p>
+ * 
+ * <p>
+ * FreeMind and OPML keep the texts in attributes, where XML readers replace
+ * line breaks by spaces. The line breaks are therefore written as spaces.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapImporter
+ */
+public final class MindMapExporter {
+
+    private static Logger       log              = Logger.getLogger(MindMapExporter.class);
+
+    /** The encoding of exported files */
+    static final String         ENCODING         = "UTF-8";                               //$NON-NLS-1$
+
+    /** The FreeMind file format version written */
+    static final String         FREEMIND_VERSION = "1.0.1";                               //$NON-NLS-1$
+
+    /** The OPML version written */
+    static final String         OPML_VERSION     = "2.0";                                 //$NON-NLS-1$
+
+    /** The value of the JSON format member */
+    static final String         JSON_FORMAT      = "mindMapper";                          //$NON-NLS-1$
+
+    /** The JSON format version written */
+    static final int            JSON_VERSION     = 1;
+
+    /** The prefix of FreeMind node IDs */
+    private static final String FREEMIND_ID      = "ID_";                                 //$NON-NLS-1$
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private MindMapExporter() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Exports a MindMap into the given file.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param file
+     *            the file to write
+     * @param format
+     *            the format
+     * @throws IOException
+     *             on write errors
+     */
+    public static void exportMindMap(MindMapSnapshot snapshot, File file,
+            EMindMapExchangeFormat format) throws IOException {
+
+        log.debug("Entering exportMindMap(snapshot=" + snapshot + ", file=" + file + ", format=" + format + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            exportMindMap(snapshot, out, format);
+        } finally {
+            out.close();
+        }
+
+        log.debug("Leaving exportMindMap()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Exports a MindMap to the given stream. The stream is flushed, but not
+     * closed.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param out
+     *            the output stream, should be buffered
+     * @param format
+     *            the format
+     * @throws IOException
+     *             on write errors
+     */
+    public static void exportMindMap(MindMapSnapshot snapshot,
+            OutputStream out, EMindMapExchangeFormat format) throws IOException {
+
+        log.debug("Entering exportMindMap(snapshot=" + snapshot + ", format=" + format + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        switch (format) {
+            case FREEMIND:
+            case OPML:
+                try {
+                    XMLStreamWriter xml = XMLOutputFactory.newInstance()
+                            .createXMLStreamWriter(out, ENCODING);
+                    if (format == EMindMapExchangeFormat.FREEMIND) {
+                        writeFreeMind(snapshot, xml);
+                    } else {
+                        writeOpml(snapshot, xml);
+                    }
+                    xml.flush();
+                } catch (XMLStreamException ex) {
+                    throw new IOException("Export failed: " + ex.getMessage(), ex); //$NON-NLS-1$
+                }
+                break;
+
+            case JSON:
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out,
+                        ENCODING));
+                writeJson(snapshot, writer);
+                writer.flush();
+                break;
+
+            default:
+                throw new IOException("Unsupported format " + format); //$NON-NLS-1$
+        }
+
+        log.debug("Leaving exportMindMap()"); //$NON-NLS-1$
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Writes a FreeMind document. FreeMind has a single root node, it holds
+     * the title of the MindMap and all top-level nodes are its children.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param xml
+     *            the XML writer
+     * @throws XMLStreamException
+     *             on write errors
+     * @throws IOException
+     *             if the snapshot is inconsistent
+     */
+    private static void writeFreeMind(MindMapSnapshot snapshot,
+            final XMLStreamWriter xml) throws XMLStreamException, IOException {
+
+        xml.writeStartDocument(ENCODING, "1.0"); //$NON-NLS-1$
+        xml.writeStartElement("map"); //$NON-NLS-1$
+        xml.writeAttribute("version", FREEMIND_VERSION); //$NON-NLS-1$
+        xml.writeStartElement("node"); //$NON-NLS-1$
+        xml.writeAttribute("ID", FREEMIND_ID + snapshot.getMindMapId()); //$NON-NLS-1$
+        xml.writeAttribute("TEXT", snapshot.getMindMapTitle()); //$NON-NLS-1$
+
+        walk(snapshot, new OutlineWriter() {
+            @Override
+            void startIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                try {
+                    xml.writeCharacters("\n"); //$NON-NLS-1$
+                    xml.writeStartElement("node"); //$NON-NLS-1$
+                    xml.writeAttribute("ID", FREEMIND_ID + ideaNode.getIdeaID()); //$NON-NLS-1$
+                    xml.writeAttribute("TEXT", attributeText(ideaNode)); //$NON-NLS-1$
+                } catch (XMLStreamException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            void endIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                try {
+                    xml.writeEndElement();
+                } catch (XMLStreamException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+        });
+
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+    }
+
+    /**
+     * Writes an OPML document. The title of the MindMap is written into the
+     * head, every IdeaNode becomes an outline element.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param xml
+     *            the XML writer
+     * @throws XMLStreamException
+     *             on write errors
+     * @throws IOException
+     *             if the snapshot is inconsistent
+     */
+    private static void writeOpml(MindMapSnapshot snapshot,
+            final XMLStreamWriter xml) throws XMLStreamException, IOException {
+
+        xml.writeStartDocument(ENCODING, "1.0"); //$NON-NLS-1$
+        xml.writeStartElement("opml"); //$NON-NLS-1$
+        xml.writeAttribute("version", OPML_VERSION); //$NON-NLS-1$
+        xml.writeStartElement("head"); //$NON-NLS-1$
+        xml.writeStartElement("title"); //$NON-NLS-1$
+        xml.writeCharacters(snapshot.getMindMapTitle());
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeStartElement("body"); //$NON-NLS-1$
+
+        walk(snapshot, new OutlineWriter() {
+            @Override
+            void startIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                try {
+                    xml.writeCharacters("\n"); //$NON-NLS-1$
+                    xml.writeStartElement("outline"); //$NON-NLS-1$
+                    xml.writeAttribute("text", attributeText(ideaNode)); //$NON-NLS-1$
+                } catch (XMLStreamException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            void endIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                try {
+                    xml.writeEndElement();
+                } catch (XMLStreamException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+        });
+
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+    }
+
+    /**
+     * Writes a JSON document. The children of an IdeaNode are written after
+     * its other members, so importers can create every IdeaNode before its
+     * children.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param out
+     *            the writer
+     * @throws IOException
+     *             on write errors or if the snapshot is inconsistent
+     */
+    private static void writeJson(MindMapSnapshot snapshot, final Writer out)
+            throws IOException {
+
+        out.write("{\"format\":"); //$NON-NLS-1$
+        writeJsonString(out, JSON_FORMAT);
+        out.write(",\"version\":" + JSON_VERSION + ",\"title\":"); //$NON-NLS-1$ //$NON-NLS-2$
+        writeJsonString(out, snapshot.getMindMapTitle());
+        out.write(",\"ideaNodes\":["); //$NON-NLS-1$
+
+        walk(snapshot, new OutlineWriter() {
+
+            /** True, if a sibling has been written before */
+            private boolean afterSibling;
+
+            @Override
+            void startIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                out.write(this.afterSibling ? ",\n{\"text\":" : "\n{\"text\":"); //$NON-NLS-1$ //$NON-NLS-2$
+                writeJsonString(out, ideaNode.getIdeaText());
+                out.write(",\"x\":" + ideaNode.getIdeaPositionX()); //$NON-NLS-1$
+                out.write(",\"y\":" + ideaNode.getIdeaPositionY()); //$NON-NLS-1$
+                out.write(",\"rotation\":" + ideaNode.getIdeaRotationInDegrees()); //$NON-NLS-1$
+                out.write(",\"owner\":\"" + ideaNode.getIdeaOwner().name()); //$NON-NLS-1$
+                out.write("\",\"state\":\"" + ideaNode.getIdeaState().name() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                if (ideaNode.getChildCount() > 0) {
+                    out.write(",\"children\":["); //$NON-NLS-1$
+                }
+                this.afterSibling = false;
+            }
+
+            @Override
+            void endIdeaNode(IdeaNodeSnapshot ideaNode) throws IOException {
+                out.write((ideaNode.getChildCount() > 0) ? "]}" : "}"); //$NON-NLS-1$ //$NON-NLS-2$
+                this.afterSibling = true;
+            }
+        });
+
+        out.write("]}\n"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the text of an IdeaNode for an XML attribute, line breaks and
+     * tabs are replaced by spaces.
+     * 
+     * @param ideaNode
+     *            the IdeaNode
+     * @return the text
+     */
+    private static String attributeText(IdeaNodeSnapshot ideaNode) {
+        return ideaNode.getIdeaText().replace('\r', ' ').replace('\n', ' ')
+                .replace('\t', ' ');
+    }
+
+    /**
+     * Writes a JSON string literal.
+     * 
+     * @param out
+     *            the writer
+     * @param value
+     *            the string
+     * @throws IOException
+     *             on write errors
+     */
+    private static void writeJsonString(Writer out, String value)
+            throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Walks all trees of a MindMap in pre-order without recursion. Every
+     * IdeaNode without a parent is the root of a tree.
+     * 
+     * @param snapshot
+     *            the snapshot of the MindMap
+     * @param writer
+     *            the writer receiving the IdeaNodes
+     * @throws IOException
+     *             on write errors or if a child is missing in the snapshot
+     */
+    private static void walk(MindMapSnapshot snapshot, OutlineWriter writer)
+            throws IOException {
+
+        // The path from the current root to the current IdeaNode and the
+        // index of the next child to visit at every level
+        IdeaNodeSnapshot[] path = new IdeaNodeSnapshot[16];
+        int[] nextChild = new int[path.length];
+
+        for (IdeaNodeSnapshot root : snapshot.getIdeaNodes()) {
+            if (root.getParentID() != IdeaNode.NO_PARENT) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            nextChild[0] = 0;
+            writer.startIdeaNode(root);
+
+            while (depth >= 0) {
+                IdeaNodeSnapshot ideaNode = path[depth];
+                if (nextChild[depth] < ideaNode.getChildCount()) {
+                    long childID = ideaNode.getChildID(nextChild[depth]++);
+                    IdeaNodeSnapshot child = snapshot.getIdeaNode(childID);
+                    if (child == null) {
+                        throw new IOException("Missing ideaNode " + childID); //$NON-NLS-1$
+                    }
+                    depth++;
+                    if (depth == path.length) {
+                        IdeaNodeSnapshot[] newPath = new IdeaNodeSnapshot[depth * 2];
+                        System.arraycopy(path, 0, newPath, 0, depth);
+                        path = newPath;
+                        int[] newNextChild = new int[depth * 2];
+                        System.arraycopy(nextChild, 0, newNextChild, 0, depth);
+                        nextChild = newNextChild;
+                    }
+                    path[depth] = child;
+                    nextChild[depth] = 0;
+                    writer.startIdeaNode(child);
+                } else {
+                    writer.endIdeaNode(ideaNode);
+                    path[depth] = null;
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Receives the IdeaNodes of a tree walk in document order.
+     */
+    private abstract static class OutlineWriter {
+
+        /**
+         * Writes the start of an IdeaNode, called before its children.
+         * 
+         * @param ideaNode
+         *            the IdeaNode
+         * @throws IOException
+         *             on write errors
+         */
+        abstract void startIdeaNode(IdeaNodeSnapshot ideaNode)
+                throws IOException;
+
+        /**
+         * Writes the end of an IdeaNode, called after its children.
+         * 
+         * @param ideaNode
+         *            the IdeaNode
+         * @throws IOException
+         *             on write errors
+         */
+        abstract void endIdeaNode(IdeaNodeSnapshot ideaNode)
+                throws IOException;
+    }
+
+}
@@ -0,0 +1,134 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+/**
+ * <p>
+ * Constants of the binary .mindMap file format written by
+ * {@link MindMapSerializer} and read by {@link MindMapDeserializer}.
+ * </p>
+ * 
+ * <p>
+ * All values are big endian. A file consists of
+ * </p>
+ * <ol>
+ * <li>the header (HEADER_SIZE bytes, see {@link MindMapFileHeader}): magic,
+ * version, flags, mindMapId, lastIssuedID, last modification time, number of
+ * ideaNodes, maps and strings, number of ideaNodes per creator, the offsets
+ * of the following sections and the title,</li>
+ * <li>the string table: all idea texts, each stored once in modified UTF-8
+ * (see {@link java.io.DataOutput#writeUTF(String)}),</li>
+ * <li>the ideaNode records (IDEA_NODE_RECORD_SIZE bytes each): ideaID,
+ * nodeDataID, parentID, string index of the text, x, y, rotation, index
+ * within the children of the parent, number of children, owner, state and
+ * flags,</li>
+ * <li>the map records (MAP_RECORD_SIZE bytes each): mapID and ideaID of the
+ * root ideaNode,</li>
+ * <li>if the header flag HEADER_FLAG_CHECKSUM is set, the CRC32 checksum of
+ * all preceding bytes (CHECKSUM_SIZE bytes).</li>
+ * </ol>
+ * 
+ * <p>
+ * If the header flag HEADER_FLAG_COMPRESSED is set, the sections between the
+ * header and the checksum are stored in blocks of at most BLOCK_SIZE
+ * uncompressed bytes, each compressed on its own (see
+ * {@link MindMapBlockOutputStream}). Every block starts with its uncompressed
+ * and its stored length (BLOCK_HEADER_SIZE bytes). The section offsets of the
+ * header refer to the uncompressed bytes then, the checksum to the stored
+ * ones.
+ * </p>
+ * 
+ * <p>
+ * Version 1 files have a HEADER_SIZE_V1 bytes header without modification
+ * time, creator counts and offsets, the title is stored in the string table.
+ * They are still read, but their header can't be read on its own.
+ * </p>
+ * 
+ * <p>
+ * Enum values are stored by ordinal, so new constants of EIdeaNodeCreator and
+ * EIdeaState must only be appended.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+final class MindMapFileFormat {
+
+    /** The magic number at the start of every file ("MMAP") */
+    static final int   MAGIC                  = 0x4D4D4150;
+
+    /** The first two bytes of a legacy file written by ObjectOutputStream */
+    static final short LEGACY_STREAM_MAGIC    = (short) 0xACED;
+
+    /** The current format version */
+    static final short VERSION                = 2;
+
+    /** The first format version, without header index */
+    static final short VERSION_1              = 1;
+
+    /** The size of the header in bytes */
+    static final int   HEADER_SIZE            = 256;
+
+    /** The size of the version 1 header in bytes */
+    static final int   HEADER_SIZE_V1         = 40;
+
+    /** The maximum size of the UTF-8 encoded title in the header in bytes */
+    static final int   TITLE_SIZE_MAX         = 150;
+
+    /** The number of creator count slots in the header */
+    static final int   CREATOR_SLOTS          = 4;
+
+    /** The size of an ideaNode record in bytes */
+    static final int   IDEA_NODE_RECORD_SIZE  = 52;
+
+    /** The size of a map record in bytes */
+    static final int   MAP_RECORD_SIZE        = 16;
+
+    /** The header flag for files ending with a checksum */
+    static final short HEADER_FLAG_CHECKSUM   = 0x0001;
+
+    /** The size of the checksum at the end of the file in bytes */
+    static final int   CHECKSUM_SIZE          = 4;
+
+    /** The header flag for files with compressed sections */
+    static final short HEADER_FLAG_COMPRESSED = 0x0002;
+
+    /** The maximum number of uncompressed bytes of a block */
+    static final int   BLOCK_SIZE             = 64 * 1024;
+
+    /** The size of a block header in bytes */
+    static final int   BLOCK_HEADER_SIZE      = 8;
+
+    /** The ideaNode record flag for child ideaNodes */
+    static final byte  FLAG_IS_CHILD          = 0x01;
+
+    /** The child index of ideaNodes without parent */
+    static final int   NO_CHILD_INDEX         = -1;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private MindMapFileFormat() {
+        //
+    }
+
+}
@@ -0,0 +1,457 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * The fixed size header of a .mindMap file (see {@link MindMapFileFormat}).
+ * Contains the metadata shown in the load overlay and the offsets of the
+ * sections of the file.
+ * </p>
+ * 
+ * <p>
+ * {@link #readHeader(File)} reads only the header bytes of a file, so listing
+ * saved MindMaps never deserializes the MindMaps themselves.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class MindMapFileHeader {
+
+    private static Logger       log           = Logger.getLogger(MindMapFileHeader.class);
+
+    /** The charset of the title in the header */
+    private static final String TITLE_CHARSET = "UTF-8";                                  //$NON-NLS-1$
+
+    /** The format version of the file */
+    private final short         version;
+
+    /** The flags of the file (see MindMapFileFormat) */
+    private final short         flags;
+
+    /** The unique ID of the MindMap */
+    private final long          mindMapId;
+
+    /** The last ID issued when the MindMap was written */
+    private final long          lastIssuedID;
+
+    /** The time the file was written in milliseconds since the epoch */
+    private final long          lastModified;
+
+    /** The index of the full title in the string table */
+    private final int           titleIndex;
+
+    /** The number of strings in the string table */
+    private final int           stringCount;
+
+    /** The number of ideaNodes */
+    private final int           ideaNodeCount;
+
+    /** The number of Maps */
+    private final int           mapCount;
+
+    /** The number of ideaNodes per creator, indexed by ordinal */
+    private final int[]         creatorCounts;
+
+    /** The offset of the string table in the file */
+    private final long          stringTableOffset;
+
+    /** The offset of the ideaNode records in the file */
+    private final long          ideaNodeOffset;
+
+    /** The offset of the map records in the file */
+    private final long          mapOffset;
+
+    /** The title, may be truncated */
+    private final String        title;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapFileHeader.
+     * 
+     * @param version
+     *            the format version
+     * @param flags
+     *            the flags of the file
+     * @param mindMapId
+     *            the unique ID of the MindMap
+     * @param lastIssuedID
+     *            the last ID issued when the MindMap was written
+     * @param lastModified
+     *            the time the file was written
+     * @param titleIndex
+     *            the index of the title in the string table
+     * @param stringCount
+     *            the number of strings
+     * @param ideaNodeCount
+     *            the number of ideaNodes
+     * @param mapCount
+     *            the number of Maps
+     * @param creatorCounts
+     *            the number of ideaNodes per creator, CREATOR_SLOTS entries
+     * @param stringTableOffset
+     *            the offset of the string table
+     * @param ideaNodeOffset
+     *            the offset of the ideaNode records
+     * @param mapOffset
+     *            the offset of the map records
+     * @param title
+     *            the title
+     */
+    MindMapFileHeader(short version, short flags, long mindMapId,
+            long lastIssuedID, long lastModified, int titleIndex,
+            int stringCount, int ideaNodeCount, int mapCount,
+            int[] creatorCounts, long stringTableOffset, long ideaNodeOffset,
+            long mapOffset, String title) {
+        this.version = version;
+        this.flags = flags;
+        this.mindMapId = mindMapId;
+        this.lastIssuedID = lastIssuedID;
+        this.lastModified = lastModified;
+        this.titleIndex = titleIndex;
+        this.stringCount = stringCount;
+        this.ideaNodeCount = ideaNodeCount;
+        this.mapCount = mapCount;
+        this.creatorCounts = creatorCounts;
+        this.stringTableOffset = stringTableOffset;
+        this.ideaNodeOffset = ideaNodeOffset;
+        this.mapOffset = mapOffset;
+        this.title = title;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the format version of the file.
+     * 
+     * @return the version
+     */
+    public short getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the unique ID of the MindMap.
+     * 
+     * @return the mindMapId
+     */
+    public long getMindMapId() {
+        return this.mindMapId;
+    }
+
+    /**
+     * Returns the last ID issued when the MindMap was written.
+     * 
+     * @return the lastIssuedID
+     */
+    public long getLastIssuedID() {
+        return this.lastIssuedID;
+    }
+
+    /**
+     * Returns the time the file was written.
+     * 
+     * @return the time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Returns the index of the full title in the string table.
+     * 
+     * @return the titleIndex
+     */
+    int getTitleIndex() {
+        return this.titleIndex;
+    }
+
+    /**
+     * Returns the number of strings in the string table.
+     * 
+     * @return the stringCount
+     */
+    int getStringCount() {
+        return this.stringCount;
+    }
+
+    /**
+     * Returns the number of ideaNodes of the MindMap.
+     * 
+     * @return the ideaNodeCount
+     */
+    public int getIdeaNodeCount() {
+        return this.ideaNodeCount;
+    }
+
+    /**
+     * Returns the number of Maps of the MindMap.
+     * 
+     * @return the mapCount
+     */
+    public int getMapCount() {
+        return this.mapCount;
+    }
+
+    /**
+     * Returns the number of ideaNodes created by the given creator.
+     * 
+     * @param creator
+     *            the creator
+     * @return the number of ideaNodes
+     */
+    public int getIdeaNodeCount(EIdeaNodeCreator creator) {
+        int ordinal = creator.ordinal();
+        return (ordinal < this.creatorCounts.length) ? this.creatorCounts[ordinal]
+                : 0;
+    }
+
+    /**
+     * Returns the offset of the string table in the file.
+     * 
+     * @return the stringTableOffset
+     */
+    long getStringTableOffset() {
+        return this.stringTableOffset;
+    }
+
+    /**
+     * Returns the offset of the ideaNode records in the file.
+     * 
+     * @return the ideaNodeOffset
+     */
+    long getIdeaNodeOffset() {
+        return this.ideaNodeOffset;
+    }
+
+    /**
+     * Returns the offset of the map records in the file.
+     * 
+     * @return the mapOffset
+     */
+    long getMapOffset() {
+        return this.mapOffset;
+    }
+
+    /**
+     * Returns if the file ends with a checksum of its content.
+     * 
+     * @return true, if the flag HEADER_FLAG_CHECKSUM is set
+     */
+    boolean hasChecksum() {
+        return (this.flags & MindMapFileFormat.HEADER_FLAG_CHECKSUM) != 0;
+    }
+
+    /**
+     * Returns if the sections after the header are stored in compressed
+     * blocks.
+     * 
+     * @return true, if the flag HEADER_FLAG_COMPRESSED is set
+     */
+    boolean isCompressed() {
+        return (this.flags & MindMapFileFormat.HEADER_FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Returns the title of the MindMap. Titles longer than TITLE_SIZE_MAX
+     * bytes are truncated in the header.
+     * 
+     * @return the title
+     */
+    public String getMindMapTitle() {
+        return this.title;
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Reads the header of the given .mindMap file. Only the header bytes are
+     * read.
+     * 
+     * @param file
+     *            the MindMap file
+     * @return the header
+     * @throws IOException
+     *             on read errors or if the file has no header (legacy and
+     *             version 1 files)
+     */
+    public static MindMapFileHeader readHeader(File file) throws IOException {
+
+        log.debug("Entering readHeader(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        ByteBuffer buffer = ByteBuffer
+                .allocate(MindMapFileFormat.HEADER_SIZE);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new IOException("No MindMap file header"); //$NON-NLS-1$
+                }
+            }
+        } finally {
+            in.close();
+        }
+        buffer.flip();
+
+        MindMapFileHeader header = parse(buffer);
+        log.debug("Leaving readHeader(): " + header); //$NON-NLS-1$
+        return header;
+    }
+
+    /**
+     * Parses a header from the given buffer, which must contain HEADER_SIZE
+     * bytes.
+     * 
+     * @param buffer
+     *            the buffer, positioned at the start of the header
+     * @return the header
+     * @throws IOException
+     *             if the buffer doesn't contain a valid header
+     */
+    static MindMapFileHeader parse(ByteBuffer buffer) throws IOException {
+
+        if (buffer.remaining() < MindMapFileFormat.HEADER_SIZE
+                || buffer.getInt() != MindMapFileFormat.MAGIC) {
+            throw new IOException("No MindMap file header"); //$NON-NLS-1$
+        }
+        short version = buffer.getShort();
+        if (version != MindMapFileFormat.VERSION) {
+            throw new IOException("No header index in MindMap file version " + version); //$NON-NLS-1$
+        }
+        short flags = buffer.getShort();
+        long mindMapId = buffer.getLong();
+        long lastIssuedID = buffer.getLong();
+        long lastModified = buffer.getLong();
+        int titleIndex = buffer.getInt();
+        int stringCount = buffer.getInt();
+        int ideaNodeCount = buffer.getInt();
+        int mapCount = buffer.getInt();
+        int[] creatorCounts = new int[MindMapFileFormat.CREATOR_SLOTS];
+        for (int i = 0; i < creatorCounts.length; i++) {
+            creatorCounts[i] = buffer.getInt();
+        }
+        long stringTableOffset = buffer.getLong();
+        long ideaNodeOffset = buffer.getLong();
+        long mapOffset = buffer.getLong();
+        int titleLength = buffer.getShort();
+
+        if (stringCount < 0 || ideaNodeCount < 0 || mapCount < 0
+                || stringTableOffset < MindMapFileFormat.HEADER_SIZE
+                || ideaNodeOffset < stringTableOffset
+                || mapOffset < ideaNodeOffset
+                || titleLength < 0
+                || titleLength > MindMapFileFormat.TITLE_SIZE_MAX) {
+            throw new IOException("Corrupt MindMap file header"); //$NON-NLS-1$
+        }
+        byte[] titleBytes = new byte[titleLength];
+        buffer.get(titleBytes);
+
+        return new MindMapFileHeader(version, flags, mindMapId, lastIssuedID,
+                lastModified, titleIndex, stringCount, ideaNodeCount, mapCount,
+                creatorCounts, stringTableOffset, ideaNodeOffset, mapOffset,
+                new String(titleBytes, TITLE_CHARSET));
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Writes the header into the given buffer. Exactly HEADER_SIZE bytes are
+     * written, unused bytes are zero.
+     * 
+     * @param buffer
+     *            the buffer
+     */
+    void write(ByteBuffer buffer) {
+
+        int start = buffer.position();
+        buffer.putInt(MindMapFileFormat.MAGIC);
+        buffer.putShort(this.version);
+        buffer.putShort(this.flags);
+        buffer.putLong(this.mindMapId);
+        buffer.putLong(this.lastIssuedID);
+        buffer.putLong(this.lastModified);
+        buffer.putInt(this.titleIndex);
+        buffer.putInt(this.stringCount);
+        buffer.putInt(this.ideaNodeCount);
+        buffer.putInt(this.mapCount);
+        for (int i = 0; i < MindMapFileFormat.CREATOR_SLOTS; i++) {
+            buffer.putInt((i < this.creatorCounts.length) ? this.creatorCounts[i]
+                    : 0);
+        }
+        buffer.putLong(this.stringTableOffset);
+        buffer.putLong(this.ideaNodeOffset);
+        buffer.putLong(this.mapOffset);
+
+        byte[] titleBytes = encodeTitle(this.title);
+        buffer.putShort((short) titleBytes.length);
+        buffer.put(titleBytes);
+
+        while (buffer.position() - start < MindMapFileFormat.HEADER_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Encodes the title in UTF-8, truncated to TITLE_SIZE_MAX bytes without
+     * splitting a character.
+     * 
+     * @param title
+     *            the title
+     * @return the encoded title
+     */
+    private static byte[] encodeTitle(String title) {
+        String value = (title != null) ? title : ""; //$NON-NLS-1$
+        try {
+            byte[] bytes = value.getBytes(TITLE_CHARSET);
+            while (bytes.length > MindMapFileFormat.TITLE_SIZE_MAX) {
+                value = value.substring(0, value.length() - 1);
+                bytes = value.getBytes(TITLE_CHARSET);
+            }
+            return bytes;
+        } catch (UnsupportedEncodingException ex) {
+            // UTF-8 is supported by every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a simple String representation of the MindMapFileHeader.
+     * 
+     * @return the simple String representation of the MindMapFileHeader.
+     */
+    @Override
+    public String toString() {
+        return "MindMapFileHeader [title=" + this.title + ", version=" + this.version //$NON-NLS-1$ //$NON-NLS-2$
+                + ", ideaNodeCount=" + this.ideaNodeCount + ", mapCount=" + this.mapCount //$NON-NLS-1$ //$NON-NLS-2$
+                + ", lastModified=" + this.lastModified + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+}
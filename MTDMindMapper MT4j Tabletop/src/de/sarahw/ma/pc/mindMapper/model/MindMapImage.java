@@ -0,0 +1,342 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * The content of a .mindMap file as read by the {@link MindMapDeserializer}:
+ * unlinked ideaNodes, the child IDs of every parent and the map records.
+ * </p>
+ * 
+ * <p>
+ * The {@link MindMapJournal} replays its records on the image before the
+ * ideaNodes are linked into a MindMap. Not thread safe.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+final class MindMapImage {
+
+    /** The unique ID of the MindMap */
+    private final long                  mindMapId;
+
+    /** The time the file was written, 0 for files without header */
+    private final long                  savedTime;
+
+    /** The title of the MindMap */
+    private String                      title;
+
+    /** The last ID issued when the MindMap was written */
+    private long                        lastIssuedID;
+
+    /** The greatest ID in use */
+    private long                        maxID;
+
+    /** The unlinked ideaNodes in file order */
+    private final ArrayList<IdeaNode>   ideaNodes;
+
+    /** The ideaNodes by ideaID */
+    private final LongHashMap<IdeaNode> ideaNodeIndex;
+
+    /** The child IDs in order, by ideaID of the parent */
+    private final LongHashMap<long[]>   childIDs;
+
+    /** The map records, {mapID, ideaID of the root} */
+    private final ArrayList<long[]>     maps;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new, empty MindMapImage.
+     * 
+     * @param mindMapId
+     *            the unique ID of the MindMap
+     * @param savedTime
+     *            the time the file was written, 0 for files without header
+     * @param title
+     *            the title
+     * @param lastIssuedID
+     *            the last ID issued when the MindMap was written
+     * @param expectedIdeaNodes
+     *            the expected number of ideaNodes
+     */
+    MindMapImage(long mindMapId, long savedTime, String title,
+            long lastIssuedID, int expectedIdeaNodes) {
+        this.mindMapId = mindMapId;
+        this.savedTime = savedTime;
+        this.title = title;
+        this.lastIssuedID = lastIssuedID;
+        this.maxID = Math.max(mindMapId, lastIssuedID);
+        this.ideaNodes = new ArrayList<IdeaNode>(expectedIdeaNodes);
+        this.ideaNodeIndex = new LongHashMap<IdeaNode>(expectedIdeaNodes);
+        this.childIDs = new LongHashMap<long[]>();
+        this.maps = new ArrayList<long[]>();
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the unique ID of the MindMap.
+     * 
+     * @return the mindMapId
+     */
+    long getMindMapId() {
+        return this.mindMapId;
+    }
+
+    /**
+     * Returns the time the file was written.
+     * 
+     * @return the time or 0 for files without header
+     */
+    long getSavedTime() {
+        return this.savedTime;
+    }
+
+    /**
+     * Returns the title of the MindMap.
+     * 
+     * @return the title
+     */
+    String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Sets the title of the MindMap.
+     * 
+     * @param title
+     *            the title to set
+     */
+    void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Returns the last ID issued when the MindMap was written.
+     * 
+     * @return the lastIssuedID
+     */
+    long getLastIssuedID() {
+        return this.lastIssuedID;
+    }
+
+    /**
+     * Sets the last ID issued when the MindMap was written.
+     * 
+     * @param lastIssuedID
+     *            the lastIssuedID to set
+     */
+    void setLastIssuedID(long lastIssuedID) {
+        this.lastIssuedID = lastIssuedID;
+        useID(lastIssuedID);
+    }
+
+    /**
+     * Returns the greatest ID in use.
+     * 
+     * @return the maxID
+     */
+    long getMaxID() {
+        return this.maxID;
+    }
+
+    /**
+     * Returns the unlinked ideaNodes in file order.
+     * 
+     * @return the ideaNodes
+     */
+    ArrayList<IdeaNode> getIdeaNodes() {
+        return this.ideaNodes;
+    }
+
+    /**
+     * Returns the map records in order.
+     * 
+     * @return the map records, {mapID, ideaID of the root}
+     */
+    ArrayList<long[]> getMaps() {
+        return this.maps;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Registers an ID as used.
+     * 
+     * @param id
+     *            the ID
+     */
+    void useID(long id) {
+        if (id > this.maxID) {
+            this.maxID = id;
+        }
+    }
+
+    /**
+     * Adds an unlinked ideaNode.
+     * 
+     * @param ideaNode
+     *            the ideaNode
+     * @return false, if an ideaNode with the same ideaID exists
+     */
+    boolean addIdeaNode(IdeaNode ideaNode) {
+        if (this.ideaNodeIndex.containsKey(ideaNode.getIdeaID())) {
+            return false;
+        }
+        this.ideaNodes.add(ideaNode);
+        this.ideaNodeIndex.put(ideaNode.getIdeaID(), ideaNode);
+        useID(ideaNode.getIdeaID());
+        useID(ideaNode.getData().getNodeDataID());
+        return true;
+    }
+
+    /**
+     * Replaces the ideaNode with the same ideaID, its child list is kept.
+     * 
+     * @param ideaNode
+     *            the new ideaNode
+     * @return false, if there is no ideaNode with the ideaID
+     */
+    boolean replaceIdeaNode(IdeaNode ideaNode) {
+        IdeaNode old = this.ideaNodeIndex.put(ideaNode.getIdeaID(), ideaNode);
+        if (old == null) {
+            this.ideaNodeIndex.remove(ideaNode.getIdeaID());
+            return false;
+        }
+        this.ideaNodes.set(indexOf(old), ideaNode);
+        useID(ideaNode.getData().getNodeDataID());
+        return true;
+    }
+
+    /**
+     * Removes an ideaNode and its child list.
+     * 
+     * @param ideaID
+     *            the ideaID
+     * @return false, if there is no ideaNode with the ideaID
+     */
+    boolean removeIdeaNode(long ideaID) {
+        IdeaNode ideaNode = this.ideaNodeIndex.remove(ideaID);
+        if (ideaNode == null) {
+            return false;
+        }
+        this.ideaNodes.remove(indexOf(ideaNode));
+        this.childIDs.remove(ideaID);
+        return true;
+    }
+
+    /**
+     * Returns the ideaNode with the given ideaID.
+     * 
+     * @param ideaID
+     *            the ideaID
+     * @return the ideaNode or null
+     */
+    IdeaNode getIdeaNode(long ideaID) {
+        return this.ideaNodeIndex.get(ideaID);
+    }
+
+    /**
+     * Returns the child IDs of a parent.
+     * 
+     * @param parentID
+     *            the ideaID of the parent
+     * @return the child IDs or null if the parent has no children
+     */
+    long[] getChildIDs(long parentID) {
+        return this.childIDs.get(parentID);
+    }
+
+    /**
+     * Sets the child IDs of a parent.
+     * 
+     * @param parentID
+     *            the ideaID of the parent
+     * @param children
+     *            the child IDs in order, null or empty if the parent has no
+     *            children
+     */
+    void setChildIDs(long parentID, long[] children) {
+        if (children == null || children.length == 0) {
+            this.childIDs.remove(parentID);
+        } else {
+            this.childIDs.put(parentID, children);
+        }
+    }
+
+    /**
+     * Inserts a map record.
+     * 
+     * @param index
+     *            the position of the map record
+     * @param mapID
+     *            the mapID
+     * @param rootID
+     *            the ideaID of the root ideaNode
+     * @return false, if the index is out of range
+     */
+    boolean addMap(int index, long mapID, long rootID) {
+        if (index < 0 || index > this.maps.size()) {
+            return false;
+        }
+        this.maps.add(index, new long[] { mapID, rootID });
+        useID(mapID);
+        return true;
+    }
+
+    /**
+     * Removes a map record.
+     * 
+     * @param mapID
+     *            the mapID
+     * @return false, if there is no map record with the mapID
+     */
+    boolean removeMap(long mapID) {
+        for (int i = 0; i < this.maps.size(); i++) {
+            if (this.maps.get(i)[0] == mapID) {
+                this.maps.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the position of an ideaNode in the ideaNode list, compared by
+     * identity.
+     * 
+     * @param ideaNode
+     *            the ideaNode, must be contained
+     * @return the position
+     */
+    private int indexOf(IdeaNode ideaNode) {
+        // Journaled changes usually concern the newest ideaNodes
+        for (int i = this.ideaNodes.size() - 1; i >= 0; i--) {
+            if (this.ideaNodes.get(i) == ideaNode) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("IdeaNode not contained"); //$NON-NLS-1$
+    }
+
+}
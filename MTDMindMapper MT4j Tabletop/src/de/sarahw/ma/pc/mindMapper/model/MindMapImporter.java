@@ -0,0 +1,576 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Imports MindMaps from the formats of other tools (see
+ * {@link EMindMapExchangeFormat}).
+ * </p>
+ * 
+ * <p>
+ * Documents are read as a stream of events (StAX for FreeMind and OPML,
+ * {@link MindMapJsonReader} for JSON), no document is built in memory.
+ * Besides the created IdeaNodes only the path from the current top-level
+ * node to the current node is held. All IdeaNodes are added within a single
+ * batch of the MindMap (see {@link MindMap#beginBatch()}), so observers are
+ * notified once.
+ * </p>
+ * 
+ * <p>
+ * IdeaNodes without a position (all IdeaNodes of FreeMind and OPML
+ * documents) are laid out as an outline, indented by depth. Texts longer
+ * than IDEA_TXT_LNGTH_MAX are truncated. Must be called on the thread owning
+ * the MindMap.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapExporter
+ */
+public final class MindMapImporter {
+
+    private static Logger      log               = Logger.getLogger(MindMapImporter.class);
+
+    /** The x position of top-level IdeaNodes laid out on import */
+    private static final float LAYOUT_ORIGIN_X   = 50.0f;
+
+    /** The y position of the first IdeaNode laid out on import */
+    private static final float LAYOUT_ORIGIN_Y   = 50.0f;
+
+    /** The x distance between an IdeaNode and its children on import */
+    private static final float LAYOUT_INDENT     = 150.0f;
+
+    /** The y distance between IdeaNodes laid out on import */
+    private static final float LAYOUT_ROW_HEIGHT = 40.0f;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private MindMapImporter() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Imports a file into a new MindMap. The title of the MindMap is the
+     * title of the document or the file name if the document has no title.
+     * 
+     * @param file
+     *            the file to read
+     * @param format
+     *            the format
+     * @return the new MindMap
+     * @throws IOException
+     *             on read errors or if the document is invalid
+     */
+    public static MindMap importMindMap(File file,
+            EMindMapExchangeFormat format) throws IOException {
+
+        log.debug("Entering importMindMap(file=" + file + ", format=" + format + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        MindMap mindMap = new MindMap();
+        ImportBuilder builder;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            builder = read(mindMap, in, format);
+        } finally {
+            in.close();
+        }
+
+        String title = builder.title;
+        if (title == null || title.trim().length() == 0) {
+            title = file.getName();
+            if (title.toLowerCase().endsWith(format.getExtension())) {
+                title = title.substring(0, title.length()
+                        - format.getExtension().length());
+            }
+        }
+        title = title.trim();
+        if (title.length() > MindMapSerializer.MAX_FILENAME_LENGTH) {
+            title = title.substring(0, MindMapSerializer.MAX_FILENAME_LENGTH);
+        }
+        mindMap.setMindMapTitle(title);
+
+        log.debug("Leaving importMindMap(): " + mindMap); //$NON-NLS-1$
+        return mindMap;
+    }
+
+    /**
+     * Imports a document into the given MindMap. The title of the MindMap is
+     * not changed. If the document is invalid, the IdeaNodes read before the
+     * error remain in the MindMap.
+     * 
+     * @param mindMap
+     *            the MindMap to add the IdeaNodes to
+     * @param in
+     *            the input stream, should be buffered, is not closed
+     * @param format
+     *            the format
+     * @return the number of IdeaNodes added
+     * @throws IOException
+     *             on read errors or if the document is invalid
+     */
+    public static int importInto(MindMap mindMap, InputStream in,
+            EMindMapExchangeFormat format) throws IOException {
+
+        log.debug("Entering importInto(mindMap=" + mindMap + ", format=" + format + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        int count = read(mindMap, in, format).count;
+
+        log.debug("Leaving importInto(): " + count); //$NON-NLS-1$
+        return count;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Reads a document into the given MindMap within a single batch.
+     * 
+     * @param mindMap
+     *            the MindMap to add the IdeaNodes to
+     * @param in
+     *            the input stream
+     * @param format
+     *            the format
+     * @return the builder holding the title and the number of IdeaNodes
+     * @throws IOException
+     *             on read errors or if the document is invalid
+     */
+    private static ImportBuilder read(MindMap mindMap, InputStream in,
+            EMindMapExchangeFormat format) throws IOException {
+
+        ImportBuilder builder = new ImportBuilder(mindMap);
+        mindMap.beginBatch();
+        try {
+            switch (format) {
+                case FREEMIND:
+                case OPML:
+                    XMLStreamReader xml = createXmlReader(in);
+                    try {
+                        if (format == EMindMapExchangeFormat.FREEMIND) {
+                            readFreeMind(xml, builder);
+                        } else {
+                            readOpml(xml, builder);
+                        }
+                    } finally {
+                        xml.close();
+                    }
+                    break;
+
+                case JSON:
+                    readJson(new MindMapJsonReader(new InputStreamReader(in,
+                            MindMapExporter.ENCODING)), builder);
+                    break;
+
+                default:
+                    throw new IOException("Unsupported format " + format); //$NON-NLS-1$
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Invalid document: " + ex.getMessage(), ex); //$NON-NLS-1$
+        } finally {
+            mindMap.commit();
+        }
+
+        log.info("Imported " + builder.count + " IdeaNodes"); //$NON-NLS-1$ //$NON-NLS-2$
+        return builder;
+    }
+
+    /**
+     * Creates a StAX reader. DTDs and external entities are not resolved.
+     * 
+     * @param in
+     *            the input stream
+     * @return the reader
+     * @throws XMLStreamException
+     *             if the reader can't be created
+     */
+    private static XMLStreamReader createXmlReader(InputStream in)
+            throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        return factory.createXMLStreamReader(in);
+    }
+
+    /**
+     * Reads a FreeMind document. The text of the root node is the title, its
+     * children are the top-level IdeaNodes.
+     * 
+     * @param xml
+     *            the StAX reader
+     * @param builder
+     *            the builder
+     * @throws XMLStreamException
+     *             on read errors
+     * @throws IOException
+     *             if an IdeaNode can't be added
+     */
+    private static void readFreeMind(XMLStreamReader xml, ImportBuilder builder)
+            throws XMLStreamException, IOException {
+
+        int depth = 0;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT
+                    && "node".equals(xml.getLocalName())) { //$NON-NLS-1$
+                depth++;
+                String text = xml.getAttributeValue(null, "TEXT"); //$NON-NLS-1$
+                if (depth == 1) {
+                    builder.title = text;
+                } else {
+                    builder.start(text);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && "node".equals(xml.getLocalName())) { //$NON-NLS-1$
+                if (depth > 1) {
+                    builder.end();
+                }
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads an OPML document. Every outline element becomes an IdeaNode.
+     * 
+     * @param xml
+     *            the StAX reader
+     * @param builder
+     *            the builder
+     * @throws XMLStreamException
+     *             on read errors
+     * @throws IOException
+     *             if an IdeaNode can't be added
+     */
+    private static void readOpml(XMLStreamReader xml, ImportBuilder builder)
+            throws XMLStreamException, IOException {
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("outline".equals(name)) { //$NON-NLS-1$
+                    String text = xml.getAttributeValue(null, "text"); //$NON-NLS-1$
+                    if (text == null) {
+                        text = xml.getAttributeValue(null, "title"); //$NON-NLS-1$
+                    }
+                    builder.start(text);
+                } else if ("title".equals(name) && builder.title == null) { //$NON-NLS-1$
+                    builder.title = xml.getElementText();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && "outline".equals(xml.getLocalName())) { //$NON-NLS-1$
+                builder.end();
+            }
+        }
+    }
+
+    /**
+     * Reads a JSON document written by the {@link MindMapExporter}.
+     * 
+     * @param json
+     *            the JSON reader
+     * @param builder
+     *            the builder
+     * @throws IOException
+     *             on read errors, if the document is invalid or an IdeaNode
+     *             can't be added
+     */
+    private static void readJson(MindMapJsonReader json, ImportBuilder builder)
+            throws IOException {
+
+        json.expect(MindMapJsonReader.BEGIN_OBJECT);
+        int token;
+        while ((token = json.next()) != MindMapJsonReader.END_OBJECT) {
+            if (token != MindMapJsonReader.NAME) {
+                throw new IOException("Invalid JSON document"); //$NON-NLS-1$
+            }
+            String name = json.getText();
+            if ("format".equals(name)) { //$NON-NLS-1$
+                if (!MindMapExporter.JSON_FORMAT.equals(json.nextString())) {
+                    throw new IOException("Not a MindMap JSON document"); //$NON-NLS-1$
+                }
+            } else if ("title".equals(name)) { //$NON-NLS-1$
+                builder.title = json.nextString();
+            } else if ("ideaNodes".equals(name)) { //$NON-NLS-1$
+                json.expect(MindMapJsonReader.BEGIN_ARRAY);
+                readJsonIdeaNodes(json, builder);
+            } else {
+                json.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Reads the array of top-level IdeaNodes of a JSON document and all
+     * their children without recursion. An IdeaNode is created when its
+     * children start or when its object ends, members after the children are
+     * ignored.
+     * 
+     * @param json
+     *            the JSON reader, positioned after the start of the array
+     * @param builder
+     *            the builder
+     * @throws IOException
+     *             on read errors, if the document is invalid or an IdeaNode
+     *             can't be added
+     */
+    private static void readJsonIdeaNodes(MindMapJsonReader json,
+            ImportBuilder builder) throws IOException {
+
+        // Members of the IdeaNode object that hasn't been created yet
+        String text = null;
+        float x = Float.NaN;
+        float y = Float.NaN;
+        float rotation = 0;
+        EIdeaNodeCreator owner = EIdeaNodeCreator.MULTITOUCH_TABLE;
+        EIdeaState state = EIdeaState.ACTIVE;
+        boolean pending = false;
+
+        int openObjects = 0;
+        boolean inObject = false;
+        while (true) {
+            int token = json.next();
+
+            if (!inObject) {
+                // Within an array of IdeaNodes
+                if (token == MindMapJsonReader.END_ARRAY) {
+                    if (openObjects == 0) {
+                        return;
+                    }
+                    inObject = true;
+                    continue;
+                }
+                if (token != MindMapJsonReader.BEGIN_OBJECT) {
+                    throw new IOException("Invalid JSON ideaNode"); //$NON-NLS-1$
+                }
+                text = null;
+                x = Float.NaN;
+                y = Float.NaN;
+                rotation = 0;
+                owner = EIdeaNodeCreator.MULTITOUCH_TABLE;
+                state = EIdeaState.ACTIVE;
+                pending = true;
+                openObjects++;
+                inObject = true;
+                continue;
+            }
+
+            // Within an IdeaNode object
+            if (token == MindMapJsonReader.END_OBJECT) {
+                if (pending) {
+                    builder.start(text, x, y, rotation, owner, state);
+                    pending = false;
+                }
+                builder.end();
+                openObjects--;
+                inObject = false;
+                continue;
+            }
+            if (token != MindMapJsonReader.NAME) {
+                throw new IOException("Invalid JSON ideaNode"); //$NON-NLS-1$
+            }
+
+            String name = json.getText();
+            if ("children".equals(name)) { //$NON-NLS-1$
+                if (pending) {
+                    builder.start(text, x, y, rotation, owner, state);
+                    pending = false;
+                }
+                json.expect(MindMapJsonReader.BEGIN_ARRAY);
+                inObject = false;
+            } else if (pending && "text".equals(name)) { //$NON-NLS-1$
+                text = json.nextString();
+            } else if (pending && "x".equals(name)) { //$NON-NLS-1$
+                x = json.nextFloat();
+            } else if (pending && "y".equals(name)) { //$NON-NLS-1$
+                y = json.nextFloat();
+            } else if (pending && "rotation".equals(name)) { //$NON-NLS-1$
+                rotation = json.nextFloat();
+            } else if (pending && "owner".equals(name)) { //$NON-NLS-1$
+                owner = valueOf(EIdeaNodeCreator.class, json.nextString(),
+                        owner);
+            } else if (pending && "state".equals(name)) { //$NON-NLS-1$
+                state = valueOf(EIdeaState.class, json.nextString(), state);
+            } else {
+                json.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Returns the enum constant with the given name.
+     * 
+     * @param <E>
+     *            the enum type
+     * @param type
+     *            the enum class
+     * @param name
+     *            the name of the constant
+     * @param defaultValue
+     *            the value returned for unknown names
+     * @return the constant or the default value
+     */
+    private static <E extends Enum<E>> E valueOf(Class<E> type, String name,
+            E defaultValue) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Unknown " + type.getSimpleName() + " " + name); //$NON-NLS-1$ //$NON-NLS-2$
+            return defaultValue;
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Creates the IdeaNodes of a document in document order. Holds the path
+     * from the current top-level IdeaNode to the current IdeaNode.
+     */
+    private static final class ImportBuilder {
+
+        /** The MindMap the IdeaNodes are added to */
+        private final MindMap             mindMap;
+
+        /** The path from the current top-level IdeaNode to the current one */
+        private final ArrayList<IdeaNode> path = new ArrayList<IdeaNode>();
+
+        /** The title of the document or null */
+        private String                    title;
+
+        /** The number of IdeaNodes created */
+        private int                       count;
+
+        /** The number of IdeaNodes laid out */
+        private int                       rows;
+
+        /**
+         * Constructor. Instantiates a new ImportBuilder.
+         * 
+         * @param mindMap
+         *            the MindMap the IdeaNodes are added to
+         */
+        ImportBuilder(MindMap mindMap) {
+            this.mindMap = mindMap;
+        }
+
+        /**
+         * Creates an IdeaNode without position, owned by the table, as child
+         * of the current IdeaNode and makes it the current IdeaNode.
+         * 
+         * @param text
+         *            the text or null
+         * @throws IOException
+         *             if the IdeaNode can't be added
+         */
+        void start(String text) throws IOException {
+            start(text, Float.NaN, Float.NaN, 0,
+                    EIdeaNodeCreator.MULTITOUCH_TABLE, EIdeaState.ACTIVE);
+        }
+
+        /**
+         * Creates an IdeaNode as child of the current IdeaNode and makes it
+         * the current IdeaNode.
+         * 
+         * @param text
+         *            the text or null
+         * @param x
+         *            the x position, NaN to lay out the IdeaNode
+         * @param y
+         *            the y position, NaN to lay out the IdeaNode
+         * @param rotation
+         *            the rotation in degrees
+         * @param owner
+         *            the owner
+         * @param state
+         *            the state
+         * @throws IOException
+         *             if the IdeaNode can't be added
+         */
+        void start(String text, float x, float y, float rotation,
+                EIdeaNodeCreator owner, EIdeaState state) throws IOException {
+
+            String ideaText = (text != null) ? text : ""; //$NON-NLS-1$
+            if (ideaText.length() > NodeContent.IDEA_TXT_LNGTH_MAX) {
+                ideaText = ideaText.substring(0,
+                        NodeContent.IDEA_TXT_LNGTH_MAX);
+            }
+            float positionX = x;
+            float positionY = y;
+            if (Float.isNaN(x) || Float.isNaN(y)) {
+                positionX = LAYOUT_ORIGIN_X + this.path.size() * LAYOUT_INDENT;
+                positionY = LAYOUT_ORIGIN_Y + this.rows * LAYOUT_ROW_HEIGHT;
+                this.rows++;
+            }
+
+            IdeaNode ideaNode = new IdeaNode(new NodeData(new NodeContent(
+                    ideaText), new NodeMetaData(positionX, positionY,
+                    rotation, owner)));
+            if (state != EIdeaState.ACTIVE) {
+                ideaNode.setIdeaState(state);
+            }
+            if (!this.mindMap.addIdeaNode(ideaNode)) {
+                throw new IOException("IdeaNode " + this.count + " could not be added"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (!this.path.isEmpty()) {
+                EAddChildIdeaNodeResultCase result = this.path.get(
+                        this.path.size() - 1).addIdeaChild(ideaNode,
+                        this.mindMap);
+                if (result == EAddChildIdeaNodeResultCase.NO_ADD_ON_ERROR
+                        || result == EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT) {
+                    throw new IOException("IdeaNode " + this.count + " could not be related to its parent"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+            this.path.add(ideaNode);
+            this.count++;
+        }
+
+        /**
+         * Ends the current IdeaNode, its parent becomes the current IdeaNode.
+         * 
+         * @throws IOException
+         *             if no IdeaNode has been started
+         */
+        void end() throws IOException {
+            if (this.path.isEmpty()) {
+                throw new IOException("Unbalanced document"); //$NON-NLS-1$
+            }
+            this.path.remove(this.path.size() - 1);
+        }
+    }
+
+}
@@ -0,0 +1,1250 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Append-only journal of the changes made to a MindMap since its .mindMap file
+ * was written. The journal is kept next to the .mindMap file (extension
+ * JOURNAL_EXTENSION), so saving a MindMap only appends the changes instead of
+ * rewriting the whole file.
+ * </p>
+ * 
+ * <p>
+ * Every save appends one frame: its length, the lastIssuedID, the records
+ * and a CRC32 checksum. The records (node created, text changed, moved,
+ * rotated, state changed, data changed, relation added and removed, node
+ * deleted, map added and removed, title changed) are computed from the
+ * differences between the last saved {@link MindMapSnapshot} and the current
+ * one, so a save costs time proportional to the number of changes. The frame
+ * is forced to disc before the save returns.
+ * </p>
+ * 
+ * <p>
+ * Journals with the header flag FLAG_ENCODED_FRAMES start the content of every
+ * frame with its encoding. If compression is enabled (see
+ * {@link MindMapSerializer#setCompressionEnabled(boolean)}), large frames are
+ * compressed on their own, so every frame stays decodable without the others.
+ * Journals without the flag are read and continued as before.
+ * </p>
+ * 
+ * <p>
+ * On loading, the {@link MindMapDeserializer} replays all complete frames on
+ * the content of the .mindMap file. A torn frame at the end (e.g. after a
+ * crash) is ignored and overwritten by the next save. The journal header
+ * contains the save time of the .mindMap file it belongs to, a journal of
+ * another version of the file is ignored.
+ * </p>
+ * 
+ * <p>
+ * When the journal exceeds the compaction threshold, a background thread
+ * writes the last saved state into a new .mindMap file and starts a new
+ * journal with the frames appended in the meantime. Like all full saves, the
+ * new file replaces the previous one only after it has been forced to disc
+ * (see {@link MindMapSerializer#writeMindMapToFile(MindMapSnapshot, File)}).
+ * The new journal is forced to disc under a temporary name before, so if the
+ * journal can't be renamed after the .mindMap file, loading takes the new
+ * journal from the temporary file.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class MindMapJournal {
+
+    private static Logger       log                          = Logger.getLogger(MindMapJournal.class);
+
+    /** The extension appended to the .mindMap file name of a journal */
+    public static final String  JOURNAL_EXTENSION            = ".journal";                           //$NON-NLS-1$
+
+    /** The default journal size in bytes that triggers a compaction */
+    public static final int     DEFAULT_COMPACTION_THRESHOLD = 256 * 1024;
+
+    /** The magic number of journal files ("MMJL") */
+    private static final int    MAGIC                        = 0x4D4D4A4C;
+
+    /** The journal format version */
+    private static final short  VERSION                      = 1;
+
+    /** The size of the journal header in bytes */
+    private static final int    HEADER_SIZE                  = 24;
+
+    /** The size of frame length and checksum in bytes */
+    private static final int    FRAME_OVERHEAD               = 8;
+
+    /** Header flag: the frame content starts with the frame encoding */
+    private static final short  FLAG_ENCODED_FRAMES          = 0x0001;
+
+    /** Frame encoding: records stored uncompressed */
+    private static final byte   FRAME_STORED                 = 0;
+
+    /** Frame encoding: uncompressed length followed by compressed records */
+    private static final byte   FRAME_COMPRESSED             = 1;
+
+    /** The minimum frame size in bytes worth compressing */
+    private static final int    MIN_COMPRESSED_FRAME         = 256;
+
+    /**
+     * The extension of the temporary file written during compaction, differs
+     * from the one of full saves as both may run at the same time
+     */
+    private static final String COMPACTION_EXTENSION         = ".compact";                           //$NON-NLS-1$
+
+    /** Record: ideaNode created */
+    private static final byte   NODE_CREATED                 = 1;
+
+    /** Record: idea text changed */
+    private static final byte   TEXT_CHANGED                 = 2;
+
+    /** Record: ideaNode moved */
+    private static final byte   MOVED                        = 3;
+
+    /** Record: ideaNode rotated */
+    private static final byte   ROTATED                      = 4;
+
+    /** Record: idea state changed */
+    private static final byte   STATE_CHANGED                = 5;
+
+    /** Record: nodeDataID or owner changed */
+    private static final byte   DATA_CHANGED                 = 6;
+
+    /** Record: child added to a parent */
+    private static final byte   RELATION_ADDED               = 7;
+
+    /** Record: child removed from a parent */
+    private static final byte   RELATION_REMOVED             = 8;
+
+    /** Record: ideaNode deleted */
+    private static final byte   NODE_DELETED                 = 9;
+
+    /** Record: map added */
+    private static final byte   MAP_ADDED                    = 10;
+
+    /** Record: map removed */
+    private static final byte   MAP_REMOVED                  = 11;
+
+    /** Record: title changed */
+    private static final byte   TITLE_CHANGED                = 12;
+
+    /** The background thread for compactions */
+    private static final Executor compactionExecutor = Executors
+            .newSingleThreadExecutor(new CompactionThreadFactory());
+
+    /** The .mindMap file */
+    private final File          mindMapFile;
+
+    /** The journal file */
+    private final File          journalFile;
+
+    /** The save time of the .mindMap file the journal belongs to */
+    private long                baseSavedTime;
+
+    /** The last saved state of the MindMap */
+    private MindMapSnapshot     persisted;
+
+    /** The number of valid bytes, 0 if the journal must be started anew */
+    private long                length;
+
+    /** True, if the frames of the journal file start with their encoding */
+    private boolean             encodedFrames;
+
+    /** The journal size in bytes that triggers a compaction */
+    private int                 compactionThreshold          = DEFAULT_COMPACTION_THRESHOLD;
+
+    /** Flag indicating if a compaction is running */
+    private boolean             compacting;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapJournal.
+     * 
+     * @param mindMapFile
+     *            the .mindMap file
+     * @param baseSavedTime
+     *            the save time of the .mindMap file, 0 if unknown
+     * @param persisted
+     *            the last saved state or null
+     * @param length
+     *            the number of valid bytes in the journal file
+     * @param encodedFrames
+     *            true, if the frames of the journal file start with their
+     *            encoding
+     */
+    private MindMapJournal(File mindMapFile, long baseSavedTime,
+            MindMapSnapshot persisted, long length, boolean encodedFrames) {
+        this.mindMapFile = mindMapFile;
+        this.journalFile = getJournalFile(mindMapFile);
+        this.baseSavedTime = baseSavedTime;
+        this.persisted = persisted;
+        this.length = length;
+        this.encodedFrames = encodedFrames;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the journal file.
+     * 
+     * @return the journalFile
+     */
+    public File getJournalFile() {
+        return this.journalFile;
+    }
+
+    /**
+     * Returns the number of valid bytes in the journal file.
+     * 
+     * @return the length
+     */
+    public synchronized long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Sets the journal size in bytes that triggers a compaction.
+     * 
+     * @param compactionThreshold
+     *            the compactionThreshold to set
+     */
+    public synchronized void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Returns the journal file of a .mindMap file.
+     * 
+     * @param mindMapFile
+     *            the .mindMap file
+     * @return the journal file
+     */
+    public static File getJournalFile(File mindMapFile) {
+        return new File(mindMapFile.getPath() + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Returns the temporary file of the new journal written by a compaction.
+     * 
+     * @param mindMapFile
+     *            the .mindMap file
+     * @return the temporary journal file
+     */
+    static File getCompactionJournalFile(File mindMapFile) {
+        return new File(getJournalFile(mindMapFile).getPath()
+                + COMPACTION_EXTENSION);
+    }
+
+    /**
+     * Writes the whole MindMap into the given .mindMap file and starts a new,
+     * empty journal for it.
+     * 
+     * @param mindMapFile
+     *            the .mindMap file
+     * @param snapshot
+     *            the snapshot to write
+     * @return the journal
+     * @throws IOException
+     *             on write errors
+     */
+    public static MindMapJournal create(File mindMapFile,
+            MindMapSnapshot snapshot) throws IOException {
+
+        log.debug("Entering create(mindMapFile=" + mindMapFile + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        MindMapSerializer.writeMindMapToFile(snapshot, mindMapFile);
+        MindMapJournal journal = new MindMapJournal(mindMapFile,
+                MindMapFileHeader.readHeader(mindMapFile).getLastModified(),
+                snapshot, 0, true);
+        synchronized (journal) {
+            journal.write(new byte[0]);
+        }
+
+        log.debug("Leaving create(): " + journal); //$NON-NLS-1$
+        return journal;
+    }
+
+    /**
+     * Replays the journal of a .mindMap file on the content read from the
+     * file. Frames that are incomplete or fail the checksum end the replay.
+     * 
+     * @param mindMapFile
+     *            the .mindMap file
+     * @param image
+     *            the content of the .mindMap file
+     * @return the journal, must be attached to the MindMap created from the
+     *         image
+     * @throws IOException
+     *             on read errors or if a complete frame can't be applied
+     */
+    static MindMapJournal open(File mindMapFile, MindMapImage image)
+            throws IOException {
+
+        log.debug("Entering open(mindMapFile=" + mindMapFile + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        File journalFile = getJournalFile(mindMapFile);
+        long length = 0;
+        int frames = 0;
+        boolean encodedFrames = false;
+
+        // A compaction may have been interrupted after replacing the
+        // .mindMap file, then its new journal is still in the temporary file
+        File compactionJournalFile = getCompactionJournalFile(mindMapFile);
+        if (image.getSavedTime() != 0
+                && !belongsTo(journalFile, image)
+                && belongsTo(compactionJournalFile, image)) {
+            log.warn("Journal " + journalFile + " restored from interrupted compaction"); //$NON-NLS-1$ //$NON-NLS-2$
+            moveJournalFile(compactionJournalFile, journalFile);
+        }
+
+        if (image.getSavedTime() != 0 && journalFile.isFile()) {
+            byte[] bytes = readFile(journalFile);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            if (bytes.length >= HEADER_SIZE && buffer.getInt() == MAGIC
+                    && buffer.getShort() == VERSION) {
+                encodedFrames = (buffer.getShort() & FLAG_ENCODED_FRAMES) != 0;
+                long mindMapId = buffer.getLong();
+                long savedTime = buffer.getLong();
+
+                if (mindMapId == image.getMindMapId()
+                        && savedTime == image.getSavedTime()) {
+                    length = HEADER_SIZE;
+                    CRC32 crc = new CRC32();
+                    while (buffer.remaining() >= FRAME_OVERHEAD) {
+                        int start = buffer.position();
+                        int frameLength = buffer.getInt();
+                        if (frameLength < 0
+                                || frameLength > buffer.remaining() - 4) {
+                            break;
+                        }
+                        crc.reset();
+                        crc.update(bytes, start + 4, frameLength);
+                        buffer.position(start + 4 + frameLength);
+                        if (buffer.getInt() != (int) crc.getValue()) {
+                            break;
+                        }
+                        if (encodedFrames) {
+                            replayEncodedFrame(bytes, start + 4, frameLength,
+                                    image);
+                        } else {
+                            replayFrame(bytes, start + 4, frameLength, image);
+                        }
+                        length = buffer.position();
+                        frames++;
+                    }
+                }
+            }
+            if (length < bytes.length) {
+                log.warn("Journal " + journalFile + " ignored from byte " + length); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        log.debug("Leaving open(): " + frames + " frames replayed"); //$NON-NLS-1$ //$NON-NLS-2$
+        // A new journal file is started with encoded frames
+        return new MindMapJournal(mindMapFile, image.getSavedTime(), null,
+                length, encodedFrames || length == 0);
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Sets the journal of the given MindMap and takes its current state as
+     * the last saved state. Called after loading.
+     * 
+     * @param mindMap
+     *            the MindMap created from the file of the journal
+     */
+    synchronized void attach(MindMap mindMap) {
+        this.persisted = mindMap.snapshot();
+        mindMap.setJournal(this);
+    }
+
+    /**
+     * Appends the changes between the last saved state and the given snapshot
+     * and forces them to disc. Nothing is written if nothing has changed.
+     * Starts a compaction in the background if the journal exceeds the
+     * compaction threshold.
+     * 
+     * @param file
+     *            the .mindMap file to save to
+     * @param snapshot
+     *            the current snapshot of the MindMap
+     * @return false, if the journal doesn't belong to the current version of
+     *         the given file, the whole MindMap must be written then
+     * @throws IOException
+     *             on write errors
+     */
+    public synchronized boolean append(File file, MindMapSnapshot snapshot)
+            throws IOException {
+
+        log.debug("Entering append(file=" + file + ", snapshot=" + snapshot + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        if (this.persisted == null
+                || this.persisted.getMindMapId() != snapshot.getMindMapId()
+                || !this.mindMapFile.getCanonicalFile().equals(
+                        file.getCanonicalFile()) || !isCurrent()) {
+            log.debug("Leaving append(): false, journal doesn't belong to the file"); //$NON-NLS-1$
+            return false;
+        }
+
+        byte[] frame = encodeFrame(this.persisted, snapshot,
+                this.encodedFrames);
+        if (frame != null) {
+            write(frame);
+            MindMapCollection.notifyFileChanged(file);
+        }
+        this.persisted = snapshot;
+
+        if (this.length > this.compactionThreshold && !this.compacting) {
+            this.compacting = true;
+            compactionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compact();
+                }
+            });
+        }
+
+        log.debug("Leaving append(): true, " + ((frame != null) ? frame.length : 0) + " bytes appended"); //$NON-NLS-1$ //$NON-NLS-2$
+        return true;
+    }
+
+    /**
+     * Writes the last saved state into a new .mindMap file and starts a new
+     * journal with the frames appended while the file was written. Runs in the
+     * background after appends that exceed the compaction threshold.
+     * 
+     * @return true, if the journal has been compacted
+     */
+    boolean compact() {
+
+        log.debug("Entering compact()"); //$NON-NLS-1$
+
+        MindMapSnapshot base;
+        long baseLength;
+        synchronized (this) {
+            base = this.persisted;
+            baseLength = this.length;
+        }
+
+        File temp = new File(this.mindMapFile.getPath() + COMPACTION_EXTENSION);
+        File tempJournal = getCompactionJournalFile(this.mindMapFile);
+        boolean replaced = false;
+        try {
+            if (base == null || baseLength == 0) {
+                throw new IOException("Journal not started"); //$NON-NLS-1$
+            }
+            MindMapSerializer.writeTempFile(base, temp);
+            long savedTime = MindMapFileHeader.readHeader(temp)
+                    .getLastModified();
+
+            synchronized (this) {
+                if (!isCurrent()) {
+                    throw new IOException("MindMap file has been replaced"); //$NON-NLS-1$
+                }
+                // The new journal must be on disc before the new .mindMap
+                // file, the old pair stays valid until then
+                byte[] tail = readTail(baseLength);
+                long tempLength = writeJournalFile(tempJournal, 0, savedTime,
+                        tail);
+                MindMapSerializer.replaceFile(temp, this.mindMapFile);
+                replaced = true;
+                this.baseSavedTime = savedTime;
+                if (moveJournalFile(tempJournal, this.journalFile)) {
+                    this.length = tempLength;
+                } else {
+                    // The temporary journal is kept for loading until the
+                    // journal file has been rewritten
+                    this.length = 0;
+                    write(tail);
+                    tempJournal.delete();
+                }
+            }
+
+        } catch (IOException ex) {
+            log.error("Leaving compact(): false, compaction of " + this.mindMapFile + " not successful: " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            return false;
+
+        } finally {
+            temp.delete();
+            if (!replaced) {
+                tempJournal.delete();
+            }
+            synchronized (this) {
+                this.compacting = false;
+            }
+        }
+
+        log.debug("Leaving compact(): true"); //$NON-NLS-1$
+        return true;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Checks if the .mindMap file is still the version the journal belongs
+     * to.
+     * 
+     * @return true, if the save time in the file header is the one of the
+     *         journal
+     */
+    private boolean isCurrent() {
+        if (this.baseSavedTime == 0 || !this.mindMapFile.isFile()) {
+            return false;
+        }
+        try {
+            return MindMapFileHeader.readHeader(this.mindMapFile)
+                    .getLastModified() == this.baseSavedTime;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the given frames at the end of the valid part of the journal and
+     * forces them to disc. Starts a new journal file if the length is 0.
+     * 
+     * @param frames
+     *            the encoded frames
+     * @throws IOException
+     *             on write errors
+     */
+    private void write(byte[] frames) throws IOException {
+        this.length = writeJournalFile(this.journalFile, this.length,
+                this.baseSavedTime, frames);
+    }
+
+    /**
+     * Writes the given frames at the given position of a journal file and
+     * forces them to disc. Writes the header first if the position is 0.
+     * 
+     * @param target
+     *            the journal file
+     * @param from
+     *            the number of valid bytes in the journal file
+     * @param savedTime
+     *            the save time of the .mindMap file the journal belongs to
+     * @param frames
+     *            the encoded frames
+     * @return the new number of valid bytes
+     * @throws IOException
+     *             on write errors
+     */
+    private long writeJournalFile(File target, long from, long savedTime,
+            byte[] frames) throws IOException {
+
+        ByteBuffer buffer;
+        if (from == 0) {
+            buffer = ByteBuffer.allocate(HEADER_SIZE + frames.length);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort(this.encodedFrames ? FLAG_ENCODED_FRAMES : 0);
+            buffer.putLong(this.persisted.getMindMapId());
+            buffer.putLong(savedTime);
+        } else {
+            buffer = ByteBuffer.allocate(frames.length);
+        }
+        buffer.put(frames);
+        buffer.flip();
+
+        RandomAccessFile file = new RandomAccessFile(target, "rw"); //$NON-NLS-1$
+        try {
+            FileChannel channel = file.getChannel();
+            // drop a torn frame or an outdated journal
+            channel.truncate(from);
+            long position = from;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            return position;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Checks if a journal file belongs to the given content of a .mindMap
+     * file.
+     * 
+     * @param journalFile
+     *            the journal file
+     * @param image
+     *            the content of the .mindMap file
+     * @return true, if the journal header has the MindMap id and save time of
+     *         the image
+     */
+    private static boolean belongsTo(File journalFile, MindMapImage image) {
+        if (!journalFile.isFile() || journalFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(
+                    journalFile));
+            try {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                    return false;
+                }
+                in.readShort();
+                return in.readLong() == image.getMindMapId()
+                        && in.readLong() == image.getSavedTime();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Moves a journal file to the given name, replacing an existing file.
+     * 
+     * @param from
+     *            the journal file to move
+     * @param to
+     *            the new name
+     * @return true, if the file has been moved
+     */
+    private static boolean moveJournalFile(File from, File to) {
+        if (from.renameTo(to)) {
+            return true;
+        }
+        to.delete();
+        return from.renameTo(to);
+    }
+
+    /**
+     * Reads the frames appended after the given position.
+     * 
+     * @param from
+     *            the position
+     * @return the frames
+     * @throws IOException
+     *             on read errors
+     */
+    private byte[] readTail(long from) throws IOException {
+        byte[] tail = new byte[(int) (this.length - from)];
+        RandomAccessFile file = new RandomAccessFile(this.journalFile, "r"); //$NON-NLS-1$
+        try {
+            file.seek(from);
+            file.readFully(tail);
+        } finally {
+            file.close();
+        }
+        return tail;
+    }
+
+    /**
+     * Reads a whole file.
+     * 
+     * @param file
+     *            the file
+     * @return the content
+     * @throws IOException
+     *             on read errors
+     */
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Encodes the changes between two snapshots of a MindMap as a frame.
+     * 
+     * @param before
+     *            the last saved snapshot
+     * @param after
+     *            the current snapshot
+     * @param encoded
+     *            true, to start the frame content with its encoding
+     * @return the frame or null if nothing has changed
+     * @throws IOException
+     *             on encoding errors
+     */
+    private static byte[] encodeFrame(MindMapSnapshot before,
+            MindMapSnapshot after, boolean encoded) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(after.getLastIssuedID());
+        int records = 0;
+
+        if (!before.getMindMapTitle().equals(after.getMindMapTitle())) {
+            out.writeByte(TITLE_CHANGED);
+            out.writeUTF(after.getMindMapTitle());
+            records++;
+        }
+
+        long[] changed = after.diffIdeaNodes(before);
+
+        // Created ideaNodes first, relations may refer to them
+        for (long ideaID : changed) {
+            IdeaNodeSnapshot created = after.getIdeaNode(ideaID);
+            if (before.getIdeaNode(ideaID) == null) {
+                out.writeByte(NODE_CREATED);
+                out.writeLong(ideaID);
+                out.writeLong(created.getNodeDataID());
+                out.writeUTF(created.getIdeaText());
+                out.writeFloat(created.getIdeaPositionX());
+                out.writeFloat(created.getIdeaPositionY());
+                out.writeFloat(created.getIdeaRotationInDegrees());
+                out.writeByte(created.getIdeaOwner().ordinal());
+                out.writeByte(created.getIdeaState().ordinal());
+                records++;
+            }
+        }
+
+        for (long ideaID : changed) {
+            IdeaNodeSnapshot old = before.getIdeaNode(ideaID);
+            IdeaNodeSnapshot current = after.getIdeaNode(ideaID);
+            records += writeRelationChanges(out, ideaID, childIDs(old),
+                    childIDs(current));
+
+            if (old != null && current != null) {
+                if (!old.getIdeaText().equals(current.getIdeaText())) {
+                    out.writeByte(TEXT_CHANGED);
+                    out.writeLong(ideaID);
+                    out.writeUTF(current.getIdeaText());
+                    records++;
+                }
+                if (Float.floatToIntBits(old.getIdeaPositionX()) != Float
+                        .floatToIntBits(current.getIdeaPositionX())
+                        || Float.floatToIntBits(old.getIdeaPositionY()) != Float
+                                .floatToIntBits(current.getIdeaPositionY())) {
+                    out.writeByte(MOVED);
+                    out.writeLong(ideaID);
+                    out.writeFloat(current.getIdeaPositionX());
+                    out.writeFloat(current.getIdeaPositionY());
+                    records++;
+                }
+                if (Float.floatToIntBits(old.getIdeaRotationInDegrees()) != Float
+                        .floatToIntBits(current.getIdeaRotationInDegrees())) {
+                    out.writeByte(ROTATED);
+                    out.writeLong(ideaID);
+                    out.writeFloat(current.getIdeaRotationInDegrees());
+                    records++;
+                }
+                if (old.getIdeaState() != current.getIdeaState()) {
+                    out.writeByte(STATE_CHANGED);
+                    out.writeLong(ideaID);
+                    out.writeByte(current.getIdeaState().ordinal());
+                    records++;
+                }
+                if (old.getNodeDataID() != current.getNodeDataID()
+                        || old.getIdeaOwner() != current.getIdeaOwner()) {
+                    out.writeByte(DATA_CHANGED);
+                    out.writeLong(ideaID);
+                    out.writeLong(current.getNodeDataID());
+                    out.writeByte(current.getIdeaOwner().ordinal());
+                    records++;
+                }
+            }
+        }
+
+        // Deleted ideaNodes last, after their relations have been removed
+        for (long ideaID : changed) {
+            if (after.getIdeaNode(ideaID) == null) {
+                out.writeByte(NODE_DELETED);
+                out.writeLong(ideaID);
+                records++;
+            }
+        }
+
+        records += writeMapChanges(out, before, after);
+
+        if (records == 0
+                && before.getLastIssuedID() == after.getLastIssuedID()) {
+            return null;
+        }
+
+        out.flush();
+        byte[] content = bytes.toByteArray();
+        int contentLength = content.length;
+        byte[] compressed = null;
+
+        if (encoded && MindMapSerializer.isCompressionEnabled()
+                && content.length >= MIN_COMPRESSED_FRAME) {
+            compressed = new byte[MindMapBlockCodec
+                    .maxCompressedLength(content.length)];
+            int compressedLength = new MindMapBlockCodec().compress(content,
+                    0, content.length, compressed, 0);
+            if (compressedLength + 5 < content.length) {
+                contentLength = compressedLength + 5;
+            } else {
+                compressed = null;
+            }
+        }
+        if (encoded && compressed == null) {
+            contentLength++;
+        }
+
+        // Frame length, content and checksum
+        ByteBuffer buffer = ByteBuffer.allocate(contentLength
+                + FRAME_OVERHEAD);
+        buffer.putInt(contentLength);
+        if (compressed != null) {
+            buffer.put(FRAME_COMPRESSED);
+            buffer.putInt(content.length);
+            buffer.put(compressed, 0, contentLength - 5);
+        } else {
+            if (encoded) {
+                buffer.put(FRAME_STORED);
+            }
+            buffer.put(content);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, contentLength);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Returns the child IDs of an ideaNode snapshot.
+     * 
+     * @param ideaNode
+     *            the ideaNode snapshot or null
+     * @return the child IDs, empty if the snapshot is null
+     */
+    private static long[] childIDs(IdeaNodeSnapshot ideaNode) {
+        if (ideaNode == null) {
+            return new long[0];
+        }
+        long[] result = new long[ideaNode.getChildCount()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ideaNode.getChildID(i);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the records that turn the old child list of a parent into the
+     * new one. Children that keep their relative order are not touched.
+     * 
+     * @param out
+     *            the output
+     * @param parentID
+     *            the ideaID of the parent
+     * @param before
+     *            the old child IDs
+     * @param after
+     *            the new child IDs
+     * @return the number of records written
+     * @throws IOException
+     *             on encoding errors
+     */
+    private static int writeRelationChanges(DataOutputStream out,
+            long parentID, long[] before, long[] after) throws IOException {
+
+        boolean[] kept = keptElements(before, after);
+        int records = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (!kept[i]) {
+                out.writeByte(RELATION_REMOVED);
+                out.writeLong(parentID);
+                out.writeLong(before[i]);
+                records++;
+            }
+        }
+        for (int i = 0; i < after.length; i++) {
+            if (!contains(before, kept, after[i])) {
+                out.writeByte(RELATION_ADDED);
+                out.writeLong(parentID);
+                out.writeLong(after[i]);
+                out.writeInt(i);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes the records that turn the old map list into the new one.
+     * 
+     * @param out
+     *            the output
+     * @param before
+     *            the last saved snapshot
+     * @param after
+     *            the current snapshot
+     * @return the number of records written
+     * @throws IOException
+     *             on encoding errors
+     */
+    private static int writeMapChanges(DataOutputStream out,
+            MindMapSnapshot before, MindMapSnapshot after) throws IOException {
+
+        // A map whose root changed is treated as a different map
+        long[] beforeMaps = new long[before.getMapCount()];
+        for (int i = 0; i < beforeMaps.length; i++) {
+            beforeMaps[i] = before.getMapID(i);
+        }
+        long[] afterMaps = new long[after.getMapCount()];
+        for (int i = 0; i < afterMaps.length; i++) {
+            afterMaps[i] = after.getMapID(i);
+        }
+
+        boolean[] kept = keptElements(beforeMaps, afterMaps);
+        for (int i = 0; i < beforeMaps.length; i++) {
+            if (kept[i]) {
+                for (int j = 0; j < afterMaps.length; j++) {
+                    if (afterMaps[j] == beforeMaps[i]
+                            && after.getMapRootID(j) != before.getMapRootID(i)) {
+                        kept[i] = false;
+                    }
+                }
+            }
+        }
+
+        int records = 0;
+        for (int i = 0; i < beforeMaps.length; i++) {
+            if (!kept[i]) {
+                out.writeByte(MAP_REMOVED);
+                out.writeLong(beforeMaps[i]);
+                records++;
+            }
+        }
+        for (int i = 0; i < afterMaps.length; i++) {
+            if (!contains(beforeMaps, kept, afterMaps[i])) {
+                out.writeByte(MAP_ADDED);
+                out.writeInt(i);
+                out.writeLong(afterMaps[i]);
+                out.writeLong(after.getMapRootID(i));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Determines the elements of a list that can stay in place when the list
+     * is turned into another one: the elements contained in both lists, if
+     * they have the same relative order in both lists. Otherwise no element is
+     * kept.
+     * 
+     * @param before
+     *            the old list
+     * @param after
+     *            the new list
+     * @return for every element of the old list, if it is kept
+     */
+    private static boolean[] keptElements(long[] before, long[] after) {
+        boolean[] kept = new boolean[before.length];
+        int j = 0;
+        for (int i = 0; i < before.length; i++) {
+            int k = indexOf(after, before[i]);
+            if (k >= 0) {
+                if (k < j) {
+                    // Relative order changed
+                    return new boolean[before.length];
+                }
+                kept[i] = true;
+                j = k;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Checks if a list contains a kept element.
+     * 
+     * @param list
+     *            the list
+     * @param kept
+     *            the kept flags of the list elements
+     * @param value
+     *            the element
+     * @return true, if the element is contained and kept
+     */
+    private static boolean contains(long[] list, boolean[] kept, long value) {
+        int i = indexOf(list, value);
+        return i >= 0 && kept[i];
+    }
+
+    /**
+     * Returns the position of a value in a list.
+     * 
+     * @param list
+     *            the list
+     * @param value
+     *            the value
+     * @return the position or -1
+     */
+    private static int indexOf(long[] list, long value) {
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a frame that starts with its encoding and applies its records to
+     * the content of a .mindMap file.
+     * 
+     * @param bytes
+     *            the journal
+     * @param offset
+     *            the start of the frame content
+     * @param frameLength
+     *            the length of the frame content
+     * @param image
+     *            the content of the .mindMap file
+     * @throws IOException
+     *             if the frame can't be decoded or a record can't be applied
+     */
+    private static void replayEncodedFrame(byte[] bytes, int offset,
+            int frameLength, MindMapImage image) throws IOException {
+
+        if (frameLength < 1) {
+            throw new IOException("Empty journal frame"); //$NON-NLS-1$
+        }
+        byte encoding = bytes[offset];
+        if (encoding == FRAME_STORED) {
+            replayFrame(bytes, offset + 1, frameLength - 1, image);
+
+        } else if (encoding == FRAME_COMPRESSED && frameLength >= 5) {
+            int rawLength = ByteBuffer.wrap(bytes, offset + 1, 4).getInt();
+            if (rawLength < 0) {
+                throw new IOException("Corrupt journal frame length " + rawLength); //$NON-NLS-1$
+            }
+            byte[] records = new byte[rawLength];
+            MindMapBlockCodec.decompress(bytes, offset + 5, frameLength - 5,
+                    records, 0, rawLength);
+            replayFrame(records, 0, rawLength, image);
+
+        } else {
+            throw new IOException("Unknown journal frame encoding " + encoding); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Applies the records of a frame to the content of a .mindMap file.
+     * 
+     * @param bytes
+     *            the journal
+     * @param offset
+     *            the start of the frame content
+     * @param frameLength
+     *            the length of the frame content
+     * @param image
+     *            the content of the .mindMap file
+     * @throws IOException
+     *             if a record can't be applied
+     */
+    private static void replayFrame(byte[] bytes, int offset,
+            int frameLength, MindMapImage image) throws IOException {
+
+        ByteArrayInputStream frame = new ByteArrayInputStream(bytes, offset,
+                frameLength);
+        DataInputStream in = new DataInputStream(frame);
+        EIdeaNodeCreator[] owners = EIdeaNodeCreator.values();
+        EIdeaState[] states = EIdeaState.values();
+
+        long lastIssuedID = in.readLong();
+        boolean applied = true;
+
+        while (applied && frame.available() > 0) {
+            byte type = in.readByte();
+            switch (type) {
+                case NODE_CREATED: {
+                    long ideaID = in.readLong();
+                    long nodeDataID = in.readLong();
+                    String text = in.readUTF();
+                    float x = in.readFloat();
+                    float y = in.readFloat();
+                    float rotation = in.readFloat();
+                    int owner = in.readByte();
+                    int state = in.readByte();
+                    applied = owner >= 0 && owner < owners.length
+                            && state >= 0 && state < states.length
+                            && image.addIdeaNode(MindMapDeserializer
+                                    .createIdeaNode(ideaID, nodeDataID, text,
+                                            x, y, rotation, owners[owner],
+                                            states[state]));
+                    break;
+                }
+                case TEXT_CHANGED: {
+                    IdeaNode ideaNode = image.getIdeaNode(in.readLong());
+                    String text = in.readUTF();
+                    applied = ideaNode != null && ideaNode.setIdeaText(text);
+                    break;
+                }
+                case MOVED: {
+                    IdeaNode ideaNode = image.getIdeaNode(in.readLong());
+                    float x = in.readFloat();
+                    float y = in.readFloat();
+                    applied = ideaNode != null
+                            && ideaNode.setIdeaPositionX(x)
+                            && ideaNode.setIdeaPositionY(y);
+                    break;
+                }
+                case ROTATED: {
+                    IdeaNode ideaNode = image.getIdeaNode(in.readLong());
+                    float rotation = in.readFloat();
+                    applied = ideaNode != null
+                            && ideaNode.setIdeaRotationInDegrees(rotation);
+                    break;
+                }
+                case STATE_CHANGED: {
+                    IdeaNode ideaNode = image.getIdeaNode(in.readLong());
+                    int state = in.readByte();
+                    applied = ideaNode != null && state >= 0
+                            && state < states.length;
+                    if (applied) {
+                        ideaNode.setIdeaState(states[state]);
+                    }
+                    break;
+                }
+                case DATA_CHANGED: {
+                    IdeaNode ideaNode = image.getIdeaNode(in.readLong());
+                    long nodeDataID = in.readLong();
+                    int owner = in.readByte();
+                    applied = ideaNode != null
+                            && owner >= 0
+                            && owner < owners.length
+                            && image.replaceIdeaNode(MindMapDeserializer
+                                    .createIdeaNode(ideaNode.getIdeaID(),
+                                            nodeDataID,
+                                            ideaNode.getIdeaText(),
+                                            ideaNode.getIdeaPositionX(),
+                                            ideaNode.getIdeaPositionY(),
+                                            ideaNode.getIdeaRotationInDegrees(),
+                                            owners[owner],
+                                            ideaNode.getIdeaState()));
+                    break;
+                }
+                case RELATION_ADDED: {
+                    long parentID = in.readLong();
+                    long childID = in.readLong();
+                    int index = in.readInt();
+                    long[] children = image.getChildIDs(parentID);
+                    if (children == null) {
+                        children = new long[0];
+                    }
+                    applied = image.getIdeaNode(parentID) != null
+                            && index >= 0 && index <= children.length;
+                    if (applied) {
+                        long[] result = new long[children.length + 1];
+                        System.arraycopy(children, 0, result, 0, index);
+                        result[index] = childID;
+                        System.arraycopy(children, index, result, index + 1,
+                                children.length - index);
+                        image.setChildIDs(parentID, result);
+                    }
+                    break;
+                }
+                case RELATION_REMOVED: {
+                    long parentID = in.readLong();
+                    long childID = in.readLong();
+                    long[] children = image.getChildIDs(parentID);
+                    int index = (children != null) ? indexOf(children,
+                            childID) : -1;
+                    applied = index >= 0;
+                    if (applied) {
+                        long[] result = new long[children.length - 1];
+                        System.arraycopy(children, 0, result, 0, index);
+                        System.arraycopy(children, index + 1, result, index,
+                                result.length - index);
+                        image.setChildIDs(parentID, result);
+                    }
+                    break;
+                }
+                case NODE_DELETED:
+                    applied = image.removeIdeaNode(in.readLong());
+                    break;
+                case MAP_ADDED: {
+                    int index = in.readInt();
+                    long mapID = in.readLong();
+                    applied = image.addMap(index, mapID, in.readLong());
+                    break;
+                }
+                case MAP_REMOVED:
+                    applied = image.removeMap(in.readLong());
+                    break;
+                case TITLE_CHANGED:
+                    image.setTitle(in.readUTF());
+                    break;
+                default:
+                    applied = false;
+            }
+            if (!applied) {
+                throw new IOException("Journal record of type " + type + " can't be applied"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        image.setLastIssuedID(lastIssuedID);
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a simple String representation of the MindMapJournal.
+     * 
+     * @return the simple String representation of the MindMapJournal.
+     */
+    @Override
+    public String toString() {
+        return "MindMapJournal [journalFile=" + this.journalFile + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Creates the daemon thread for compactions.
+     */
+    private static class CompactionThreadFactory implements ThreadFactory {
+
+        /**
+         * Creates a new daemon thread with minimal priority.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MindMapJournal compaction"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+}
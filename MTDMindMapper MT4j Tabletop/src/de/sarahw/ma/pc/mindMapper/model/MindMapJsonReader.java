@@ -0,0 +1,336 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * Pull reader for JSON documents. Returns the document as a sequence of
+ * tokens without building it in memory, only the current string or number
+ * is held.
+ * </p>
+ * 
+ * <p>
+ * Tokens are checked for valid syntax. Commas and the order of the tokens
+ * are not checked, the caller checks the structure it expects.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapImporter
+ */
+final class MindMapJsonReader {
+
+    /** Token: start of an object */
+    static final int            BEGIN_OBJECT = 1;
+
+    /** Token: end of an object */
+    static final int            END_OBJECT   = 2;
+
+    /** Token: start of an array */
+    static final int            BEGIN_ARRAY  = 3;
+
+    /** Token: end of an array */
+    static final int            END_ARRAY    = 4;
+
+    /** Token: name of an object member, the name is the text */
+    static final int            NAME         = 5;
+
+    /** Token: string value, the string is the text */
+    static final int            STRING       = 6;
+
+    /** Token: number, true, false or null, the literal is the text */
+    static final int            LITERAL      = 7;
+
+    /** Token: end of the document */
+    static final int            END_DOCUMENT = 8;
+
+    /** The size of the read buffer */
+    private static final int    BUFFER_SIZE  = 8192;
+
+    /** The underlying reader */
+    private final Reader        in;
+
+    /** The read buffer */
+    private final char[]        buffer       = new char[BUFFER_SIZE];
+
+    /** The number of chars in the buffer */
+    private int                 limit;
+
+    /** The position in the buffer */
+    private int                 position;
+
+    /** The text of the current token */
+    private final StringBuilder text         = new StringBuilder();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapJsonReader.
+     * 
+     * @param in
+     *            the underlying reader, doesn't need to be buffered
+     */
+    MindMapJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the text of the current NAME, STRING or LITERAL token.
+     * 
+     * @return the text
+     */
+    String getText() {
+        return this.text.toString();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Reads the next token.
+     * 
+     * @return the token
+     * @throws IOException
+     *             on read errors or invalid syntax
+     */
+    int next() throws IOException {
+
+        int c = skipWhitespaceAndCommas();
+        switch (c) {
+            case -1:
+                return END_DOCUMENT;
+            case '{':
+                return BEGIN_OBJECT;
+            case '}':
+                return END_OBJECT;
+            case '[':
+                return BEGIN_ARRAY;
+            case ']':
+                return END_ARRAY;
+            case '"':
+                readString();
+                c = skipWhitespaceAndCommas();
+                if (c == ':') {
+                    return NAME;
+                }
+                if (c >= 0) {
+                    this.position--;
+                }
+                return STRING;
+            default:
+                readLiteral(c);
+                return LITERAL;
+        }
+    }
+
+    /**
+     * Reads the next token, which must be of the given type.
+     * 
+     * @param token
+     *            the expected token
+     * @throws IOException
+     *             on read errors, invalid syntax or if the token differs
+     */
+    void expect(int token) throws IOException {
+        int read = next();
+        if (read != token) {
+            throw new IOException("Unexpected JSON token " + read + ", expected " + token); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Reads the next token as a number.
+     * 
+     * @return the number
+     * @throws IOException
+     *             on read errors or if the token is no number
+     */
+    float nextFloat() throws IOException {
+        expect(LITERAL);
+        try {
+            return Float.parseFloat(getText());
+        } catch (NumberFormatException ex) {
+            throw new IOException("Not a JSON number: " + getText()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the next token as a string.
+     * 
+     * @return the string
+     * @throws IOException
+     *             on read errors or if the token is no string
+     */
+    String nextString() throws IOException {
+        expect(STRING);
+        return getText();
+    }
+
+    /**
+     * Skips the next value, including all members or elements of objects
+     * and arrays.
+     * 
+     * @throws IOException
+     *             on read errors or invalid syntax
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (next()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw new IOException("Unexpected end of JSON document"); //$NON-NLS-1$
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Reads the next char.
+     * 
+     * @return the char or -1 at the end of the document
+     * @throws IOException
+     *             on read errors
+     */
+    private int read() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = this.in.read(this.buffer, 0, this.buffer.length);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return -1;
+            }
+        }
+        return this.buffer[this.position++];
+    }
+
+    /**
+     * Reads the next char that is neither whitespace nor a comma.
+     * 
+     * @return the char or -1 at the end of the document
+     * @throws IOException
+     *             on read errors
+     */
+    private int skipWhitespaceAndCommas() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',');
+        return c;
+    }
+
+    /**
+     * Reads a string after its opening quote into the text.
+     * 
+     * @throws IOException
+     *             on read errors or invalid syntax
+     */
+    private void readString() throws IOException {
+        this.text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c < 0x20) {
+                throw new IOException("Unterminated JSON string"); //$NON-NLS-1$
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw new IOException("Invalid JSON unicode escape"); //$NON-NLS-1$
+                            }
+                            c = (c << 4) | digit;
+                        }
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    default:
+                        throw new IOException("Invalid JSON escape"); //$NON-NLS-1$
+                }
+            }
+            this.text.append((char) c);
+        }
+    }
+
+    /**
+     * Reads a number, true, false or null into the text.
+     * 
+     * @param first
+     *            the first char of the literal
+     * @throws IOException
+     *             on read errors or invalid syntax
+     */
+    private void readLiteral(int first) throws IOException {
+        this.text.setLength(0);
+        int c = first;
+        while ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-'
+                || c == '+' || c == '.' || c == 'E') {
+            this.text.append((char) c);
+            c = read();
+        }
+        if (c >= 0) {
+            this.position--;
+        }
+
+        String literal = this.text.toString();
+        if (literal.length() == 0) {
+            throw new IOException("Invalid JSON character " + (char) first); //$NON-NLS-1$
+        }
+        if (!literal.equals("true") && !literal.equals("false") //$NON-NLS-1$ //$NON-NLS-2$
+                && !literal.equals("null") && (first > '9' || first == '+')) { //$NON-NLS-1$
+            throw new IOException("Invalid JSON literal " + literal); //$NON-NLS-1$
+        }
+    }
+
+}
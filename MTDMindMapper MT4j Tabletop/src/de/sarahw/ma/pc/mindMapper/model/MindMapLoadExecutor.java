@@ -0,0 +1,282 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Loads MindMaps on a dedicated load thread, so decoding a file and preparing
+ * its views never block the render thread.
+ * </p>
+ * 
+ * <p>
+ * The load thread decodes the file and creates the {@link MindMapViewPlan} of
+ * the MindMap, whose IdeaNodes are prepared in chunks on a pool of worker
+ * threads. The result is delivered as a command on the ModelCommandQueue: on
+ * the render thread the callback is called and the MindMap is set as the
+ * loaded MindMap of the MindMapCollection, which notifies its listeners.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IMindMapLoadCallback
+ */
+public final class MindMapLoadExecutor {
+
+    private static Logger           log         = Logger.getLogger(MindMapLoadExecutor.class);
+
+    /** The maximum number of worker threads */
+    private static final int        WORKERS_MAX = 4;
+
+    /** The queue on which the results are delivered to the render thread */
+    private final ModelCommandQueue callbackQueue;
+
+    /** The executor of the load thread */
+    private final ExecutorService   executor;
+
+    /** The executor of the worker threads */
+    private final ExecutorService   workers;
+
+    /** The number of MindMaps loaded */
+    private final AtomicLong        loadedCount = new AtomicLong();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapLoadExecutor with its own load
+     * and worker threads.
+     * 
+     * @param callbackQueue
+     *            the queue on which the results are delivered
+     */
+    public MindMapLoadExecutor(ModelCommandQueue callbackQueue) {
+        this(callbackQueue, Executors
+                .newSingleThreadExecutor(new LoadThreadFactory(
+                        "MindMapLoadExecutor")), //$NON-NLS-1$
+                Executors.newFixedThreadPool(getWorkerCount(),
+                        new LoadThreadFactory("MindMapLoadWorker"))); //$NON-NLS-1$
+    }
+
+    /**
+     * Constructor. Instantiates a new MindMapLoadExecutor that runs the loads
+     * on the given executor and prepares the view plans on the given workers.
+     * 
+     * @param callbackQueue
+     *            the queue on which the results are delivered
+     * @param executor
+     *            the executor of the loads
+     * @param workers
+     *            the executor of the view plan chunks, must not be the
+     *            executor of the loads
+     */
+    MindMapLoadExecutor(ModelCommandQueue callbackQueue,
+            ExecutorService executor, ExecutorService workers) {
+        log.debug("Executing MindMapLoadExecutor()"); //$NON-NLS-1$
+        this.callbackQueue = callbackQueue;
+        this.executor = executor;
+        this.workers = workers;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of MindMaps loaded.
+     * 
+     * @return the loadedCount
+     */
+    public long getLoadedCount() {
+        return this.loadedCount.get();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Requests loading a MindMap file.
+     * 
+     * @param file
+     *            the file to load
+     * @param callback
+     *            the callback to call on the render thread, may be null
+     */
+    public void load(final File file, final IMindMapLoadCallback callback) {
+
+        log.debug("Entering load(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runRequest(file, callback);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.error("Load request rejected, executor has been shut down"); //$NON-NLS-1$
+            deliver(file, null, callback);
+        }
+
+        log.debug("Leaving load()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Finishes the loads already requested and stops the load and worker
+     * threads.
+     * 
+     * @param timeoutMillis
+     *            the maximum time to wait in milliseconds
+     * @return true, if all loads have been finished
+     */
+    public boolean shutdown(long timeoutMillis) {
+
+        log.debug("Entering shutdown(timeoutMillis=" + timeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        this.executor.shutdown();
+        try {
+            boolean result = this.executor.awaitTermination(timeoutMillis,
+                    TimeUnit.MILLISECONDS);
+            this.workers.shutdown();
+            log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.workers.shutdown();
+            log.error("Leaving shutdown(): false, interrupted"); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the number of worker threads, one per processor up to
+     * WORKERS_MAX.
+     * 
+     * @return the number of worker threads
+     */
+    private static int getWorkerCount() {
+        return Math.max(1, Math.min(WORKERS_MAX, Runtime.getRuntime()
+                .availableProcessors()));
+    }
+
+    /**
+     * Decodes a file and creates its view plan on the load thread.
+     * 
+     * @param file
+     *            the file to load
+     * @param callback
+     *            the callback
+     */
+    private void runRequest(File file, IMindMapLoadCallback callback) {
+
+        MindMapViewPlan plan = null;
+        try {
+            MindMap mindMap = MindMapDeserializer.getMindMapFromDisc(file);
+            if (mindMap != null) {
+                plan = MindMapViewPlan.create(mindMap, this.workers);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Loading " + file + " interrupted"); //$NON-NLS-1$ //$NON-NLS-2$
+        } catch (RuntimeException ex) {
+            log.error("Loading " + file + " failed: " + ex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.loadedCount.incrementAndGet();
+
+        deliver(file, plan, callback);
+    }
+
+    /**
+     * Delivers the result of a load on the render thread.
+     * 
+     * @param file
+     *            the loaded file
+     * @param plan
+     *            the view plan of the loaded MindMap or null if loading
+     *            failed
+     * @param callback
+     *            the callback or null
+     */
+    private void deliver(final File file, final MindMapViewPlan plan,
+            final IMindMapLoadCallback callback) {
+
+        this.callbackQueue.submit(new IModelCommand() {
+            @Override
+            public void execute(AppModel model) {
+                if (plan == null) {
+                    if (callback != null) {
+                        callback.loadFailed(file);
+                    }
+                    return;
+                }
+                if (callback != null) {
+                    callback.loadSucceeded(plan);
+                }
+                MindMapCollection.getInstance().setLoadedMindMap(
+                        plan.getMindMap());
+            }
+        });
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Creates the load and worker threads.
+     */
+    private static class LoadThreadFactory implements ThreadFactory {
+
+        /** The name prefix of the threads */
+        private final String        name;
+
+        /** The number of threads created */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Constructor. Instantiates a new LoadThreadFactory.
+         * 
+         * @param name
+         *            the name prefix of the threads
+         */
+        LoadThreadFactory(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Creates a new daemon thread. Loads still running on exit are
+         * finished by {@link MindMapLoadExecutor#shutdown(long)}.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.name + "-" //$NON-NLS-1$
+                    + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Converts MindMap files written by the former object serialization
+ * (ObjectOutputStream) into the binary .mindMap format.
+ * </p>
+ * 
+ * <p>
+ * The migration is one-way: the converted file replaces the legacy file, which
+ * is kept next to it with the extension LEGACY_BACKUP_EXTENSION. Legacy files
+ * can only be read as long as the serialVersionUIDs of the model classes are
+ * unchanged.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class MindMapMigrator {
+
+    private static Logger       log                     = Logger.getLogger(MindMapMigrator.class);
+
+    /** The extension appended to the backup of a migrated legacy file */
+    public static final String  LEGACY_BACKUP_EXTENSION = ".legacy";                            //$NON-NLS-1$
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private MindMapMigrator() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Reads a legacy MindMap file and replaces it by a file in the binary
+     * format. If the converted file cannot be written, the legacy file is left
+     * unchanged and the MindMap is returned anyway.
+     * 
+     * @param file
+     *            the legacy MindMap file
+     * @return the loaded MindMap or null if the legacy file couldn't be read
+     */
+    public static MindMap migrateLegacyMindMap(File file) {
+
+        log.debug("Entering migrateLegacyMindMap(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        MindMap mindMap = readLegacyMindMap(file);
+        if (mindMap == null) {
+            log.error("Leaving migrateLegacyMindMap(): null, legacy file could not be read"); //$NON-NLS-1$
+            return null;
+        }
+
+        File temp = MindMapSerializer.getTempFile(file);
+        File backup = new File(file.getPath() + LEGACY_BACKUP_EXTENSION);
+        try {
+            MindMapSerializer.writeTempFile(mindMap.snapshot(), temp);
+            if (backup.exists() && !backup.delete()) {
+                throw new IOException("Backup " + backup + " could not be replaced"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (!file.renameTo(backup)) {
+                throw new IOException("Legacy file could not be renamed"); //$NON-NLS-1$
+            }
+            if (!temp.renameTo(file)) {
+                // Restore the legacy file
+                backup.renameTo(file);
+                throw new IOException("Converted file could not be renamed"); //$NON-NLS-1$
+            }
+        } catch (IOException ex) {
+            log.error("Migration of " + file + " not successful: " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            temp.delete();
+        }
+
+        log.debug("Leaving migrateLegacyMindMap(): " + mindMap); //$NON-NLS-1$
+        return mindMap;
+    }
+
+    /**
+     * Reads a MindMap from a legacy file via object deserialization.
+     * 
+     * @param file
+     *            the legacy MindMap file
+     * @return the MindMap or null if deserialization failed
+     */
+    public static MindMap readLegacyMindMap(File file) {
+
+        log.debug("Entering readLegacyMindMap(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            MindMap mindMap = (MindMap) in.readObject();
+
+            log.debug("Leaving readLegacyMindMap(): " + mindMap); //$NON-NLS-1$
+            return mindMap;
+
+        } catch (IOException ex) {
+            log.error("Leaving readLegacyMindMap(): null; on error, deserialization not successful: " + //$NON-NLS-1$
+                    ex.getMessage());
+            return null;
+        } catch (ClassNotFoundException ex) {
+            log.error("Leaving readLegacyMindMap(): null; on error, deserialization not successful: " + //$NON-NLS-1$
+                    ex.getMessage());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    log.warn("Input stream could not be closed: " + ex.getMessage()); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+}
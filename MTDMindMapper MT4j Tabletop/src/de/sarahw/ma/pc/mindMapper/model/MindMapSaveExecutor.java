@@ -0,0 +1,344 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Saves MindMaps on a dedicated save thread, so encoding and writing never
+ * block the render thread.
+ * </p>
+ * 
+ * <p>
+ * {@link #save(MindMap, IMindMapSaveCallback)} takes a snapshot of the
+ * MindMap on the render thread, which is cheap (see
+ * {@link MindMap#snapshot()}). The snapshot is written on the save thread and
+ * the result is delivered as a command on the ModelCommandQueue, so the
+ * callbacks are called on the render thread. The save thread doesn't touch
+ * the MindMap: the journal of the MindMap is taken along with the snapshot,
+ * and a new journal started by the save is set by the same command.
+ * </p>
+ * 
+ * <p>
+ * Back-to-back save requests for a MindMap are coalesced: while a request is
+ * waiting for the save thread, further requests replace its snapshot by the
+ * newer one and add their callbacks, so the MindMap is written once.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IMindMapSaveCallback
+ */
+public final class MindMapSaveExecutor {
+
+    private static Logger                               log             = Logger.getLogger(MindMapSaveExecutor.class);
+
+    /** The queue on which the results are delivered to the render thread */
+    private final ModelCommandQueue                     callbackQueue;
+
+    /** The executor of the save thread */
+    private final ExecutorService                       executor;
+
+    /** The requests waiting for the save thread, by MindMap */
+    private final IdentityHashMap<MindMap, SaveRequest> pendingRequests = new IdentityHashMap<MindMap, SaveRequest>();
+
+    /** The number of saves written */
+    private final AtomicLong                            savedCount      = new AtomicLong();
+
+    /** The number of requests coalesced into a waiting request */
+    private final AtomicLong                            coalescedCount  = new AtomicLong();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapSaveExecutor with its own save
+     * thread.
+     * 
+     * @param callbackQueue
+     *            the queue on which the results are delivered
+     */
+    public MindMapSaveExecutor(ModelCommandQueue callbackQueue) {
+        this(callbackQueue, Executors
+                .newSingleThreadExecutor(new SaveThreadFactory()));
+    }
+
+    /**
+     * Constructor. Instantiates a new MindMapSaveExecutor that runs the saves
+     * on the given executor, which must run one task at a time.
+     * 
+     * @param callbackQueue
+     *            the queue on which the results are delivered
+     * @param executor
+     *            the single threaded executor
+     */
+    MindMapSaveExecutor(ModelCommandQueue callbackQueue,
+            ExecutorService executor) {
+        log.debug("Executing MindMapSaveExecutor()"); //$NON-NLS-1$
+        this.callbackQueue = callbackQueue;
+        this.executor = executor;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of saves written.
+     * 
+     * @return the savedCount
+     */
+    public long getSavedCount() {
+        return this.savedCount.get();
+    }
+
+    /**
+     * Returns the number of requests coalesced into a waiting request.
+     * 
+     * @return the coalescedCount
+     */
+    public long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Requests saving a MindMap. Takes a snapshot of the MindMap, so it must
+     * be called on the render thread after the model has been updated.
+     * 
+     * @param mindMap
+     *            the MindMap to save
+     * @param callback
+     *            the callback to call on the render thread, may be null
+     */
+    public void save(MindMap mindMap, IMindMapSaveCallback callback) {
+
+        log.debug("Entering save(mindMap=" + mindMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        MindMapSnapshot snapshot = mindMap.snapshot();
+        MindMapJournal journal = mindMap.getJournal();
+        SaveRequest request;
+
+        synchronized (this.pendingRequests) {
+            request = this.pendingRequests.get(mindMap);
+            if (request != null) {
+                request.snapshot = snapshot;
+                request.journal = journal;
+                request.addCallback(callback);
+                this.coalescedCount.incrementAndGet();
+                log.debug("Leaving save(): coalesced with waiting request"); //$NON-NLS-1$
+                return;
+            }
+            request = new SaveRequest(mindMap, snapshot, journal);
+            request.addCallback(callback);
+            this.pendingRequests.put(mindMap, request);
+        }
+
+        try {
+            final SaveRequest newRequest = request;
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runRequest(newRequest);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.error("Save request rejected, executor has been shut down"); //$NON-NLS-1$
+            synchronized (this.pendingRequests) {
+                this.pendingRequests.remove(mindMap);
+            }
+            deliver(mindMap, request.snapshot, null, request.callbacks, false);
+        }
+
+        log.debug("Leaving save()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Finishes the saves already requested and stops the save thread.
+     * 
+     * @param timeoutMillis
+     *            the maximum time to wait in milliseconds
+     * @return true, if all saves have been finished
+     */
+    public boolean shutdown(long timeoutMillis) {
+
+        log.debug("Entering shutdown(timeoutMillis=" + timeoutMillis + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        this.executor.shutdown();
+        try {
+            boolean result = this.executor.awaitTermination(timeoutMillis,
+                    TimeUnit.MILLISECONDS);
+            log.debug("Leaving shutdown(): " + result); //$NON-NLS-1$
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Leaving shutdown(): false, interrupted"); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Writes a request on the save thread. Requests made from now on for the
+     * same MindMap are not coalesced with this one anymore.
+     * 
+     * @param request
+     *            the request
+     */
+    private void runRequest(SaveRequest request) {
+
+        MindMapSnapshot snapshot;
+        MindMapJournal journal;
+        ArrayList<IMindMapSaveCallback> callbacks;
+        synchronized (this.pendingRequests) {
+            this.pendingRequests.remove(request.mindMap);
+            snapshot = request.snapshot;
+            journal = request.journal;
+            callbacks = request.callbacks;
+        }
+
+        MindMapJournal written = null;
+        try {
+            written = MindMapSerializer.writeSnapshotToDisc(journal, snapshot);
+        } catch (RuntimeException ex) {
+            log.error("Saving " + snapshot + " failed: " + ex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.savedCount.incrementAndGet();
+
+        deliver(request.mindMap, snapshot, (written != journal) ? written
+                : null, callbacks, written != null);
+    }
+
+    /**
+     * Delivers the result of a save to the callbacks on the render thread and
+     * sets a new journal of the MindMap there.
+     * 
+     * @param mindMap
+     *            the saved MindMap
+     * @param snapshot
+     *            the written snapshot
+     * @param newJournal
+     *            the journal started by the save or null
+     * @param callbacks
+     *            the callbacks
+     * @param result
+     *            true, if saving was successful
+     */
+    private void deliver(final MindMap mindMap,
+            final MindMapSnapshot snapshot, final MindMapJournal newJournal,
+            final ArrayList<IMindMapSaveCallback> callbacks,
+            final boolean result) {
+
+        if (newJournal == null && callbacks.isEmpty()) {
+            return;
+        }
+        this.callbackQueue.submit(new IModelCommand() {
+            @Override
+            public void execute(AppModel model) {
+                if (newJournal != null) {
+                    mindMap.setJournal(newJournal);
+                }
+                for (IMindMapSaveCallback callback : callbacks) {
+                    if (result) {
+                        callback.saveSucceeded(snapshot);
+                    } else {
+                        callback.saveFailed(snapshot);
+                    }
+                }
+            }
+        });
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A save request waiting for the save thread.
+     */
+    private static class SaveRequest {
+
+        /** The MindMap to save */
+        private final MindMap                         mindMap;
+
+        /** The newest snapshot requested (guarded by pendingRequests) */
+        private MindMapSnapshot                       snapshot;
+
+        /** The journal of the newest snapshot (guarded by pendingRequests) */
+        private MindMapJournal                        journal;
+
+        /** The callbacks of all coalesced requests */
+        private final ArrayList<IMindMapSaveCallback> callbacks = new ArrayList<IMindMapSaveCallback>();
+
+        /**
+         * Constructor. Instantiates a new SaveRequest.
+         * 
+         * @param mindMap
+         *            the MindMap to save
+         * @param snapshot
+         *            the snapshot to write
+         * @param journal
+         *            the journal of the MindMap or null
+         */
+        SaveRequest(MindMap mindMap, MindMapSnapshot snapshot,
+                MindMapJournal journal) {
+            this.mindMap = mindMap;
+            this.snapshot = snapshot;
+            this.journal = journal;
+        }
+
+        /**
+         * Adds a callback.
+         * 
+         * @param callback
+         *            the callback or null
+         */
+        void addCallback(IMindMapSaveCallback callback) {
+            if (callback != null) {
+                this.callbacks.add(callback);
+            }
+        }
+    }
+
+    /**
+     * Creates the save thread.
+     */
+    private static class SaveThreadFactory implements ThreadFactory {
+
+        /**
+         * Creates a new daemon thread. Saves still running on exit are
+         * finished by {@link MindMapSaveExecutor#shutdown(long)}.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MindMapSaveExecutor"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Measures the binary round trip of a large MindMap: writing a snapshot with
+ * {@link MindMapSerializer#writeMindMap(MindMapSnapshot, java.io.OutputStream)}
+ * and reading it back with
+ * {@link MindMapDeserializer#readMindMap(java.io.InputStream)}.
+ * </p>
+ * 
+ * <p>
+ * The fastest of all rounds is reported, so the first rounds warm up the JIT.
+ * The result is only printed and compared with the target of 100 ms for a
+ * MindMap of 10000 IdeaNodes, as the time depends on the machine, its load
+ * and the log level.
+ * </p>
+ * 
+ * <p>
+ * Can be run from the command line:<br>
+ * MindMapSerializationBenchmark [ideaNodes [treeSize [rounds]]]
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class MindMapSerializationBenchmark {
+
+    /** The target time of a round trip of 10000 IdeaNodes in milliseconds */
+    private static final long TARGET_MILLIS = 100;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor, the class only has class methods.
+     */
+    private MindMapSerializationBenchmark() {
+        super();
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Creates a MindMap of the given number of IdeaNodes in Maps of treeSize
+     * IdeaNodes. Every IdeaNode but the root of its Map is a child of an
+     * IdeaNode of the same Map, each parent has up to three children.
+     * 
+     * @param size
+     *            the number of IdeaNodes
+     * @param treeSize
+     *            the number of IdeaNodes of each Map
+     * @return the MindMap
+     */
+    static MindMap createLargeMindMap(int size, int treeSize) {
+
+        MindMap mindMap = new MindMap();
+        IdeaNode[] ideaNodes = new IdeaNode[size];
+        for (int i = 0; i < size; i++) {
+            ideaNodes[i] = new IdeaNode(new NodeData(new NodeContent("Idee" //$NON-NLS-1$
+                    + (i % 1000)), new NodeMetaData(i % 1024, i / 1024,
+                    (i % 360) - 180.0f, EIdeaNodeCreator.values()[i % 2])));
+            mindMap.addIdeaNode(ideaNodes[i]);
+
+            int indexInTree = i % treeSize;
+            if (indexInTree > 0) {
+                IdeaNode parent = ideaNodes[i - indexInTree
+                        + (indexInTree - 1) / 3];
+                EAddChildIdeaNodeResultCase result = parent.addIdeaChild(
+                        ideaNodes[i], mindMap);
+                if (result == EAddChildIdeaNodeResultCase.NO_ADD_ON_ERROR) {
+                    throw new IllegalStateException(
+                            "IdeaNode " + i + " could not be added"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+        }
+        return mindMap;
+    }
+
+    /**
+     * Writes and reads the given snapshot the given number of times.
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @param rounds
+     *            the number of round trips
+     * @return the time of the fastest round trip in nanoseconds
+     * @throws IOException
+     *             on read or write errors
+     */
+    static long measureRoundTrip(MindMapSnapshot snapshot, int rounds)
+            throws IOException {
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MindMapSerializer.writeMindMap(snapshot, out);
+            MindMapDeserializer.readMindMap(new ByteArrayInputStream(out
+                    .toByteArray()));
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        return bestNanos;
+    }
+
+    /**
+     * Runs the benchmark with the settings given as arguments and prints the
+     * result.
+     * 
+     * @param args
+     *            [ideaNodes [treeSize [rounds]]]
+     * @throws IOException
+     *             on read or write errors
+     */
+    public static void main(String[] args) throws IOException {
+
+        int size = intArgument(args, 0, 10000);
+        int treeSize = intArgument(args, 1, 100);
+        int rounds = intArgument(args, 2, 20);
+
+        MindMapSnapshot snapshot = createLargeMindMap(size, treeSize)
+                .snapshot();
+        long bestNanos = measureRoundTrip(snapshot, rounds);
+
+        double bestMillis = bestNanos / 1000000.0;
+        double targetMillis = TARGET_MILLIS * size / 10000.0;
+        System.out.println("Round trip of " + size + " IdeaNodes: " //$NON-NLS-1$ //$NON-NLS-2$
+                + bestMillis + " ms, best of " + rounds + " rounds (target " //$NON-NLS-1$ //$NON-NLS-2$
+                + targetMillis + " ms" //$NON-NLS-1$
+                + ((bestMillis < targetMillis) ? ")" : ", missed)")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns an int command line argument.
+     * 
+     * @param args
+     *            the arguments
+     * @param index
+     *            the index of the argument
+     * @param defaultValue
+     *            the value if the argument is missing
+     * @return the value
+     */
+    private static int intArgument(String[] args, int index, int defaultValue) {
+        return (args.length > index) ? Integer.parseInt(args[index])
+                : defaultValue;
+    }
+
+}
@@ -18,16 +18,50 @@
 
 package de.sarahw.ma.pc.mindMapper.model;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 import org.apache.log4j.Logger;
 
 /**
  * <p>
- * Used to serialize a MindMap object.
+ * Used to write a MindMap to disc in the binary .mindMap format (see
+ * {@link MindMapFileFormat}).
+ * </p>
+ * 
+ * <p>
+ * The file is written from a {@link MindMapSnapshot} of the MindMap, the
+ * ideaNodes are written as flat records, so writing doesn't recurse the tree.
+ * </p>
+ * 
+ * <p>
+ * Once a file has been written, later saves of the same MindMap only append
+ * the changes to the {@link MindMapJournal} of the file.
+ * </p>
+ * 
+ * <p>
+ * Files are never written in place: the content is written to a temporary
+ * file and forced to disc, then the previous file is kept as backup and the
+ * temporary file is renamed. A crash while saving therefore leaves either the
+ * previous or the new file, and {@link MindMapDeserializer} falls back to the
+ * backup if a file fails its checksum.
+ * </p>
+ * 
+ * <p>
+ * The sections after the header can be stored in compressed blocks (see
+ * {@link #setCompressionEnabled(boolean)}), the header itself is never
+ * compressed.
  * </p>
  * 
  * @author Sarah Will
@@ -37,13 +71,31 @@ import org.apache.log4j.Logger;
  */
 public class MindMapSerializer {
 
-    private static Logger      log                 = Logger.getLogger(MindMapSerializer.class);
+    private static Logger           log                 = Logger.getLogger(MindMapSerializer.class);
 
     /** The file extension for all save files of the application */
-    public static final String FILE_EXTENSION      = ".mindMap";                               //$NON-NLS-1$
+    public static final String      FILE_EXTENSION      = ".mindMap";                               //$NON-NLS-1$
+
+    /** The extension appended to a file while it is written */
+    public static final String      TEMP_EXTENSION      = ".tmp";                                   //$NON-NLS-1$
+
+    /** The extension appended to the previous generation of a file */
+    public static final String      BACKUP_EXTENSION    = ".bak";                                   //$NON-NLS-1$
 
     /** The maximum length of file name strings */
-    public static final int    MAX_FILENAME_LENGTH = 50;
+    public static final int         MAX_FILENAME_LENGTH = 50;
+
+    /** The size of the output buffer in bytes */
+    private static final int        BUFFER_SIZE         = 64 * 1024;
+
+    /** The last save time written into a file header */
+    private static final AtomicLong lastSavedTime       = new AtomicLong();
+
+    /** Lock for renaming files, so backups are not restored while saving */
+    private static final Object     fileLock            = new Object();
+
+    /** True, if files and journal frames are written compressed */
+    private static volatile boolean compressionEnabled;
 
     /* ***********Constructors*********** */
     /**
@@ -53,59 +105,449 @@ public class MindMapSerializer {
         //
     }
 
+    /* ********Getters & Setters******** */
+    /**
+     * Returns if files and journal frames are written compressed.
+     * 
+     * @return the compressionEnabled
+     */
+    public static boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Sets if files and journal frames are written compressed. Doesn't
+     * change files already written, both are read.
+     * 
+     * @param compressionEnabled
+     *            the compressionEnabled to set
+     */
+    public static void setCompressionEnabled(boolean compressionEnabled) {
+        log.debug("Executing setCompressionEnabled(compressionEnabled=" + compressionEnabled + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        MindMapSerializer.compressionEnabled = compressionEnabled;
+    }
+
     /* **********Class methods********** */
     /**
-     * Serializes a MindMap object.
+     * Writes a MindMap object to disc. Must be called on the thread that
+     * mutates the model, as it takes a snapshot of the MindMap.
      * 
      * @param mindMap
-     *            the MindMap object to serialize
-     * @return true, if serialization was successful
+     *            the MindMap object to write
+     * @return true, if writing was successful
+     * 
+     * @see MindMapSaveExecutor
      */
     public static boolean writeMindMapToDisc(MindMap mindMap) {
 
         log.debug("Entering writeMindMapToDisc(mindMap=" + mindMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
         if (mindMap != null) {
+            MindMapJournal journal = writeSnapshotToDisc(mindMap.getJournal(),
+                    mindMap.snapshot());
+            if (journal == null) {
+                log.debug("Leaving writeMindMapToDisc(): false"); //$NON-NLS-1$
+                return false;
+            }
+            mindMap.setJournal(journal);
+            log.debug("Leaving writeMindMapToDisc(): true"); //$NON-NLS-1$
+            return true;
+        }
 
-            // Get mindMap title
-            String mindMapTitle = mindMap.getMindMapTitle();
-
-            // If title length is not greater than max file name length
-            if (mindMapTitle.length() > 0
-                    && mindMapTitle.length() <= MAX_FILENAME_LENGTH) {
-
-                // Create file
-                File result = new File(MindMapCollection.FILE_PATH
-                        + File.separator + mindMapTitle + FILE_EXTENSION);
-
-                // Create file and object output stream
-                FileOutputStream fos = null;
-                ObjectOutputStream out = null;
-
-                // Try writing the object file
-                try {
-                    fos = new FileOutputStream(result);
-                    out = new ObjectOutputStream(fos);
-                    out.writeObject(mindMap);
-                    out.close();
-
-                } catch (IOException ex) {
-                    log.error("Leaving writeMindMapToDisc(): false; on error, serialization not successful:" + //$NON-NLS-1$ 
-                            ex.getMessage());
-                    ex.printStackTrace();
-                    return false;
+        log.error("Leaving writeMindMapToDisc(): false, invalid null input"); //$NON-NLS-1$
+        return false;
+    }
+
+    /**
+     * Writes a snapshot of a MindMap to disc. The changes are appended to the
+     * given journal if possible, otherwise the whole file is written and a new
+     * journal is started. Can be called on any thread, as it doesn't touch the
+     * MindMap, but only one thread may save a MindMap at the same time.
+     * 
+     * @param journal
+     *            the journal of the MindMap the snapshot has been taken of,
+     *            may be null
+     * @param snapshot
+     *            the snapshot to write
+     * @return the journal of the written file, must be set as the journal of
+     *         the MindMap on the thread that mutates the model, or null if
+     *         writing was not successful
+     */
+    static MindMapJournal writeSnapshotToDisc(MindMapJournal journal,
+            MindMapSnapshot snapshot) {
+
+        log.debug("Entering writeSnapshotToDisc(snapshot=" + snapshot + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Get mindMap title
+        String mindMapTitle = snapshot.getMindMapTitle();
+
+        // If title length is not greater than max file name length
+        if (mindMapTitle.length() > 0
+                && mindMapTitle.length() <= MAX_FILENAME_LENGTH) {
+
+            // Create file
+            File result = new File(MindMapCollection.FILE_PATH
+                    + File.separator + mindMapTitle + FILE_EXTENSION);
+
+            // Try appending the changes to the journal of the file,
+            // otherwise write the whole file and start a new journal
+            MindMapJournal written = journal;
+            try {
+                if (written == null || !written.append(result, snapshot)) {
+                    written = MindMapJournal.create(result, snapshot);
                 }
 
-                log.debug("Leaving writeMindMapToDisc(): true"); //$NON-NLS-1$ 
-                return true;
+            } catch (IOException ex) {
+                log.error("Leaving writeSnapshotToDisc(): null; on error, writing not successful:" + //$NON-NLS-1$ 
+                        ex.getMessage());
+                ex.printStackTrace();
+                return null;
+            }
 
+            // The thumbnail is a cache, the save succeeds without it
+            try {
+                MindMapThumbnail.writeThumbnail(snapshot, result);
+            } catch (IOException ex) {
+                log.warn("Thumbnail of " + result + " could not be written: " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
             }
-            log.error("Leaving writeMindMapToDisc(): false, invalid filename length"); //$NON-NLS-1$
-            return false;
+
+            log.debug("Leaving writeSnapshotToDisc(): " + written); //$NON-NLS-1$ 
+            return written;
+
         }
+        log.error("Leaving writeSnapshotToDisc(): null, invalid filename length"); //$NON-NLS-1$
+        return null;
+    }
 
-        log.error("Leaving writeMindMapToDisc(): false, invalid null input"); //$NON-NLS-1$
+    /**
+     * Writes a MindMapSnapshot to the given file, replacing its content. The
+     * file is replaced only after the new content has been forced to disc,
+     * the previous content is kept as backup.
+     * 
+     * @param snapshot
+     *            the snapshot to write
+     * @param file
+     *            the target file
+     * @throws IOException
+     *             on write errors
+     */
+    public static void writeMindMapToFile(MindMapSnapshot snapshot, File file)
+            throws IOException {
+
+        log.debug("Entering writeMindMapToFile(snapshot=" + snapshot + ", file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        File temp = getTempFile(file);
+        writeTempFile(snapshot, temp);
+        replaceFile(temp, file);
+
+        log.debug("Leaving writeMindMapToFile()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the temporary file used while writing the given file.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the temporary file
+     */
+    public static File getTempFile(File file) {
+        return new File(file.getPath() + TEMP_EXTENSION);
+    }
+
+    /**
+     * Returns the backup of the previous generation of the given file.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the backup file
+     */
+    public static File getBackupFile(File file) {
+        return new File(file.getPath() + BACKUP_EXTENSION);
+    }
+
+    /**
+     * Writes a MindMapSnapshot to a temporary file and forces it to disc. The
+     * file is deleted if writing fails.
+     * 
+     * @param snapshot
+     *            the snapshot to write
+     * @param temp
+     *            the temporary file
+     * @throws IOException
+     *             on write errors
+     */
+    static void writeTempFile(MindMapSnapshot snapshot, File temp)
+            throws IOException {
+
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            OutputStream out = new BufferedOutputStream(fileOut, BUFFER_SIZE);
+            writeMindMap(snapshot, out, compressionEnabled);
+            fileOut.getFD().sync();
+            written = true;
+        } finally {
+            fileOut.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Replaces a file by a temporary file that has been written completely.
+     * The replaced file is kept as backup, an older backup is deleted.
+     * 
+     * @param temp
+     *            the temporary file
+     * @param file
+     *            the file to replace
+     * @throws IOException
+     *             if the file can't be replaced
+     */
+    static void replaceFile(File temp, File file) throws IOException {
+
+        log.debug("Entering replaceFile(temp=" + temp + ", file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        synchronized (fileLock) {
+            // renameTo doesn't replace existing files on every platform, so
+            // the previous file is moved to the backup first
+            File backup = getBackupFile(file);
+            if (file.exists()) {
+                if (backup.exists() && !backup.delete()) {
+                    throw new IOException("Backup " + backup + " could not be replaced"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                if (!file.renameTo(backup)) {
+                    throw new IOException("File " + file + " could not be renamed"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+            if (!temp.renameTo(file)) {
+                // Restore the previous file
+                backup.renameTo(file);
+                throw new IOException("File " + file + " could not be replaced"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        MindMapCollection.notifyFileChanged(file);
+
+        log.debug("Leaving replaceFile()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Restores the backup of a file that is missing, because saving was
+     * interrupted between renaming the previous file and the new one.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return true, if the backup has been restored
+     */
+    public static boolean restoreBackupFile(File file) {
+
+        log.debug("Entering restoreBackupFile(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        synchronized (fileLock) {
+            File backup = getBackupFile(file);
+            if (!file.exists() && backup.isFile() && backup.renameTo(file)) {
+                MindMapCollection.notifyFileChanged(file);
+                log.warn("Leaving restoreBackupFile(): true, restored " + backup); //$NON-NLS-1$
+                return true;
+            }
+        }
+
+        log.debug("Leaving restoreBackupFile(): false"); //$NON-NLS-1$
         return false;
     }
 
+    /**
+     * Writes a MindMapSnapshot uncompressed in the binary .mindMap format to
+     * the given stream, followed by the checksum. The stream is flushed, but
+     * not closed.
+     * 
+     * @param snapshot
+     *            the snapshot to write
+     * @param out
+     *            the output stream, should be buffered
+     * @throws IOException
+     *             on write errors
+     */
+    public static void writeMindMap(MindMapSnapshot snapshot, OutputStream out)
+            throws IOException {
+        writeMindMap(snapshot, out, false);
+    }
+
+    /**
+     * Writes a MindMapSnapshot in the binary .mindMap format to the given
+     * stream, followed by the checksum. The stream is flushed, but not
+     * closed.
+     * 
+     * @param snapshot
+     *            the snapshot to write
+     * @param out
+     *            the output stream, should be buffered
+     * @param compressed
+     *            true, to store the sections after the header in compressed
+     *            blocks
+     * @throws IOException
+     *             on write errors
+     */
+    public static void writeMindMap(MindMapSnapshot snapshot,
+            OutputStream out, boolean compressed) throws IOException {
+
+        log.debug("Entering writeMindMap(snapshot=" + snapshot + ", compressed=" + compressed + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        ArrayList<IdeaNodeSnapshot> ideaNodes = snapshot.getIdeaNodes();
+        int ideaNodeCount = ideaNodes.size();
+
+        // Build the string table, every text is stored once
+        ArrayList<String> strings = new ArrayList<String>();
+        HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+        int titleIndex = addString(snapshot.getMindMapTitle(), strings,
+                stringIndex);
+        int[] textIndex = new int[ideaNodeCount];
+        for (int i = 0; i < ideaNodeCount; i++) {
+            textIndex[i] = addString(ideaNodes.get(i).getIdeaText(), strings,
+                    stringIndex);
+        }
+
+        // Position of every child within the children of its parent
+        LongHashMap<Integer> childIndex = new LongHashMap<Integer>(
+                ideaNodeCount);
+        for (IdeaNodeSnapshot ideaNode : ideaNodes) {
+            for (int i = 0; i < ideaNode.getChildCount(); i++) {
+                childIndex.put(ideaNode.getChildID(i), Integer.valueOf(i));
+            }
+        }
+
+        // Number of ideaNodes per creator
+        int[] creatorCounts = new int[MindMapFileFormat.CREATOR_SLOTS];
+        for (IdeaNodeSnapshot ideaNode : ideaNodes) {
+            int ordinal = ideaNode.getIdeaOwner().ordinal();
+            if (ordinal < creatorCounts.length) {
+                creatorCounts[ordinal]++;
+            }
+        }
+
+        // Encode the string table first, so the section offsets are known
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream stringData = new DataOutputStream(stringBytes);
+        for (String string : strings) {
+            stringData.writeUTF(string);
+        }
+        stringData.flush();
+
+        long stringTableOffset = MindMapFileFormat.HEADER_SIZE;
+        long ideaNodeOffset = stringTableOffset + stringBytes.size();
+        long mapOffset = ideaNodeOffset + (long) ideaNodeCount
+                * MindMapFileFormat.IDEA_NODE_RECORD_SIZE;
+
+        CheckedOutputStream checked = new CheckedOutputStream(out,
+                new CRC32());
+        short flags = MindMapFileFormat.HEADER_FLAG_CHECKSUM;
+        if (compressed) {
+            flags |= MindMapFileFormat.HEADER_FLAG_COMPRESSED;
+        }
+
+        // Header, never compressed
+        ByteBuffer header = ByteBuffer.allocate(MindMapFileFormat.HEADER_SIZE);
+        new MindMapFileHeader(MindMapFileFormat.VERSION, flags,
+                snapshot.getMindMapId(), snapshot.getLastIssuedID(),
+                nextSavedTime(), titleIndex, strings.size(), ideaNodeCount,
+                snapshot.getMapCount(), creatorCounts, stringTableOffset,
+                ideaNodeOffset, mapOffset, snapshot.getMindMapTitle())
+                .write(header);
+        checked.write(header.array());
+
+        MindMapBlockOutputStream blocks = compressed ? new MindMapBlockOutputStream(
+                checked) : null;
+        DataOutputStream data = new DataOutputStream(compressed ? blocks
+                : checked);
+
+        // String table
+        stringBytes.writeTo(data);
+
+        // IdeaNode records
+        ByteBuffer records = ByteBuffer.allocate(ideaNodeCount
+                * MindMapFileFormat.IDEA_NODE_RECORD_SIZE);
+        for (int i = 0; i < ideaNodeCount; i++) {
+            IdeaNodeSnapshot ideaNode = ideaNodes.get(i);
+            Integer index = childIndex.get(ideaNode.getIdeaID());
+
+            records.putLong(ideaNode.getIdeaID());
+            records.putLong(ideaNode.getNodeDataID());
+            records.putLong(ideaNode.getParentID());
+            records.putInt(textIndex[i]);
+            records.putFloat(ideaNode.getIdeaPositionX());
+            records.putFloat(ideaNode.getIdeaPositionY());
+            records.putFloat(ideaNode.getIdeaRotationInDegrees());
+            records.putInt((index != null) ? index.intValue()
+                    : MindMapFileFormat.NO_CHILD_INDEX);
+            records.putInt(ideaNode.getChildCount());
+            records.put((byte) ideaNode.getIdeaOwner().ordinal());
+            records.put((byte) ideaNode.getIdeaState().ordinal());
+            records.put(ideaNode.getIsChild() ? MindMapFileFormat.FLAG_IS_CHILD
+                    : 0);
+            records.put((byte) 0);
+        }
+        data.write(records.array());
+
+        // Map records
+        for (int i = 0; i < snapshot.getMapCount(); i++) {
+            data.writeLong(snapshot.getMapID(i));
+            data.writeLong(snapshot.getMapRootID(i));
+        }
+
+        // Checksum of all preceding bytes
+        data.flush();
+        if (compressed) {
+            log.debug(" " + data.size() + " bytes compressed to " + blocks.getStoredBytes() + " bytes in " + blocks.getBlockCount() + " blocks"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        }
+        DataOutputStream checksum = new DataOutputStream(out);
+        checksum.writeInt((int) checked.getChecksum().getValue());
+        checksum.flush();
+
+        log.debug("Leaving writeMindMap(): " + (MindMapFileFormat.HEADER_SIZE + data.size()) + " bytes written"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the save time for a file header. The save time identifies the
+     * written file (see {@link MindMapJournal}), so it is increased if files
+     * are written within the same millisecond.
+     * 
+     * @return the save time in milliseconds since the epoch
+     */
+    private static long nextSavedTime() {
+        long now = System.currentTimeMillis();
+        long last;
+        do {
+            last = lastSavedTime.get();
+            if (now <= last) {
+                now = last + 1;
+            }
+        } while (!lastSavedTime.compareAndSet(last, now));
+        return now;
+    }
+
+    /**
+     * Adds a string to the string table if it isn't contained yet.
+     * 
+     * @param string
+     *            the string
+     * @param strings
+     *            the string table
+     * @param stringIndex
+     *            the index of the strings in the string table
+     * @return the index of the string in the string table
+     */
+    private static int addString(String string, ArrayList<String> strings,
+            HashMap<String, Integer> stringIndex) {
+        String value = (string != null) ? string : ""; //$NON-NLS-1$
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = Integer.valueOf(strings.size());
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        return index.intValue();
+    }
+
 }
@@ -0,0 +1,290 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * Immutable, consistent view of a MindMap at one point in time, taken by
+ * {@link MindMap#snapshot()}.
+ * </p>
+ * 
+ * <p>
+ * The IdeaNodes are stored in a {@link PersistentLongMap}. Consecutive
+ * snapshots share all IdeaNodeSnapshots and trie branches that have not been
+ * changed in between, so taking a snapshot copies only the changed IdeaNodes
+ * and their paths in the trie.
+ * </p>
+ * 
+ * <p>
+ * Snapshots never change, so background threads can save, search or compare
+ * them without locking while the live MindMap continues to change.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMap#snapshot()
+ */
+public final class MindMapSnapshot {
+
+    /** Compares IdeaNodeSnapshots by ideaID */
+    private static final Comparator<IdeaNodeSnapshot> ID_ORDER = new Comparator<IdeaNodeSnapshot>() {
+        @Override
+        public int compare(IdeaNodeSnapshot a, IdeaNodeSnapshot b) {
+            long idA = a.getIdeaID();
+            long idB = b.getIdeaID();
+            return (idA < idB) ? -1 : ((idA == idB) ? 0 : 1);
+        }
+    };
+
+    /** The snapshot version, increased for every snapshot of a MindMap */
+    private final long                                version;
+
+    /** The unique ID of the mindMap */
+    private final long                                mindMapId;
+
+    /** The title of the mindMap */
+    private final String                              mindMapTitle;
+
+    /** The last ID issued by the ModelIDGenerator */
+    private final long                                lastIssuedID;
+
+    /** The ideaNodes by ideaID */
+    private final PersistentLongMap<IdeaNodeSnapshot> ideaNodes;
+
+    /** The IDs of the maps */
+    private final long[]                              mapIDs;
+
+    /** The IDs of the root ideaNodes of the maps */
+    private final long[]                              mapRootIDs;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapSnapshot. The arrays are not
+     * copied and must not be changed afterwards.
+     * 
+     * @param version
+     *            the snapshot version
+     * @param mindMapId
+     *            the unique ID of the mindMap
+     * @param mindMapTitle
+     *            the title of the mindMap
+     * @param lastIssuedID
+     *            the last ID issued by the ModelIDGenerator
+     * @param ideaNodes
+     *            the ideaNodes by ideaID
+     * @param mapIDs
+     *            the IDs of the maps
+     * @param mapRootIDs
+     *            the IDs of the root ideaNodes of the maps
+     */
+    MindMapSnapshot(long version, long mindMapId, String mindMapTitle,
+            long lastIssuedID, PersistentLongMap<IdeaNodeSnapshot> ideaNodes,
+            long[] mapIDs, long[] mapRootIDs) {
+        this.version = version;
+        this.mindMapId = mindMapId;
+        this.mindMapTitle = mindMapTitle;
+        this.lastIssuedID = lastIssuedID;
+        this.ideaNodes = ideaNodes;
+        this.mapIDs = mapIDs;
+        this.mapRootIDs = mapRootIDs;
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the snapshot version. Snapshots of the same MindMap with the
+     * same version are identical.
+     * 
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the unique ID of the mindMap.
+     * 
+     * @return the mindMapId
+     */
+    public long getMindMapId() {
+        return this.mindMapId;
+    }
+
+    /**
+     * Returns the title of the mindMap.
+     * 
+     * @return the mindMapTitle
+     */
+    public String getMindMapTitle() {
+        return this.mindMapTitle;
+    }
+
+    /**
+     * Returns the last ID issued by the ModelIDGenerator when the snapshot was
+     * taken.
+     * 
+     * @return the lastIssuedID
+     */
+    public long getLastIssuedID() {
+        return this.lastIssuedID;
+    }
+
+    /**
+     * Returns the ideaNodes by ideaID.
+     * 
+     * @return the persistent map of ideaNodes
+     */
+    PersistentLongMap<IdeaNodeSnapshot> getIdeaNodeMap() {
+        return this.ideaNodes;
+    }
+
+    /**
+     * Returns the number of ideaNodes.
+     * 
+     * @return the number of ideaNodes
+     */
+    public int getIdeaNodeCount() {
+        return this.ideaNodes.size();
+    }
+
+    /**
+     * Returns the number of maps.
+     * 
+     * @return the number of maps
+     */
+    public int getMapCount() {
+        return this.mapIDs.length;
+    }
+
+    /**
+     * Returns the ID of the map at the given index.
+     * 
+     * @param index
+     *            the index of the map
+     * @return the mapID
+     */
+    public long getMapID(int index) {
+        return this.mapIDs[index];
+    }
+
+    /**
+     * Returns the ID of the root ideaNode of the map at the given index.
+     * 
+     * @param index
+     *            the index of the map
+     * @return the ideaID of the root ideaNode
+     */
+    public long getMapRootID(int index) {
+        return this.mapRootIDs[index];
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Returns the ideaNode with the given ID.
+     * 
+     * @param ideaID
+     *            the ideaID
+     * @return the ideaNode or null if the snapshot does not contain it
+     */
+    public IdeaNodeSnapshot getIdeaNode(long ideaID) {
+        return this.ideaNodes.get(ideaID);
+    }
+
+    /**
+     * Returns all ideaNodes ordered by ideaID, i.e. in order of creation.
+     * 
+     * @return a new list of all ideaNodes
+     */
+    public ArrayList<IdeaNodeSnapshot> getIdeaNodes() {
+        ArrayList<IdeaNodeSnapshot> result = this.ideaNodes.values();
+        Collections.sort(result, ID_ORDER);
+        return result;
+    }
+
+    /**
+     * Returns the children of the given ideaNode in order.
+     * 
+     * @param parent
+     *            the parent ideaNode
+     * @return a new list of the children
+     */
+    public ArrayList<IdeaNodeSnapshot> getChildren(IdeaNodeSnapshot parent) {
+        ArrayList<IdeaNodeSnapshot> result = new ArrayList<IdeaNodeSnapshot>(
+                parent.getChildCount());
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            IdeaNodeSnapshot child = this.ideaNodes.get(parent.getChildID(i));
+            if (child != null) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all ideaNodes whose idea text contains the given text, ignoring
+     * case, ordered by ideaID.
+     * 
+     * @param text
+     *            the text to search
+     * @return a new list of the matching ideaNodes
+     */
+    public ArrayList<IdeaNodeSnapshot> findIdeaNodesByText(String text) {
+        String searchText = text.toLowerCase();
+        ArrayList<IdeaNodeSnapshot> result = new ArrayList<IdeaNodeSnapshot>();
+        for (IdeaNodeSnapshot ideaNode : getIdeaNodes()) {
+            String ideaText = ideaNode.getIdeaText();
+            if (ideaText != null
+                    && ideaText.toLowerCase().contains(searchText)) {
+                result.add(ideaNode);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of all ideaNodes that have been added, removed or
+     * changed between the given snapshot and this snapshot. Unchanged parts
+     * shared by both snapshots are skipped.
+     * 
+     * @param other
+     *            another snapshot, usually an older one of the same MindMap
+     * @return the IDs of the differing ideaNodes
+     */
+    public long[] diffIdeaNodes(MindMapSnapshot other) {
+        return this.ideaNodes.diff(other.ideaNodes);
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a String representation of the MindMapSnapshot.
+     * 
+     * @return String representation of the MindMapSnapshot.
+     */
+    @Override
+    public String toString() {
+        return "MindMapSnapshot [mindMapId=" + this.mindMapId + ", version=" //$NON-NLS-1$ //$NON-NLS-2$
+                + this.version + ", ideaNodes=" + this.ideaNodes.size() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+}
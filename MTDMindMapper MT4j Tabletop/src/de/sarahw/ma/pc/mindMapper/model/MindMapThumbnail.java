@@ -0,0 +1,382 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Renders small raster thumbnails of MindMaps and stores them next to the
+ * .mindMap files.
+ * </p>
+ * 
+ * <p>
+ * Thumbnails are drawn from the model positions of a {@link MindMapSnapshot}
+ * with Java2D, so they can be rendered on any thread and without an OpenGL
+ * context. A thumbnail file starts with a magic number and the content hash
+ * of the snapshot it has been rendered from, followed by a PNG image. The
+ * thumbnail is only rendered again if the content hash has changed.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapThumbnailCache
+ */
+public final class MindMapThumbnail {
+
+    private static Logger       log                 = Logger.getLogger(MindMapThumbnail.class);
+
+    /** The extension of thumbnail files, appended to the .mindMap file name */
+    public static final String  THUMBNAIL_EXTENSION = ".thumb";                                 //$NON-NLS-1$
+
+    /** The width of thumbnails in pixels */
+    public static final int     WIDTH               = 160;
+
+    /** The height of thumbnails in pixels */
+    public static final int     HEIGHT              = 100;
+
+    /** The magic number at the start of every thumbnail file ("MMTH") */
+    private static final int    MAGIC               = 0x4D4D5448;
+
+    /** The image format of thumbnails */
+    private static final String IMAGE_FORMAT        = "png";                                    //$NON-NLS-1$
+
+    /** The padding around the ideaNodes in pixels */
+    private static final int    PADDING             = 6;
+
+    /** The radius of an ideaNode in pixels */
+    private static final float  NODE_RADIUS         = 3f;
+
+    /** The background color */
+    private static final Color  BACKGROUND_COLOR    = new Color(77, 77, 77);
+
+    /** The color of the relations */
+    private static final Color  RELATION_COLOR      = new Color(155, 155, 155);
+
+    /** The color of ideaNodes created on the table */
+    private static final Color  TABLE_NODE_COLOR    = new Color(230, 230, 230);
+
+    /** The color of ideaNodes sent by mobile devices */
+    private static final Color  MOBILE_NODE_COLOR   = new Color(237, 201, 81);
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private MindMapThumbnail() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Returns the thumbnail file of a .mindMap file.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the thumbnail file
+     */
+    public static File getThumbnailFile(File file) {
+        return new File(file.getPath() + THUMBNAIL_EXTENSION);
+    }
+
+    /**
+     * Returns the hash of everything a thumbnail shows of a snapshot: the
+     * positions, owners and relations of the ideaNodes.
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @return the content hash
+     */
+    public static int contentHash(MindMapSnapshot snapshot) {
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[24];
+        for (IdeaNodeSnapshot ideaNode : snapshot.getIdeaNodes()) {
+            putLong(buffer, 0, ideaNode.getParentID());
+            putInt(buffer, 8,
+                    Float.floatToIntBits(ideaNode.getIdeaPositionX()));
+            putInt(buffer, 12,
+                    Float.floatToIntBits(ideaNode.getIdeaPositionY()));
+            putInt(buffer, 16, ideaNode.getIdeaOwner().ordinal());
+            putInt(buffer, 20, ideaNode.getChildCount());
+            crc.update(buffer);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Renders the thumbnail of a snapshot. The ideaNodes are scaled to fit
+     * the image, keeping their aspect ratio.
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @param width
+     *            the width of the image in pixels
+     * @param height
+     *            the height of the image in pixels
+     * @return the thumbnail
+     */
+    public static BufferedImage render(MindMapSnapshot snapshot, int width,
+            int height) {
+
+        log.debug("Entering render(snapshot=" + snapshot + ", width=" + width + ", height=" + height + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(BACKGROUND_COLOR);
+            g.fillRect(0, 0, width, height);
+
+            ArrayList<IdeaNodeSnapshot> ideaNodes = snapshot.getIdeaNodes();
+            if (ideaNodes.isEmpty()) {
+                log.debug("Leaving render(): empty thumbnail"); //$NON-NLS-1$
+                return image;
+            }
+
+            // Bounds of the ideaNodes
+            float minX = Float.MAX_VALUE;
+            float minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE;
+            float maxY = -Float.MAX_VALUE;
+            for (IdeaNodeSnapshot ideaNode : ideaNodes) {
+                minX = Math.min(minX, ideaNode.getIdeaPositionX());
+                minY = Math.min(minY, ideaNode.getIdeaPositionY());
+                maxX = Math.max(maxX, ideaNode.getIdeaPositionX());
+                maxY = Math.max(maxY, ideaNode.getIdeaPositionY());
+            }
+
+            // Scale to fit, centered
+            float scale = Math.min((width - 2 * PADDING)
+                    / Math.max(maxX - minX, 1f), (height - 2 * PADDING)
+                    / Math.max(maxY - minY, 1f));
+            float offsetX = (width - (maxX - minX) * scale) / 2 - minX * scale;
+            float offsetY = (height - (maxY - minY) * scale) / 2 - minY
+                    * scale;
+
+            // Relations
+            g.setColor(RELATION_COLOR);
+            g.setStroke(new BasicStroke(1f));
+            Line2D.Float line = new Line2D.Float();
+            for (IdeaNodeSnapshot ideaNode : ideaNodes) {
+                IdeaNodeSnapshot parent = snapshot.getIdeaNode(ideaNode
+                        .getParentID());
+                if (parent != null) {
+                    line.setLine(parent.getIdeaPositionX() * scale + offsetX,
+                            parent.getIdeaPositionY() * scale + offsetY,
+                            ideaNode.getIdeaPositionX() * scale + offsetX,
+                            ideaNode.getIdeaPositionY() * scale + offsetY);
+                    g.draw(line);
+                }
+            }
+
+            // IdeaNodes
+            Ellipse2D.Float node = new Ellipse2D.Float();
+            for (IdeaNodeSnapshot ideaNode : ideaNodes) {
+                g.setColor((ideaNode.getIdeaOwner() == EIdeaNodeCreator.BLUETOOTH_SERVER) ? MOBILE_NODE_COLOR
+                        : TABLE_NODE_COLOR);
+                node.setFrame(ideaNode.getIdeaPositionX() * scale + offsetX
+                        - NODE_RADIUS, ideaNode.getIdeaPositionY() * scale
+                        + offsetY - NODE_RADIUS, 2 * NODE_RADIUS,
+                        2 * NODE_RADIUS);
+                g.fill(node);
+            }
+
+        } finally {
+            g.dispose();
+        }
+
+        log.debug("Leaving render(): " + snapshot.getIdeaNodeCount() + " ideaNodes"); //$NON-NLS-1$ //$NON-NLS-2$
+        return image;
+    }
+
+    /**
+     * Writes the thumbnail of a snapshot next to its .mindMap file, unless the
+     * existing thumbnail shows the same content. Can be called on any thread.
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @param file
+     *            the .mindMap file
+     * @return true, if the thumbnail has been written
+     * @throws IOException
+     *             on write errors
+     */
+    public static boolean writeThumbnail(MindMapSnapshot snapshot, File file)
+            throws IOException {
+
+        log.debug("Entering writeThumbnail(snapshot=" + snapshot + ", file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        File thumbnailFile = getThumbnailFile(file);
+        int hash = contentHash(snapshot);
+        Integer existingHash = readContentHash(thumbnailFile);
+        if (existingHash != null && existingHash.intValue() == hash) {
+            log.debug("Leaving writeThumbnail(): false, thumbnail is up to date"); //$NON-NLS-1$
+            return false;
+        }
+
+        BufferedImage image = render(snapshot, WIDTH, HEIGHT);
+
+        // A damaged thumbnail can't be read and is written again on the next
+        // save, so the file is written in place
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(thumbnailFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(hash);
+            if (!ImageIO.write(image, IMAGE_FORMAT, out)) {
+                throw new IOException("No writer for " + IMAGE_FORMAT); //$NON-NLS-1$
+            }
+        } finally {
+            out.close();
+        }
+
+        log.debug("Leaving writeThumbnail(): true"); //$NON-NLS-1$
+        return true;
+    }
+
+    /**
+     * Reads the thumbnail of a .mindMap file.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @return the thumbnail or null if the file has no thumbnail
+     * @throws IOException
+     *             if the thumbnail can't be read
+     */
+    public static BufferedImage readThumbnail(File file) throws IOException {
+
+        log.debug("Entering readThumbnail(file=" + file + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        File thumbnailFile = getThumbnailFile(file);
+        if (!thumbnailFile.isFile()) {
+            log.debug("Leaving readThumbnail(): null, no thumbnail"); //$NON-NLS-1$
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(thumbnailFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a thumbnail file: " + thumbnailFile); //$NON-NLS-1$
+            }
+            in.readInt();
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IOException("Damaged thumbnail file: " + thumbnailFile); //$NON-NLS-1$
+            }
+
+            log.debug("Leaving readThumbnail(): " + image.getWidth() + "x" + image.getHeight()); //$NON-NLS-1$ //$NON-NLS-2$
+            return image;
+        } finally {
+            in.close();
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the content hash stored in a thumbnail file.
+     * 
+     * @param thumbnailFile
+     *            the thumbnail file
+     * @return the content hash or null if the file doesn't exist or is no
+     *         thumbnail file
+     */
+    private static Integer readContentHash(File thumbnailFile) {
+
+        if (!thumbnailFile.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(
+                    thumbnailFile));
+            try {
+                if (in.readInt() != MAGIC) {
+                    return null;
+                }
+                return Integer.valueOf(in.readInt());
+            } finally {
+                in.close();
+            }
+        } catch (EOFException ex) {
+            return null;
+        } catch (IOException ex) {
+            log.debug(" Thumbnail " + thumbnailFile + " can't be read: " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+    }
+
+    /**
+     * Stores an int big endian in a byte array.
+     * 
+     * @param buffer
+     *            the byte array
+     * @param offset
+     *            the offset
+     * @param value
+     *            the value
+     */
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Stores a long big endian in a byte array.
+     * 
+     * @param buffer
+     *            the byte array
+     * @param offset
+     *            the offset
+     * @param value
+     *            the value
+     */
+    private static void putLong(byte[] buffer, int offset, long value) {
+        putInt(buffer, offset, (int) (value >>> 32));
+        putInt(buffer, offset + 4, (int) value);
+    }
+
+}
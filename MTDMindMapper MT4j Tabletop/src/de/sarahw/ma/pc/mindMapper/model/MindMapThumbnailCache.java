@@ -0,0 +1,365 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Loads the thumbnails of saved MindMaps (see {@link MindMapThumbnail}) on a
+ * worker thread and keeps the recently used ones in memory.
+ * </p>
+ * 
+ * <p>
+ * The memory used by the cached thumbnails is capped; if it is exceeded, the
+ * least recently used thumbnails are dropped. Every thumbnail is cached with
+ * the version of its .mindMap file (e.g. the modification time of the
+ * catalog entry), so it is loaded again after the file has been saved.
+ * </p>
+ * 
+ * <p>
+ * Loaded thumbnails are delivered as a command on the ModelCommandQueue, so
+ * the callbacks are called on the render thread. Concurrent requests for the
+ * same file are loaded once.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IMindMapThumbnailCallback
+ */
+public final class MindMapThumbnailCache {
+
+    private static Logger                                               log          = Logger.getLogger(MindMapThumbnailCache.class);
+
+    /** The memory used by a cache entry without image in bytes */
+    private static final int                                            ENTRY_BYTES  = 64;
+
+    /** The queue on which the thumbnails are delivered to the render thread */
+    private final ModelCommandQueue                                     callbackQueue;
+
+    /** The executor of the worker thread */
+    private final ExecutorService                                       executor;
+
+    /** The maximum memory used by the cached thumbnails in bytes */
+    private final long                                                  maxBytes;
+
+    /** The cached thumbnails by file path, least recently used first */
+    private final LinkedHashMap<String, CachedThumbnail>                thumbnails;
+
+    /** The callbacks of the loads waiting for the worker thread, by path */
+    private final HashMap<String, ArrayList<IMindMapThumbnailCallback>> pendingLoads = new HashMap<String, ArrayList<IMindMapThumbnailCallback>>();
+
+    /** The memory used by the cached thumbnails in bytes (guarded by this) */
+    private long                                                        cachedBytes;
+
+    /** The number of requests answered from memory */
+    private final AtomicLong                                            hitCount     = new AtomicLong();
+
+    /** The number of thumbnails loaded from disc */
+    private final AtomicLong                                            loadCount    = new AtomicLong();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new MindMapThumbnailCache with its own
+     * worker thread.
+     * 
+     * @param callbackQueue
+     *            the queue on which the thumbnails are delivered
+     * @param maxBytes
+     *            the maximum memory used by the cached thumbnails in bytes
+     */
+    public MindMapThumbnailCache(ModelCommandQueue callbackQueue, long maxBytes) {
+        this(callbackQueue, maxBytes, Executors
+                .newSingleThreadExecutor(new LoadThreadFactory()));
+    }
+
+    /**
+     * Constructor. Instantiates a new MindMapThumbnailCache that loads the
+     * thumbnails on the given executor.
+     * 
+     * @param callbackQueue
+     *            the queue on which the thumbnails are delivered
+     * @param maxBytes
+     *            the maximum memory used by the cached thumbnails in bytes
+     * @param executor
+     *            the executor
+     */
+    MindMapThumbnailCache(ModelCommandQueue callbackQueue, long maxBytes,
+            ExecutorService executor) {
+        log.debug("Executing MindMapThumbnailCache(maxBytes=" + maxBytes + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.callbackQueue = callbackQueue;
+        this.maxBytes = maxBytes;
+        this.executor = executor;
+        this.thumbnails = new LinkedHashMap<String, CachedThumbnail>(16,
+                0.75f, true);
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the memory used by the cached thumbnails in bytes.
+     * 
+     * @return the cachedBytes
+     */
+    public synchronized long getCachedBytes() {
+        return this.cachedBytes;
+    }
+
+    /**
+     * Returns the number of cached thumbnails.
+     * 
+     * @return the number of cached thumbnails
+     */
+    public synchronized int size() {
+        return this.thumbnails.size();
+    }
+
+    /**
+     * Returns the number of requests answered from memory.
+     * 
+     * @return the hitCount
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of thumbnails loaded from disc.
+     * 
+     * @return the loadCount
+     */
+    public long getLoadCount() {
+        return this.loadCount.get();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Requests the thumbnail of a .mindMap file. A cached thumbnail of the
+     * given version is returned at once, otherwise it is loaded on the worker
+     * thread and delivered to the callback.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @param version
+     *            the version of the file, e.g. its modification time
+     * @param callback
+     *            the callback to call on the render thread if the thumbnail
+     *            isn't cached, may be null
+     * @return the cached thumbnail or null if it is loaded or the file has no
+     *         thumbnail
+     */
+    public BufferedImage request(final File file, final long version,
+            IMindMapThumbnailCallback callback) {
+
+        log.debug("Entering request(file=" + file + ", version=" + version + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        final String path = file.getPath();
+        synchronized (this) {
+            CachedThumbnail cached = this.thumbnails.get(path);
+            if (cached != null && cached.version == version) {
+                this.hitCount.incrementAndGet();
+                log.debug("Leaving request(): cached thumbnail"); //$NON-NLS-1$
+                return cached.image;
+            }
+
+            ArrayList<IMindMapThumbnailCallback> callbacks = this.pendingLoads
+                    .get(path);
+            if (callbacks != null) {
+                if (callback != null) {
+                    callbacks.add(callback);
+                }
+                log.debug("Leaving request(): null, already loading"); //$NON-NLS-1$
+                return null;
+            }
+            callbacks = new ArrayList<IMindMapThumbnailCallback>();
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            this.pendingLoads.put(path, callbacks);
+        }
+
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(file, version);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.debug(" Load rejected, cache has been shut down"); //$NON-NLS-1$
+            synchronized (this) {
+                this.pendingLoads.remove(path);
+            }
+        }
+
+        log.debug("Leaving request(): null, loading"); //$NON-NLS-1$
+        return null;
+    }
+
+    /**
+     * Drops all cached thumbnails.
+     */
+    public synchronized void clear() {
+        this.thumbnails.clear();
+        this.cachedBytes = 0;
+    }
+
+    /**
+     * Stops the worker thread. Pending loads are dropped.
+     */
+    public void shutdown() {
+        log.debug("Entering shutdown()"); //$NON-NLS-1$
+        this.executor.shutdownNow();
+        log.debug("Leaving shutdown()"); //$NON-NLS-1$
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Loads a thumbnail on the worker thread, caches it and delivers it to
+     * the callbacks.
+     * 
+     * @param file
+     *            the .mindMap file
+     * @param version
+     *            the version of the file
+     */
+    private void load(final File file, long version) {
+
+        BufferedImage image = null;
+        try {
+            image = MindMapThumbnail.readThumbnail(file);
+        } catch (IOException ex) {
+            log.warn("Thumbnail of " + file + " can't be read: " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.loadCount.incrementAndGet();
+
+        final ArrayList<IMindMapThumbnailCallback> callbacks;
+        synchronized (this) {
+            callbacks = this.pendingLoads.remove(file.getPath());
+            put(file.getPath(), new CachedThumbnail(version, image));
+        }
+
+        if (callbacks == null || callbacks.isEmpty()) {
+            return;
+        }
+        final BufferedImage thumbnail = image;
+        this.callbackQueue.submit(new IModelCommand() {
+            @Override
+            public void execute(AppModel model) {
+                for (IMindMapThumbnailCallback callback : callbacks) {
+                    callback.thumbnailLoaded(file, thumbnail);
+                }
+            }
+        });
+    }
+
+    /**
+     * Caches a thumbnail and drops the least recently used thumbnails while
+     * the memory cap is exceeded. Must be called while holding the lock of
+     * the cache.
+     * 
+     * @param path
+     *            the path of the .mindMap file
+     * @param cached
+     *            the thumbnail
+     */
+    private void put(String path, CachedThumbnail cached) {
+
+        CachedThumbnail previous = this.thumbnails.put(path, cached);
+        if (previous != null) {
+            this.cachedBytes -= previous.bytes;
+        }
+        this.cachedBytes += cached.bytes;
+
+        Iterator<CachedThumbnail> it = this.thumbnails.values().iterator();
+        while (this.cachedBytes > this.maxBytes && it.hasNext()) {
+            CachedThumbnail eldest = it.next();
+            it.remove();
+            this.cachedBytes -= eldest.bytes;
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A cached thumbnail together with the version of its file.
+     */
+    private static class CachedThumbnail {
+
+        /** The version of the .mindMap file */
+        private final long          version;
+
+        /** The thumbnail or null if the file has no thumbnail */
+        private final BufferedImage image;
+
+        /** The memory used by the entry in bytes */
+        private final long          bytes;
+
+        /**
+         * Constructor. Instantiates a new CachedThumbnail.
+         * 
+         * @param version
+         *            the version of the .mindMap file
+         * @param image
+         *            the thumbnail or null
+         */
+        CachedThumbnail(long version, BufferedImage image) {
+            this.version = version;
+            this.image = image;
+            this.bytes = ENTRY_BYTES
+                    + ((image != null) ? 4L * image.getWidth()
+                            * image.getHeight() : 0);
+        }
+    }
+
+    /**
+     * Creates the worker thread.
+     */
+    private static class LoadThreadFactory implements ThreadFactory {
+
+        /**
+         * Creates a new daemon thread with minimal priority.
+         * 
+         * @param r
+         *            the runnable
+         * @return the thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MindMapThumbnailCache"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+}
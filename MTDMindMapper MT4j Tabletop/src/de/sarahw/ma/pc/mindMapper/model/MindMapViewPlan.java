@@ -0,0 +1,442 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Everything the view needs to build the components of a loaded MindMap,
+ * prepared off the render thread: the active IdeaNodes with their positions,
+ * rotations and texts, and all parent-child relations between them resolved
+ * to indices into the IdeaNode array.
+ * </p>
+ * 
+ * <p>
+ * The view only has to create one component per IdeaNode and relation and no
+ * longer searches the IdeaNodeViews for the ends of each relation. Plans are
+ * created by the {@link MindMapLoadExecutor} for loaded MindMaps, which are
+ * not shared with the render thread yet. The MindMap must not be changed while
+ * its plan is created.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMapLoadExecutor
+ */
+public final class MindMapViewPlan {
+
+    private static Logger    log        = Logger.getLogger(MindMapViewPlan.class);
+
+    /** The number of IdeaNodes prepared by one worker task */
+    static final int         CHUNK_SIZE = 4096;
+
+    /** The planned MindMap */
+    private final MindMap    mindMap;
+
+    /** The active IdeaNodes */
+    private final IdeaNode[] ideaNodes;
+
+    /** The x positions of the IdeaNodes */
+    private final float[]    positionsX;
+
+    /** The y positions of the IdeaNodes */
+    private final float[]    positionsY;
+
+    /** The rotations of the IdeaNodes in degrees */
+    private final float[]    rotations;
+
+    /** The texts of the IdeaNodes */
+    private final String[]   texts;
+
+    /** The indices of the parent IdeaNodes of the relations */
+    private int[]            relationParents;
+
+    /** The indices of the child IdeaNodes of the relations */
+    private int[]            relationChildren;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Allocates the arrays for the given active IdeaNodes,
+     * which are filled by {@link #prepare(int, int, LongHashMap)}.
+     * 
+     * @param mindMap
+     *            the planned MindMap
+     * @param ideaNodes
+     *            the active IdeaNodes
+     */
+    private MindMapViewPlan(MindMap mindMap, IdeaNode[] ideaNodes) {
+        this.mindMap = mindMap;
+        this.ideaNodes = ideaNodes;
+        this.positionsX = new float[ideaNodes.length];
+        this.positionsY = new float[ideaNodes.length];
+        this.rotations = new float[ideaNodes.length];
+        this.texts = new String[ideaNodes.length];
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the planned MindMap.
+     * 
+     * @return the mindMap
+     */
+    public MindMap getMindMap() {
+        return this.mindMap;
+    }
+
+    /**
+     * Returns the number of active IdeaNodes.
+     * 
+     * @return the number of IdeaNodes to create views for
+     */
+    public int getIdeaNodeCount() {
+        return this.ideaNodes.length;
+    }
+
+    /**
+     * Returns an active IdeaNode.
+     * 
+     * @param index
+     *            the index of the IdeaNode
+     * @return the IdeaNode
+     */
+    public IdeaNode getIdeaNode(int index) {
+        return this.ideaNodes[index];
+    }
+
+    /**
+     * Returns the x position of an IdeaNode.
+     * 
+     * @param index
+     *            the index of the IdeaNode
+     * @return the x position
+     */
+    public float getPositionX(int index) {
+        return this.positionsX[index];
+    }
+
+    /**
+     * Returns the y position of an IdeaNode.
+     * 
+     * @param index
+     *            the index of the IdeaNode
+     * @return the y position
+     */
+    public float getPositionY(int index) {
+        return this.positionsY[index];
+    }
+
+    /**
+     * Returns the rotation of an IdeaNode.
+     * 
+     * @param index
+     *            the index of the IdeaNode
+     * @return the rotation in degrees
+     */
+    public float getRotation(int index) {
+        return this.rotations[index];
+    }
+
+    /**
+     * Returns the text of an IdeaNode.
+     * 
+     * @param index
+     *            the index of the IdeaNode
+     * @return the text
+     */
+    public String getText(int index) {
+        return this.texts[index];
+    }
+
+    /**
+     * Returns the number of relations between active IdeaNodes.
+     * 
+     * @return the number of relations to create views for
+     */
+    public int getRelationCount() {
+        return this.relationParents.length;
+    }
+
+    /**
+     * Returns the parent end of a relation.
+     * 
+     * @param index
+     *            the index of the relation
+     * @return the index of the parent IdeaNode
+     */
+    public int getRelationParent(int index) {
+        return this.relationParents[index];
+    }
+
+    /**
+     * Returns the child end of a relation.
+     * 
+     * @param index
+     *            the index of the relation
+     * @return the index of the child IdeaNode
+     */
+    public int getRelationChild(int index) {
+        return this.relationChildren[index];
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Creates the plan for a MindMap on the calling thread.
+     * 
+     * @param mindMap
+     *            the MindMap
+     * @return the plan
+     */
+    public static MindMapViewPlan create(MindMap mindMap) {
+
+        log.debug("Entering create(mindMap=" + mindMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        MindMapViewPlan plan = allocate(mindMap);
+        LongHashMap<Integer> indices = plan.indexIdeaNodes();
+        PlanChunk chunk = plan.prepare(0, plan.ideaNodes.length, indices);
+        plan.setRelations(new PlanChunk[] { chunk });
+
+        log.debug("Leaving create(): " + plan); //$NON-NLS-1$
+        return plan;
+    }
+
+    /**
+     * Creates the plan for a MindMap. The IdeaNodes are prepared in chunks of
+     * {@link #CHUNK_SIZE} on the given workers, the result is the same as the
+     * one of {@link #create(MindMap)}.
+     * 
+     * @param mindMap
+     *            the MindMap
+     * @param workers
+     *            the executor running the chunks, must not be the executor
+     *            of the calling thread
+     * @return the plan
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the
+     *             workers
+     */
+    public static MindMapViewPlan create(MindMap mindMap,
+            ExecutorService workers) throws InterruptedException {
+
+        log.debug("Entering create(mindMap=" + mindMap + ", workers)"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final MindMapViewPlan plan = allocate(mindMap);
+        final LongHashMap<Integer> indices = plan.indexIdeaNodes();
+
+        int count = plan.ideaNodes.length;
+        ArrayList<Callable<PlanChunk>> tasks = new ArrayList<Callable<PlanChunk>>();
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(count, from + CHUNK_SIZE);
+            tasks.add(new Callable<PlanChunk>() {
+                @Override
+                public PlanChunk call() {
+                    return plan.prepare(chunkFrom, chunkTo, indices);
+                }
+            });
+        }
+
+        // Chunks write disjoint ranges of the arrays, invokeAll publishes
+        // them to this thread
+        PlanChunk[] chunks = new PlanChunk[tasks.size()];
+        int i = 0;
+        for (Future<PlanChunk> future : workers.invokeAll(tasks)) {
+            try {
+                chunks[i++] = future.get();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(
+                        "Preparing view plan failed", ex.getCause()); //$NON-NLS-1$
+            }
+        }
+        plan.setRelations(chunks);
+
+        log.debug("Leaving create(): " + plan + " from " + chunks.length + " chunks"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        return plan;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates a plan with the active IdeaNodes of a MindMap in list order.
+     * 
+     * @param mindMap
+     *            the MindMap
+     * @return the plan with unfilled arrays
+     */
+    private static MindMapViewPlan allocate(MindMap mindMap) {
+
+        ArrayList<IdeaNode> ideaNodeList = mindMap.getMindMapIdeaNodeList();
+        ArrayList<IdeaNode> active = new ArrayList<IdeaNode>(
+                ideaNodeList.size());
+        for (IdeaNode ideaNode : ideaNodeList) {
+            if (ideaNode.getIdeaState() != EIdeaState.DELETED) {
+                active.add(ideaNode);
+            }
+        }
+        return new MindMapViewPlan(mindMap,
+                active.toArray(new IdeaNode[active.size()]));
+    }
+
+    /**
+     * Indexes the active IdeaNodes by ideaID.
+     * 
+     * @return the indices by ideaID, only read by the workers
+     */
+    private LongHashMap<Integer> indexIdeaNodes() {
+
+        LongHashMap<Integer> indices = new LongHashMap<Integer>(
+                this.ideaNodes.length);
+        for (int i = 0; i < this.ideaNodes.length; i++) {
+            indices.put(this.ideaNodes[i].getIdeaID(), Integer.valueOf(i));
+        }
+        return indices;
+    }
+
+    /**
+     * Fills the arrays for a range of IdeaNodes and collects the relations to
+     * their active children.
+     * 
+     * @param from
+     *            the first index, inclusive
+     * @param to
+     *            the last index, exclusive
+     * @param indices
+     *            the indices of the active IdeaNodes by ideaID
+     * @return the relations of the range
+     */
+    private PlanChunk prepare(int from, int to, LongHashMap<Integer> indices) {
+
+        PlanChunk chunk = new PlanChunk(to - from);
+        for (int i = from; i < to; i++) {
+            IdeaNode ideaNode = this.ideaNodes[i];
+            this.positionsX[i] = ideaNode.getIdeaPositionX();
+            this.positionsY[i] = ideaNode.getIdeaPositionY();
+            this.rotations[i] = ideaNode.getIdeaRotationInDegrees();
+            this.texts[i] = ideaNode.getIdeaText();
+
+            for (Node<NodeData> child : ideaNode.getChildren()) {
+                if (child instanceof IdeaNode) {
+                    Integer childIndex = indices.get(((IdeaNode) child)
+                            .getIdeaID());
+                    if (childIndex != null) {
+                        chunk.add(i, childIndex.intValue());
+                    } else {
+                        log.warn("Skipping relation to inactive child " + child); //$NON-NLS-1$
+                    }
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Concatenates the relations of all chunks in chunk order.
+     * 
+     * @param chunks
+     *            the chunks
+     */
+    private void setRelations(PlanChunk[] chunks) {
+
+        int count = 0;
+        for (PlanChunk chunk : chunks) {
+            count += chunk.size;
+        }
+        this.relationParents = new int[count];
+        this.relationChildren = new int[count];
+        int offset = 0;
+        for (PlanChunk chunk : chunks) {
+            System.arraycopy(chunk.parents, 0, this.relationParents, offset,
+                    chunk.size);
+            System.arraycopy(chunk.children, 0, this.relationChildren, offset,
+                    chunk.size);
+            offset += chunk.size;
+        }
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a simple String representation of the MindMapViewPlan.
+     * 
+     * @return the simple String representation of the MindMapViewPlan.
+     */
+    @Override
+    public String toString() {
+        return "MindMapViewPlan [mindMap=" + this.mindMap + ", ideaNodes=" //$NON-NLS-1$ //$NON-NLS-2$
+                + this.ideaNodes.length + ", relations=" //$NON-NLS-1$
+                + ((this.relationParents == null) ? 0
+                        : this.relationParents.length) + "]"; //$NON-NLS-1$
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * The relations collected for a range of IdeaNodes.
+     */
+    private static class PlanChunk {
+
+        /** The parent indices */
+        private int[] parents;
+
+        /** The child indices */
+        private int[] children;
+
+        /** The number of relations */
+        private int   size;
+
+        /**
+         * Constructor. Instantiates a new, empty PlanChunk.
+         * 
+         * @param capacity
+         *            the initial capacity
+         */
+        PlanChunk(int capacity) {
+            this.parents = new int[Math.max(capacity, 1)];
+            this.children = new int[this.parents.length];
+        }
+
+        /**
+         * Adds a relation.
+         * 
+         * @param parent
+         *            the parent index
+         * @param child
+         *            the child index
+         */
+        void add(int parent, int child) {
+            if (this.size == this.parents.length) {
+                int[] grown = new int[this.size << 1];
+                System.arraycopy(this.parents, 0, grown, 0, this.size);
+                this.parents = grown;
+                grown = new int[this.size << 1];
+                System.arraycopy(this.children, 0, grown, 0, this.size);
+                this.children = grown;
+            }
+            this.parents[this.size] = parent;
+            this.children[this.size] = child;
+            this.size++;
+        }
+    }
+
+}
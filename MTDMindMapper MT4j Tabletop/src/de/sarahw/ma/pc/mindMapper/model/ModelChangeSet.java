@@ -0,0 +1,108 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+
+/**
+ * <p>
+ * A consolidated, ordered list of observer notifications of one model object
+ * (a MindMap or an IdeaNode), collected during a batch (see
+ * {@link MindMap#beginBatch()}) and delivered as content of a single
+ * MIND_MAP_CHANGES_COMMITTED or IDEA_NODE_CHANGES_COMMITTED notification.
+ * </p>
+ * 
+ * <p>
+ * Repeated title changes are coalesced, only the last one is kept.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see MindMap#commit()
+ */
+public class ModelChangeSet {
+
+    /** The collected notifications in order of occurrence */
+    private final List<ObserverNotificationObject> changes = new ArrayList<ObserverNotificationObject>();
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new, empty ModelChangeSet.
+     */
+    protected ModelChangeSet() {
+        super();
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the collected notifications in order of occurrence.
+     * 
+     * @return an unmodifiable list of notifications
+     */
+    public List<ObserverNotificationObject> getChanges() {
+        return Collections.unmodifiableList(this.changes);
+    }
+
+    /**
+     * Returns the number of collected notifications.
+     * 
+     * @return the number of notifications
+     */
+    public int size() {
+        return this.changes.size();
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Adds a notification to the change set. Replaces an earlier
+     * MIND_MAP_TITLE_SET notification, as only the last title matters.
+     * 
+     * @param notification
+     *            the notification to add
+     */
+    protected void add(ObserverNotificationObject notification) {
+        if (notification.getEnumStatus() == EMindMapChangeStatus.MIND_MAP_TITLE_SET) {
+            for (int i = 0; i < this.changes.size(); i++) {
+                if (this.changes.get(i).getEnumStatus() == EMindMapChangeStatus.MIND_MAP_TITLE_SET) {
+                    this.changes.remove(i);
+                    break;
+                }
+            }
+        }
+        this.changes.add(notification);
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a String representation of the ModelChangeSet.
+     * 
+     * @return String representation of the ModelChangeSet.
+     */
+    @Override
+    public String toString() {
+        return "ModelChangeSet [changes=" + this.changes.size() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+}
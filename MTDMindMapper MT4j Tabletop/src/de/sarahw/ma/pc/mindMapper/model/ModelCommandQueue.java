@@ -0,0 +1,196 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Lock-free multi-producer single-consumer queue of model commands. Any thread
+ * may submit commands, only the render thread drains the queue (once per
+ * frame), so the model is mutated by a single thread only.
+ * </p>
+ * 
+ * <p>
+ * Submitting a command is a single atomic exchange, no locks are taken. The
+ * number of commands executed per drain can be bounded, so the ingest work per
+ * frame is limited and measurable.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @see IModelCommand
+ */
+public class ModelCommandQueue {
+
+    private static Logger                      log          = Logger.getLogger(ModelCommandQueue.class);
+
+    /** Constant for draining all pending commands */
+    public static final int                    UNBOUNDED    = Integer.MAX_VALUE;
+
+    /** The model the commands are executed on */
+    private final AppModel                     model;
+
+    /** The last node consumed, its successors are pending (consumer only) */
+    private CommandNode                        head;
+
+    /** The last node submitted (producers) */
+    private final AtomicReference<CommandNode> tail;
+
+    /** The number of pending commands */
+    private final AtomicInteger                pendingCount = new AtomicInteger();
+
+    /** The total number of executed commands (consumer only) */
+    private long                               executedCount;
+
+    /** The duration of the last drain in nanoseconds (consumer only) */
+    private long                               lastDrainNanos;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new, empty ModelCommandQueue.
+     * 
+     * @param model
+     *            the model the commands are executed on
+     */
+    public ModelCommandQueue(AppModel model) {
+        this.model = model;
+        this.head = new CommandNode(null);
+        this.tail = new AtomicReference<CommandNode>(this.head);
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of commands that are submitted but not yet executed.
+     * 
+     * @return the number of pending commands
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * Returns the total number of executed commands. Must only be called on
+     * the draining thread.
+     * 
+     * @return the number of executed commands
+     */
+    public long getExecutedCount() {
+        return this.executedCount;
+    }
+
+    /**
+     * Returns the duration of the last drain. Must only be called on the
+     * draining thread.
+     * 
+     * @return the duration of the last drain in nanoseconds
+     */
+    public long getLastDrainNanos() {
+        return this.lastDrainNanos;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Submits a command for execution on the draining thread. May be called
+     * from any thread.
+     * 
+     * @param command
+     *            the command to submit
+     */
+    public void submit(IModelCommand command) {
+
+        log.trace("Entering submit(command=" + command + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (command == null) {
+            log.error("Leaving submit(): invalid null input"); //$NON-NLS-1$
+            return;
+        }
+        CommandNode node = new CommandNode(command);
+        this.pendingCount.incrementAndGet();
+        CommandNode previous = this.tail.getAndSet(node);
+        // Publish the node to the consumer
+        previous.next = node;
+        log.trace("Leaving submit()"); //$NON-NLS-1$
+    }
+
+    /**
+     * Executes pending commands in submission order (per submitting thread)
+     * until the queue is empty or the given number of commands has been
+     * executed. Must only be called on a single thread, the render thread.
+     * Failing commands are logged and skipped.
+     * 
+     * @param maxCommands
+     *            the maximum number of commands to execute, or UNBOUNDED
+     * @return the number of executed commands
+     */
+    public int drain(int maxCommands) {
+
+        long start = System.nanoTime();
+        int count = 0;
+        CommandNode next;
+        while (count < maxCommands && (next = this.head.next) != null) {
+            IModelCommand command = next.command;
+            // Unlink the command, next becomes the new sentinel
+            next.command = null;
+            this.head = next;
+            this.pendingCount.decrementAndGet();
+            count++;
+            try {
+                command.execute(this.model);
+            } catch (RuntimeException e) {
+                log.error("Model command " + command + " failed: " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        this.executedCount += count;
+        this.lastDrainNanos = System.nanoTime() - start;
+
+        if (count > 0) {
+            log.debug("Drained " + count + " model commands in " + this.lastDrainNanos / 1000 + " us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        return count;
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A queue node holding a submitted command.
+     */
+    private static final class CommandNode {
+
+        /** The command, null for the sentinel */
+        private IModelCommand        command;
+
+        /** The successor, set by the submitting thread */
+        private volatile CommandNode next;
+
+        /**
+         * Constructor. Instantiates a new CommandNode.
+         * 
+         * @param command
+         *            the command
+         */
+        CommandNode(IModelCommand command) {
+            this.command = command;
+        }
+    }
+
+}
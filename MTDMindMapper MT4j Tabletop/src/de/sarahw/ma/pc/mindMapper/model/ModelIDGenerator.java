@@ -0,0 +1,104 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Issues unique, monotonically increasing IDs for all model objects (IdeaNode,
+ * Map, NodeData and MindMap).
+ * </p>
+ * 
+ * <p>
+ * The last issued ID is persisted with every MindMap (see
+ * {@link MindMap#getLastIssuedID()}). On deserialization the generator is
+ * advanced past all IDs contained in the loaded MindMap, so IDs of newly
+ * created objects can never collide with loaded ones.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class ModelIDGenerator {
+
+    private static Logger           log      = Logger.getLogger(ModelIDGenerator.class);
+
+    /** Constant representing the state "no ID has been issued yet" */
+    public static final long        NO_ID    = 0;
+
+    /** The last issued ID */
+    private static final AtomicLong lastID   = new AtomicLong(NO_ID);
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private ModelIDGenerator() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Returns a new unique ID. IDs are strictly positive and increase
+     * monotonically.
+     * 
+     * @return the new ID
+     */
+    public static long nextID() {
+        return lastID.incrementAndGet();
+    }
+
+    /**
+     * Returns the last issued ID without issuing a new one.
+     * 
+     * @return the last issued ID or NO_ID if no ID has been issued yet
+     */
+    public static long getLastID() {
+        return lastID.get();
+    }
+
+    /**
+     * Advances the generator so that all following IDs are greater than the
+     * given ID. Has no effect if the generator is already past the given ID.
+     * 
+     * @param id
+     *            an ID that is already in use
+     */
+    public static void ensureAbove(long id) {
+
+        log.trace("Entering ensureAbove(id=" + id + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        long current;
+        do {
+            current = lastID.get();
+            if (current >= id) {
+                log.trace("Leaving ensureAbove(): nothing to do"); //$NON-NLS-1$
+                return;
+            }
+        } while (!lastID.compareAndSet(current, id));
+
+        log.trace("Leaving ensureAbove()"); //$NON-NLS-1$
+    }
+
+}
@@ -20,10 +20,12 @@
 
 package de.sarahw.ma.pc.mindMapper.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Observable;
 
 import org.apache.log4j.Logger;
 
@@ -56,7 +58,7 @@ import org.apache.log4j.Logger;
  * 
  */
 
-public class Node<T> extends Observable implements Serializable {
+public class Node<T> implements Serializable {
 
     private static Logger     log              = Logger.getLogger(Node.class);
 
@@ -69,6 +71,21 @@ public class Node<T> extends Observable implements Serializable {
     /** The list of child nodes */
     private List<Node<T>>     children         = new ArrayList<Node<T>>();
 
+    /**
+     * The parent node or null for a root node, maintained by addChild() and
+     * removeChild() and rebuilt upon deserialization
+     */
+    private transient Node<T> parent;
+
+    /** The aggregated facts about this node and all of its children */
+    private transient SubtreeAggregate aggregate;
+
+    /**
+     * Flag indicating if the aggregate is up to date. Invariant: all children
+     * of a node with a valid aggregate have valid aggregates as well.
+     */
+    private transient boolean aggregateValid;
+
     /* ***********Constructors*********** */
     /**
      * Default constructor. Instantiates a new Node.
@@ -85,7 +102,9 @@ public class Node<T> extends Observable implements Serializable {
      */
     protected Node(T data) {
         this();
-        log.debug("Execute Node(data=" + data + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Execute Node(data=" + data + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         setData(data);
     }
 
@@ -104,6 +123,17 @@ public class Node<T> extends Observable implements Serializable {
         return (ArrayList<Node<T>>) this.children;
     }
 
+    /**
+     * Returns the parent of the Node<T>.
+     * 
+     * @return the parent Node<T> or null, if the Node<T> is a root node
+     */
+    protected Node<T> getParent() {
+        log.trace("Entering getParent()"); //$NON-NLS-1$
+        log.trace("Leaving getParent(): " + this.parent); //$NON-NLS-1$
+        return this.parent;
+    }
+
     /**
      * Returns the data of the Node.
      * 
@@ -111,7 +141,9 @@ public class Node<T> extends Observable implements Serializable {
      */
     protected T getData() {
         log.trace("Entering getData()"); //$NON-NLS-1$
-        log.trace("Leaving getData(): " + this.data); //$NON-NLS-1$
+        if (log.isTraceEnabled()) {
+            log.trace("Leaving getData(): " + this.data); //$NON-NLS-1$
+        }
         return this.data;
     }
 
@@ -122,8 +154,11 @@ public class Node<T> extends Observable implements Serializable {
      *            the data to set
      */
     protected void setData(T data) {
-        log.trace("Entering setData(data=" + data + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Entering setData(data=" + data + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         this.data = data;
+        invalidateAggregate();
         log.trace("Leaving setData()"); //$NON-NLS-1$
     }
 
@@ -152,10 +187,14 @@ public class Node<T> extends Observable implements Serializable {
      */
     protected boolean addChild(Node<T> child) {
 
-        log.debug("Entering addChild(child=" + child + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Entering addChild(child=" + child + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         if (child != null) {
             if (this.children.add(child)) {
-                log.debug("Leaving addChild(): true"); //$NON-NLS-1$
+                child.parent = this;
+                invalidateAggregate();
+                log.trace("Leaving addChild(): true"); //$NON-NLS-1$
                 return true;
             }
             log.debug("Leaving addChild(): false, child could not be added"); //$NON-NLS-1$
@@ -179,6 +218,8 @@ public class Node<T> extends Observable implements Serializable {
         log.debug("Entering removeChild(child=" + child + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         if (child != null) {
             if (this.children.remove(child)) {
+                child.parent = null;
+                invalidateAggregate();
                 log.debug("Leaving removeChild(): true"); //$NON-NLS-1$
                 return true;
             }
@@ -190,6 +231,159 @@ public class Node<T> extends Observable implements Serializable {
         return false;
     }
 
+    /**
+     * Checks if this Node<T> is an ancestor of the given Node<T>, i.e. if the
+     * given Node<T> is part of the subtree below this Node<T>. Follows the
+     * parent references, so the check costs O(depth).
+     * 
+     * @param node
+     *            the possible descendant
+     * @return true, if this Node<T> is a (direct or indirect) parent of the
+     *         given Node<T>
+     */
+    public boolean isAncestorOf(Node<T> node) {
+
+        log.debug("Entering isAncestorOf(node=" + node + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (node != null) {
+            for (Node<T> current = node.parent; current != null; current = current.parent) {
+                if (current == this) {
+                    log.debug("Leaving isAncestorOf(): true"); //$NON-NLS-1$
+                    return true;
+                }
+            }
+        }
+        log.debug("Leaving isAncestorOf(): false"); //$NON-NLS-1$
+        return false;
+    }
+
+    /**
+     * Returns the depth of the Node<T>, i.e. the number of ancestors. A root
+     * node has the depth 0.
+     * 
+     * @return the depth of this Node<T>
+     */
+    public int getDepth() {
+
+        log.debug("Entering getDepth()"); //$NON-NLS-1$
+        int depth = 0;
+        for (Node<T> current = this.parent; current != null; current = current.parent) {
+            depth++;
+        }
+        log.debug("Leaving getDepth(): " + depth); //$NON-NLS-1$
+        return depth;
+    }
+
+    /**
+     * Returns the path from this Node<T> up to the root node of its tree.
+     * 
+     * @return a new ArrayList starting with this Node<T> and ending with the
+     *         root node
+     */
+    public ArrayList<Node<T>> getPathToRoot() {
+
+        log.debug("Entering getPathToRoot()"); //$NON-NLS-1$
+        ArrayList<Node<T>> path = new ArrayList<Node<T>>();
+        for (Node<T> current = this; current != null; current = current.parent) {
+            path.add(current);
+        }
+        log.debug("Leaving getPathToRoot(): path of " + path.size() + " nodes"); //$NON-NLS-1$ //$NON-NLS-2$
+        return path;
+    }
+
+    /**
+     * Returns the aggregated facts (size, maximum depth, position bounds) about
+     * this Node<T> and all of its children. Only the parts of the subtree that
+     * have changed since the last call are recalculated, so the call is O(1)
+     * for an unchanged subtree. The returned object is updated in place and
+     * must not be modified.
+     * 
+     * @return the SubtreeAggregate of this Node<T>
+     */
+    public SubtreeAggregate getSubtreeAggregate() {
+
+        log.debug("Entering getSubtreeAggregate()"); //$NON-NLS-1$
+        if (!this.aggregateValid) {
+            updateAggregates();
+        }
+        log.debug("Leaving getSubtreeAggregate(): " + this.aggregate); //$NON-NLS-1$
+        return this.aggregate;
+    }
+
+    /**
+     * Marks the aggregate of this Node<T> and of all its ancestors as outdated.
+     * Stops at the first ancestor that is already outdated, so repeated
+     * changes (e.g. while dragging) only cost O(1) until the aggregate is
+     * queried again.
+     */
+    protected void invalidateAggregate() {
+        for (Node<T> current = this; current != null && current.aggregateValid; current = current.parent) {
+            current.aggregateValid = false;
+        }
+    }
+
+    /**
+     * Adds the data of this Node<T> (without children) to the given aggregate.
+     * Nodes without a position don't contribute to the bounds, subclasses with
+     * a position override this method.
+     * 
+     * @param nodeAggregate
+     *            the reset aggregate of this Node<T>
+     */
+    protected void contributeToAggregate(SubtreeAggregate nodeAggregate) {
+        // no position
+    }
+
+    /**
+     * Recalculates all outdated aggregates of the subtree bottom-up, using an
+     * explicit stack and skipping all subtrees that are up to date.
+     */
+    private void updateAggregates() {
+        ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        stack.addLast(this);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.peekLast();
+            boolean childrenValid = true;
+            for (Node<T> child : node.children) {
+                if (!child.aggregateValid) {
+                    stack.addLast(child);
+                    childrenValid = false;
+                }
+            }
+            if (childrenValid) {
+                stack.pollLast();
+                if (node.aggregate == null) {
+                    node.aggregate = new SubtreeAggregate();
+                } else {
+                    node.aggregate.reset();
+                }
+                node.contributeToAggregate(node.aggregate);
+                for (Node<T> child : node.children) {
+                    node.aggregate.includeChild(child.aggregate);
+                }
+                node.aggregateValid = true;
+            }
+        }
+    }
+
+    /**
+     * Reads the Node<T> via default deserialization and sets the transient
+     * parent reference of all children.
+     * 
+     * @param in
+     *            the ObjectInputStream
+     * @throws IOException
+     *             on read errors
+     * @throws ClassNotFoundException
+     *             if a class of a serialized object cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        for (Node<T> child : this.children) {
+            child.parent = this;
+        }
+    }
+
     /* ********Overridden methods******** */
     /**
      * Returns a detailed String representation of the Node and its children.
@@ -213,68 +407,27 @@ public class Node<T> extends Observable implements Serializable {
     }
 
     /**
-     * Returns a hash code value for the Node<T>.
+     * Returns a hash code value for the Node<T>. Based on object identity, so
+     * the hash code stays constant while the tree is modified. Use
+     * {@link StructuralComparator} to compare the structure of trees.
      * 
      * @return a hash code value for this Node<T>.
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result
-                + ((this.children == null) ? 0 : this.children.hashCode());
-        result = prime * result
-                + ((this.data == null) ? 0 : this.data.hashCode());
-        return result;
+        return System.identityHashCode(this);
     }
 
     /**
      * Compares the specified object with this Node<T> for equality. Returns
-     * true if and only if the specified object is also a Node<T> with the same
-     * elements.
+     * true if and only if the specified object is the same Node<T>. Use
+     * {@link StructuralComparator} to compare the structure of trees.
      * 
      * @return true if the specified object is equal to this Node<T>.
      */
-    @SuppressWarnings("unchecked")
     @Override
     public boolean equals(Object obj) {
-
-        log.trace("Entering equals(obj= )"); //$NON-NLS-1$
-
-        if (this == obj) {
-            log.trace("Leaving equals(): true; same reference"); //$NON-NLS-1$
-            return true;
-        }
-
-        if (obj == null) {
-            log.trace("Leaving equals(): false; object is null"); //$NON-NLS-1$
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            log.trace("Leaving equals(): false; no istanceof Node<T>"); //$NON-NLS-1$
-            return false;
-        }
-        Node<T> other = (Node<T>) obj;
-        if (this.children == null) {
-            if (other.children != null) {
-                log.trace("Leaving equals(): false; Different children list"); //$NON-NLS-1$
-                return false;
-            }
-        } else if (!this.children.equals(other.children)) {
-            log.trace("Leaving equals(): false; Different children list"); //$NON-NLS-1$
-            return false;
-        }
-        if (this.data == null) {
-            if (other.data != null) {
-                log.trace("Leaving equals(): false; Different data; this data is null"); //$NON-NLS-1$
-                return false;
-            }
-        } else if (!this.data.equals(other.data)) {
-            log.trace("Leaving equals(): false; Different data"); //$NON-NLS-1$
-            return false;
-        }
-        log.trace("Leaving equals(): true, same object"); //$NON-NLS-1$
-        return true;
+        return this == obj;
     }
 
 }
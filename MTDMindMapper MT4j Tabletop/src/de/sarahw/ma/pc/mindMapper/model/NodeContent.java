@@ -62,7 +62,9 @@ public class NodeContent implements Serializable {
     public NodeContent(String ideaText) {
         super();
 
-        log.debug("Executing NodeContentContainer(ideaText=" + ideaText + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        if (log.isTraceEnabled()) {
+            log.trace("Executing NodeContentContainer(ideaText=" + ideaText + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        }
         setIdeaText(ideaText);
     }
 
@@ -44,8 +44,7 @@ public class NodeData implements Serializable {
     /** The serial version UID -3479209053334365898L */
     private static final long serialVersionUID = -3479209053334365898L;
 
-    /** The ID of the nodeData */
-    // TODO: problematic because two NodeData objects can have the same ID ?
+    /** The unique ID of the nodeData (issued by ModelIDGenerator) */
     private long              nodeDataID;
 
     /** The nodeConent contained in the nodeData */
@@ -64,12 +63,30 @@ public class NodeData implements Serializable {
      *            the nodeMetaData of the idea
      */
     public NodeData(NodeContent nodeContent, NodeMetaData nodeMetaData) {
+        this(nodeContent, nodeMetaData, ModelIDGenerator.nextID());
+    }
+
+    /**
+     * Instantiates a new NodeData with NodeContent, NodeMetaData and an
+     * already issued nodeDataID. Used when reading a MindMap file.
+     * 
+     * @param nodeContent
+     *            the nodeContent of the idea
+     * @param nodeMetaData
+     *            the nodeMetaData of the idea
+     * @param nodeDataID
+     *            the unique ID of the nodeData
+     */
+    protected NodeData(NodeContent nodeContent, NodeMetaData nodeMetaData,
+            long nodeDataID) {
         super();
 
-        log.debug("Executing NodeData(nodeContent=" + nodeContent + ", nodeMetaData=" + nodeMetaData + ")"); //$NON-NLS-2$ //$NON-NLS-1$ //$NON-NLS-3$
+        if (log.isTraceEnabled()) {
+            log.trace("Executing NodeData(nodeContent=" + nodeContent + ", nodeMetaData=" + nodeMetaData + ", nodeDataID=" + nodeDataID + ")"); //$NON-NLS-2$ //$NON-NLS-1$ //$NON-NLS-3$ //$NON-NLS-4$
+        }
         setNodeContent(nodeContent);
         setNodeMetaData(nodeMetaData);
-        setNodeDataID(this.hashCode());
+        setNodeDataID(nodeDataID);
     }
 
     /* ********Getters & Setters******** */
@@ -114,7 +131,9 @@ public class NodeData implements Serializable {
      *            the node content to set
      */
     protected void setNodeContent(NodeContent nodeContent) {
-        log.trace("Entering getNodeContent(nodeContent=" + nodeContent + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Entering getNodeContent(nodeContent=" + nodeContent + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         this.nodeContent = nodeContent;
         log.trace("Leaving setNodeContent()"); //$NON-NLS-1$
     }
@@ -137,7 +156,9 @@ public class NodeData implements Serializable {
      *            the node meta data to set
      */
     protected void setNodeMetaData(NodeMetaData nodeMetaData) {
-        log.trace("Entering setNodeMetaData(nodeMetaData=" + nodeMetaData + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (log.isTraceEnabled()) {
+            log.trace("Entering setNodeMetaData(nodeMetaData=" + nodeMetaData + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
         this.nodeMetaData = nodeMetaData;
         log.trace("Leaving setNodeMetaData()"); //$NON-NLS-1$
     }
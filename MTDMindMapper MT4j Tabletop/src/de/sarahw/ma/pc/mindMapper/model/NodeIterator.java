@@ -0,0 +1,188 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Lazy iterator over a Node<T> and all of its children in pre-order, post-order
+ * or breadth-first order (see {@link ETraversalOrder}).
+ * </p>
+ * 
+ * <p>
+ * Uses an explicit stack (or queue) instead of recursion, so very deep trees
+ * can't cause a StackOverflowError. Nodes are visited one at a time, so a
+ * search can stop early without materializing the whole tree.
+ * </p>
+ * 
+ * <p>
+ * The tree must not be modified while iterating. remove() is not supported.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @param <T>
+ *            the data type of the nodes
+ */
+public class NodeIterator<T> implements Iterator<Node<T>> {
+
+    /** The initial capacity of the child index stack for post-order */
+    private static final int          INITIAL_DEPTH = 16;
+
+    /** The traversal order */
+    private final ETraversalOrder     order;
+
+    /** The stack (depth-first) or queue (breadth-first) of pending nodes */
+    private final ArrayDeque<Node<T>> pending       = new ArrayDeque<Node<T>>();
+
+    /**
+     * The index of the next child to descend into for every node on the
+     * post-order stack
+     */
+    private int[]                     childIndices;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new NodeIterator for the given start node and
+     * all of its children.
+     * 
+     * @param start
+     *            the start node, if null the iterator is empty
+     * @param order
+     *            the traversal order
+     */
+    public NodeIterator(Node<T> start, ETraversalOrder order) {
+        this.order = order;
+        if (order == ETraversalOrder.POST_ORDER) {
+            this.childIndices = new int[INITIAL_DEPTH];
+        }
+        if (start != null) {
+            this.pending.addLast(start);
+        }
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Returns if there are more nodes to visit.
+     * 
+     * @return true, if there are more nodes
+     */
+    @Override
+    public boolean hasNext() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * Returns the next node.
+     * 
+     * @return the next node in traversal order
+     */
+    @Override
+    public Node<T> next() {
+        switch (this.order) {
+            case PRE_ORDER:
+                return nextPreOrder();
+            case POST_ORDER:
+                return nextPostOrder();
+            default:
+                return nextBreadthFirst();
+        }
+    }
+
+    /**
+     * Not supported.
+     * 
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the next node in pre-order.
+     * 
+     * @return the next node
+     */
+    private Node<T> nextPreOrder() {
+        Node<T> node = this.pending.pollLast();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        // push children in reverse order so the first child is visited next
+        List<Node<T>> children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            this.pending.addLast(children.get(i));
+        }
+        return node;
+    }
+
+    /**
+     * Returns the next node in breadth-first order.
+     * 
+     * @return the next node
+     */
+    private Node<T> nextBreadthFirst() {
+        Node<T> node = this.pending.pollFirst();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        this.pending.addAll(node.getChildren());
+        return node;
+    }
+
+    /**
+     * Returns the next node in post-order. Descends into the next unvisited
+     * child of the top node until a node without unvisited children is found.
+     * 
+     * @return the next node
+     */
+    private Node<T> nextPostOrder() {
+        while (!this.pending.isEmpty()) {
+            int top = this.pending.size() - 1;
+            Node<T> node = this.pending.peekLast();
+            List<Node<T>> children = node.getChildren();
+            int childIndex = this.childIndices[top];
+            if (childIndex < children.size()) {
+                this.childIndices[top] = childIndex + 1;
+                if (top + 1 == this.childIndices.length) {
+                    int[] grown = new int[this.childIndices.length << 1];
+                    System.arraycopy(this.childIndices, 0, grown, 0,
+                            this.childIndices.length);
+                    this.childIndices = grown;
+                }
+                this.childIndices[top + 1] = 0;
+                this.pending.addLast(children.get(childIndex));
+            } else {
+                this.pending.pollLast();
+                return node;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+}
@@ -84,8 +84,10 @@ public class NodeMetaData implements Serializable {
     public NodeMetaData(float x, float y, float angle, EIdeaNodeCreator owner) {
         super();
 
-        log.debug("Executing NodeMetaData(x=" + x + ", y=" + y + ", angle=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-                + angle + ", owner=" + owner + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        if (log.isTraceEnabled()) {
+            log.trace("Executing NodeMetaData(x=" + x + ", y=" + y + ", angle=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    + angle + ", owner=" + owner + ")"); //$NON-NLS-1$ //$NON-NLS-2$ 
+        }
 
         setPositionX(x);
         setPositionY(y);
@@ -102,7 +104,9 @@ public class NodeMetaData implements Serializable {
      */
     public float getIdeaRotationInDegrees() {
         log.trace("Entering getIdeaRotationInDegrees()"); //$NON-NLS-1$
-        log.trace("Leaving getIdeaRotationInDegrees():" + this.ideaRotationInDegrees); //$NON-NLS-1$
+        if (log.isTraceEnabled()) {
+            log.trace("Leaving getIdeaRotationInDegrees():" + this.ideaRotationInDegrees); //$NON-NLS-1$
+        }
         return this.ideaRotationInDegrees;
     }
 
@@ -166,7 +170,9 @@ public class NodeMetaData implements Serializable {
      */
     public float getPositionX() {
         log.trace("Entering getPositionX()"); //$NON-NLS-1$
-        log.trace("Leaving getPositionX(): " + this.positionX); //$NON-NLS-1$
+        if (log.isTraceEnabled()) {
+            log.trace("Leaving getPositionX(): " + this.positionX); //$NON-NLS-1$
+        }
 
         return this.positionX;
     }
@@ -200,7 +206,9 @@ public class NodeMetaData implements Serializable {
      */
     public float getPositionY() {
         log.trace("Entering getPositionY()"); //$NON-NLS-1$
-        log.trace("Leaving getPositionY(): " + this.positionY); //$NON-NLS-1$
+        if (log.isTraceEnabled()) {
+            log.trace("Leaving getPositionY(): " + this.positionY); //$NON-NLS-1$
+        }
 
         return this.positionY;
     }
@@ -251,6 +259,7 @@ public class NodeMetaData implements Serializable {
         if (ideaState != null) {
             this.ideaState = ideaState;
             log.trace("Leaving setIdeaState()"); //$NON-NLS-1$
+            return;
         }
         log.warn("Leaving setIdeaState(), invalid null input"); //$NON-NLS-1$
     }
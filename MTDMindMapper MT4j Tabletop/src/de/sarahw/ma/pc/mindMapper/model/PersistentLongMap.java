@@ -0,0 +1,565 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * An immutable (persistent) hash map with primitive long keys, implemented as
+ * hash array mapped trie with 32-way branching. put() and remove() return a
+ * new map and copy only the path from the root to the changed entry, all
+ * other branches are shared with the original map.
+ * </p>
+ * 
+ * <p>
+ * Instances never change, so they can be read by any number of threads
+ * without locking. Used for the IdeaNodes of a {@link MindMapSnapshot}.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ * @param <V>
+ *            the type of the mapped values
+ */
+public final class PersistentLongMap<V> {
+
+    /** The number of hash bits consumed per trie level */
+    private static final int                      BITS  = 5;
+
+    /** The mask for the hash bits of one trie level */
+    private static final int                      MASK  = (1 << BITS) - 1;
+
+    /** The empty map */
+    private static final PersistentLongMap<Object> EMPTY = new PersistentLongMap<Object>(
+                                                                 null, 0);
+
+    /** The root node or null for the empty map */
+    private final TrieNode                        root;
+
+    /** The number of mapped keys */
+    private final int                             size;
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Instantiates a new PersistentLongMap.
+     * 
+     * @param root
+     *            the root node or null
+     * @param size
+     *            the number of mapped keys
+     */
+    private PersistentLongMap(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Returns the empty map.
+     * 
+     * @param <V>
+     *            the type of the mapped values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Returns the number of mapped keys.
+     * 
+     * @return the number of mapped keys
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns if the map contains no keys.
+     * 
+     * @return true, if the map is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     * 
+     * @param key
+     *            the key
+     * @return the mapped value or null if the key is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) find(this.root, hash(key), key, 0);
+    }
+
+    /**
+     * Returns a map with the given value mapped to the given key. This map is
+     * not changed. Null values are not permitted.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the value, not null
+     * @return the new map, or this map if the value is already mapped
+     */
+    public PersistentLongMap<V> put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted"); //$NON-NLS-1$
+        }
+        Leaf leaf = new Leaf(hash(key), key, value);
+        if (this.root == null) {
+            return new PersistentLongMap<V>(TrieNode.single(leaf, 0), 1);
+        }
+        boolean[] added = new boolean[1];
+        TrieNode newRoot = this.root.put(leaf, 0, added);
+        if (newRoot == this.root) {
+            return this;
+        }
+        return new PersistentLongMap<V>(newRoot, added[0] ? this.size + 1
+                : this.size);
+    }
+
+    /**
+     * Returns a map without the given key. This map is not changed.
+     * 
+     * @param key
+     *            the key
+     * @return the new map, or this map if the key is not mapped
+     */
+    public PersistentLongMap<V> remove(long key) {
+        if (this.root == null) {
+            return this;
+        }
+        Object newRoot = this.root.remove(hash(key), key, 0);
+        if (newRoot == this.root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        // A single remaining leaf is kept in a root node
+        return new PersistentLongMap<V>(
+                (newRoot instanceof Leaf) ? TrieNode.single((Leaf) newRoot, 0)
+                        : (TrieNode) newRoot, this.size - 1);
+    }
+
+    /**
+     * Returns all mapped values in trie order.
+     * 
+     * @return a new ArrayList with the mapped values
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<V> values() {
+        ArrayList<Leaf> leaves = new ArrayList<Leaf>(this.size);
+        collectLeaves(this.root, leaves);
+        ArrayList<V> result = new ArrayList<V>(this.size);
+        for (Leaf leaf : leaves) {
+            result.add((V) leaf.value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns all mapped keys in trie order.
+     * 
+     * @return a new array with the mapped keys
+     */
+    public long[] keys() {
+        ArrayList<Leaf> leaves = new ArrayList<Leaf>(this.size);
+        collectLeaves(this.root, leaves);
+        long[] result = new long[leaves.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = leaves.get(i).key;
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Returns the keys that are mapped in only one of the two maps or that are
+     * mapped to unequal values.
+     * </p>
+     * 
+     * <p>
+     * Branches shared by both maps are skipped without being visited, so
+     * comparing two versions of a map costs time proportional to the number of
+     * changes, not to the size of the maps.
+     * </p>
+     * 
+     * @param other
+     *            the map to compare with
+     * @return a new array with the differing keys in trie order
+     */
+    public long[] diff(PersistentLongMap<V> other) {
+        ArrayList<Long> keys = new ArrayList<Long>();
+        diffEntries(this.root, other.root, 0, keys);
+        long[] result = new long[keys.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keys.get(i).longValue();
+        }
+        return result;
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Returns the trie hash for the given key. The mixing is a bijection, so
+     * distinct keys always have distinct hashes.
+     * 
+     * @param key
+     *            the key
+     * @return the hash
+     */
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Returns the index of the given hash on the trie level with the given
+     * shift.
+     * 
+     * @param hash
+     *            the hash
+     * @param shift
+     *            the number of hash bits consumed by the upper levels
+     * @return the index between 0 and 31
+     */
+    private static int index(long hash, int shift) {
+        return (int) (hash >>> shift) & MASK;
+    }
+
+    /**
+     * Searches the value for the given key below the given trie entry.
+     * 
+     * @param entry
+     *            a TrieNode, a Leaf or null
+     * @param hash
+     *            the hash of the key
+     * @param key
+     *            the key
+     * @param shift
+     *            the number of hash bits consumed above the entry
+     * @return the value or null
+     */
+    private static Object find(Object entry, long hash, long key, int shift) {
+        Object current = entry;
+        int currentShift = shift;
+        while (current instanceof TrieNode) {
+            TrieNode node = (TrieNode) current;
+            int bit = 1 << index(hash, currentShift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            current = node.entries[Integer.bitCount(node.bitmap & (bit - 1))];
+            currentShift += BITS;
+        }
+        if (current != null && ((Leaf) current).key == key) {
+            return ((Leaf) current).value;
+        }
+        return null;
+    }
+
+    /**
+     * Collects all leaves below the given trie entry. Uses an explicit stack.
+     * 
+     * @param entry
+     *            a TrieNode, a Leaf or null
+     * @param leaves
+     *            the list to add the leaves to
+     */
+    private static void collectLeaves(Object entry, ArrayList<Leaf> leaves) {
+        if (entry == null) {
+            return;
+        }
+        ArrayList<Object> stack = new ArrayList<Object>();
+        stack.add(entry);
+        while (!stack.isEmpty()) {
+            Object current = stack.remove(stack.size() - 1);
+            if (current instanceof Leaf) {
+                leaves.add((Leaf) current);
+            } else {
+                Object[] entries = ((TrieNode) current).entries;
+                for (int i = entries.length - 1; i >= 0; i--) {
+                    stack.add(entries[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the keys that differ between the two trie entries, which are
+     * located at the same position of their tries.
+     * 
+     * @param a
+     *            a TrieNode, a Leaf or null
+     * @param b
+     *            a TrieNode, a Leaf or null
+     * @param shift
+     *            the number of hash bits consumed above the entries
+     * @param keys
+     *            the list to add the differing keys to
+     */
+    private static void diffEntries(Object a, Object b, int shift,
+            ArrayList<Long> keys) {
+
+        if (a == b) {
+            // Shared branch
+            return;
+        }
+        if (a instanceof TrieNode && b instanceof TrieNode) {
+            TrieNode nodeA = (TrieNode) a;
+            TrieNode nodeB = (TrieNode) b;
+            int bits = nodeA.bitmap | nodeB.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                Object entryA = ((nodeA.bitmap & bit) == 0) ? null
+                        : nodeA.entries[Integer.bitCount(nodeA.bitmap
+                                & (bit - 1))];
+                Object entryB = ((nodeB.bitmap & bit) == 0) ? null
+                        : nodeB.entries[Integer.bitCount(nodeB.bitmap
+                                & (bit - 1))];
+                diffEntries(entryA, entryB, shift + BITS, keys);
+            }
+            return;
+        }
+
+        // A leaf or null on at least one side: compare key by key
+        ArrayList<Leaf> leavesA = new ArrayList<Leaf>();
+        ArrayList<Leaf> leavesB = new ArrayList<Leaf>();
+        collectLeaves(a, leavesA);
+        collectLeaves(b, leavesB);
+        for (Leaf leaf : leavesA) {
+            Object valueB = find(b, leaf.hash, leaf.key, shift);
+            if (valueB == null || !valueB.equals(leaf.value)) {
+                keys.add(Long.valueOf(leaf.key));
+            }
+        }
+        for (Leaf leaf : leavesB) {
+            if (find(a, leaf.hash, leaf.key, shift) == null) {
+                keys.add(Long.valueOf(leaf.key));
+            }
+        }
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * A key-value entry of the trie.
+     */
+    private static final class Leaf {
+
+        /** The hash of the key */
+        private final long   hash;
+
+        /** The key */
+        private final long   key;
+
+        /** The value */
+        private final Object value;
+
+        /**
+         * Constructor. Instantiates a new Leaf.
+         * 
+         * @param hash
+         *            the hash of the key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         */
+        Leaf(long hash, long key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An inner node of the trie. Stores only the occupied slots of its 32
+     * slots, the bitmap marks which slots are occupied. Entries are Leaf or
+     * TrieNode objects.
+     */
+    private static final class TrieNode {
+
+        /** The occupied slots */
+        private final int      bitmap;
+
+        /** The entries of the occupied slots in slot order */
+        private final Object[] entries;
+
+        /**
+         * Constructor. Instantiates a new TrieNode.
+         * 
+         * @param bitmap
+         *            the occupied slots
+         * @param entries
+         *            the entries of the occupied slots
+         */
+        TrieNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        /**
+         * Returns a node containing only the given leaf.
+         * 
+         * @param leaf
+         *            the leaf
+         * @param shift
+         *            the number of hash bits consumed above the node
+         * @return the new node
+         */
+        static TrieNode single(Leaf leaf, int shift) {
+            return new TrieNode(1 << index(leaf.hash, shift),
+                    new Object[] { leaf });
+        }
+
+        /**
+         * Returns a node containing both leaves, which must have different
+         * keys.
+         * 
+         * @param first
+         *            the first leaf
+         * @param second
+         *            the second leaf
+         * @param shift
+         *            the number of hash bits consumed above the node
+         * @return the new node
+         */
+        static TrieNode pair(Leaf first, Leaf second, int shift) {
+            int indexFirst = index(first.hash, shift);
+            int indexSecond = index(second.hash, shift);
+            if (indexFirst == indexSecond) {
+                return new TrieNode(1 << indexFirst,
+                        new Object[] { pair(first, second, shift + BITS) });
+            }
+            return new TrieNode((1 << indexFirst) | (1 << indexSecond),
+                    (indexFirst < indexSecond) ? new Object[] { first, second }
+                            : new Object[] { second, first });
+        }
+
+        /**
+         * Returns a node with the given leaf added or replaced.
+         * 
+         * @param leaf
+         *            the leaf
+         * @param shift
+         *            the number of hash bits consumed above the node
+         * @param added
+         *            set to true if the key was not mapped before
+         * @return the new node or this node if nothing changed
+         */
+        TrieNode put(Leaf leaf, int shift, boolean[] added) {
+            int bit = 1 << index(leaf.hash, shift);
+            int position = Integer.bitCount(this.bitmap & (bit - 1));
+
+            if ((this.bitmap & bit) == 0) {
+                Object[] newEntries = new Object[this.entries.length + 1];
+                System.arraycopy(this.entries, 0, newEntries, 0, position);
+                newEntries[position] = leaf;
+                System.arraycopy(this.entries, position, newEntries,
+                        position + 1, this.entries.length - position);
+                added[0] = true;
+                return new TrieNode(this.bitmap | bit, newEntries);
+            }
+
+            Object entry = this.entries[position];
+            Object newEntry;
+            if (entry instanceof TrieNode) {
+                newEntry = ((TrieNode) entry).put(leaf, shift + BITS, added);
+            } else {
+                Leaf existing = (Leaf) entry;
+                if (existing.key == leaf.key) {
+                    if (existing.value == leaf.value) {
+                        return this;
+                    }
+                    newEntry = leaf;
+                } else {
+                    newEntry = pair(existing, leaf, shift + BITS);
+                    added[0] = true;
+                }
+            }
+            if (newEntry == entry) {
+                return this;
+            }
+            Object[] newEntries = this.entries.clone();
+            newEntries[position] = newEntry;
+            return new TrieNode(this.bitmap, newEntries);
+        }
+
+        /**
+         * Returns the node without the given key.
+         * 
+         * @param hash
+         *            the hash of the key
+         * @param key
+         *            the key
+         * @param shift
+         *            the number of hash bits consumed above the node
+         * @return this node if the key is not mapped, null if the node is empty
+         *         afterwards, the only remaining Leaf, or the new node
+         */
+        Object remove(long hash, long key, int shift) {
+            int bit = 1 << index(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+            int position = Integer.bitCount(this.bitmap & (bit - 1));
+            Object entry = this.entries[position];
+            Object newEntry;
+            if (entry instanceof TrieNode) {
+                newEntry = ((TrieNode) entry).remove(hash, key, shift + BITS);
+                if (newEntry == entry) {
+                    return this;
+                }
+            } else if (((Leaf) entry).key == key) {
+                newEntry = null;
+            } else {
+                return this;
+            }
+
+            if (newEntry != null) {
+                Object[] newEntries = this.entries.clone();
+                newEntries[position] = newEntry;
+                return new TrieNode(this.bitmap, newEntries);
+            }
+            if (this.entries.length == 1) {
+                return null;
+            }
+            if (this.entries.length == 2
+                    && this.entries[1 - position] instanceof Leaf) {
+                // Collapse, the remaining leaf moves up one level
+                return this.entries[1 - position];
+            }
+            Object[] newEntries = new Object[this.entries.length - 1];
+            System.arraycopy(this.entries, 0, newEntries, 0, position);
+            System.arraycopy(this.entries, position + 1, newEntries,
+                    position, this.entries.length - position - 1);
+            return new TrieNode(this.bitmap & ~bit, newEntries);
+        }
+    }
+
+}
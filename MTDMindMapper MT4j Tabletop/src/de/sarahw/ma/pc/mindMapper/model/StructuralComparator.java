@@ -0,0 +1,166 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import java.util.LinkedList;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Deep comparison of Node<T> and Tree<T> structures. Node, IdeaNode and Map use
+ * cheap identity/ID based equals() and hashCode() implementations, this class
+ * compares the data and the children of all nodes instead, e.g. to check a
+ * deserialized MindMap against the original one.
+ * </p>
+ * 
+ * <p>
+ * The trees are walked iteratively, so deep trees can be compared as well.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class StructuralComparator {
+
+    private static Logger log = Logger.getLogger(StructuralComparator.class);
+
+    /* ***********Constructors*********** */
+    /**
+     * Private constructor. Doesn't allow instances of this class.
+     */
+    private StructuralComparator() {
+        //
+    }
+
+    /* **********Class methods********** */
+    /**
+     * Checks if two Trees have the same structure and data.
+     * 
+     * @param first
+     *            the first Tree
+     * @param second
+     *            the second Tree
+     * @return true, if both Trees are structurally equal
+     */
+    public static boolean equalTrees(Tree<?> first, Tree<?> second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        return equalNodes(first.getRootElement(), second.getRootElement());
+    }
+
+    /**
+     * Checks if two Nodes and all of their children have the same structure and
+     * data.
+     * 
+     * @param first
+     *            the first Node
+     * @param second
+     *            the second Node
+     * @return true, if both Nodes are structurally equal
+     */
+    public static boolean equalNodes(Node<?> first, Node<?> second) {
+        return describeDifference(first, second) == null;
+    }
+
+    /**
+     * Compares two Nodes and all of their children and describes the first
+     * difference found in pre-order.
+     * 
+     * @param first
+     *            the first Node
+     * @param second
+     *            the second Node
+     * @return a description of the first difference or null, if both Nodes are
+     *         structurally equal
+     */
+    public static String describeDifference(Node<?> first, Node<?> second) {
+
+        log.debug("Entering describeDifference(first=" + first + ", second=" + second + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        LinkedList<Node<?>> firstStack = new LinkedList<Node<?>>();
+        LinkedList<Node<?>> secondStack = new LinkedList<Node<?>>();
+        firstStack.addLast(first);
+        secondStack.addLast(second);
+
+        while (!firstStack.isEmpty()) {
+            Node<?> a = firstStack.removeLast();
+            Node<?> b = secondStack.removeLast();
+
+            String difference = describeNodeDifference(a, b);
+            if (difference != null) {
+                log.debug("Leaving describeDifference(): " + difference); //$NON-NLS-1$
+                return difference;
+            }
+            if (a == null || a == b) {
+                // both null or the same subtree
+                continue;
+            }
+
+            // push children in reverse order to compare in pre-order
+            for (int i = a.getNumberOfChildren() - 1; i >= 0; i--) {
+                firstStack.addLast(a.getChildren().get(i));
+                secondStack.addLast(b.getChildren().get(i));
+            }
+        }
+
+        log.debug("Leaving describeDifference(): null, structurally equal"); //$NON-NLS-1$
+        return null;
+    }
+
+    /**
+     * Compares two Nodes without their children.
+     * 
+     * @param a
+     *            the first Node
+     * @param b
+     *            the second Node
+     * @return a description of the difference or null, if both Nodes are equal
+     */
+    private static String describeNodeDifference(Node<?> a, Node<?> b) {
+        if (a == null || b == null) {
+            return (a == b) ? null : "One node is null: " + a + " / " + b; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (a.getClass() != b.getClass()) {
+            return "Different node classes: " + a + " / " + b; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (a instanceof IdeaNode) {
+            IdeaNode ideaA = (IdeaNode) a;
+            IdeaNode ideaB = (IdeaNode) b;
+            if (ideaA.getIdeaID() != ideaB.getIdeaID()
+                    || ideaA.getParentID() != ideaB.getParentID()
+                    || ideaA.getIsChild() != ideaB.getIsChild()) {
+                return "Different IdeaNode properties: " + a + " / " + b; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        Object dataA = a.getData();
+        Object dataB = b.getData();
+        if (dataA == null ? dataB != null : !dataA.equals(dataB)) {
+            return "Different data: " + a + " / " + b; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (a.getNumberOfChildren() != b.getNumberOfChildren()) {
+            return "Different number of children: " + a + " / " + b; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,196 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+/**
+ * <p>
+ * Aggregated facts about a Node<T> and all of its children: the number of
+ * nodes, the maximum depth and the axis-aligned bounds of the node positions.
+ * </p>
+ * 
+ * <p>
+ * Instances are owned and updated by Node<T> (see
+ * {@link Node#getSubtreeAggregate()}) and must be treated as read-only.
+ * </p>
+ * 
+ * <p>
+ * Will not be serialized, the aggregates are recalculated on demand.
+ * </p>
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+public final class SubtreeAggregate {
+
+    /** The number of nodes in the subtree including its root */
+    private int     size;
+
+    /** The maximum depth of the subtree, 0 for a node without children */
+    private int     maxDepth;
+
+    /** Flag indicating if at least one node of the subtree has a position */
+    private boolean hasBounds;
+
+    /** The minimal x position within the subtree */
+    private float   minX;
+
+    /** The minimal y position within the subtree */
+    private float   minY;
+
+    /** The maximal x position within the subtree */
+    private float   maxX;
+
+    /** The maximal y position within the subtree */
+    private float   maxY;
+
+    /* ***********Constructors*********** */
+    /**
+     * Constructor. Instantiates a new SubtreeAggregate for a single node.
+     */
+    SubtreeAggregate() {
+        reset();
+    }
+
+    /* ********Getters & Setters******** */
+    /**
+     * Returns the number of nodes in the subtree including its root.
+     * 
+     * @return the size
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the maximum depth of the subtree relative to its root, 0 for a
+     * node without children.
+     * 
+     * @return the maxDepth
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Returns if at least one node of the subtree has a position, i.e. if the
+     * bounds are valid.
+     * 
+     * @return true, if the bounds are valid
+     */
+    public boolean hasBounds() {
+        return this.hasBounds;
+    }
+
+    /**
+     * Returns the minimal x position within the subtree.
+     * 
+     * @return the minX
+     */
+    public float getMinX() {
+        return this.minX;
+    }
+
+    /**
+     * Returns the minimal y position within the subtree.
+     * 
+     * @return the minY
+     */
+    public float getMinY() {
+        return this.minY;
+    }
+
+    /**
+     * Returns the maximal x position within the subtree.
+     * 
+     * @return the maxX
+     */
+    public float getMaxX() {
+        return this.maxX;
+    }
+
+    /**
+     * Returns the maximal y position within the subtree.
+     * 
+     * @return the maxY
+     */
+    public float getMaxY() {
+        return this.maxY;
+    }
+
+    /* **********Object methods********** */
+    /**
+     * Resets the aggregate to a single node without position.
+     */
+    void reset() {
+        this.size = 1;
+        this.maxDepth = 0;
+        this.hasBounds = false;
+        this.minX = Float.POSITIVE_INFINITY;
+        this.minY = Float.POSITIVE_INFINITY;
+        this.maxX = Float.NEGATIVE_INFINITY;
+        this.maxY = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Extends the bounds by the given position.
+     * 
+     * @param x
+     *            the x position
+     * @param y
+     *            the y position
+     */
+    void includePosition(float x, float y) {
+        this.hasBounds = true;
+        this.minX = Math.min(this.minX, x);
+        this.minY = Math.min(this.minY, y);
+        this.maxX = Math.max(this.maxX, x);
+        this.maxY = Math.max(this.maxY, y);
+    }
+
+    /**
+     * Adds the aggregate of a child subtree.
+     * 
+     * @param child
+     *            the aggregate of a child node
+     */
+    void includeChild(SubtreeAggregate child) {
+        this.size += child.size;
+        this.maxDepth = Math.max(this.maxDepth, child.maxDepth + 1);
+        if (child.hasBounds) {
+            includePosition(child.minX, child.minY);
+            includePosition(child.maxX, child.maxY);
+        }
+    }
+
+    /* ********Overridden methods******** */
+    /**
+     * Returns a String representation of the SubtreeAggregate.
+     * 
+     * @return String representation of the SubtreeAggregate.
+     */
+    @Override
+    public String toString() {
+        return "SubtreeAggregate [size=" + this.size + ", maxDepth=" //$NON-NLS-1$ //$NON-NLS-2$
+                + this.maxDepth + ", bounds=(" + this.minX + ", " + this.minY //$NON-NLS-1$ //$NON-NLS-2$
+                + ", " + this.maxX + ", " + this.maxY + ")]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+}
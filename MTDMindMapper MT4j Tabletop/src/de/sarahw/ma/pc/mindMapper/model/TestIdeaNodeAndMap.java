@@ -23,10 +23,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.sarahw.ma.pc.mindMapper.IModelEventListener;
+import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+
 /**
  * JUnit test for the classes {@link de.sarahw.ma.pc.mindMapper.model.IdeaNode}
  * and {@link de.sarahw.ma.pc.mindMapper.model.Map}
@@ -230,7 +235,20 @@ public class TestIdeaNodeAndMap {
      */
     @Test
     public void testHashCode() {
-        fail("Not yet implemented");
+
+        int hashCodeBefore = this.testIdeaNode1.hashCode();
+
+        // The hash code must not change when the tree is modified
+        addIdea2asChildofIdea1();
+        assertTrue("Error: hash code of testIdeaNode1 changed on adding a child",
+                this.testIdeaNode1.hashCode() == hashCodeBefore);
+
+        assertTrue(this.testIdeaNode1.removeIdeaChild(this.testIdeaNode2,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C1_1_P_SINGLE_C_SINGLE_REMOVE_MAP));
+        assertTrue(
+                "Error: hash code of testIdeaNode1 changed on removing a child",
+                this.testIdeaNode1.hashCode() == hashCodeBefore);
     }
 
     /**
@@ -249,7 +267,34 @@ public class TestIdeaNodeAndMap {
      */
     @Test
     public void testEqualsObject() {
-        fail("Not yet implemented");
+
+        assertTrue("Error: testIdeaNode1 must be equal to itself",
+                this.testIdeaNode1.equals(this.testIdeaNode1));
+        assertFalse("Error: testIdeaNode1 must not be equal to testIdeaNode2",
+                this.testIdeaNode1.equals(this.testIdeaNode2));
+        assertFalse("Error: testIdeaNode1 must not be equal to null",
+                this.testIdeaNode1.equals(null));
+
+        // IdeaNodes with the same data are different IdeaNodes
+        IdeaNode sameDataNode = new IdeaNode(this.testIdeaNode1.getData());
+        assertFalse("Error: IdeaNodes with different IDs must not be equal",
+                this.testIdeaNode1.equals(sameDataNode));
+
+        // Equality is kept when the tree is modified, but the structure
+        // differs
+        addIdea2asChildofIdea1();
+        assertTrue("Error: testIdeaNode1 must be equal to itself",
+                this.testIdeaNode1.equals(this.testIdeaNode1));
+        assertTrue("Error: testIdeaNode1 must be structurally equal to itself",
+                StructuralComparator.equalNodes(this.testIdeaNode1,
+                        this.testIdeaNode1));
+        assertFalse(
+                "Error: testIdeaNode1 and testIdeaNode2 must not be structurally equal",
+                StructuralComparator.equalNodes(this.testIdeaNode1,
+                        this.testIdeaNode2));
+        assertTrue("Error: A difference must be described",
+                StructuralComparator.describeDifference(this.testIdeaNode1,
+                        sameDataNode) != null);
     }
 
     /**
@@ -2126,4 +2171,353 @@ public class TestIdeaNodeAndMap {
 
     }
 
+    /**
+     * <p>
+     * Test method for MindMap#findIdeaNodeByID(long)
+     * </p>
+     * 
+     * <p>
+     * Tested Case: IdeaNodes are found by their ID after adding and are no
+     * longer found after removal
+     * </p>
+     */
+    @Test
+    public void testFindIdeaNodeByID() {
+
+        // Check if both IdeaNodes are found by their ID
+        assertTrue("Error: testIdeaNode1 cannot be found by its ID",
+                this.testMindMap.findIdeaNodeByID(this.testIdeaNode1
+                        .getIdeaID()) == this.testIdeaNode1);
+        assertTrue("Error: testIdeaNode2 cannot be found by its ID",
+                this.testMindMap.findIdeaNodeByID(this.testIdeaNode2
+                        .getIdeaID()) == this.testIdeaNode2);
+
+        // Check if IDs are issued in increasing order
+        IdeaNode newIdeaNode = new IdeaNode(new NodeData(
+                new NodeContent("Idee"), //$NON-NLS-1$
+                new NodeMetaData(22, 678, 23.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        assertTrue("Error: ideaID of a new IdeaNode must be greater",
+                newIdeaNode.getIdeaID() > this.testIdeaNode2.getIdeaID());
+
+        // A not yet added IdeaNode must not be found
+        assertTrue("Error: newIdeaNode must not be found before adding",
+                this.testMindMap.findIdeaNodeByID(newIdeaNode.getIdeaID()) == null);
+
+        // Remove testIdeaNode1 and check the index
+        assertTrue("Error: testIdeaNode1 could not be removed",
+                this.testMindMap.removeIdeaNode(this.testIdeaNode1));
+        assertTrue("Error: testIdeaNode1 must not be found after removal",
+                this.testMindMap.findIdeaNodeByID(this.testIdeaNode1
+                        .getIdeaID()) == null);
+        assertTrue("Error: testIdeaNode2 cannot be found by its ID",
+                this.testMindMap.findIdeaNodeByID(this.testIdeaNode2
+                        .getIdeaID()) == this.testIdeaNode2);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#findMapByChildNode(IdeaNode)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#isInSameMap(IdeaNode, IdeaNode)}
+     * .
+     * 
+     * Checks the Map membership of IdeaNodes after every add and remove case.
+     */
+    @Test
+    public void testMapMembership() {
+
+        this.testIdeaNode3 = new IdeaNode(new NodeData(new NodeContent(
+                "Idee3"), //$NON-NLS-1$
+                new NodeMetaData(10, 20, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        this.testIdeaNode4 = new IdeaNode(new NodeData(new NodeContent(
+                "Idee4"), //$NON-NLS-1$
+                new NodeMetaData(30, 40, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        IdeaNode testIdeaNode5 = new IdeaNode(new NodeData(new NodeContent(
+                "Idee5"), //$NON-NLS-1$
+                new NodeMetaData(50, 60, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        this.testMindMap.addIdeaNode(this.testIdeaNode3);
+        this.testMindMap.addIdeaNode(this.testIdeaNode4);
+        this.testMindMap.addIdeaNode(testIdeaNode5);
+
+        // Case 1.2 (add): 1 -> 2 and 3 -> 4 create two Maps
+        assertTrue(this.testIdeaNode1.addIdeaChild(this.testIdeaNode2,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C1_2_P_SINGLE_C_SINGLE_CREATE_MAP));
+        assertTrue(this.testIdeaNode3.addIdeaChild(this.testIdeaNode4,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C1_2_P_SINGLE_C_SINGLE_CREATE_MAP));
+        Map firstMap = this.testMindMap.findMapByChildNode(this.testIdeaNode2);
+        assertTrue("Error: testIdeaNode1 must be root of its Map",
+                firstMap.getRootNode() == this.testIdeaNode1);
+        assertTrue("Error: testIdeaNode1 and testIdeaNode2 must share a Map",
+                this.testMindMap.isInSameMap(this.testIdeaNode1,
+                        this.testIdeaNode2));
+        assertTrue("Error: testIdeaNode3 and testIdeaNode4 must share a Map",
+                this.testMindMap.isInSameMap(this.testIdeaNode3,
+                        this.testIdeaNode4));
+        assertFalse("Error: testIdeaNode1 and testIdeaNode3 must not share a Map",
+                this.testMindMap.isInSameMap(this.testIdeaNode1,
+                        this.testIdeaNode3));
+
+        // Case 2.1 (add): Map of testIdeaNode3 is merged into the first Map
+        assertTrue(this.testIdeaNode2.addIdeaChild(this.testIdeaNode3,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C2_1_P_MAP_C_MAPPARENT_DELETE_MAP));
+        assertTrue("Error: testIdeaNode4 must be part of the first Map",
+                this.testMindMap.findMapByChildNode(this.testIdeaNode4) == firstMap);
+        assertTrue("Error: first Map must contain testIdeaNode4",
+                firstMap.containsIdeaNode(this.testIdeaNode4));
+
+        // A node of the same Map must not be added again
+        assertTrue(this.testIdeaNode4.addIdeaChild(this.testIdeaNode1,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT));
+
+        // Case 1.1 (add): testIdeaNode5 becomes new root of the first Map
+        assertTrue(testIdeaNode5.addIdeaChild(this.testIdeaNode1,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C1_1_P_SINGLE_C_MAP_MODIFY));
+        assertTrue("Error: testIdeaNode5 must be root of the first Map",
+                this.testMindMap.findMapByRootNode(testIdeaNode5) == firstMap);
+        assertTrue("Error: testIdeaNode5 and testIdeaNode4 must share a Map",
+                this.testMindMap.isInSameMap(testIdeaNode5,
+                        this.testIdeaNode4));
+
+        // Case 2.1 (remove): testIdeaNode5 becomes a single IdeaNode again
+        assertTrue(testIdeaNode5.removeIdeaChild(this.testIdeaNode1,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C2_1_P_SINGLE_C_MAP_MODIFY_MAP));
+        assertFalse("Error: testIdeaNode5 must not be part of a Map",
+                this.testMindMap.isInSameMap(testIdeaNode5,
+                        this.testIdeaNode1));
+        assertTrue("Error: testIdeaNode1 must be root of the first Map",
+                this.testMindMap.findMapByRootNode(this.testIdeaNode1) == firstMap);
+
+        // Case 2.2 (remove): testIdeaNode3 and testIdeaNode4 form a new Map
+        assertTrue(this.testIdeaNode2.removeIdeaChild(this.testIdeaNode3,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C2_2_P_MAP_C_MAP_NEW_MAP));
+        Map secondMap = this.testMindMap.findMapByChildNode(this.testIdeaNode4);
+        assertTrue("Error: testIdeaNode3 must be root of the new Map",
+                secondMap != firstMap
+                        && secondMap.getRootNode() == this.testIdeaNode3);
+        assertFalse("Error: testIdeaNode1 and testIdeaNode4 must not share a Map",
+                this.testMindMap.isInSameMap(this.testIdeaNode1,
+                        this.testIdeaNode4));
+
+        // Case 1.1 (remove): the new Map is removed again
+        assertTrue(this.testIdeaNode3.removeIdeaChild(this.testIdeaNode4,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C1_1_P_SINGLE_C_SINGLE_REMOVE_MAP));
+        assertFalse("Error: testIdeaNode3 and testIdeaNode4 must not share a Map",
+                this.testMindMap.isInSameMap(this.testIdeaNode3,
+                        this.testIdeaNode4));
+
+        // Case 2.2 (add) and 1.2 (remove): testIdeaNode4 joins and leaves
+        assertTrue(this.testIdeaNode1.addIdeaChild(this.testIdeaNode4,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C2_2_P_MAP_C_SINGLE_NOTHING));
+        assertTrue("Error: testIdeaNode4 must be part of the first Map",
+                this.testMindMap.findMapByChildNode(this.testIdeaNode4) == firstMap);
+        assertTrue(this.testIdeaNode1.removeIdeaChild(this.testIdeaNode4,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C1_2_P_MAP_C_SINGLE_NOTHING));
+        assertFalse("Error: first Map must not contain testIdeaNode4",
+                firstMap.containsIdeaNode(this.testIdeaNode4));
+        assertTrue("Error: There is more or less than 1 Map in the MindMap",
+                this.testMindMap.getMindMapList().size() == 1);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.Node#isAncestorOf(Node)},
+     * {@link de.sarahw.ma.pc.mindMapper.model.Node#getDepth()} and
+     * {@link de.sarahw.ma.pc.mindMapper.model.Node#getPathToRoot()}.
+     * 
+     * Also checks that an IdeaNode cannot be added as its own child.
+     */
+    @Test
+    public void testAncestry() {
+
+        // An IdeaNode must not be added as its own child
+        assertTrue(this.testIdeaNode1.addIdeaChild(this.testIdeaNode1,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.NO_ADD_ON_CONSTRAINT));
+        assertTrue("Error: No Map must have been created",
+                this.testMindMap.getMindMapList().size() == 0);
+
+        // Build chain testIdeaNode1 -> testIdeaNode2 -> testIdeaNode3
+        addIdea2asChildofIdea1();
+        this.testIdeaNode3 = new IdeaNode(new NodeData(new NodeContent(
+                "Idee3"), //$NON-NLS-1$
+                new NodeMetaData(10, 20, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        this.testMindMap.addIdeaNode(this.testIdeaNode3);
+        assertTrue(this.testIdeaNode2.addIdeaChild(this.testIdeaNode3,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C2_2_P_MAP_C_SINGLE_NOTHING));
+
+        assertTrue("Error: testIdeaNode1 must be an ancestor of testIdeaNode3",
+                this.testIdeaNode1.isAncestorOf(this.testIdeaNode3));
+        assertFalse(
+                "Error: testIdeaNode3 must not be an ancestor of testIdeaNode1",
+                this.testIdeaNode3.isAncestorOf(this.testIdeaNode1));
+        assertFalse("Error: testIdeaNode1 must not be an ancestor of itself",
+                this.testIdeaNode1.isAncestorOf(this.testIdeaNode1));
+        assertTrue("Error: wrong depth of testIdeaNode1",
+                this.testIdeaNode1.getDepth() == 0);
+        assertTrue("Error: wrong depth of testIdeaNode3",
+                this.testIdeaNode3.getDepth() == 2);
+
+        ArrayList<Node<NodeData>> path = this.testIdeaNode3.getPathToRoot();
+        assertTrue("Error: wrong path to root",
+                path.size() == 3 && path.get(0) == this.testIdeaNode3
+                        && path.get(1) == this.testIdeaNode2
+                        && path.get(2) == this.testIdeaNode1);
+
+        // The parent reference is cleared on removal
+        assertTrue(this.testIdeaNode1.removeIdeaChild(this.testIdeaNode2,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C2_1_P_SINGLE_C_MAP_MODIFY_MAP));
+        assertFalse(
+                "Error: testIdeaNode1 must not be an ancestor of testIdeaNode3",
+                this.testIdeaNode1.isAncestorOf(this.testIdeaNode3));
+        assertTrue("Error: wrong depth of testIdeaNode3 after removal",
+                this.testIdeaNode3.getDepth() == 1);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.Node#getSubtreeAggregate()}.
+     * 
+     * Checks that size, maximum depth and bounds follow changes of the Map
+     * structure and of the IdeaNode positions.
+     */
+    @Test
+    public void testSubtreeAggregate() {
+
+        SubtreeAggregate aggregate = this.testIdeaNode1.getSubtreeAggregate();
+        assertTrue("Error: wrong size of a single IdeaNode",
+                aggregate.getSize() == 1 && aggregate.getMaxDepth() == 0);
+        assertTrue("Error: wrong bounds of a single IdeaNode",
+                aggregate.getMinX() == 112 && aggregate.getMaxY() == 843);
+
+        // Add testIdeaNode2 (66, 134) as child of testIdeaNode1 (112, 843)
+        addIdea2asChildofIdea1();
+        aggregate = this.testIdeaNode1.getSubtreeAggregate();
+        assertTrue("Error: wrong size after adding a child",
+                aggregate.getSize() == 2 && aggregate.getMaxDepth() == 1);
+        assertTrue("Error: wrong bounds after adding a child",
+                aggregate.getMinX() == 66 && aggregate.getMaxX() == 112
+                        && aggregate.getMinY() == 134
+                        && aggregate.getMaxY() == 843);
+
+        // Move the child
+        assertTrue(this.testIdeaNode2.setIdeaPositionX(500));
+        assertTrue(this.testIdeaNode2.setIdeaPositionY(900));
+        aggregate = this.testIdeaNode1.getSubtreeAggregate();
+        assertTrue("Error: wrong bounds after moving a child",
+                aggregate.getMinX() == 112 && aggregate.getMaxX() == 500
+                        && aggregate.getMinY() == 843
+                        && aggregate.getMaxY() == 900);
+
+        // Remove the child
+        assertTrue(this.testIdeaNode1.removeIdeaChild(this.testIdeaNode2,
+                this.testMindMap).equals(
+                ERemoveChildIdeaNodeResultCase.C1_1_P_SINGLE_C_SINGLE_REMOVE_MAP));
+        aggregate = this.testIdeaNode1.getSubtreeAggregate();
+        assertTrue("Error: wrong aggregate after removing a child",
+                aggregate.getSize() == 1 && aggregate.getMaxDepth() == 0
+                        && aggregate.getMaxX() == 112);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#beginBatch()} and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#commit()}.
+     * 
+     * Checks that the changes of a batch are delivered as one consolidated
+     * notification per source.
+     */
+    @Test
+    public void testBatchNotifications() {
+
+        final ArrayList<ObserverNotificationObject> mindMapNotifications = new ArrayList<ObserverNotificationObject>();
+        final ArrayList<ObserverNotificationObject> ideaNodeNotifications = new ArrayList<ObserverNotificationObject>();
+        this.testMindMap.getEventBus().addListener(EMindMapChangeStatus.class,
+                new IModelEventListener<EMindMapChangeStatus>() {
+                    @Override
+                    public void handleModelEvent(Object source,
+                            EMindMapChangeStatus status, Object content) {
+                        mindMapNotifications
+                                .add(new ObserverNotificationObject(status,
+                                        content));
+                    }
+                });
+        this.testMindMap.getEventBus().addListener(
+                EIdeaNodeChangedStatus.class, this.testIdeaNode1,
+                new IModelEventListener<EIdeaNodeChangedStatus>() {
+                    @Override
+                    public void handleModelEvent(Object source,
+                            EIdeaNodeChangedStatus status, Object content) {
+                        ideaNodeNotifications
+                                .add(new ObserverNotificationObject(status,
+                                        content));
+                    }
+                });
+
+        // Add two children and set the title twice within nested batches
+        this.testIdeaNode3 = new IdeaNode(new NodeData(new NodeContent(
+                "Idee3"), //$NON-NLS-1$
+                new NodeMetaData(10, 20, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        this.testMindMap.beginBatch();
+        this.testMindMap.addIdeaNode(this.testIdeaNode3);
+        this.testMindMap.setMindMapTitle("first"); //$NON-NLS-1$
+        this.testMindMap.beginBatch();
+        this.testMindMap.setMindMapTitle("second"); //$NON-NLS-1$
+        this.testMindMap.commit();
+        assertTrue("Error: no notification must be delivered before commit",
+                mindMapNotifications.isEmpty());
+        this.testMindMap.commit();
+
+        assertTrue("Error: exactly one notification must be delivered",
+                mindMapNotifications.size() == 1);
+        assertTrue(
+                "Error: wrong status of consolidated notification",
+                mindMapNotifications.get(0).getEnumStatus() == EMindMapChangeStatus.MIND_MAP_CHANGES_COMMITTED);
+        ModelChangeSet changeSet = (ModelChangeSet) mindMapNotifications
+                .get(0).getContent();
+        assertTrue("Error: title changes must be coalesced",
+                changeSet.size() == 2);
+        assertTrue("Error: last title must be kept", "second" //$NON-NLS-1$
+                .equals(changeSet.getChanges().get(1).getContent()));
+
+        // Removing a parent delivers one notification for all relations
+        addIdea2asChildofIdea1();
+        assertTrue(this.testIdeaNode1.addIdeaChild(this.testIdeaNode3,
+                this.testMindMap).equals(
+                EAddChildIdeaNodeResultCase.C2_2_P_MAP_C_SINGLE_NOTHING));
+        ideaNodeNotifications.clear();
+        mindMapNotifications.clear();
+        assertTrue(this.testMindMap.removeIdeaNode(this.testIdeaNode1));
+        assertTrue("Error: exactly one IdeaNode notification expected",
+                ideaNodeNotifications.size() == 1);
+        assertTrue(
+                "Error: wrong status of consolidated IdeaNode notification",
+                ideaNodeNotifications.get(0).getEnumStatus() == EIdeaNodeChangedStatus.IDEA_NODE_CHANGES_COMMITTED
+                        && ((ModelChangeSet) ideaNodeNotifications.get(0)
+                                .getContent()).size() == 2);
+        assertTrue(
+                "Error: single MindMap change must be delivered directly",
+                mindMapNotifications.size() == 1
+                        && mindMapNotifications.get(0).getEnumStatus() == EMindMapChangeStatus.MIND_MAP_IDEA_NODE_REMOVED);
+        assertFalse("Error: batch must be closed",
+                this.testMindMap.isBatchOpen());
+    }
+
 }
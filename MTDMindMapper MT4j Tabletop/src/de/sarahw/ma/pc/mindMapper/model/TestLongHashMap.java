@@ -0,0 +1,142 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.mindMapper.model.LongHashMap}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestLongHashMap {
+
+    /** Test map */
+    private LongHashMap<String> testMap;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new, empty LongHashMap.
+     */
+    @Before
+    public void setUp() {
+        this.testMap = new LongHashMap<String>();
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testMap = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.LongHashMap#put(long, Object)}
+     * and {@link de.sarahw.ma.pc.mindMapper.model.LongHashMap#get(long)}.
+     */
+    @Test
+    public void testPutAndGet() {
+
+        assertTrue("Error: new map must be empty", this.testMap.isEmpty());
+
+        assertTrue("Error: first put must return null",
+                this.testMap.put(1, "one") == null);
+        assertTrue("Error: put of an existing key must return the old value",
+                "one".equals(this.testMap.put(1, "uno")));
+        assertTrue("Error: value has not been replaced",
+                "uno".equals(this.testMap.get(1)));
+        assertTrue("Error: map must contain exactly one key",
+                this.testMap.size() == 1);
+
+        // Negative and large keys
+        this.testMap.put(-1, "minusOne");
+        this.testMap.put(Long.MAX_VALUE, "max");
+        assertTrue("Error: negative key not found",
+                "minusOne".equals(this.testMap.get(-1)));
+        assertTrue("Error: large key not found",
+                "max".equals(this.testMap.get(Long.MAX_VALUE)));
+        assertTrue("Error: unknown key must return null",
+                this.testMap.get(2) == null);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.LongHashMap#remove(long)}.
+     * 
+     * Compares random insertions and removals to a java.util.HashMap, which
+     * also covers growing the tables and closing gaps in probe sequences.
+     */
+    @Test
+    public void testRemoveAgainstHashMap() {
+
+        HashMap<Long, String> reference = new HashMap<Long, String>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                assertTrue("Error: put result differs for key " + key,
+                        equalsOrNull(reference.put(key, value),
+                                this.testMap.put(key, value)));
+            } else {
+                assertTrue("Error: remove result differs for key " + key,
+                        equalsOrNull(reference.remove(key),
+                                this.testMap.remove(key)));
+            }
+        }
+
+        assertTrue("Error: size differs",
+                reference.size() == this.testMap.size());
+        for (long key = 0; key < 2000; key++) {
+            assertTrue("Error: get result differs for key " + key,
+                    equalsOrNull(reference.get(key), this.testMap.get(key)));
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Compares two possibly null strings.
+     * 
+     * @param a
+     *            the first string
+     * @param b
+     *            the second string
+     * @return true if both are null or equal
+     */
+    private static boolean equalsOrNull(String a, String b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+}
@@ -0,0 +1,171 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapAutosave}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapAutosave {
+
+    /** Title of the test mindMap */
+    private static final String TEST_TITLE = "zJUnitAutosave";
+
+    /** Autosave interval of the test */
+    private static final long   INTERVAL   = 1000;
+
+    /** Test mindMap */
+    private MindMap             testMindMap;
+
+    /** Test ideaNode */
+    private IdeaNode            testIdeaNode;
+
+    /** Test queue for the callbacks */
+    private ModelCommandQueue   testQueue;
+
+    /** Test save executor */
+    private MindMapSaveExecutor testSaveExecutor;
+
+    /** Test autosave */
+    private MindMapAutosave     testAutosave;
+
+    /** Test .mindMap file */
+    private File                testFile;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap with a single IdeaNode
+     * and a MindMapAutosave with an interval of INTERVAL milliseconds.
+     */
+    @Before
+    public void setUp() {
+        new File(MindMapCollection.FILE_PATH).mkdirs();
+        this.testFile = new File(MindMapCollection.FILE_PATH + File.separator
+                + TEST_TITLE + MindMapSerializer.FILE_EXTENSION);
+
+        this.testMindMap = new MindMap();
+        this.testMindMap.setMindMapTitle(TEST_TITLE);
+        this.testIdeaNode = new IdeaNode(new NodeData(new NodeContent("Idee"),
+                new NodeMetaData(1, 1, 0.0f, EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        this.testMindMap.addIdeaNode(this.testIdeaNode);
+
+        this.testQueue = new ModelCommandQueue(null);
+        this.testSaveExecutor = new MindMapSaveExecutor(this.testQueue);
+        this.testAutosave = new MindMapAutosave(this.testSaveExecutor);
+        this.testAutosave.setIntervalMillis(INTERVAL);
+        this.testAutosave.setFrameBudgetNanos(Long.MAX_VALUE);
+    }
+
+    /**
+     * Tears down the fixture. Deletes the test files and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testSaveExecutor.shutdown(10000);
+        MindMapJournal.getJournalFile(this.testFile).delete();
+        MindMapSerializer.getBackupFile(this.testFile).delete();
+        MindMapThumbnail.getThumbnailFile(this.testFile).delete();
+        this.testFile.delete();
+        this.testMindMap = null;
+        this.testIdeaNode = null;
+        this.testQueue = null;
+        this.testSaveExecutor = null;
+        this.testAutosave = null;
+        this.testFile = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapAutosave#run(MindMap, long)}
+     * .
+     * 
+     * Autosaves have to be due once per interval, must not be due while one
+     * is written and must only be written if the MindMap has changed.
+     */
+    @Test
+    public void testAutosaveIsRateLimitedAndChangeTriggered() {
+
+        assertTrue("Error: first check must start the interval",
+                !this.testAutosave.isDue(0));
+        assertTrue("Error: autosave due too early",
+                !this.testAutosave.isDue(INTERVAL - 1));
+        assertTrue("Error: autosave not due", this.testAutosave.isDue(INTERVAL));
+        assertTrue("Error: changed MindMap not saved",
+                this.testAutosave.run(this.testMindMap, INTERVAL));
+        assertTrue("Error: autosave due while writing",
+                !this.testAutosave.isDue(3 * INTERVAL));
+
+        awaitAutosave();
+        assertTrue("Error: autosave not written",
+                this.testAutosave.getSavedCount() == 1
+                        && this.testFile.isFile());
+
+        // Unchanged and unchanged values synced from the view
+        assertTrue("Error: autosave not due",
+                this.testAutosave.isDue(3 * INTERVAL));
+        this.testIdeaNode.setIdeaPositionX(this.testIdeaNode
+                .getIdeaPositionX());
+        assertTrue("Error: unchanged MindMap saved",
+                !this.testAutosave.run(this.testMindMap, 3 * INTERVAL));
+        assertTrue("Error: autosave due too early",
+                !this.testAutosave.isDue(4 * INTERVAL - 1));
+
+        // Changed
+        this.testIdeaNode.setIdeaPositionX(42);
+        assertTrue("Error: autosave not due",
+                this.testAutosave.isDue(4 * INTERVAL));
+        assertTrue("Error: changed MindMap not saved",
+                this.testAutosave.run(this.testMindMap, 4 * INTERVAL));
+        awaitAutosave();
+        assertTrue("Error: autosave not written",
+                this.testAutosave.getSavedCount() == 2);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Waits until the save thread has written the autosave and delivers the
+     * result as the render thread would.
+     */
+    private void awaitAutosave() {
+        // The pending count is increased before the command is linked, so
+        // the queue is drained until the command has been executed
+        long deadline = System.currentTimeMillis() + 10000;
+        while (this.testQueue.drain(ModelCommandQueue.UNBOUNDED) == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockCodec},
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockOutputStream} and
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockInputStream}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapBlockCompression {
+
+    private static Logger      log             = Logger.getLogger(TestMindMapBlockCompression.class);
+
+    /** Numbers of IdeaNodes of the benchmark mindMaps */
+    private static final int[] BENCHMARK_SIZES = { 1000, 10000, 100000 };
+
+    /** Number of IdeaNodes of each Map of the test mindMaps */
+    private static final int   TREE_SIZE       = 100;
+
+    /** Test .mindMap file */
+    private File               testFile;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Creates a temporary file and enables compression.
+     * 
+     * @throws IOException
+     *             if the test file can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.testFile = File.createTempFile("zJUnitCompression",
+                MindMapSerializer.FILE_EXTENSION);
+        MindMapSerializer.setCompressionEnabled(true);
+    }
+
+    /**
+     * Tears down the fixture. Disables compression, deletes the test files
+     * and sets all members null. This method is called after a test is
+     * executed.
+     */
+    @After
+    public void tearDown() {
+        MindMapSerializer.setCompressionEnabled(false);
+        MindMapJournal.getJournalFile(this.testFile).delete();
+        MindMapThumbnail.getThumbnailFile(this.testFile).delete();
+        MindMapSerializer.getBackupFile(this.testFile).delete();
+        this.testFile.delete();
+        this.testFile = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockCodec#compress(byte[], int, int, byte[], int)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockCodec#decompress(byte[], int, int, byte[], int, int)}
+     * .
+     * 
+     * Compresses empty, short, random and repetitive input and checks that
+     * it is restored. Truncated input must be rejected.
+     * 
+     * @throws IOException
+     *             if valid input is rejected
+     */
+    @Test
+    public void testCodecRoundTrip() throws IOException {
+
+        Random random = new Random(42);
+        byte[] randomBytes = new byte[100000];
+        random.nextBytes(randomBytes);
+        byte[] repetitive = new byte[100000];
+        for (int i = 0; i < repetitive.length; i++) {
+            repetitive[i] = (byte) ("Idee" + (i / 7) % 50).charAt(i % 4);
+        }
+        byte[][] inputs = { new byte[0], new byte[] { 1 },
+                "abcabcabcabca".getBytes(), randomBytes, repetitive };
+
+        MindMapBlockCodec codec = new MindMapBlockCodec();
+        for (byte[] input : inputs) {
+            byte[] compressed = new byte[MindMapBlockCodec
+                    .maxCompressedLength(input.length) + 3];
+            int length = codec.compress(input, 0, input.length, compressed, 3);
+            byte[] restored = new byte[input.length];
+            MindMapBlockCodec.decompress(compressed, 3, length, restored, 0,
+                    restored.length);
+            assertTrue("Error: " + input.length + " bytes not restored",
+                    Arrays.equals(input, restored));
+
+            if (input == repetitive) {
+                assertTrue("Error: repetitive input not compressed",
+                        length < input.length / 4);
+
+                boolean rejected = false;
+                try {
+                    MindMapBlockCodec.decompress(compressed, 3, length / 2,
+                            restored, 0, restored.length);
+                } catch (IOException ex) {
+                    rejected = true;
+                }
+                assertTrue("Error: truncated input accepted", rejected);
+            }
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapBlockInputStream#skip(long)}
+     * .
+     * 
+     * Skips into the third of four blocks and checks that only the third
+     * block is decompressed.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testSkipDecodesOnlyNeededBlocks() throws IOException {
+
+        int length = 3 * MindMapFileFormat.BLOCK_SIZE + 100;
+        byte[] input = new byte[length];
+        for (int i = 0; i < length; i++) {
+            input[i] = (byte) (i / 16);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MindMapBlockOutputStream out = new MindMapBlockOutputStream(bytes);
+        out.write(input);
+        out.flush();
+        assertTrue("Error: wrong number of blocks", out.getBlockCount() == 4);
+        assertTrue("Error: input not compressed",
+                bytes.size() < length / 2);
+
+        MindMapBlockInputStream in = new MindMapBlockInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        long offset = 2 * MindMapFileFormat.BLOCK_SIZE + 10;
+        assertTrue("Error: wrong number of bytes skipped",
+                in.skip(offset) == offset);
+        byte[] read = new byte[20];
+        new DataInputStream(in).readFully(read);
+        assertTrue("Error: wrong bytes read after skip", Arrays.equals(read,
+                Arrays.copyOfRange(input, (int) offset, (int) offset + 20)));
+        assertTrue("Error: skipped blocks must not be decompressed",
+                in.getSkippedCount() == 2 && in.getDecodedCount() == 1);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSerializer#writeMindMapToFile(MindMapSnapshot, File)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal#append(File, MindMapSnapshot)}
+     * with compression enabled.
+     * 
+     * Writes a compressed file and a compressed journal frame and checks that
+     * the header is readable on its own and that loading restores all
+     * changes.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testCompressedFileAndJournalRoundTrip() throws IOException {
+
+        MindMap mindMap = createMindMap(5000);
+        MindMapJournal journal = MindMapJournal.create(this.testFile,
+                mindMap.snapshot());
+        mindMap.setJournal(journal);
+
+        MindMapFileHeader header = MindMapFileHeader.readHeader(this.testFile);
+        assertTrue("Error: file not compressed", header.isCompressed()
+                && header.getIdeaNodeCount() == 5000);
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        MindMapSerializer.writeMindMap(mindMap.snapshot(), uncompressed);
+        assertTrue("Error: compressed file not smaller",
+                this.testFile.length() < uncompressed.size() / 2);
+
+        // Enough changes for a compressed frame
+        for (int i = 0; i < 100; i++) {
+            IdeaNode ideaNode = mindMap.getMindMapIdeaNodeList().get(i);
+            ideaNode.setIdeaText("Neu" + (i % 10));
+            ideaNode.setIdeaPositionX(i);
+        }
+        long before = journal.getLength();
+        assertTrue("Error: changes not appended",
+                journal.append(this.testFile, mindMap.snapshot()));
+        assertTrue("Error: frame not compressed",
+                journal.getLength() - before < 100 * 16);
+
+        MindMap loaded = MindMapDeserializer.getMindMapFromDisc(this.testFile);
+        assertTrue("Error: MindMap not loaded", loaded != null);
+        assertTrue("Error: IdeaNodes differ", loaded.snapshot()
+                .getIdeaNodes().equals(mindMap.snapshot().getIdeaNodes()));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSerializer#writeMindMap(MindMapSnapshot, java.io.OutputStream, boolean)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapDeserializer#readMindMap(java.io.InputStream)}
+     * .
+     * 
+     * Compares size and load time of uncompressed and compressed MindMaps of
+     * BENCHMARK_SIZES IdeaNodes. The times are logged only, as they depend
+     * on the machine.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testCompressionBenchmark() throws IOException {
+
+        for (int size : BENCHMARK_SIZES) {
+            MindMapSnapshot snapshot = createMindMap(size).snapshot();
+            int rounds = Math.max(3, 100000 / size);
+
+            long[] sizes = new long[2];
+            long[] bestNanos = new long[2];
+            for (int compressed = 0; compressed < 2; compressed++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                MindMapSerializer.writeMindMap(snapshot, out, compressed == 1);
+                byte[] bytes = out.toByteArray();
+                sizes[compressed] = bytes.length;
+                bestNanos[compressed] = Long.MAX_VALUE;
+
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    MindMap loaded = MindMapDeserializer
+                            .readMindMap(new ByteArrayInputStream(bytes));
+                    bestNanos[compressed] = Math.min(bestNanos[compressed],
+                            System.nanoTime() - start);
+                    assertTrue("Error: wrong number of IdeaNodes read", loaded
+                            .getMindMapIdeaNodeList().size() == size);
+                }
+            }
+
+            log.info(size + " IdeaNodes: " + sizes[0] + " bytes in "
+                    + bestNanos[0] / 1000 + " us uncompressed, " + sizes[1]
+                    + " bytes in " + bestNanos[1] / 1000 + " us compressed");
+            assertTrue("Error: compressed MindMap of " + size
+                    + " IdeaNodes not smaller", sizes[1] < sizes[0]);
+        }
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates a MindMap with the given number of IdeaNodes in Maps of
+     * TREE_SIZE IdeaNodes.
+     * 
+     * @param size
+     *            the number of IdeaNodes
+     * @return the MindMap
+     */
+    private static MindMap createMindMap(int size) {
+        MindMap mindMap = new MindMap();
+        IdeaNode[] ideaNodes = new IdeaNode[size];
+        for (int i = 0; i < size; i++) {
+            ideaNodes[i] = new IdeaNode(new NodeData(new NodeContent("Idee"
+                    + (i % 1000)), new NodeMetaData(i % 1024, i / 1024,
+                    0.0f, EIdeaNodeCreator.values()[i % 2])));
+            mindMap.addIdeaNode(ideaNodes[i]);
+
+            int indexInTree = i % TREE_SIZE;
+            if (indexInTree > 0) {
+                ideaNodes[i - indexInTree + (indexInTree - 1) / 3]
+                        .addIdeaChild(ideaNodes[i], mindMap);
+            }
+        }
+        return mindMap;
+    }
+
+}
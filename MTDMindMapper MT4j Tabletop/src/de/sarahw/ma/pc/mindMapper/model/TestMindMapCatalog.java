@@ -0,0 +1,220 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.mindMapper.model.MindMapCatalog}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapCatalog {
+
+    /** A modification time well in the past */
+    private static final long PAST = 1000000000000L;
+
+    /** Test save folder */
+    private File              testDirectory;
+
+    /** Test catalog */
+    private MindMapCatalog    testCatalog;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Creates an empty save folder and a catalog of it.
+     * 
+     * @throws IOException
+     *             if the folder can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.testDirectory = File.createTempFile("zJUnitCatalog", "");
+        this.testDirectory.delete();
+        this.testDirectory.mkdirs();
+        this.testCatalog = new MindMapCatalog(this.testDirectory);
+    }
+
+    /**
+     * Tears down the fixture. Deletes the save folder and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        File[] files = this.testDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.testDirectory.delete();
+        this.testCatalog = null;
+        this.testDirectory = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapCatalog#refresh()}.
+     * 
+     * Entries are sorted latest first and found by title, other files are
+     * ignored and an unchanged folder is not scanned again.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Test
+    public void testRefresh() throws IOException {
+
+        File older = createFile("older", PAST);
+        File newer = createFile("newer", PAST + 60000);
+        new File(this.testDirectory, "notes.txt").createNewFile();
+
+        assertTrue("Error: first refresh must find the files",
+                this.testCatalog.refresh());
+        List<MindMapCatalogEntry> entries = this.testCatalog.getEntries();
+        assertTrue("Error: catalog must contain two entries",
+                entries.size() == 2);
+        assertTrue("Error: latest file must be first",
+                entries.get(0).getFile().equals(newer));
+        assertTrue("Error: entry not found by title", this.testCatalog
+                .getEntry("older").getFile().equals(older));
+        assertTrue("Error: unknown title must return null",
+                this.testCatalog.getEntry("notes") == null);
+
+        // An unchanged folder is not scanned again
+        this.testDirectory.setLastModified(PAST);
+        this.testCatalog.refresh();
+        int scanCount = this.testCatalog.getScanCount();
+        assertTrue("Error: unchanged folder must not change the entries",
+                !this.testCatalog.refresh());
+        assertTrue("Error: unchanged folder must not be scanned",
+                this.testCatalog.getScanCount() == scanCount);
+
+        // A changed folder is scanned, unchanged entries are kept
+        MindMapCatalogEntry olderEntry = this.testCatalog.getEntry("older");
+        createFile("added", PAST + 120000);
+        this.testDirectory.setLastModified(PAST + 1000);
+        assertTrue("Error: added file must change the entries",
+                this.testCatalog.refresh());
+        assertTrue("Error: added file must be first", "added"
+                .equals(this.testCatalog.getEntries().get(0).getTitle()));
+        assertTrue("Error: unchanged entry must be reused",
+                this.testCatalog.getEntry("older") == olderEntry);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapCatalog#update(File)}.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Test
+    public void testUpdate() throws IOException {
+
+        this.testCatalog.refresh();
+        List<MindMapCatalogEntry> before = this.testCatalog.getEntries();
+
+        File file = createFile("single", PAST);
+        this.testCatalog.update(file);
+        assertTrue("Error: updated file must be added",
+                this.testCatalog.getEntry("single") != null);
+        assertTrue("Error: published entries must not be modified",
+                before.isEmpty());
+
+        // Files of other folders are ignored
+        File other = File.createTempFile("zJUnitOther",
+                MindMapSerializer.FILE_EXTENSION);
+        try {
+            this.testCatalog.update(other);
+            assertTrue("Error: file of another folder must be ignored",
+                    this.testCatalog.size() == 1);
+        } finally {
+            other.delete();
+        }
+
+        file.delete();
+        this.testCatalog.update(file);
+        assertTrue("Error: deleted file must be removed",
+                this.testCatalog.size() == 0);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapCatalog#refresh()}.
+     * 
+     * A backup without its .mindMap file is restored.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Test
+    public void testRefreshRestoresBackup() throws IOException {
+
+        File file = createFile("interrupted", PAST);
+        assertTrue("Error: file could not be moved to the backup",
+                file.renameTo(MindMapSerializer.getBackupFile(file)));
+
+        this.testCatalog.refresh();
+        assertTrue("Error: backup has not been restored", file.isFile());
+        assertTrue("Error: restored file must be listed",
+                this.testCatalog.getEntry("interrupted") != null);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates a .mindMap file without a header in the test folder.
+     * 
+     * @param title
+     *            the title
+     * @param lastModified
+     *            the modification time
+     * @return the file
+     * @throws IOException
+     *             on write errors
+     */
+    private File createFile(String title, long lastModified)
+            throws IOException {
+        File file = new File(this.testDirectory, title
+                + MindMapSerializer.FILE_EXTENSION);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(title.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+}
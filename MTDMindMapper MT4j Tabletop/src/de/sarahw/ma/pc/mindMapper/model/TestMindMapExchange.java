@@ -0,0 +1,336 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapExporter} and
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapImporter}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapExchange {
+
+    private static Logger    log             = Logger.getLogger(TestMindMapExchange.class);
+
+    /** Number of outline elements of the large OPML test file */
+    private static final int LARGE_OPML_SIZE = 100000;
+
+    /** Number of outline elements of each top-level outline of the file */
+    private static final int LARGE_OPML_TREE = 100;
+
+    /** Test mindMap */
+    private MindMap          testMindMap;
+
+    /** Test file */
+    private File             testFile;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap with a Map of four
+     * IdeaNodes and a single IdeaNode.
+     * 
+     * @throws IOException
+     *             if the test file can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.testMindMap = new MindMap();
+        this.testMindMap.setMindMapTitle("zJUnitExchange");
+        IdeaNode root = createIdeaNode("Root \"quoted\" & <tagged>", 100,
+                200, EIdeaNodeCreator.MULTITOUCH_TABLE);
+        IdeaNode first = createIdeaNode("Erste Idee\nzweite Zeile", 300, 250,
+                EIdeaNodeCreator.BLUETOOTH_SERVER);
+        IdeaNode second = createIdeaNode("Zweite \\ Idee", 300, 150,
+                EIdeaNodeCreator.MULTITOUCH_TABLE);
+        IdeaNode grandChild = createIdeaNode("Enkel", 500, 250,
+                EIdeaNodeCreator.MULTITOUCH_TABLE);
+        IdeaNode single = createIdeaNode("Einzeln", 700, 400,
+                EIdeaNodeCreator.BLUETOOTH_SERVER);
+        grandChild.setIdeaRotationInDegrees(45.5f);
+        single.setIdeaState(EIdeaState.DELETED);
+
+        root.addIdeaChild(first, this.testMindMap);
+        root.addIdeaChild(second, this.testMindMap);
+        first.addIdeaChild(grandChild, this.testMindMap);
+
+        this.testFile = File.createTempFile("zJUnitExchange", ".tmp");
+    }
+
+    /**
+     * Tears down the fixture. Deletes the test file and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testFile.delete();
+        this.testFile = null;
+        this.testMindMap = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapExporter#exportMindMap(MindMapSnapshot, java.io.OutputStream, EMindMapExchangeFormat)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapImporter#importInto(MindMap, java.io.InputStream, EMindMapExchangeFormat)}
+     * with JSON.
+     * 
+     * Exports and imports the MindMap and checks that texts, tree structure,
+     * positions, rotations, owners and states are restored.
+     * 
+     * @throws IOException
+     *             on export or import errors
+     */
+    @Test
+    public void testJsonRoundTrip() throws IOException {
+
+        MindMap imported = roundTrip(EMindMapExchangeFormat.JSON);
+        assertSameTrees(this.testMindMap.snapshot(), imported.snapshot(), true);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapExporter#exportMindMap(MindMapSnapshot, File, EMindMapExchangeFormat)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapImporter#importMindMap(File, EMindMapExchangeFormat)}
+     * with FreeMind and OPML.
+     * 
+     * Exports and imports the MindMap and checks that title, texts and tree
+     * structure are restored. Invalid documents must be rejected.
+     * 
+     * @throws IOException
+     *             on export or import errors
+     */
+    @Test
+    public void testFreeMindAndOpmlRoundTrip() throws IOException {
+
+        for (EMindMapExchangeFormat format : new EMindMapExchangeFormat[] {
+                EMindMapExchangeFormat.FREEMIND, EMindMapExchangeFormat.OPML }) {
+            MindMapExporter.exportMindMap(this.testMindMap.snapshot(),
+                    this.testFile, format);
+            MindMap imported = MindMapImporter.importMindMap(this.testFile,
+                    format);
+            assertTrue("Error: " + format + " title not restored", imported
+                    .getMindMapTitle().equals("zJUnitExchange"));
+            assertSameTrees(this.testMindMap.snapshot(), imported.snapshot(),
+                    false);
+
+            boolean rejected = false;
+            try {
+                MindMapImporter.importInto(new MindMap(),
+                        new ByteArrayInputStream("<opml><body><outline"
+                                .getBytes()), format);
+            } catch (IOException ex) {
+                rejected = true;
+            }
+            assertTrue("Error: invalid " + format + " document accepted",
+                    rejected);
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapImporter#importMindMap(File, EMindMapExchangeFormat)}
+     * with OPML.
+     * 
+     * Imports an OPML file with LARGE_OPML_SIZE outline elements and logs the
+     * time and the heap used.
+     * 
+     * @throws IOException
+     *             on write or import errors
+     */
+    @Test
+    public void testLargeOpmlImport() throws IOException {
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(this.testFile), "UTF-8"));
+        try {
+            out.write("<?xml version=\"1.0\"?>\n<opml version=\"2.0\"><head>"
+                    + "<title>Large</title></head><body>\n");
+            // Every tree is a chain of LARGE_OPML_TREE / 4 outlines with
+            // three leaves each
+            for (int i = 0; i < LARGE_OPML_SIZE / LARGE_OPML_TREE; i++) {
+                for (int j = 0; j < LARGE_OPML_TREE / 4; j++) {
+                    out.write("<outline text=\"Idee " + i + "." + j + "\">");
+                    for (int k = 0; k < 3; k++) {
+                        out.write("<outline text=\"Blatt " + k + "\"/>");
+                    }
+                }
+                for (int j = 0; j < LARGE_OPML_TREE / 4; j++) {
+                    out.write("</outline>");
+                }
+                out.write("\n");
+            }
+            out.write("</body></opml>\n");
+        } finally {
+            out.close();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long start = System.nanoTime();
+        MindMap imported = MindMapImporter.importMindMap(this.testFile,
+                EMindMapExchangeFormat.OPML);
+        long time = System.nanoTime() - start;
+        log.info("Imported " + LARGE_OPML_SIZE + " outlines ("
+                + this.testFile.length() / 1024 + " KiB) in " + time
+                / 1000000 + " ms, heap used "
+                + (runtime.totalMemory() - runtime.freeMemory()) / 1024
+                / 1024 + " MiB");
+
+        MindMapSnapshot snapshot = imported.snapshot();
+        assertTrue("Error: wrong number of IdeaNodes imported",
+                snapshot.getIdeaNodeCount() == LARGE_OPML_SIZE);
+        assertTrue("Error: wrong number of Maps imported",
+                snapshot.getMapCount() == LARGE_OPML_SIZE / LARGE_OPML_TREE);
+        assertTrue("Error: title not imported",
+                imported.getMindMapTitle().equals("Large"));
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates an IdeaNode and adds it to the test MindMap.
+     * 
+     * @param text
+     *            the idea text
+     * @param x
+     *            the x position
+     * @param y
+     *            the y position
+     * @param owner
+     *            the owner
+     * @return the IdeaNode
+     */
+    private IdeaNode createIdeaNode(String text, float x, float y,
+            EIdeaNodeCreator owner) {
+        IdeaNode ideaNode = new IdeaNode(new NodeData(new NodeContent(text),
+                new NodeMetaData(x, y, 0.0f, owner)));
+        this.testMindMap.addIdeaNode(ideaNode);
+        return ideaNode;
+    }
+
+    /**
+     * Exports the test MindMap and imports it into a new MindMap.
+     * 
+     * @param format
+     *            the format
+     * @return the new MindMap
+     * @throws IOException
+     *             on export or import errors
+     */
+    private MindMap roundTrip(EMindMapExchangeFormat format)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MindMapExporter.exportMindMap(this.testMindMap.snapshot(), out,
+                format);
+        MindMap imported = new MindMap();
+        assertTrue("Error: wrong number of IdeaNodes imported",
+                MindMapImporter.importInto(imported, new ByteArrayInputStream(
+                        out.toByteArray()), format) == 5);
+        return imported;
+    }
+
+    /**
+     * Checks that two MindMaps with unique idea texts contain the same
+     * trees. Without meta data, line breaks of the texts are compared as
+     * spaces.
+     * 
+     * @param expected
+     *            the original MindMap
+     * @param actual
+     *            the imported MindMap
+     * @param withMetaData
+     *            true, to compare positions, rotations, owners and states
+     */
+    private static void assertSameTrees(MindMapSnapshot expected,
+            MindMapSnapshot actual, boolean withMetaData) {
+
+        assertTrue("Error: wrong number of IdeaNodes", expected
+                .getIdeaNodeCount() == actual.getIdeaNodeCount());
+        assertTrue("Error: wrong number of Maps",
+                expected.getMapCount() == actual.getMapCount());
+
+        for (IdeaNodeSnapshot ideaNode : expected.getIdeaNodes()) {
+            IdeaNodeSnapshot restored = actual.findIdeaNodesByText(
+                    text(ideaNode, withMetaData)).get(0);
+            String message = "Error: IdeaNode " + ideaNode.getIdeaText();
+
+            assertTrue(message + " has wrong children",
+                    ideaNode.getChildCount() == restored.getChildCount());
+            for (int i = 0; i < ideaNode.getChildCount(); i++) {
+                assertTrue(message + " has wrong child " + i, text(
+                        expected.getIdeaNode(ideaNode.getChildID(i)),
+                        withMetaData).equals(
+                        actual.getIdeaNode(restored.getChildID(i))
+                                .getIdeaText()));
+            }
+
+            if (withMetaData) {
+                assertTrue(message + " has wrong position",
+                        ideaNode.getIdeaPositionX() == restored
+                                .getIdeaPositionX()
+                                && ideaNode.getIdeaPositionY() == restored
+                                        .getIdeaPositionY());
+                assertTrue(message + " has wrong rotation",
+                        ideaNode.getIdeaRotationInDegrees() == restored
+                                .getIdeaRotationInDegrees());
+                assertTrue(message + " has wrong owner or state",
+                        ideaNode.getIdeaOwner() == restored.getIdeaOwner()
+                                && ideaNode.getIdeaState() == restored
+                                        .getIdeaState());
+            }
+        }
+    }
+
+    /**
+     * Returns the text of an IdeaNode as expected after an import.
+     * 
+     * @param ideaNode
+     *            the original IdeaNode
+     * @param withLineBreaks
+     *            false, if line breaks are imported as spaces
+     * @return the text
+     */
+    private static String text(IdeaNodeSnapshot ideaNode,
+            boolean withLineBreaks) {
+        return withLineBreaks ? ideaNode.getIdeaText() : ideaNode
+                .getIdeaText().replace('\n', ' ');
+    }
+
+}
@@ -0,0 +1,316 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapJournal {
+
+    private static Logger    log                  = Logger.getLogger(TestMindMapJournal.class);
+
+    /** Number of IdeaNodes in the test mindMap */
+    private static final int NUMBER_OF_IDEA_NODES = 5000;
+
+    /** Test mindMap */
+    private MindMap          testMindMap;
+
+    /** Test ideaNodes */
+    private IdeaNode[]       testIdeaNodes;
+
+    /** Test .mindMap file */
+    private File             testFile;
+
+    /** Test journal */
+    private MindMapJournal   testJournal;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap with
+     * NUMBER_OF_IDEA_NODES IdeaNodes and writes it to a temporary file.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.testMindMap = new MindMap();
+        this.testIdeaNodes = new IdeaNode[NUMBER_OF_IDEA_NODES];
+        for (int i = 0; i < NUMBER_OF_IDEA_NODES; i++) {
+            this.testIdeaNodes[i] = new IdeaNode(new NodeData(new NodeContent(
+                    "Idee" + i), new NodeMetaData(i, i, 0.0f,
+                    EIdeaNodeCreator.MULTITOUCH_TABLE)));
+            this.testMindMap.addIdeaNode(this.testIdeaNodes[i]);
+        }
+        this.testIdeaNodes[0].addIdeaChild(this.testIdeaNodes[1],
+                this.testMindMap);
+
+        this.testFile = File.createTempFile("zJUnitJournal",
+                MindMapSerializer.FILE_EXTENSION);
+        this.testJournal = MindMapJournal.create(this.testFile,
+                this.testMindMap.snapshot());
+        this.testMindMap.setJournal(this.testJournal);
+    }
+
+    /**
+     * Tears down the fixture. Deletes the test files and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testJournal.getJournalFile().delete();
+        MindMapJournal.getCompactionJournalFile(this.testFile).delete();
+        MindMapSerializer.getBackupFile(this.testFile).delete();
+        this.testFile.delete();
+        this.testMindMap = null;
+        this.testIdeaNodes = null;
+        this.testJournal = null;
+        this.testFile = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal#append(File, MindMapSnapshot)}
+     * .
+     * 
+     * Appends all kinds of changes and checks that loading the file replays
+     * them, while the .mindMap file itself is not rewritten.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testChangesAreReplayed() throws IOException {
+
+        // Move, edit, rotate, create and relate
+        this.testIdeaNodes[2].setIdeaPositionX(1000);
+        this.testIdeaNodes[3].setIdeaText("Neu");
+        this.testIdeaNodes[4].setIdeaRotationInDegrees(90);
+        this.testIdeaNodes[5].setIdeaState(EIdeaState.DELETED);
+        IdeaNode created = new IdeaNode(new NodeData(new NodeContent("Neu"),
+                new NodeMetaData(1, 2, 3, EIdeaNodeCreator.BLUETOOTH_SERVER)));
+        this.testMindMap.addIdeaNode(created);
+        this.testIdeaNodes[6].addIdeaChild(created, this.testMindMap);
+        this.testIdeaNodes[0].addIdeaChild(this.testIdeaNodes[7],
+                this.testMindMap);
+        assertTrue("Error: changes not appended",
+                this.testJournal.append(this.testFile,
+                        this.testMindMap.snapshot()));
+        assertLoadedEquals();
+
+        // Remove relations, delete and rename
+        this.testIdeaNodes[0].removeIdeaChild(this.testIdeaNodes[1],
+                this.testMindMap);
+        this.testIdeaNodes[6].removeIdeaChild(created, this.testMindMap);
+        this.testMindMap.removeIdeaNode(created);
+        this.testMindMap.removeIdeaNode(this.testIdeaNodes[8]);
+        this.testMindMap.setMindMapTitle("Umbenannt");
+        assertTrue("Error: changes not appended",
+                this.testJournal.append(this.testFile,
+                        this.testMindMap.snapshot()));
+        assertLoadedEquals();
+
+        assertTrue("Error: .mindMap file has been rewritten", MindMapFileHeader
+                .readHeader(this.testFile).getIdeaNodeCount() == NUMBER_OF_IDEA_NODES);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal#append(File, MindMapSnapshot)}
+     * .
+     * 
+     * Checks that saving a large MindMap after moving one IdeaNode appends
+     * only a few bytes.
+     * 
+     * @throws IOException
+     *             on write errors
+     */
+    @Test
+    public void testMoveAppendsSmallFrame() throws IOException {
+
+        long before = this.testJournal.getLength();
+        this.testIdeaNodes[NUMBER_OF_IDEA_NODES / 2].setIdeaPositionY(4321);
+
+        long start = System.nanoTime();
+        assertTrue("Error: change not appended", this.testJournal.append(
+                this.testFile, this.testMindMap.snapshot()));
+        long time = System.nanoTime() - start;
+
+        long appended = this.testJournal.getLength() - before;
+        log.info("Appended " + appended + " bytes in " + time / 1000 + " us");
+        assertTrue("Error: frame too large: " + appended + " bytes",
+                appended > 0 && appended < 64);
+
+        assertTrue("Error: unchanged MindMap must not be appended",
+                this.testJournal.append(this.testFile,
+                        this.testMindMap.snapshot())
+                        && this.testJournal.getLength() - before == appended);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal#compact()} and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapDeserializer#getMindMapFromDisc(File)}
+     * with a torn frame at the end of the journal.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testCompactionAndTornFrame() throws IOException {
+
+        long emptyLength = this.testJournal.getLength();
+        for (int i = 0; i < 10; i++) {
+            this.testIdeaNodes[i].setIdeaText("Text" + i);
+            this.testJournal.append(this.testFile, this.testMindMap.snapshot());
+        }
+        assertTrue("Error: journal not compacted", this.testJournal.compact()
+                && this.testJournal.getLength() == emptyLength);
+        assertTrue("Error: compacted file differs", MindMapDeserializer
+                .getMindMapFromDisc(this.testFile).findIdeaNodeByID(
+                        this.testIdeaNodes[9].getIdeaID()).getIdeaText()
+                .equals("Text9"));
+
+        // Torn frame after a complete one
+        this.testIdeaNodes[0].setIdeaText("Vor dem Absturz");
+        this.testJournal.append(this.testFile, this.testMindMap.snapshot());
+        FileOutputStream out = new FileOutputStream(
+                this.testJournal.getJournalFile(), true);
+        out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+        out.close();
+        MindMap loaded = assertLoadedEquals();
+
+        // The next save overwrites the torn frame
+        IdeaNode loadedNode = loaded.findIdeaNodeByID(this.testIdeaNodes[1]
+                .getIdeaID());
+        loadedNode.setIdeaPositionX(77);
+        this.testIdeaNodes[1].setIdeaPositionX(77);
+        assertTrue("Error: change not appended", loaded.getJournal().append(
+                this.testFile, loaded.snapshot()));
+        assertLoadedEquals();
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapJournal#compact()}.
+     * 
+     * Simulates a crash after the .mindMap file has been replaced but before
+     * the new journal has been moved into place and checks that loading
+     * takes the new journal.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testInterruptedCompaction() throws IOException {
+
+        for (int i = 0; i < 10; i++) {
+            this.testIdeaNodes[i].setIdeaText("Text" + i);
+            this.testJournal.append(this.testFile, this.testMindMap.snapshot());
+        }
+        byte[] oldJournal = readFile(this.testJournal.getJournalFile());
+        assertTrue("Error: journal not compacted", this.testJournal.compact());
+        this.testIdeaNodes[0].setIdeaText("Nach der Kompaktierung");
+        this.testJournal.append(this.testFile, this.testMindMap.snapshot());
+
+        // The old journal is still in place, the new one in the temporary file
+        File compactionJournalFile = MindMapJournal
+                .getCompactionJournalFile(this.testFile);
+        assertTrue("Error: journal not moved", this.testJournal
+                .getJournalFile().renameTo(compactionJournalFile));
+        FileOutputStream out = new FileOutputStream(
+                this.testJournal.getJournalFile());
+        out.write(oldJournal);
+        out.close();
+
+        assertLoadedEquals();
+        assertTrue("Error: temporary journal not restored",
+                !compactionJournalFile.exists());
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Loads the test file and checks that the loaded MindMap equals the test
+     * mindMap.
+     * 
+     * @return the loaded MindMap
+     */
+    private MindMap assertLoadedEquals() {
+        MindMap loaded = MindMapDeserializer.getMindMapFromDisc(this.testFile);
+        assertNotNull("Error: MindMap not loaded", loaded);
+
+        MindMapSnapshot expected = this.testMindMap.snapshot();
+        MindMapSnapshot actual = loaded.snapshot();
+        assertTrue("Error: title differs", expected.getMindMapTitle().equals(
+                actual.getMindMapTitle()));
+        assertTrue("Error: IdeaNodes differ", expected.getIdeaNodes().equals(
+                actual.getIdeaNodes()));
+        assertTrue("Error: number of Maps differs",
+                expected.getMapCount() == actual.getMapCount());
+        for (int i = 0; i < expected.getMapCount(); i++) {
+            assertTrue("Error: Map " + i + " differs",
+                    expected.getMapID(i) == actual.getMapID(i)
+                            && expected.getMapRootID(i) == actual
+                                    .getMapRootID(i));
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads a whole file.
+     * 
+     * @param file
+     *            the file
+     * @return the content
+     * @throws IOException
+     *             on read errors
+     */
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapLoadExecutor} and
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapViewPlan}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapLoadExecutor {
+
+    /** Title of the test mindMap */
+    private static final String TEST_TITLE = "zJUnitLoadExecutor";
+
+    /** Number of IdeaNodes per Map of the test mindMap */
+    private static final int    TREE_SIZE  = 100;
+
+    /** Test queue for the callbacks */
+    private ModelCommandQueue   testQueue;
+
+    /** Test executor running the loads */
+    private ExecutorService     testExecutorService;
+
+    /** Test executor preparing the view plans */
+    private ExecutorService     testWorkers;
+
+    /** Test load executor */
+    private MindMapLoadExecutor testLoadExecutor;
+
+    /** The loaded MindMap before the test */
+    private MindMap             previousMindMap;
+
+    /** Test .mindMap file */
+    private File                testFile;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a MindMapLoadExecutor with two worker
+     * threads.
+     */
+    @Before
+    public void setUp() {
+        new File(MindMapCollection.FILE_PATH).mkdirs();
+        this.testFile = new File(MindMapCollection.FILE_PATH + File.separator
+                + TEST_TITLE + MindMapSerializer.FILE_EXTENSION);
+
+        this.previousMindMap = MindMapCollection.getInstance()
+                .getLoadedMindMap();
+        this.testQueue = new ModelCommandQueue(null);
+        this.testExecutorService = Executors.newSingleThreadExecutor();
+        this.testWorkers = Executors.newFixedThreadPool(2);
+        this.testLoadExecutor = new MindMapLoadExecutor(this.testQueue,
+                this.testExecutorService, this.testWorkers);
+    }
+
+    /**
+     * Tears down the fixture. Restores the loaded MindMap, deletes the test
+     * files and sets all members null. This method is called after a test is
+     * executed.
+     */
+    @After
+    public void tearDown() {
+        this.testExecutorService.shutdownNow();
+        this.testWorkers.shutdownNow();
+        MindMapCollection.getInstance().setLoadedMindMap(this.previousMindMap);
+        new File(this.testFile.getPath() + MindMapJournal.JOURNAL_EXTENSION)
+                .delete();
+        MindMapThumbnail.getThumbnailFile(this.testFile).delete();
+        this.testFile.delete();
+        this.testQueue = null;
+        this.testExecutorService = null;
+        this.testWorkers = null;
+        this.testLoadExecutor = null;
+        this.previousMindMap = null;
+        this.testFile = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapViewPlan#create(MindMap, ExecutorService)}
+     * .
+     * 
+     * A plan prepared in several chunks on the workers has to equal the plan
+     * prepared on the calling thread, and every relation has to connect the
+     * planned IdeaNodes.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testParallelPlanEqualsSequentialPlan()
+            throws InterruptedException {
+
+        int size = MindMapViewPlan.CHUNK_SIZE * 2 + 10;
+        MindMap mindMap = createMindMap(size);
+        mindMap.getMindMapIdeaNodeList().get(1)
+                .setIdeaState(EIdeaState.DELETED);
+
+        MindMapViewPlan sequential = MindMapViewPlan.create(mindMap);
+        MindMapViewPlan parallel = MindMapViewPlan.create(mindMap,
+                this.testWorkers);
+
+        assertTrue("Error: deleted IdeaNode must not be planned",
+                parallel.getIdeaNodeCount() == size - 1);
+        assertTrue("Error: IdeaNode counts differ",
+                sequential.getIdeaNodeCount() == parallel.getIdeaNodeCount());
+        for (int i = 0; i < parallel.getIdeaNodeCount(); i++) {
+            IdeaNode ideaNode = parallel.getIdeaNode(i);
+            assertTrue("Error: IdeaNodes differ at " + i,
+                    ideaNode == sequential.getIdeaNode(i));
+            assertTrue("Error: parameters differ at " + i,
+                    parallel.getPositionX(i) == ideaNode.getIdeaPositionX()
+                            && parallel.getPositionY(i) == ideaNode
+                                    .getIdeaPositionY()
+                            && parallel.getRotation(i) == ideaNode
+                                    .getIdeaRotationInDegrees()
+                            && parallel.getText(i).equals(
+                                    ideaNode.getIdeaText()));
+        }
+
+        // One relation less than IdeaNodes per Map, minus the relation to the
+        // deleted IdeaNode and its relations to its three children
+        int maps = (size + TREE_SIZE - 1) / TREE_SIZE;
+        assertTrue("Error: relation counts differ",
+                sequential.getRelationCount() == parallel.getRelationCount());
+        assertTrue("Error: wrong relation count",
+                parallel.getRelationCount() == size - maps - 4);
+        for (int i = 0; i < parallel.getRelationCount(); i++) {
+            int parent = parallel.getRelationParent(i);
+            int child = parallel.getRelationChild(i);
+            assertTrue("Error: relations differ at " + i,
+                    parent == sequential.getRelationParent(i)
+                            && child == sequential.getRelationChild(i));
+            assertTrue("Error: relation " + i + " is not a child relation",
+                    parallel.getIdeaNode(parent).getChildren()
+                            .contains(parallel.getIdeaNode(child)));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapLoadExecutor#load(File, IMindMapLoadCallback)}
+     * .
+     * 
+     * Loads a saved MindMap. The plan has to be delivered on the queue, and
+     * the MindMap has to be set as the loaded MindMap when the queue is
+     * drained.
+     */
+    @Test
+    public void testLoadDeliversPlan() {
+
+        MindMap mindMap = createMindMap(TREE_SIZE * 3);
+        mindMap.setMindMapTitle(TEST_TITLE);
+        assertTrue("Error: MindMap not saved",
+                MindMapSerializer.writeMindMapToDisc(mindMap));
+
+        final MindMapViewPlan[] loaded = new MindMapViewPlan[1];
+        this.testLoadExecutor.load(this.testFile, new IMindMapLoadCallback() {
+            @Override
+            public void loadSucceeded(MindMapViewPlan plan) {
+                loaded[0] = plan;
+            }
+
+            @Override
+            public void loadFailed(File file) {
+                //
+            }
+        });
+
+        assertTrue("Error: load not finished",
+                this.testLoadExecutor.shutdown(10000));
+        this.testQueue.drain(ModelCommandQueue.UNBOUNDED);
+
+        assertTrue("Error: plan not delivered", loaded[0] != null);
+        assertTrue("Error: wrong IdeaNode count",
+                loaded[0].getIdeaNodeCount() == TREE_SIZE * 3);
+        assertTrue("Error: wrong relation count",
+                loaded[0].getRelationCount() == (TREE_SIZE - 1) * 3);
+        assertTrue("Error: MindMap not set as loaded MindMap", MindMapCollection
+                .getInstance().getLoadedMindMap() == loaded[0].getMindMap());
+        assertTrue("Error: wrong loaded count",
+                this.testLoadExecutor.getLoadedCount() == 1);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapLoadExecutor#load(File, IMindMapLoadCallback)}
+     * .
+     * 
+     * Loading a missing file has to fail and must not change the loaded
+     * MindMap.
+     */
+    @Test
+    public void testLoadMissingFileFails() {
+
+        final File[] failed = new File[1];
+        this.testLoadExecutor.load(this.testFile, new IMindMapLoadCallback() {
+            @Override
+            public void loadSucceeded(MindMapViewPlan plan) {
+                //
+            }
+
+            @Override
+            public void loadFailed(File file) {
+                failed[0] = file;
+            }
+        });
+
+        assertTrue("Error: load not finished",
+                this.testLoadExecutor.shutdown(10000));
+        this.testQueue.drain(ModelCommandQueue.UNBOUNDED);
+
+        assertTrue("Error: failure not delivered", failed[0] == this.testFile);
+        assertTrue("Error: loaded MindMap must not change",
+                MindMapCollection.getInstance().getLoadedMindMap() == this.previousMindMap);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Creates a MindMap with the given number of IdeaNodes in Maps of
+     * TREE_SIZE IdeaNodes.
+     * 
+     * @param size
+     *            the number of IdeaNodes
+     * @return the MindMap
+     */
+    private static MindMap createMindMap(int size) {
+        MindMap mindMap = new MindMap();
+        IdeaNode[] ideaNodes = new IdeaNode[size];
+        for (int i = 0; i < size; i++) {
+            ideaNodes[i] = new IdeaNode(new NodeData(new NodeContent("Idee"
+                    + i), new NodeMetaData(i % 1024, i / 1024, i % 360,
+                    EIdeaNodeCreator.MULTITOUCH_TABLE)));
+            mindMap.addIdeaNode(ideaNodes[i]);
+
+            int indexInTree = i % TREE_SIZE;
+            if (indexInTree > 0) {
+                ideaNodes[i - indexInTree + (indexInTree - 1) / 3]
+                        .addIdeaChild(ideaNodes[i], mindMap);
+            }
+        }
+        return mindMap;
+    }
+
+}
@@ -0,0 +1,205 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSaveExecutor}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapSaveExecutor {
+
+    /** Title of the test mindMap */
+    private static final String TEST_TITLE = "zJUnitSaveExecutor";
+
+    /** Test mindMap */
+    private MindMap             testMindMap;
+
+    /** Test queue for the callbacks */
+    private ModelCommandQueue   testQueue;
+
+    /** Test executor running the saves */
+    private ExecutorService     testExecutorService;
+
+    /** Test save executor */
+    private MindMapSaveExecutor testSaveExecutor;
+
+    /** Test .mindMap file */
+    private File                testFile;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap with a single IdeaNode
+     * and a MindMapSaveExecutor.
+     */
+    @Before
+    public void setUp() {
+        new File(MindMapCollection.FILE_PATH).mkdirs();
+        this.testFile = new File(MindMapCollection.FILE_PATH + File.separator
+                + TEST_TITLE + MindMapSerializer.FILE_EXTENSION);
+
+        this.testMindMap = new MindMap();
+        this.testMindMap.setMindMapTitle(TEST_TITLE);
+        this.testMindMap.addIdeaNode(new IdeaNode(new NodeData(
+                new NodeContent("Idee"), new NodeMetaData(1, 1, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE))));
+
+        this.testQueue = new ModelCommandQueue(null);
+        this.testExecutorService = Executors.newSingleThreadExecutor();
+        this.testSaveExecutor = new MindMapSaveExecutor(this.testQueue,
+                this.testExecutorService);
+    }
+
+    /**
+     * Tears down the fixture. Deletes the test files and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testExecutorService.shutdownNow();
+        new File(this.testFile.getPath() + MindMapJournal.JOURNAL_EXTENSION)
+                .delete();
+        MindMapThumbnail.getThumbnailFile(this.testFile).delete();
+        this.testFile.delete();
+        this.testMindMap = null;
+        this.testQueue = null;
+        this.testExecutorService = null;
+        this.testSaveExecutor = null;
+        this.testFile = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSaveExecutor#save(MindMap, IMindMapSaveCallback)}
+     * .
+     * 
+     * Requests three saves while the save thread is busy. They have to be
+     * written once with the newest snapshot, and all callbacks have to be
+     * called and the new journal has to be set when the queue is drained.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testRequestsAreCoalesced() throws InterruptedException {
+
+        // Block the save thread
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.testExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final ArrayList<MindMapSnapshot> saved = new ArrayList<MindMapSnapshot>();
+        IMindMapSaveCallback callback = new IMindMapSaveCallback() {
+            @Override
+            public void saveSucceeded(MindMapSnapshot snapshot) {
+                saved.add(snapshot);
+            }
+
+            @Override
+            public void saveFailed(MindMapSnapshot snapshot) {
+                //
+            }
+        };
+
+        for (int i = 0; i < 3; i++) {
+            this.testMindMap.getMindMapIdeaNodeList().get(0).setIdeaText("Idee" + i);
+            this.testSaveExecutor.save(this.testMindMap, callback);
+        }
+        assertTrue("Error: callbacks must not be called before saving",
+                this.testQueue.drain(ModelCommandQueue.UNBOUNDED) == 0);
+
+        latch.countDown();
+        assertTrue("Error: saves not finished",
+                this.testSaveExecutor.shutdown(10000));
+        assertTrue("Error: journal must not be set by the save thread",
+                this.testMindMap.getJournal() == null);
+        this.testQueue.drain(ModelCommandQueue.UNBOUNDED);
+
+        assertTrue("Error: all callbacks must be called", saved.size() == 3);
+        assertTrue("Error: journal not set",
+                this.testMindMap.getJournal() != null);
+        assertTrue("Error: requests must be written once",
+                this.testSaveExecutor.getSavedCount() == 1);
+        assertTrue("Error: requests must be coalesced",
+                this.testSaveExecutor.getCoalescedCount() == 2);
+        assertTrue("Error: newest snapshot must be written",
+                saved.get(0) == saved.get(2)
+                        && saved.get(0).getIdeaNode(
+                                this.testMindMap.getMindMapIdeaNodeList().get(0)
+                                        .getIdeaID()).getIdeaText()
+                                .equals("Idee2"));
+        assertTrue("Error: file not written", this.testFile.isFile());
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSaveExecutor#shutdown(long)}
+     * .
+     * 
+     * Requests made after shutdown have to fail instead of being lost.
+     */
+    @Test
+    public void testSaveAfterShutdownFails() {
+
+        final boolean[] failed = new boolean[1];
+        this.testSaveExecutor.shutdown(1000);
+        this.testSaveExecutor.save(this.testMindMap,
+                new IMindMapSaveCallback() {
+                    @Override
+                    public void saveSucceeded(MindMapSnapshot snapshot) {
+                        //
+                    }
+
+                    @Override
+                    public void saveFailed(MindMapSnapshot snapshot) {
+                        failed[0] = true;
+                    }
+                });
+        this.testQueue.drain(ModelCommandQueue.UNBOUNDED);
+
+        assertTrue("Error: failure not delivered", failed[0]);
+    }
+
+}
@@ -0,0 +1,212 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#snapshot()} and
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSnapshot}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapSnapshot {
+
+    /** Number of IdeaNodes in the test mindMap */
+    private static final int NUMBER_OF_IDEA_NODES = 200;
+
+    /** Test mindMap */
+    private MindMap          testMindMap;
+
+    /** Test ideaNodes */
+    private IdeaNode[]       testIdeaNodes;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap and adds
+     * NUMBER_OF_IDEA_NODES IdeaNodes.
+     */
+    @Before
+    public void setUp() {
+        this.testMindMap = new MindMap();
+        this.testIdeaNodes = new IdeaNode[NUMBER_OF_IDEA_NODES];
+        for (int i = 0; i < NUMBER_OF_IDEA_NODES; i++) {
+            this.testIdeaNodes[i] = new IdeaNode(new NodeData(new NodeContent(
+                    "Idee" + i), new NodeMetaData(i, i, 0.0f,
+                    EIdeaNodeCreator.MULTITOUCH_TABLE)));
+            this.testMindMap.addIdeaNode(this.testIdeaNodes[i]);
+        }
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testMindMap = null;
+        this.testIdeaNodes = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#snapshot()}.
+     * 
+     * Checks that an unchanged MindMap returns the same snapshot and that a
+     * change copies only the changed IdeaNodes.
+     */
+    @Test
+    public void testSnapshotSharesUnchangedIdeaNodes() {
+
+        MindMapSnapshot first = this.testMindMap.snapshot();
+        assertTrue("Error: snapshot must contain all IdeaNodes",
+                first.getIdeaNodeCount() == NUMBER_OF_IDEA_NODES);
+        assertTrue("Error: unchanged MindMap must return the same snapshot",
+                this.testMindMap.snapshot() == first);
+
+        IdeaNode changed = this.testIdeaNodes[17];
+        changed.setIdeaText("Changed");
+        MindMapSnapshot second = this.testMindMap.snapshot();
+
+        assertTrue("Error: changed MindMap must return a new snapshot",
+                second != first && second.getVersion() > first.getVersion());
+        assertTrue("Error: old snapshot must not change", "Idee17"
+                .equals(first.getIdeaNode(changed.getIdeaID()).getIdeaText()));
+        assertTrue("Error: new snapshot must contain the change", "Changed"
+                .equals(second.getIdeaNode(changed.getIdeaID()).getIdeaText()));
+
+        for (IdeaNode ideaNode : this.testIdeaNodes) {
+            if (ideaNode != changed) {
+                assertTrue("Error: unchanged IdeaNode must be shared",
+                        first.getIdeaNode(ideaNode.getIdeaID()) == second
+                                .getIdeaNode(ideaNode.getIdeaID()));
+            }
+        }
+
+        long[] diff = second.diffIdeaNodes(first);
+        assertTrue("Error: diff must contain the changed IdeaNode only",
+                diff.length == 1 && diff[0] == changed.getIdeaID());
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMap#snapshot()} after
+     * structure changes.
+     */
+    @Test
+    public void testSnapshotAfterStructureChanges() {
+
+        MindMapSnapshot first = this.testMindMap.snapshot();
+
+        IdeaNode parent = this.testIdeaNodes[0];
+        IdeaNode child = this.testIdeaNodes[1];
+        IdeaNode removed = this.testIdeaNodes[2];
+        parent.addIdeaChild(child, this.testMindMap);
+        this.testMindMap.removeIdeaNode(removed);
+
+        MindMapSnapshot second = this.testMindMap.snapshot();
+
+        assertTrue("Error: removed IdeaNode must not be contained",
+                second.getIdeaNode(removed.getIdeaID()) == null
+                        && first.getIdeaNode(removed.getIdeaID()) != null);
+        assertTrue("Error: IdeaNode count differs",
+                second.getIdeaNodeCount() == NUMBER_OF_IDEA_NODES - 1);
+
+        IdeaNodeSnapshot parentSnapshot = second.getIdeaNode(parent
+                .getIdeaID());
+        assertTrue("Error: child not contained in parent snapshot",
+                second.getChildren(parentSnapshot).size() == 1
+                        && second.getChildren(parentSnapshot).get(0)
+                                .getIdeaID() == child.getIdeaID());
+        assertTrue("Error: parentID of child snapshot not set", second
+                .getIdeaNode(child.getIdeaID()).getParentID() == parent
+                .getIdeaID());
+        assertTrue("Error: new Map not contained in snapshot",
+                second.getMapCount() == 1
+                        && second.getMapRootID(0) == parent.getIdeaID()
+                        && first.getMapCount() == 0);
+        assertTrue("Error: search must find the child", second
+                .findIdeaNodesByText("idee1").size() > 0);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSnapshot}.
+     * 
+     * Reads snapshots on a background thread while the MindMap is changed and
+     * checks that every snapshot stays consistent.
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testBackgroundReaderSeesConsistentSnapshots()
+            throws InterruptedException {
+
+        final AtomicReference<MindMapSnapshot> published = new AtomicReference<MindMapSnapshot>(
+                this.testMindMap.snapshot());
+        final AtomicReference<String> error = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0) {
+                    MindMapSnapshot snapshot = published.get();
+                    // All positions of one snapshot are moved together
+                    float x = -1;
+                    for (IdeaNodeSnapshot ideaNode : snapshot.getIdeaNodes()) {
+                        float offset = ideaNode.getIdeaPositionX()
+                                - ideaNode.getIdeaPositionY();
+                        if (x >= 0 && offset != x) {
+                            error.set("Inconsistent snapshot " + snapshot);
+                        }
+                        x = offset;
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        for (int round = 1; round <= 200; round++) {
+            for (IdeaNode ideaNode : this.testIdeaNodes) {
+                ideaNode.setIdeaPositionX(ideaNode.getIdeaPositionY() + round);
+            }
+            published.set(this.testMindMap.snapshot());
+        }
+        done.countDown();
+        reader.join();
+
+        assertTrue("Error: " + error.get(), error.get() == null);
+    }
+
+}
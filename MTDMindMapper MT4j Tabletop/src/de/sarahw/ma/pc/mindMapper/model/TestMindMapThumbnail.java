@@ -0,0 +1,236 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapThumbnail} and
+ * {@link de.sarahw.ma.pc.mindMapper.model.MindMapThumbnailCache}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestMindMapThumbnail {
+
+    /** Test mindMap */
+    private MindMap testMindMap;
+
+    /** Test .mindMap files, only their thumbnails are written */
+    private File[]  testFiles;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new MindMap with a root IdeaNode
+     * and a child IdeaNode.
+     * 
+     * @throws IOException
+     *             if the test files can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.testMindMap = new MindMap();
+        this.testMindMap.setMindMapTitle("zJUnitThumbnail");
+        IdeaNode root = new IdeaNode(new NodeData(new NodeContent("Root"),
+                new NodeMetaData(100, 100, 0.0f,
+                        EIdeaNodeCreator.MULTITOUCH_TABLE)));
+        IdeaNode child = new IdeaNode(new NodeData(new NodeContent("Child"),
+                new NodeMetaData(400, 300, 0.0f,
+                        EIdeaNodeCreator.BLUETOOTH_SERVER)));
+        this.testMindMap.addIdeaNode(root);
+        this.testMindMap.addIdeaNode(child);
+        root.addIdeaChild(child, this.testMindMap);
+
+        this.testFiles = new File[3];
+        for (int i = 0; i < this.testFiles.length; i++) {
+            this.testFiles[i] = File.createTempFile("zJUnitThumbnail",
+                    MindMapSerializer.FILE_EXTENSION);
+        }
+    }
+
+    /**
+     * Tears down the fixture. Deletes the test files and sets all members
+     * null. This method is called after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        for (File file : this.testFiles) {
+            MindMapThumbnail.getThumbnailFile(file).delete();
+            file.delete();
+        }
+        this.testMindMap = null;
+        this.testFiles = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapThumbnail#writeThumbnail(MindMapSnapshot, File)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapThumbnail#readThumbnail(File)}
+     * .
+     * 
+     * The thumbnail is only written again if the content has changed.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+
+        File file = this.testFiles[0];
+        assertTrue("Error: file without thumbnail must return null",
+                MindMapThumbnail.readThumbnail(file) == null);
+
+        assertTrue("Error: thumbnail not written", MindMapThumbnail
+                .writeThumbnail(this.testMindMap.snapshot(), file));
+        BufferedImage image = MindMapThumbnail.readThumbnail(file);
+        assertTrue("Error: thumbnail has the wrong size",
+                image.getWidth() == MindMapThumbnail.WIDTH
+                        && image.getHeight() == MindMapThumbnail.HEIGHT);
+
+        // Unchanged content
+        this.testMindMap.setMindMapTitle("zJUnitThumbnailRenamed");
+        assertTrue("Error: unchanged content must not be written again",
+                !MindMapThumbnail.writeThumbnail(this.testMindMap.snapshot(),
+                        file));
+
+        // Moved ideaNode
+        this.testMindMap.getMindMapIdeaNodeList().get(1).setIdeaPositionX(500);
+        assertTrue("Error: changed content must be written again",
+                MindMapThumbnail.writeThumbnail(this.testMindMap.snapshot(),
+                        file));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapThumbnailCache#request(File, long, IMindMapThumbnailCallback)}
+     * .
+     * 
+     * Thumbnails are loaded on the worker thread, cached until their version
+     * changes and dropped least recently used first when the memory cap is
+     * exceeded.
+     * 
+     * @throws IOException
+     *             on write errors
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testCache() throws IOException, InterruptedException {
+
+        for (File file : this.testFiles) {
+            MindMapThumbnail.writeThumbnail(this.testMindMap.snapshot(), file);
+        }
+
+        // Room for two thumbnails
+        long maxBytes = 2 * 4L * MindMapThumbnail.WIDTH
+                * MindMapThumbnail.HEIGHT + 1000;
+        ModelCommandQueue queue = new ModelCommandQueue(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MindMapThumbnailCache cache = new MindMapThumbnailCache(queue,
+                maxBytes, executor);
+
+        final ArrayList<BufferedImage> loaded = new ArrayList<BufferedImage>();
+        IMindMapThumbnailCallback callback = new IMindMapThumbnailCallback() {
+            @Override
+            public void thumbnailLoaded(File file, BufferedImage thumbnail) {
+                loaded.add(thumbnail);
+            }
+        };
+
+        // Block the worker thread, so both requests are made while loading
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue("Error: first request must load the thumbnail",
+                cache.request(this.testFiles[0], 1, callback) == null);
+        cache.request(this.testFiles[0], 1, callback);
+        cache.request(this.testFiles[1], 1, null);
+        latch.countDown();
+        finish(executor);
+        queue.drain(ModelCommandQueue.UNBOUNDED);
+        assertTrue("Error: both callbacks must be called", loaded.size() == 2
+                && loaded.get(0) != null);
+        assertTrue("Error: concurrent requests must be loaded once",
+                cache.getLoadCount() == 2);
+
+        assertTrue("Error: cached thumbnail must be returned",
+                cache.request(this.testFiles[0], 1, null) != null);
+        assertTrue("Error: cache must count the hit", cache.getHitCount() == 1);
+        assertTrue("Error: newer version must not be returned",
+                cache.request(this.testFiles[1], 2, null) == null);
+
+        // Loading a third thumbnail drops the least recently used one
+        executor = Executors.newSingleThreadExecutor();
+        cache = new MindMapThumbnailCache(queue, maxBytes, executor);
+        for (File file : this.testFiles) {
+            cache.request(file, 1, null);
+        }
+        finish(executor);
+        assertTrue("Error: memory cap exceeded",
+                cache.getCachedBytes() <= maxBytes);
+        assertTrue("Error: two thumbnails must be cached", cache.size() == 2);
+        assertTrue("Error: least recently used thumbnail must be dropped",
+                cache.request(this.testFiles[2], 1, null) != null
+                        && cache.request(this.testFiles[0], 1, null) == null);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Waits until the executor has run all submitted tasks.
+     * 
+     * @param executor
+     *            the executor
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private static void finish(ExecutorService executor)
+            throws InterruptedException {
+        executor.shutdown();
+        assertTrue("Error: loads not finished",
+                executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,218 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestModelCommandQueue {
+
+    /** Test queue */
+    private ModelCommandQueue  testQueue;
+
+    /** The values recorded by executed commands (drain thread only) */
+    private ArrayList<Integer> executed;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new, empty ModelCommandQueue.
+     */
+    @Before
+    public void setUp() {
+        this.testQueue = new ModelCommandQueue(null);
+        this.executed = new ArrayList<Integer>();
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testQueue = null;
+        this.executed = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue#drain(int)}.
+     * 
+     * Checks that commands are executed in order and that the number of
+     * commands per drain is bounded.
+     */
+    @Test
+    public void testBoundedDrain() {
+
+        for (int i = 0; i < 10; i++) {
+            this.testQueue.submit(new RecordingCommand(i));
+        }
+        assertTrue("Error: wrong pending count",
+                this.testQueue.getPendingCount() == 10);
+
+        assertTrue("Error: drain must be bounded",
+                this.testQueue.drain(4) == 4 && this.executed.size() == 4);
+        assertTrue("Error: remaining commands must stay pending",
+                this.testQueue.getPendingCount() == 6);
+        assertTrue("Error: unbounded drain must execute all commands",
+                this.testQueue.drain(ModelCommandQueue.UNBOUNDED) == 6);
+        for (int i = 0; i < 10; i++) {
+            assertTrue("Error: commands must be executed in order",
+                    this.executed.get(i).intValue() == i);
+        }
+        assertTrue("Error: empty queue must not execute commands",
+                this.testQueue.drain(ModelCommandQueue.UNBOUNDED) == 0);
+        assertTrue("Error: wrong executed count",
+                this.testQueue.getExecutedCount() == 10);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue#drain(int)}.
+     * 
+     * Checks that a failing command does not prevent the following commands
+     * from being executed.
+     */
+    @Test
+    public void testFailingCommand() {
+
+        this.testQueue.submit(new IModelCommand() {
+            @Override
+            public void execute(AppModel model) {
+                throw new IllegalStateException("expected test failure");
+            }
+        });
+        this.testQueue.submit(new RecordingCommand(1));
+
+        assertTrue("Error: both commands must be consumed",
+                this.testQueue.drain(ModelCommandQueue.UNBOUNDED) == 2);
+        assertTrue("Error: command after failure must be executed",
+                this.executed.size() == 1);
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue#submit(IModelCommand)}
+     * .
+     * 
+     * Submits commands from several threads while draining concurrently and
+     * checks that no command is lost and the order per producer is kept.
+     * 
+     * @throws InterruptedException
+     *             if a producer thread is interrupted
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+
+        final int producers = 4;
+        final int commandsPerProducer = 25000;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < commandsPerProducer; i++) {
+                        TestModelCommandQueue.this.testQueue
+                                .submit(new RecordingCommand(producer
+                                        * commandsPerProducer + i));
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        startSignal.countDown();
+
+        // Drain like the render thread while producers are running
+        boolean running = true;
+        while (running) {
+            this.testQueue.drain(64);
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+        this.testQueue.drain(ModelCommandQueue.UNBOUNDED);
+
+        assertTrue("Error: commands have been lost",
+                this.executed.size() == producers * commandsPerProducer);
+        int[] last = new int[producers];
+        for (int p = 0; p < producers; p++) {
+            last[p] = -1;
+        }
+        for (Integer value : this.executed) {
+            int producer = value.intValue() / commandsPerProducer;
+            int index = value.intValue() % commandsPerProducer;
+            assertTrue("Error: order of producer " + producer + " not kept",
+                    index == last[producer] + 1);
+            last[producer] = index;
+        }
+        assertTrue("Error: queue must be empty",
+                this.testQueue.getPendingCount() == 0);
+    }
+
+    /* **********Inner classes********** */
+    /**
+     * Command that records its value on execution.
+     */
+    private class RecordingCommand implements IModelCommand {
+
+        /** The value to record */
+        private final int value;
+
+        /**
+         * Constructor. Instantiates a new RecordingCommand.
+         * 
+         * @param value
+         *            the value to record
+         */
+        RecordingCommand(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public void execute(AppModel model) {
+            TestModelCommandQueue.this.executed.add(Integer
+                    .valueOf(this.value));
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for {@link de.sarahw.ma.pc.mindMapper.model.NodeIterator}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestNodeIterator {
+
+    /** Test tree: a(b(d, e), c(f)) */
+    private Tree<String> testTree;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a small test tree.
+     */
+    @Before
+    public void setUp() {
+        Node<String> a = new Node<String>("a");
+        Node<String> b = new Node<String>("b");
+        Node<String> c = new Node<String>("c");
+        b.addChild(new Node<String>("d"));
+        b.addChild(new Node<String>("e"));
+        c.addChild(new Node<String>("f"));
+        a.addChild(b);
+        a.addChild(c);
+        this.testTree = new Tree<String>(a);
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testTree = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for the traversal orders of
+     * {@link de.sarahw.ma.pc.mindMapper.model.NodeIterator}.
+     */
+    @Test
+    public void testTraversalOrders() {
+        assertTrue("Error: wrong pre-order",
+                "abdecf".equals(visit(ETraversalOrder.PRE_ORDER)));
+        assertTrue("Error: wrong post-order",
+                "debfca".equals(visit(ETraversalOrder.POST_ORDER)));
+        assertTrue("Error: wrong breadth-first order",
+                "abcdef".equals(visit(ETraversalOrder.BREADTH_FIRST)));
+
+        // An iterator without start node is empty
+        assertFalse("Error: iterator must be empty", new NodeIterator<String>(
+                null, ETraversalOrder.POST_ORDER).hasNext());
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.Tree#containsNode(Node)} and
+     * {@link de.sarahw.ma.pc.mindMapper.model.Tree#toList()} on a very deep
+     * tree, which must not cause a StackOverflowError.
+     */
+    @Test
+    public void testDeepTree() {
+        final int depth = 100000;
+        Node<String> root = new Node<String>("0");
+        Node<String> last = root;
+        for (int i = 1; i < depth; i++) {
+            Node<String> next = new Node<String>(String.valueOf(i));
+            last.addChild(next);
+            last = next;
+        }
+        Tree<String> deepTree = new Tree<String>(root);
+
+        assertTrue("Error: the deepest node must be found",
+                deepTree.containsNode(last));
+        assertFalse("Error: a foreign node must not be found",
+                deepTree.containsNode(new Node<String>("x")));
+        assertTrue("Error: wrong number of nodes",
+                deepTree.toList().size() == depth);
+
+        int count = 0;
+        NodeIterator<String> it = deepTree
+                .iterator(ETraversalOrder.POST_ORDER);
+        assertTrue("Error: post-order must start with the deepest node",
+                it.next() == last);
+        count++;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertTrue("Error: wrong number of nodes in post-order",
+                count == depth);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Visits all nodes of the test tree in the given order and concatenates
+     * their data.
+     * 
+     * @param order
+     *            the traversal order
+     * @return the concatenated data
+     */
+    private String visit(ETraversalOrder order) {
+        StringBuilder strBuilder = new StringBuilder();
+        NodeIterator<String> it = this.testTree.iterator(order);
+        while (it.hasNext()) {
+            strBuilder.append(it.next().getData());
+        }
+        return strBuilder.toString();
+    }
+
+}
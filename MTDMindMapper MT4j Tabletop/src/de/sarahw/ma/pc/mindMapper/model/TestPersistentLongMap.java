@@ -0,0 +1,168 @@
+/***********************************************************************
+ * Copyright (c) 2011 Sarah Will
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ ***********************************************************************/
+
+package de.sarahw.ma.pc.mindMapper.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for
+ * {@link de.sarahw.ma.pc.mindMapper.model.PersistentLongMap}
+ * 
+ * @author Sarah Will
+ * 
+ * @version 1.0
+ * 
+ */
+@SuppressWarnings("nls")
+public class TestPersistentLongMap {
+
+    /** Test map */
+    private PersistentLongMap<String> testMap;
+
+    /* *********Fixture methods********* */
+    /**
+     * Sets up the fixture. Instantiates a new, empty PersistentLongMap.
+     */
+    @Before
+    public void setUp() {
+        this.testMap = PersistentLongMap.empty();
+    }
+
+    /**
+     * Tears down the fixture. Sets all members null. This method is called
+     * after a test is executed.
+     */
+    @After
+    public void tearDown() {
+        this.testMap = null;
+    }
+
+    /* ***********Test methods*********** */
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.PersistentLongMap#put(long, Object)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.PersistentLongMap#remove(long)}.
+     * 
+     * Compares random insertions and removals to a java.util.HashMap and
+     * checks that older versions are not changed.
+     */
+    @Test
+    public void testPutAndRemoveAgainstHashMap() {
+
+        HashMap<Long, String> reference = new HashMap<Long, String>();
+        Random random = new Random(42);
+
+        PersistentLongMap<String> firstVersion = null;
+        HashMap<Long, String> firstReference = null;
+
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(3000);
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                reference.put(key, value);
+                this.testMap = this.testMap.put(key, value);
+            } else {
+                reference.remove(key);
+                this.testMap = this.testMap.remove(key);
+            }
+            if (i == 10000) {
+                firstVersion = this.testMap;
+                firstReference = new HashMap<Long, String>(reference);
+            }
+        }
+
+        assertTrue("Error: size differs",
+                reference.size() == this.testMap.size());
+        assertTrue("Error: keys differ",
+                reference.size() == this.testMap.keys().length);
+        for (long key = 0; key < 3000; key++) {
+            assertTrue("Error: get result differs for key " + key,
+                    equalsOrNull(reference.get(key), this.testMap.get(key)));
+            assertTrue("Error: old version has changed for key " + key,
+                    equalsOrNull(firstReference.get(key), firstVersion
+                            .get(key)));
+        }
+        assertTrue("Error: size of old version has changed",
+                firstReference.size() == firstVersion.size());
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.PersistentLongMap#put(long, Object)}
+     * with an unchanged value.
+     */
+    @Test
+    public void testPutUnchangedReturnsSameInstance() {
+
+        String value = "one";
+        this.testMap = this.testMap.put(1, value).put(-7, "minusSeven");
+        assertTrue("Error: put of an identical value must return this map",
+                this.testMap.put(1, value) == this.testMap);
+        assertTrue("Error: remove of an unknown key must return this map",
+                this.testMap.remove(2) == this.testMap);
+        assertTrue("Error: negative key not found",
+                "minusSeven".equals(this.testMap.get(-7)));
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.PersistentLongMap#diff(PersistentLongMap)}
+     * .
+     */
+    @Test
+    public void testDiff() {
+
+        for (long key = 0; key < 1000; key++) {
+            this.testMap = this.testMap.put(key, "v" + key);
+        }
+        PersistentLongMap<String> changed = this.testMap.put(10, "changed")
+                .remove(20).put(5000, "added");
+
+        long[] diff = changed.diff(this.testMap);
+        Arrays.sort(diff);
+        assertTrue("Error: diff must contain the changed keys only",
+                Arrays.equals(new long[] { 10, 20, 5000 }, diff));
+        assertTrue("Error: diff to itself must be empty",
+                changed.diff(changed).length == 0);
+    }
+
+    /* *********Utility methods********* */
+    /**
+     * Compares two possibly null strings.
+     * 
+     * @param a
+     *            the first string
+     * @param b
+     *            the second string
+     * @return true if both are null or equal
+     */
+    private static boolean equalsOrNull(String a, String b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+}
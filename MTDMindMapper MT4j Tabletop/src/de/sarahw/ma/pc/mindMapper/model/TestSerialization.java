@@ -21,7 +21,15 @@ package de.sarahw.ma.pc.mindMapper.model;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 
 import org.apache.log4j.Logger;
@@ -43,7 +51,13 @@ import org.junit.Test;
 @SuppressWarnings("nls")
 public class TestSerialization {
 
-    private static Logger     log = Logger.getLogger(TestSerialization.class);
+    private static Logger     log                      = Logger.getLogger(TestSerialization.class);
+
+    /** Number of IdeaNodes of the large test mindMap */
+    private static final int  LARGE_MIND_MAP_SIZE      = 10000;
+
+    /** Number of IdeaNodes of each Map of the large test mindMap */
+    private static final int  LARGE_MIND_MAP_TREE_SIZE = 100;
 
     /** Test mindMap */
     private MindMap           testMindMap;
@@ -223,5 +237,277 @@ public class TestSerialization {
         assertTrue("Error: testIdeaNode4 not deserialized correctly",
                 deserializedIdeaNodeList.contains(this.testIdeaNode4));
 
+        // Check if the Map is structurally equal to the original Map
+        assertTrue(
+                "Error: the deserialized Map differs from the original Map: "
+                        + StructuralComparator.describeDifference(
+                                this.testMindMap.getMindMapList().get(0)
+                                        .getRootNode(), this.mindMapCollection
+                                        .getLoadedMindMap().getMindMapList()
+                                        .get(0).getRootNode()),
+                StructuralComparator.equalTrees(this.testMindMap
+                        .getMindMapList().get(0), this.mindMapCollection
+                        .getLoadedMindMap().getMindMapList().get(0)));
+
+        // Check if the Map membership has been rebuilt
+        MindMap loadedMindMap = this.mindMapCollection.getLoadedMindMap();
+        Map loadedMap = loadedMindMap.getMindMapList().get(0);
+        IdeaNode loadedRoot = loadedMap.getRootNode();
+        assertTrue("Error: Map membership not rebuilt on deserialization",
+                loadedMindMap.findMapByChildNode(loadedRoot) == loadedMap
+                        && loadedMap.containsIdeaNode(loadedRoot
+                                .getChildren().get(0)));
+
+        // Check if the parent references have been rebuilt
+        assertTrue("Error: parent reference not rebuilt on deserialization",
+                loadedRoot.getChildren().get(0).getParent() == loadedRoot
+                        && loadedRoot.isAncestorOf(loadedRoot.getChildren()
+                                .get(0)));
+
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapSerializer#writeMindMap(MindMapSnapshot, java.io.OutputStream)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapDeserializer#readMindMap(java.io.InputStream)}
+     * .
+     * 
+     * Writes and reads a MindMap with LARGE_MIND_MAP_SIZE IdeaNodes in Maps of
+     * LARGE_MIND_MAP_TREE_SIZE IdeaNodes. Checks that all IdeaNodes and Maps
+     * are restored. The time of the round trip is measured by
+     * {@link MindMapSerializationBenchmark}.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testBinaryRoundTripOfLargeMindMap() throws IOException {
+
+        MindMap largeMindMap = MindMapSerializationBenchmark
+                .createLargeMindMap(LARGE_MIND_MAP_SIZE,
+                        LARGE_MIND_MAP_TREE_SIZE);
+
+        MindMapSnapshot snapshot = largeMindMap.snapshot();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MindMapSerializer.writeMindMap(snapshot, out);
+        MindMap loadedMindMap = MindMapDeserializer
+                .readMindMap(new ByteArrayInputStream(out.toByteArray()));
+
+        MindMapSnapshot loadedSnapshot = loadedMindMap.snapshot();
+        assertTrue("Error: wrong number of IdeaNodes read",
+                loadedSnapshot.getIdeaNodeCount() == LARGE_MIND_MAP_SIZE);
+        for (IdeaNode ideaNode : largeMindMap.getMindMapIdeaNodeList()) {
+            assertNotNull("Error: IdeaNode " + ideaNode.getIdeaID()
+                    + " not read",
+                    loadedMindMap.findIdeaNodeByID(ideaNode.getIdeaID()));
+        }
+        assertTrue("Error: IdeaNodes differ", loadedSnapshot.getIdeaNodes()
+                .equals(snapshot.getIdeaNodes()));
+        assertTrue("Error: wrong number of Maps read", loadedMindMap
+                .getMindMapList().size() == largeMindMap.getMindMapList()
+                .size());
+        for (int i = 0; i < largeMindMap.getMindMapList().size(); i++) {
+            assertTrue("Error: Map " + i + " differs",
+                    StructuralComparator.equalTrees(largeMindMap
+                            .getMindMapList().get(i), loadedMindMap
+                            .getMindMapList().get(i)));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapDeserializer#getMindMapFromDisc(File)}
+     * with a legacy file written by object serialization.
+     * 
+     * Checks that the legacy file is read and replaced by a binary file.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testLegacyFileIsMigrated() throws IOException {
+
+        File legacyFile = File.createTempFile("zJUnitLegacy",
+                MindMapSerializer.FILE_EXTENSION);
+        File backupFile = new File(legacyFile.getPath()
+                + MindMapMigrator.LEGACY_BACKUP_EXTENSION);
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new FileOutputStream(legacyFile));
+            out.writeObject(this.testMindMap);
+            out.close();
+
+            MindMap migratedMindMap = MindMapDeserializer
+                    .getMindMapFromDisc(legacyFile);
+            assertNotNull("Error: legacy file not read", migratedMindMap);
+            assertTrue("Error: wrong number of IdeaNodes migrated",
+                    migratedMindMap.getMindMapIdeaNodeList().size() == this.testMindMap
+                            .getMindMapIdeaNodeList().size());
+            assertTrue("Error: Map differs after migration",
+                    StructuralComparator.equalTrees(this.testMindMap
+                            .getMindMapList().get(0), migratedMindMap
+                            .getMindMapList().get(0)));
+
+            DataInputStream in = new DataInputStream(new FileInputStream(
+                    legacyFile));
+            int magic = in.readInt();
+            in.close();
+            assertTrue("Error: legacy file not replaced by a binary file",
+                    magic == MindMapFileFormat.MAGIC);
+            assertTrue("Error: no backup of the legacy file",
+                    backupFile.exists());
+
+            assertTrue("Error: migrated file not readable", MindMapDeserializer
+                    .getMindMapFromDisc(legacyFile).getMindMapList().size() == this.testMindMap
+                    .getMindMapList().size());
+        } finally {
+            legacyFile.delete();
+            backupFile.delete();
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapFileHeader#readHeader(File)}
+     * and
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapCollection#getMindMapFileHeader(File)}
+     * .
+     * 
+     * Checks the metadata and the section offsets in the header of a written
+     * file and that the header of a saved file is cached by the catalog of
+     * the MindMapCollection.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testFileHeaderIsReadWithoutMindMap() throws IOException {
+
+        new File(MindMapCollection.FILE_PATH).mkdirs();
+        File file = File.createTempFile("zJUnitHeader",
+                MindMapSerializer.FILE_EXTENSION, new File(
+                        MindMapCollection.FILE_PATH));
+        try {
+            long before = System.currentTimeMillis();
+            MindMapSnapshot snapshot = this.testMindMap.snapshot();
+            MindMapSerializer.writeMindMapToFile(snapshot, file);
+
+            MindMapFileHeader header = MindMapFileHeader.readHeader(file);
+            assertTrue("Error: wrong version",
+                    header.getVersion() == MindMapFileFormat.VERSION);
+            assertTrue("Error: wrong title", header.getMindMapTitle()
+                    .equals(snapshot.getMindMapTitle()));
+            assertTrue("Error: wrong mindMapId",
+                    header.getMindMapId() == snapshot.getMindMapId());
+            assertTrue("Error: wrong number of IdeaNodes",
+                    header.getIdeaNodeCount() == snapshot.getIdeaNodeCount());
+            assertTrue("Error: wrong number of Maps",
+                    header.getMapCount() == snapshot.getMapCount());
+            // Save times are strictly increasing and may run ahead of the
+            // clock after earlier writes, so only the lower bound is checked
+            assertTrue("Error: wrong modification time",
+                    header.getLastModified() >= before);
+
+            int bluetoothCount = 0;
+            for (IdeaNodeSnapshot ideaNode : snapshot.getIdeaNodes()) {
+                if (ideaNode.getIdeaOwner() == EIdeaNodeCreator.BLUETOOTH_SERVER) {
+                    bluetoothCount++;
+                }
+            }
+            assertTrue("Error: wrong number of IdeaNodes per creator",
+                    header.getIdeaNodeCount(EIdeaNodeCreator.BLUETOOTH_SERVER) == bluetoothCount
+                            && header
+                                    .getIdeaNodeCount(EIdeaNodeCreator.MULTITOUCH_TABLE) == snapshot
+                                    .getIdeaNodeCount() - bluetoothCount);
+            assertTrue(
+                    "Error: wrong section offsets",
+                    header.getIdeaNodeOffset()
+                            + (long) header.getIdeaNodeCount()
+                            * MindMapFileFormat.IDEA_NODE_RECORD_SIZE == header
+                            .getMapOffset()
+                            && header.getMapOffset()
+                                    + (long) header.getMapCount()
+                                    * MindMapFileFormat.MAP_RECORD_SIZE
+                                    + MindMapFileFormat.CHECKSUM_SIZE == file
+                                    .length());
+            assertTrue("Error: checksum flag not set", header.hasChecksum());
+
+            MindMapFileHeader cachedHeader = this.mindMapCollection
+                    .getMindMapFileHeader(file);
+            assertNotNull("Error: header not read by the collection",
+                    cachedHeader);
+            assertTrue("Error: header not cached", this.mindMapCollection
+                    .getMindMapFileHeader(file) == cachedHeader);
+        } finally {
+            file.delete();
+            MindMapSerializer.getBackupFile(file).delete();
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link de.sarahw.ma.pc.mindMapper.model.MindMapDeserializer#getMindMapFromDisc(File)}
+     * .
+     * 
+     * Damages a written file and checks that the checksum detects it and the
+     * previous generation is loaded instead, and that a missing file is
+     * restored from its backup.
+     * 
+     * @throws IOException
+     *             on read or write errors
+     */
+    @Test
+    public void testDamagedFileFallsBackToBackup() throws IOException {
+
+        File file = File.createTempFile("zJUnitBackup",
+                MindMapSerializer.FILE_EXTENSION);
+        try {
+            // Two generations, the first one is kept as backup
+            MindMapSerializer.writeMindMapToFile(this.testMindMap.snapshot(),
+                    file);
+            this.testIdeaNode1.setIdeaText("Neu");
+            MindMapSerializer.writeMindMapToFile(this.testMindMap.snapshot(),
+                    file);
+            assertTrue("Error: temporary file not renamed", !MindMapSerializer
+                    .getTempFile(file).exists());
+
+            // Damage the position of the first ideaNode record
+            MindMapFileHeader header = MindMapFileHeader.readHeader(file);
+            RandomAccessFile damaged = new RandomAccessFile(file, "rw");
+            try {
+                damaged.seek(header.getIdeaNodeOffset() + 28);
+                damaged.writeFloat(4711);
+            } finally {
+                damaged.close();
+            }
+
+            FileInputStream in = new FileInputStream(file);
+            try {
+                MindMapDeserializer.readMindMap(in);
+                assertTrue("Error: damaged file must fail the checksum", false);
+            } catch (IOException ex) {
+                log.debug("Damaged file rejected: " + ex.getMessage());
+            } finally {
+                in.close();
+            }
+
+            MindMap loadedMindMap = MindMapDeserializer
+                    .getMindMapFromDisc(file);
+            assertNotNull("Error: backup not loaded", loadedMindMap);
+            assertTrue("Error: backup must contain the first generation",
+                    loadedMindMap
+                            .findIdeaNodeByID(this.testIdeaNode1.getIdeaID())
+                            .getIdeaText().equals("Idee1"));
+
+            // Interrupted save: the file has been renamed to the backup
+            assertTrue("Error: file not deleted", file.delete());
+            assertTrue("Error: backup not restored",
+                    MindMapSerializer.restoreBackupFile(file) && file.isFile());
+        } finally {
+            file.delete();
+            MindMapSerializer.getBackupFile(file).delete();
+            MindMapJournal.getJournalFile(file).delete();
+        }
     }
 }
@@ -22,7 +22,6 @@ package de.sarahw.ma.pc.mindMapper.model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -35,7 +34,8 @@ import org.apache.log4j.Logger;
  * 
  * <p>
  * This Tree provides a method to serialize the Tree into a List by doing a
- * pre-order traversal. It has several methods to allow easy update of Nodes in
+ * pre-order traversal and lazy iterators for pre-order, post-order and
+ * breadth-first traversals. It has several methods to allow easy update of Nodes in
  * the Tree.
  * </p>
  * 
@@ -123,6 +123,19 @@ public class Tree<T> implements Serializable {
     }
 
     /* **********Object methods********** */
+    /**
+     * Returns a lazy iterator over all Nodes of the Tree<T> in the given order.
+     * 
+     * @param order
+     *            the traversal order
+     * @return a new NodeIterator starting at the root element
+     * 
+     * @see NodeIterator
+     */
+    public NodeIterator<T> iterator(ETraversalOrder order) {
+        return new NodeIterator<T>(this.rootElement, order);
+    }
+
     /**
      * Returns the Tree<T> as a List of Node<T> objects. The elements of the
      * List are generated from a pre-order traversal of the tree.
@@ -133,7 +146,10 @@ public class Tree<T> implements Serializable {
 
         log.debug("Entering toList()"); //$NON-NLS-1$
         ArrayList<Node<T>> list = new ArrayList<Node<T>>();
-        walk(this.rootElement, list);
+        NodeIterator<T> it = iterator(ETraversalOrder.PRE_ORDER);
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
 
         log.debug("Leaving toList(): list of all tree nodes"); //$NON-NLS-1$
         return list;
@@ -141,28 +157,8 @@ public class Tree<T> implements Serializable {
     }
 
     /**
-     * Walks the Tree in pre-order style. This is a recursive method, and is
-     * called from the toList() method with the root element as the first
-     * argument. It appends to the second argument, which is passed by reference
-     * as it recurses down the tree.
-     * 
-     * @param element
-     *            the starting element.
-     * @param list
-     *            the output of the walk.
-     */
-    private void walk(Node<T> element, List<Node<T>> list) {
-
-        log.debug("Entering walk(element=" + element + ", list= )"); //$NON-NLS-1$ //$NON-NLS-2$
-        list.add(element);
-        for (Node<T> data : element.getChildren()) {
-            walk(data, list);
-        }
-        log.debug("Leaving walk()"); //$NON-NLS-1$
-    }
-
-    /**
-     * Checks if a certain node is part of the tree structure.
+     * Checks if a certain node is part of the tree structure. Stops the
+     * traversal as soon as the node has been found.
      * 
      * @param element
      *            the node to be searched in the tree
@@ -172,11 +168,14 @@ public class Tree<T> implements Serializable {
 
         log.debug("Entering containsNode(element=" + element + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-        ArrayList<Node<T>> listOfNodes = this.toList();
-
-        if (listOfNodes.contains(element)) {
-            log.debug("Leaving containsNode(): true"); //$NON-NLS-1$
-            return true;
+        if (element != null) {
+            NodeIterator<T> it = iterator(ETraversalOrder.PRE_ORDER);
+            while (it.hasNext()) {
+                if (element.equals(it.next())) {
+                    log.debug("Leaving containsNode(): true"); //$NON-NLS-1$
+                    return true;
+                }
+            }
         }
 
         log.debug("Leaving containsNode(): false"); //$NON-NLS-1$
@@ -193,7 +192,15 @@ public class Tree<T> implements Serializable {
      */
     @Override
     public String toString() {
-        return toList().toString();
+        StringBuilder strBuilder = new StringBuilder("["); //$NON-NLS-1$
+        NodeIterator<T> it = iterator(ETraversalOrder.PRE_ORDER);
+        while (it.hasNext()) {
+            strBuilder.append(it.next());
+            if (it.hasNext()) {
+                strBuilder.append(", "); //$NON-NLS-1$
+            }
+        }
+        return strBuilder.append("]").toString(); //$NON-NLS-1$
 
     }
 
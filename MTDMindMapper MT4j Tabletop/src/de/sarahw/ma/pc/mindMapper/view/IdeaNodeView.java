@@ -23,8 +23,6 @@ package de.sarahw.ma.pc.mindMapper.view;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
 
 import org.apache.log4j.Logger;
 import org.mt4j.AbstractMTApplication;
@@ -61,9 +59,13 @@ import org.mt4j.util.opengl.GL10;
 import org.mt4jx.components.visibleComponents.widgets.MTSuggestionTextArea;
 
 import processing.core.PApplet;
+import de.sarahw.ma.pc.mindMapper.IModelEventListener;
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
 import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
+import de.sarahw.ma.pc.mindMapper.model.AppModel;
 import de.sarahw.ma.pc.mindMapper.model.EIdeaNodeChangedStatus;
 import de.sarahw.ma.pc.mindMapper.model.IdeaNode;
+import de.sarahw.ma.pc.mindMapper.model.ModelChangeSet;
 import de.sarahw.ma.pc.mindMapper.model.Node;
 import de.sarahw.ma.pc.mindMapper.model.NodeData;
 
@@ -85,7 +87,8 @@ import de.sarahw.ma.pc.mindMapper.model.NodeData;
  * 
  */
 @SuppressWarnings("synthetic-access")
-public class IdeaNodeView extends MTRectangle implements Observer {
+public class IdeaNodeView extends MTRectangle implements
+        IModelEventListener<EIdeaNodeChangedStatus> {
 
     protected static Logger        log                                 = Logger.getLogger(IdeaNodeView.class);
 
@@ -146,6 +149,9 @@ public class IdeaNodeView extends MTRectangle implements Observer {
     /** The connected model ideaNode children instances */
     private List<Node<NodeData>>   modelChildren;
 
+    /** The event bus the ideaNodeView listens to for model ideaNode changes */
+    private ModelEventBus          modelEventBus;
+
     /** The nodeContentContainer that contains the text fields */
     private NodeContentContainer   nodeContentView;
 
@@ -459,8 +465,11 @@ public class IdeaNodeView extends MTRectangle implements Observer {
                 this.abstractMTapplication, this, this.ideaNodeTextToSet);
         this.addChild(this.nodeContentView);
 
-        // Add observer for watching model IdeaNode changes
-        this.modelIdeaNode.addObserver(this);
+        // Add listener for watching model IdeaNode changes
+        this.modelEventBus = AppModel.getInstance().getLoadedMindMap()
+                .getEventBus();
+        this.modelEventBus.addListener(EIdeaNodeChangedStatus.class,
+                this.modelIdeaNode, this);
 
         log.debug("Leaving initialize()"); //$NON-NLS-1$
     }
@@ -588,6 +597,23 @@ public class IdeaNodeView extends MTRectangle implements Observer {
 
     }
 
+    /**
+     * Removes the listener for model IdeaNode changes. Has to be called before
+     * the IdeaNodeView is destroyed.
+     */
+    public void removeModelListener() {
+
+        log.debug("Entering removeModelListener()"); //$NON-NLS-1$
+
+        if (this.modelEventBus != null) {
+            this.modelEventBus.removeListener(EIdeaNodeChangedStatus.class,
+                    this.modelIdeaNode, this);
+            this.modelEventBus = null;
+        }
+
+        log.debug("Leaving removeModelListener()"); //$NON-NLS-1$
+    }
+
     /**
      * Resets the IdeaNodeView after a has been closed/destroyed.
      * 
@@ -939,6 +965,81 @@ public class IdeaNodeView extends MTRectangle implements Observer {
 
     }
 
+    /**
+     * Adds one animation listener to a batch of IdeaNodeViews created from a
+     * BT device. Like {@link #addAnimationListenerCreationFromBT()}, but all
+     * IdeaNodeViews are maximized by the same animation, at its end every
+     * IdeaNodeView gets its original size and is tween translated to its
+     * position in the batch layout.
+     * 
+     * @param ideaNodeViews
+     *            the IdeaNodeViews of the batch, not empty
+     * @param positions
+     *            the global target position of each IdeaNodeView
+     */
+    public static void addAnimationListenerCreationFromBT(
+            final List<IdeaNodeView> ideaNodeViews,
+            final List<Vector3D> positions) {
+
+        log.debug("Entering addAnimationListenerCreationFromBT(ideaNodeViews=" + ideaNodeViews.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        IdeaNodeView first = ideaNodeViews.get(0);
+
+        // Create one animation for the whole batch
+        IAnimation creationAnim = new Animation(
+                "IdeaNodeView batch creation from BT device", //$NON-NLS-1$
+                new MultiPurposeInterpolator(1,
+                        (first.getWidthXY(TransformSpace.GLOBAL)) * 3, 600,
+                        0.2f, 0.5f, 1), first);
+
+        // Add Animation listener to animation
+        creationAnim.addAnimationListener(new IAnimationListener() {
+
+            @Override
+            public void processAnimationEvent(AnimationEvent ae) {
+                switch (ae.getId()) {
+                    case AnimationEvent.ANIMATION_STARTED:
+                    case AnimationEvent.ANIMATION_UPDATED:
+
+                        // Get animation value
+                        float currentVal = ae.getAnimation().getValue();
+
+                        for (IdeaNodeView ideaNodeView : ideaNodeViews) {
+                            ideaNodeView
+                                    .setWidthRelativeToParentDefault(currentVal);
+                        }
+
+                        break;
+                    case AnimationEvent.ANIMATION_ENDED:
+
+                        for (int i = 0; i < ideaNodeViews.size(); i++) {
+                            IdeaNodeView ideaNodeView = ideaNodeViews.get(i);
+
+                            // Set the default width
+                            ideaNodeView
+                                    .setWidthXYGlobal(ideaNodeView.ideaNodeWidth);
+
+                            // Tween translate to the layout position
+                            Vector3D position = positions.get(i);
+                            ideaNodeView.tweenTranslateTo(position.getX(),
+                                    position.getY(), 0, 400,
+                                    AniAnimation.CIRC_OUT, 0);
+                        }
+
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        // Start Animation
+        creationAnim.start();
+
+        log.debug("Leaving addAnimationListenerCreationFromBT()"); //$NON-NLS-1$
+
+    }
+
     /**
      * Adds a custom drag processor to the IdeaNodeView that ignores drag events
      * bubbled up from RelationViews or any other components in the Map
@@ -1064,29 +1165,26 @@ public class IdeaNodeView extends MTRectangle implements Observer {
     /* ********Overridden methods******** */
     /**
      * Updates the current IdeaNodeView as a result of changes in the model
-     * depending on the given ObserverNotificationObject.
+     * depending on the given change status.
      * 
-     * @param o
-     *            the observed model object that has communicated a change
-     * @param arg
-     *            an added notification argument (ObserverNotificationObject)
+     * @param source
+     *            the model IdeaNode that has communicated a change
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
      */
     @Override
-    public void update(Observable o, Object arg) {
-        log.debug("Entering update(o=" + o + ", arg=" + arg + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    public void handleModelEvent(Object source, EIdeaNodeChangedStatus status,
+            Object content) {
+        log.debug("Entering handleModelEvent(source=" + source + ", status=" + status + ", content=" + content + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
         // Check if children list has changed
-        if (o instanceof IdeaNode && arg instanceof ObserverNotificationObject) {
-            IdeaNode parentIdeaNode = (IdeaNode) o;
+        if (source instanceof IdeaNode) {
+            IdeaNode parentIdeaNode = (IdeaNode) source;
 
             // Check if we have the correct model IdeaNode
-            if (parentIdeaNode.equals(this.modelIdeaNode)
-                    && ((ObserverNotificationObject) arg).getEnumStatus() instanceof EIdeaNodeChangedStatus) {
-                EIdeaNodeChangedStatus status = (EIdeaNodeChangedStatus) ((ObserverNotificationObject) arg)
-                        .getEnumStatus();
-
-                Object content = ((ObserverNotificationObject) arg)
-                        .getContent();
+            if (parentIdeaNode.equals(this.modelIdeaNode)) {
 
                 switch (status) {
 
@@ -1163,7 +1261,7 @@ public class IdeaNodeView extends MTRectangle implements Observer {
                             }
 
                         } else {
-                            log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                            log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
                             // TODO: Close Application, fatal error, view and
                             // model no
                             // longer in synch
@@ -1233,26 +1331,40 @@ public class IdeaNodeView extends MTRectangle implements Observer {
                         // Add relations for all children
                         // TODO: disable in model or implement!
                         break;
+                    case IDEA_NODE_CHANGES_COMMITTED:
+                        // Process all changes of the batch in order
+                        if (content instanceof ModelChangeSet) {
+                            for (ObserverNotificationObject change : ((ModelChangeSet) content)
+                                    .getChanges()) {
+                                handleModelEvent(source,
+                                        (EIdeaNodeChangedStatus) change
+                                                .getEnumStatus(),
+                                        change.getContent());
+                            }
+                        } else {
+                            log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                        }
+                        break;
                     default:
-                        log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                        log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
                         // TODO: Close Application, fatal error, view and model
                         // no
                         // longer in synch
                         break;
                 }
             } else {
-                log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
                 // TODO: Close Application, fatal error, view and model no
                 // longer in synch
             }
         } else {
-            log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+            log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
             // TODO: Close Application, fatal error, view and model no
             // longer in synch
 
         }
 
-        log.debug("Leaving update()"); //$NON-NLS-1$
+        log.debug("Leaving handleModelEvent()"); //$NON-NLS-1$
     }
 
     /**
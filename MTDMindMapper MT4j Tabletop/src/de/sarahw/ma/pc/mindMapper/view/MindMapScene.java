@@ -24,8 +24,6 @@ package de.sarahw.ma.pc.mindMapper.view;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
 
 import javax.bluetooth.LocalDevice;
 
@@ -68,19 +66,24 @@ import org.mt4j.util.math.Vertex;
 
 import de.sarahw.ma.pc.btServer.BluetoothServer;
 import de.sarahw.ma.pc.btServer.EBluetoothConnectionListState;
-import de.sarahw.ma.pc.btServer.WaitBtThread;
+import de.sarahw.ma.pc.mindMapper.IModelEventListener;
+import de.sarahw.ma.pc.mindMapper.ModelEventBus;
 import de.sarahw.ma.pc.mindMapper.ObserverNotificationObject;
 import de.sarahw.ma.pc.mindMapper.model.AppModel;
 import de.sarahw.ma.pc.mindMapper.model.EAddChildIdeaNodeResultCase;
 import de.sarahw.ma.pc.mindMapper.model.EIdeaNodeCreator;
-import de.sarahw.ma.pc.mindMapper.model.EIdeaState;
 import de.sarahw.ma.pc.mindMapper.model.EMindMapChangeStatus;
 import de.sarahw.ma.pc.mindMapper.model.EMindMapCollectionChangeStatus;
 import de.sarahw.ma.pc.mindMapper.model.ERemoveChildIdeaNodeResultCase;
+import de.sarahw.ma.pc.mindMapper.model.IMindMapLoadCallback;
+import de.sarahw.ma.pc.mindMapper.model.IMindMapSaveCallback;
 import de.sarahw.ma.pc.mindMapper.model.IdeaNode;
 import de.sarahw.ma.pc.mindMapper.model.MindMap;
-import de.sarahw.ma.pc.mindMapper.model.MindMapCollection;
-import de.sarahw.ma.pc.mindMapper.model.Node;
+import de.sarahw.ma.pc.mindMapper.model.MindMapAutosave;
+import de.sarahw.ma.pc.mindMapper.model.MindMapSnapshot;
+import de.sarahw.ma.pc.mindMapper.model.MindMapViewPlan;
+import de.sarahw.ma.pc.mindMapper.model.ModelChangeSet;
+import de.sarahw.ma.pc.mindMapper.model.ModelCommandQueue;
 import de.sarahw.ma.pc.mindMapper.model.NodeContent;
 import de.sarahw.ma.pc.mindMapper.model.NodeData;
 import de.sarahw.ma.pc.mindMapper.model.NodeMetaData;
@@ -92,7 +95,8 @@ import de.sarahw.ma.pc.mindMapper.model.NodeMetaData;
  * </p>
  * 
  * <p>
- * Changes in the model are communicated via the Observer pattern.
+ * Changes in the model are communicated via the ModelEventBus of the loaded
+ * MindMap, the MindMapCollection and the bluetooth wait thread.
  * </p>
  * 
  * 
@@ -102,7 +106,7 @@ import de.sarahw.ma.pc.mindMapper.model.NodeMetaData;
  * 
  */
 @SuppressWarnings("synthetic-access")
-public class MindMapScene extends AbstractScene implements Observer {
+public class MindMapScene extends AbstractScene {
 
     private static Logger               log                                       = Logger.getLogger(MindMapScene.class);
 
@@ -138,6 +142,24 @@ public class MindMapScene extends AbstractScene implements Observer {
     /** The maximum number of lines for a status message with more text */
     private static final int            STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES     = 3;
 
+    /* *** Model command constants *** */
+    /** The maximum number of model commands executed per frame */
+    private static final int            MODEL_COMMANDS_PER_FRAME_MAX              = 16;
+
+    /* *** Load constants *** */
+    /** The maximum number of views created per frame when loading a MindMap */
+    private static final int            LOAD_VIEWS_PER_FRAME_MAX                  = 50;
+
+    /* *** Bluetooth constants *** */
+    /** The spacing of IdeaNodeViews from a BT batch, relative to their size */
+    private static final float          BT_BATCH_SPACING_SCALE                    = 1.25f;
+
+    /* *** Autosave constants *** */
+    /** The interval between two autosaves in milliseconds */
+    private static final long           AUTOSAVE_INTERVAL_MILLIS                  = 60 * 1000;
+    /** The render thread time budget for an autosave snapshot (ns) */
+    private static final long           AUTOSAVE_FRAME_BUDGET_NANOS               = 4 * 1000 * 1000;
+
     /* *** Application *** */
     /** The multitouch application instance */
     private AbstractMTApplication       abstractMTapplication;
@@ -246,6 +268,10 @@ public class MindMapScene extends AbstractScene implements Observer {
     private OverlayPlain                loadingOverlay;
     /** The "MindMap is being saved..." overlay */
     private OverlayPlain                savingOverlay;
+    /** The view plan delivered by the load executor for the next loaded MindMap */
+    private MindMapViewPlan             pendingViewPlan;
+    /** The view plan whose views are currently created, null if none */
+    private MindMapViewPlan             materializingViewPlan;
 
     /* *** Helper polygon areas *** */
     /** The polygon representing the canvas area north */
@@ -261,6 +287,37 @@ public class MindMapScene extends AbstractScene implements Observer {
     /** The name list of all currently connected remote bluetooth devices */
     private List<String>                btConnectionStringList                    = new ArrayList<String>();
 
+    /* *** Model listeners *** */
+    /** The event bus of the loaded mindMap the scene currently listens to */
+    private ModelEventBus               mindMapEventBus;
+
+    /** The listener for changes of the loaded model mindMap */
+    private final IModelEventListener<EMindMapChangeStatus> mindMapListener = new IModelEventListener<EMindMapChangeStatus>() {
+        @Override
+        public void handleModelEvent(Object source,
+                EMindMapChangeStatus status, Object content) {
+            handleMindMapEvent(status, content);
+        }
+    };
+
+    /** The listener for changes of the model mindMapCollection */
+    private final IModelEventListener<EMindMapCollectionChangeStatus> mindMapCollectionListener = new IModelEventListener<EMindMapCollectionChangeStatus>() {
+        @Override
+        public void handleModelEvent(Object source,
+                EMindMapCollectionChangeStatus status, Object content) {
+            handleMindMapCollectionEvent(status, content);
+        }
+    };
+
+    /** The listener for changes of the bluetooth connection list */
+    private final IModelEventListener<EBluetoothConnectionListState> bluetoothConnectionListener = new IModelEventListener<EBluetoothConnectionListState>() {
+        @Override
+        public void handleModelEvent(Object source,
+                EBluetoothConnectionListState status, Object content) {
+            handleBluetoothConnectionEvent(status, content);
+        }
+    };
+
     /* ***********Constructors*********** */
     /**
      * Constructor. Instantiates a new MindMapScene.
@@ -802,15 +859,51 @@ public class MindMapScene extends AbstractScene implements Observer {
         // Add rectangle gesture listener to canvas
         addGestureListener(this);
 
-        // Add this as observer to the loaded model mindMap
+        // Add listener to the loaded model mindMap
         // (change when MindMapCollection is updated!)
-        this.getModelReference().getLoadedMindMap().addObserver(this);
-
-        // Add this as observer to the model mindMapCollection (stays fixed)
-        this.getModelReference().getMindMapCollection().addObserver(this);
+        addMindMapListener(this.getModelReference().getLoadedMindMap());
+
+        // Add listener to the model mindMapCollection (stays fixed)
+        this.getModelReference()
+                .getMindMapCollection()
+                .getEventBus()
+                .addListener(EMindMapCollectionChangeStatus.class,
+                        this.mindMapCollectionListener);
+
+        // Add listener to the bluetooth wait thread
+        final ModelEventBus btEventBus = this.getBluetoothServerReference()
+                .getWaitThread().getEventBus();
+        btEventBus.addListener(EBluetoothConnectionListState.class,
+                this.bluetoothConnectionListener);
+
+        // Before each frame, execute the model commands submitted by other
+        // threads (bounded per frame), dispatch the deferred bluetooth
+        // events on the render thread and start an autosave if it is due
+        final ModelCommandQueue commandQueue = this.getModelReference()
+                .getCommandQueue();
+        final MindMapAutosave autosave = this.getModelReference()
+                .getAutosave();
+        autosave.setIntervalMillis(AUTOSAVE_INTERVAL_MILLIS);
+        autosave.setFrameBudgetNanos(AUTOSAVE_FRAME_BUDGET_NANOS);
+        this.registerPreDrawAction(new IPreDrawAction() {
+            @Override
+            public void processAction() {
+                commandQueue.drain(MODEL_COMMANDS_PER_FRAME_MAX);
+                btEventBus.dispatchPending();
+
+                long nowMillis = System.nanoTime() / 1000000L;
+                if (autosave.isDue(nowMillis)) {
+                    updateModelIdeaNodes();
+                    autosave.run(getModelReference().getLoadedMindMap(),
+                            nowMillis);
+                }
+            }
 
-        // Add this as a observer to the bluetooth wait thread
-        this.getBluetoothServerReference().getWaitThread().addObserver(this);
+            @Override
+            public boolean isLoop() {
+                return true;
+            }
+        });
 
         // Get bluetooth status &
         // Show bluetooth status message
@@ -1769,8 +1862,8 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     /**
      * Creates a new IdeaNodeView object at the given position. Called by the
-     * update() method of this MindMapScene (= Observer subclass) when changes
-     * in the model require the creation of a new IdeaNodeView from this
+     * handleMindMapEvent() method of this MindMapScene when changes in the
+     * model require the creation of a new IdeaNodeView from this
      * application.
      * 
      * @param modelIdeaNode
@@ -1820,9 +1913,9 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     /**
      * Creates a new IdeaNodeView object at the application center. Called by
-     * the update() method of this MindMapScene (= Observer subclass) when
-     * changes in the model require the creation of a new IdeaNodeView upon
-     * addition of a IdeaNode from an external BT device.
+     * the handleMindMapEvent() method of this MindMapScene when changes in the
+     * model require the creation of a new IdeaNodeView upon addition of a
+     * IdeaNode from an external BT device.
      * 
      * @param modelIdeaNode
      *            the model IdeaNode
@@ -1868,6 +1961,132 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     }
 
+    /**
+     * <p>
+     * Creates new IdeaNodeViews at the application center for a batch of
+     * IdeaNodes added from an external BT device. Called by the
+     * handleMindMapEvent() method of this MindMapScene for the changes of a
+     * ModelChangeSet.
+     * </p>
+     * 
+     * <p>
+     * All IdeaNodeViews share one creation animation and are then moved to a
+     * grid around the application center, instead of N independent animations
+     * ending at random positions. The given list is cleared afterwards.
+     * </p>
+     * 
+     * @param modelIdeaNodes
+     *            the model IdeaNodes of the batch, may be empty
+     */
+    private void createIdeaNodeViewsFromBTDevice(List<IdeaNode> modelIdeaNodes) {
+
+        log.debug("Entering createIdeaNodeViewsFromBTDevice(modelIdeaNodes=" + modelIdeaNodes.size() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        if (modelIdeaNodes.isEmpty()) {
+            log.debug("Leaving createIdeaNodeViewsFromBTDevice(): nothing to do"); //$NON-NLS-1$
+            return;
+        }
+        if (modelIdeaNodes.size() == 1) {
+            createIdeaNodeViewFromBTDevice(modelIdeaNodes.get(0));
+            modelIdeaNodes.clear();
+            log.debug("Leaving createIdeaNodeViewsFromBTDevice(): single IdeaNode"); //$NON-NLS-1$
+            return;
+        }
+
+        Vector3D center = new Vector3D(
+                this.abstractMTapplication.getWidth() / 2f,
+                this.abstractMTapplication.getHeight() / 2f, 0);
+
+        List<IdeaNodeView> ideaNodeViews = new ArrayList<IdeaNodeView>(
+                modelIdeaNodes.size());
+        for (IdeaNode modelIdeaNode : modelIdeaNodes) {
+
+            // Create new node with default position (0,0,0) (required for
+            // correct repositioning)
+            IdeaNodeView ideaNodeView = new IdeaNodeView(
+                    this.abstractMTapplication, 0, 0,
+                    getCalculatedIdeaNodeWidth(),
+                    getCalculatedIdeaNodeHeight(), getIdeaNodeViewFontBig(),
+                    getIdeaNodeViewFontSmall(), modelIdeaNode,
+                    modelIdeaNode.getIdeaText());
+
+            // Set at the middle of the screen
+            ideaNodeView.setPositionGlobal(center.getCopy());
+
+            // Set name model Id
+            ideaNodeView.setName((new Long(modelIdeaNode.getIdeaID())
+                    .toString()));
+
+            // Add IdeaNodeView to canvas
+            this.getCanvas().addChild(ideaNodeView);
+
+            ideaNodeViews.add(ideaNodeView);
+        }
+
+        // Animate the whole batch at once
+        IdeaNodeView.addAnimationListenerCreationFromBT(ideaNodeViews,
+                getBTBatchLayoutPositions(center, ideaNodeViews.size()));
+
+        modelIdeaNodes.clear();
+
+        log.debug("Leaving createIdeaNodeViewsFromBTDevice(): " + ideaNodeViews.size() + " IdeaNodeViews created"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Returns the positions of a grid of the given number of IdeaNodeViews
+     * around the given center. The grid is as square as the application width
+     * allows.
+     * 
+     * @param center
+     *            the center of the grid
+     * @param count
+     *            the number of IdeaNodeViews
+     * @return the global position of each IdeaNodeView
+     */
+    private List<Vector3D> getBTBatchLayoutPositions(Vector3D center, int count) {
+
+        float cellWidth = getCalculatedIdeaNodeWidth() * BT_BATCH_SPACING_SCALE;
+        float cellHeight = getCalculatedIdeaNodeHeight()
+                * BT_BATCH_SPACING_SCALE;
+
+        int columnsMax = Math.max(1,
+                (int) (this.abstractMTapplication.getWidth() / cellWidth));
+        int columns = Math.min(columnsMax, (int) Math.ceil(Math.sqrt(count)));
+        int rows = (count + columns - 1) / columns;
+
+        float left = center.getX() - (columns - 1) * cellWidth / 2f;
+        float top = center.getY() - (rows - 1) * cellHeight / 2f;
+
+        List<Vector3D> positions = new ArrayList<Vector3D>(count);
+        for (int i = 0; i < count; i++) {
+            positions.add(new Vector3D(left + (i % columns) * cellWidth, top
+                    + (i / columns) * cellHeight, 0));
+        }
+        return positions;
+    }
+
+    /**
+     * Adds the mindMap listener to the event bus of the given MindMap and
+     * removes it from the event bus of the previously loaded MindMap.
+     * 
+     * @param mindMap
+     *            the loaded model mindMap
+     */
+    private void addMindMapListener(MindMap mindMap) {
+
+        log.debug("Entering addMindMapListener(mindMap=" + mindMap + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        if (this.mindMapEventBus != null) {
+            this.mindMapEventBus.removeListener(EMindMapChangeStatus.class,
+                    this.mindMapListener);
+        }
+        this.mindMapEventBus = mindMap.getEventBus();
+        this.mindMapEventBus.addListener(EMindMapChangeStatus.class,
+                this.mindMapListener);
+
+        log.debug("Leaving addMindMapListener()"); //$NON-NLS-1$
+    }
+
     /**
      * Deletes the given IdeaNodeView from its parent.
      * 
@@ -1878,6 +2097,9 @@ public class MindMapScene extends AbstractScene implements Observer {
 
         log.debug("Entering deleteIdeaNode(ideaNode=" + ideaNodeView + ")"); //$NON-NLS-1$//$NON-NLS-2$
 
+        // Stop listening to model changes
+        ideaNodeView.removeModelListener();
+
         // Remove IdeaNodeView from parent
         ideaNodeView.getParent().removeChild(ideaNodeView);
 
@@ -1920,8 +2142,8 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     /**
      * Creates a new directed RelationView for the given parent and child
-     * IdeaNodeViews. Called by the update() method of this MindMapScene (=
-     * Observer subclass) when changes in the model require the creation of a
+     * IdeaNodeViews. Called by the handleModelEvent() method of the parent
+     * IdeaNodeView when changes in the model require the creation of a
      * new RelationView.
      * 
      * @param parent
@@ -2034,22 +2256,52 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     /**
      * <p>
-     * Saves the current MindMapScene by calling the model serialization method
-     * on the currently loaded model MindMap.
+     * Saves the current MindMapScene by handing the currently loaded model
+     * MindMap to the save thread of the model. The render thread only takes a
+     * snapshot, the callback is called on the render thread when the MindMap
+     * has been written.
+     * </p>
+     * 
+     * @param callback
+     *            the callback to call when the save has finished
+     * @return true, if the save has been started
+     */
+    private boolean saveCurrentMindMapScene(IMindMapSaveCallback callback) {
+
+        log.debug("Entering saveCurrentMindMapScene()"); //$NON-NLS-1$
+
+        if (!updateModelIdeaNodes()) {
+            log.error("Leaving saveCurrentMindMapScene(): false, model and view not in sync"); //$NON-NLS-1$
+            return false;
+        }
+
+        log.debug("Leaving saveCurrentMindMapScene(): "); //$NON-NLS-1$
+
+        // Return result of handing the MindMap to the save thread
+        return this.getModelReference().saveLoadedMindMap(callback);
+
+    }
+
+    /**
+     * <p>
+     * Updates the model IdeaNodes with the position, rotation and text of
+     * their IdeaNodeViews. Values that haven't changed don't mark the
+     * IdeaNodes as changed.
      * </p>
      * 
      * <p>
      * As of now, the position, rotation and the text of all IdeaNodeViews are
-     * communicated to the model only right here once before saving the MindMap.
-     * Future TODO: better sync by communicating changes when they have happened
-     * > DragAction, RotationAction, Keyboard etc. (performance??)
+     * communicated to the model only right here before saving the MindMap
+     * (manual saves and autosaves). Future TODO: better sync by communicating
+     * changes when they have happened > DragAction, RotationAction, Keyboard
+     * etc. (performance??)
      * </p>
      * 
-     * @return true, if object serialization was successful
+     * @return true, if all model IdeaNodes have been updated
      */
-    private boolean saveCurrentMindMapScene() {
+    private boolean updateModelIdeaNodes() {
 
-        log.debug("Entering saveCurrentMindMapScene()"); //$NON-NLS-1$
+        log.debug("Entering updateModelIdeaNodes()"); //$NON-NLS-1$
 
         // Tell all IdeaNodeViews to update their model partners with position,
         // rotation and text info
@@ -2069,7 +2321,7 @@ public class MindMapScene extends AbstractScene implements Observer {
                 if (!((IdeaNodeView) comp).updateModelIdeaNode()) {
 
                     // TODO: close application? model and view no longer in sync
-                    log.error("Leaving saveCurrentMindMapScene(): false, Model ideaNode for ideaNodeView " //$NON-NLS-1$
+                    log.error("Leaving updateModelIdeaNodes(): false, Model ideaNode for ideaNodeView " //$NON-NLS-1$
                             + comp + " could not be updated!"); //$NON-NLS-1$
 
                     return false;
@@ -2078,16 +2330,15 @@ public class MindMapScene extends AbstractScene implements Observer {
             }
         }
 
-        log.debug("Leaving saveCurrentMindMapScene(): "); //$NON-NLS-1$
-
-        // Return result of model save/update method
-        return this.getModelReference().getLoadedMindMap().saveMindMap();
+        log.debug("Leaving updateModelIdeaNodes(): true"); //$NON-NLS-1$
+        return true;
 
     }
 
     /**
-     * Adds a new runnable at the beginning of the next rendering loop that
-     * calls the loadMindMapFromDisc() method.
+     * Starts loading a MindMap file on the load thread. The file is decoded
+     * and its views are prepared off the render thread, the loaded MindMap is
+     * set in the model when the load executor delivers the result.
      * 
      * @param mindMapToLoadFile
      *            the File to load
@@ -2097,70 +2348,94 @@ public class MindMapScene extends AbstractScene implements Observer {
         log.debug("Entering startLoadMindMapFromDiscProcess(mindMapToLoadFile=" //$NON-NLS-1$
                 + mindMapToLoadFile + ")"); //$NON-NLS-1$
 
+        if (mindMapToLoadFile == null) {
+            log.error("Leaving startLoadMindMapFromDiscProcess(), invalid null input!"); //$NON-NLS-1$
+            return;
+        }
+
         // Set loading overlay visible/send to front
+        this.loadingOverlay.setText(Messages
+                .getString("MindMapScene.addProcessOverlays.LoadMindMap")); //$NON-NLS-1$
         this.loadingOverlay.setVisible(true);
         this.loadingOverlay.sendToFront();
 
-        // Register a new pre draw action to the scene
-        this.registerPreDrawAction(new IPreDrawAction() {
-            @Override
-            public void processAction() {
+        // Update file list
+        this.getModelReference().getMindMapCollection()
+                .updateMindMapFilesList();
 
-                // Create a new runnable that calls the loading method
-                getMTApplication().invokeLater(new Runnable() {
+        // Loading continues on the load thread, the overlay stays visible
+        // until the views of the loaded MindMap have been created
+        // (see loadNewMindMapScene())
+        this.getModelReference().getLoadExecutor()
+                .load(mindMapToLoadFile, new IMindMapLoadCallback() {
                     @Override
-                    public void run() {
+                    public void loadSucceeded(MindMapViewPlan plan) {
+                        // Used by handleMindMapCollectionEvent() on
+                        // notification
+                        MindMapScene.this.pendingViewPlan = plan;
+                    }
 
-                        // Deserialize specified file from
-                        boolean result = MindMapScene.this
-                                .loadMindMapFromDisc(mindMapToLoadFile);
+                    @Override
+                    public void loadFailed(File file) {
+                        log.error("Loading MindMap from disc not successful!"); //$NON-NLS-1$
+                        onLoadMindMapFinished(false, file.getName());
+                    }
+                });
 
-                        MindMapScene.this.loadingOverlay.setVisible(false);
+        log.debug("Leaving startLoadMindMapFromDiscProcess()"); //$NON-NLS-1$
 
-                        // Show a error message if loading was unsuccessful
-                        // (Info message for successful loading will be shown by
-                        // update() on Observer notification)
-                        if (!result) {
+    }
 
-                            // Show message box
-                            log.error("Loading MindMap from disc not successful!"); //$NON-NLS-1$
+    /**
+     * Called on the render thread when loading a MindMap has finished. Hides
+     * the loading overlay and shows the result.
+     * 
+     * @param success
+     *            true, if the MindMap has been loaded and all views have been
+     *            created
+     * @param mindMapTitle
+     *            the title of the loaded MindMap
+     */
+    private void onLoadMindMapFinished(boolean success, String mindMapTitle) {
 
-                            String statusMsgNotOk = Messages
-                                    .getString("MindMapScene.load.statusMsg.notOk.part1") //$NON-NLS-1$
-                                    + mindMapToLoadFile.getName()
-                                    + Messages
-                                            .getString("MindMapScene.load.statusMsg.notOk.part2"); //$NON-NLS-1$
+        log.debug("Entering onLoadMindMapFinished(success=" + success + ", mindMapTitle=" + mindMapTitle + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-                            // Show error message mindMapScene
-                            MindMapScene.this.showStatusMessageOK(
-                                    statusMsgNotOk,
-                                    EStatusMessageType.STATUS_MSG_ERROR,
-                                    getStatusMessageFontVerySmall(),
-                                    getStatusMessageFontMedium(),
-                                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
+        this.loadingOverlay.setVisible(false);
 
-                        }
+        if (success) {
 
-                        // If for whatever reason the status message is not
-                        // open, unlock canvas
-                        // Else unlocking is done by status message box
-                        if (MindMapScene.this.getStatusMessageBox() == null) {
-                            log.info("Message box not opened, unlock canvas"); //$NON-NLS-1$
+            String statusMsg = Messages
+                    .getString("MindMapScene.load.statusMsg.ok.part1") + mindMapTitle + Messages.getString("MindMapScene.load.statusMsg.ok.part2"); //$NON-NLS-1$ //$NON-NLS-2$
 
-                            MindMapScene.this.lockCanvas(false);
-                        }
-                    }
-                });
-            }
+            // Show info message
+            showStatusMessageOK(statusMsg, EStatusMessageType.STATUS_MSG_INFO,
+                    getStatusMessageFontVerySmall(),
+                    getStatusMessageFontMedium(),
+                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
 
-            @Override
-            public boolean isLoop() {
-                return false;
-            }
-        });
+        } else {
 
-        log.debug("Leaving startLoadMindMapFromDiscProcess()"); //$NON-NLS-1$
+            String statusMsgNotOk = Messages
+                    .getString("MindMapScene.load.statusMsg.notOk.part1") + mindMapTitle + Messages.getString("MindMapScene.load.statusMsg.notOk.part2"); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Show error message
+            showStatusMessageOK(statusMsgNotOk,
+                    EStatusMessageType.STATUS_MSG_ERROR,
+                    getStatusMessageFontVerySmall(),
+                    getStatusMessageFontMedium(),
+                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
 
+        }
+
+        // If for whatever reason the status message is not open, unlock canvas
+        // Else unlocking is done by status message box
+        if (this.getStatusMessageBox() == null) {
+            log.info("Message box not opened, unlock canvas"); //$NON-NLS-1$
+
+            this.lockCanvas(false);
+        }
+
+        log.debug("Leaving onLoadMindMapFinished()"); //$NON-NLS-1$
     }
 
     /**
@@ -2185,62 +2460,26 @@ public class MindMapScene extends AbstractScene implements Observer {
                     @Override
                     public void run() {
 
-                        String mindMapTitle = null;
-
-                        if (saveCurrentMindMapScene()) {
-
-                            MindMapScene.this.savingOverlay.setVisible(false);
-
-                            mindMapTitle = MindMapScene.this
-                                    .getModelReference()
-                                    .getLoadedMindMapTitle();
-
-                            String statusMsg = Messages
-                                    .getString("MindMapScene.saveOrUpdate.statusMsg.ok.part1") + mindMapTitle + Messages.getString("MindMapScene.saveOrUpdate.statusMsg.ok.part2"); //$NON-NLS-1$ //$NON-NLS-2$
-
-                            // Show info message
-                            showStatusMessageOK(statusMsg,
-                                    EStatusMessageType.STATUS_MSG_INFO,
-                                    getStatusMessageFontVerySmall(),
-                                    getStatusMessageFontMedium(),
-                                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
-
-                            // If for whatever reason the status message is not
-                            // open, unlock canvas
-                            // Else unlocking is done by status message box
-                            if (MindMapScene.this.getStatusMessageBox() == null) {
-                                log.info("Message box not opened, unlock canvas"); //$NON-NLS-1$
-
-                                MindMapScene.this.lockCanvas(false);
+                        IMindMapSaveCallback callback = new IMindMapSaveCallback() {
+                            @Override
+                            public void saveSucceeded(MindMapSnapshot snapshot) {
+                                onSaveMindMapFinished(true,
+                                        snapshot.getMindMapTitle());
                             }
 
-                        } else {
-
-                            MindMapScene.this.savingOverlay.setVisible(false);
-
-                            mindMapTitle = MindMapScene.this
-                                    .getModelReference()
-                                    .getLoadedMindMapTitle();
-
-                            String statusMsgNotOk = (Messages
-                                    .getString("MindMapScene.saveOrUpdate.statusMsg.notOk.part1") + mindMapTitle + Messages.getString("MindMapScene.saveOrUpdate.statusMsg.notOk.part2")); //$NON-NLS-1$ //$NON-NLS-2$
-
-                            // Show error message
-                            showStatusMessageOK(statusMsgNotOk,
-                                    EStatusMessageType.STATUS_MSG_ERROR,
-                                    getStatusMessageFontVerySmall(),
-                                    getStatusMessageFontMedium(),
-                                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
-
-                            // If for whatever reason the status message is not
-                            // open, unlock canvas
-                            // Else unlocking is done by status message box
-                            if (MindMapScene.this.getStatusMessageBox() == null) {
-                                log.debug("Message box not opened, unlock canvas"); //$NON-NLS-1$
-
-                                MindMapScene.this.lockCanvas(false);
+                            @Override
+                            public void saveFailed(MindMapSnapshot snapshot) {
+                                onSaveMindMapFinished(false,
+                                        snapshot.getMindMapTitle());
                             }
+                        };
 
+                        // Saving continues on the save thread, the overlay
+                        // stays visible until the callback is called
+                        if (!saveCurrentMindMapScene(callback)) {
+                            onSaveMindMapFinished(false, MindMapScene.this
+                                    .getModelReference()
+                                    .getLoadedMindMapTitle());
                         }
                     }
                 });
@@ -2257,48 +2496,65 @@ public class MindMapScene extends AbstractScene implements Observer {
     }
 
     /**
-     * Loads the selected MindMap from the disc via object deserialization.
+     * Called on the render thread when saving the MindMap has finished. Hides
+     * the saving overlay and shows the result.
      * 
-     * @param mindMapToLoadFile
-     *            the file that needs to be deserialized
-     * @return true if loading is successful
+     * @param success
+     *            true, if the MindMap has been saved
+     * @param mindMapTitle
+     *            the title of the saved MindMap
      */
-    private boolean loadMindMapFromDisc(File mindMapToLoadFile) {
+    private void onSaveMindMapFinished(boolean success, String mindMapTitle) {
 
-        log.debug("Entering loadMindMapFromDisc(mindMapToLoadFile" + //$NON-NLS-1$
-                mindMapToLoadFile + ")"); //$NON-NLS-1$
+        log.debug("Entering onSaveMindMapFinished(success=" + success + ", mindMapTitle=" + mindMapTitle + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-        // Load new MindMap from disc via model
-        if (mindMapToLoadFile != null) {
+        this.savingOverlay.setVisible(false);
 
-            // Update file list
-            this.getModelReference().getMindMapCollection()
-                    .updateMindMapFilesList();
+        if (success) {
 
-            // Load the specified MindMap file
-            // Changes in the loaded MindMap will be picked up by this Observer
-            // class
-            if (this.getModelReference().getMindMapCollection()
-                    .loadMindMap(mindMapToLoadFile)) {
+            String statusMsg = Messages
+                    .getString("MindMapScene.saveOrUpdate.statusMsg.ok.part1") + mindMapTitle + Messages.getString("MindMapScene.saveOrUpdate.statusMsg.ok.part2"); //$NON-NLS-1$ //$NON-NLS-2$
 
-                log.debug("Leaving loadMindMapSceneFromDisc(): true"); //$NON-NLS-1$
+            // Show info message
+            showStatusMessageOK(statusMsg, EStatusMessageType.STATUS_MSG_INFO,
+                    getStatusMessageFontVerySmall(),
+                    getStatusMessageFontMedium(),
+                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
+
+        } else {
+
+            String statusMsgNotOk = (Messages
+                    .getString("MindMapScene.saveOrUpdate.statusMsg.notOk.part1") + mindMapTitle + Messages.getString("MindMapScene.saveOrUpdate.statusMsg.notOk.part2")); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Show error message
+            showStatusMessageOK(statusMsgNotOk,
+                    EStatusMessageType.STATUS_MSG_ERROR,
+                    getStatusMessageFontVerySmall(),
+                    getStatusMessageFontMedium(),
+                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
 
-                return true;
-            }
-            log.error("Leaving loadMindMapSceneFromDisc(): false, Loading mindMapScene from disc not successful!"); //$NON-NLS-1$
-            return false;
         }
-        log.error("Leaving loadMindMapSceneFromDisc(): false, invalid null input!"); //$NON-NLS-1$
-        return false;
 
+        // If for whatever reason the status message is not open, unlock canvas
+        // Else unlocking is done by status message box
+        if (this.getStatusMessageBox() == null) {
+            log.info("Message box not opened, unlock canvas"); //$NON-NLS-1$
+
+            this.lockCanvas(false);
+        }
+
+        log.debug("Leaving onSaveMindMapFinished()"); //$NON-NLS-1$
     }
 
     /**
      * Loads a new "mindMapScene" if a new MindMap has been loaded in the model.
+     * Removes the views of the previous MindMap and starts creating the views
+     * of the loaded MindMap, a few per frame (see
+     * startViewPlanMaterialization()).
      * 
      * @param loadedMap
      *            the loaded model mindMap
-     * @return true, if loading was successful
+     * @return true, if creating the views has been started
      */
     private boolean loadNewMindMapScene(MindMap loadedMap) {
 
@@ -2307,12 +2563,14 @@ public class MindMapScene extends AbstractScene implements Observer {
         // Get the loaded MindMap instance
         if (loadedMap != null) {
 
-            // Delete all GUI components except canvas and menus
+            // Delete all GUI components except canvas, menus and the process
+            // overlays
             MTComponent[] children = this.getCanvas().getChildren();
             for (MTComponent child : children) {
                 if (child instanceof IdeaNodeView
                         || child instanceof RelationView
-                        || child instanceof AbstractOverlay) {
+                        || (child instanceof AbstractOverlay
+                                && child != this.loadingOverlay && child != this.savingOverlay)) {
 
                     // Remove from canvas
                     this.getCanvas().removeChild(child);
@@ -2325,23 +2583,17 @@ public class MindMapScene extends AbstractScene implements Observer {
             // Re-set Scene name
             this.setName(loadedMap.getMindMapTitle());
 
-            // Build GUI from loaded MindMap objects
-            // Create IdeaNodeViews
-            if (createIdeaNodeViewsFromFile(loadedMap)) {
-                // Create Relations
-                if (!createRelationsFromFile(loadedMap)) {
-                    log.error("Leaving loadNewMindMapScene(): false, could not create RelationViews from file!"); //$NON-NLS-1$
-                    // TODO: close application, no longer in sync?
-                    return false;
-                }
-
-            } else {
-
-                log.error("Leaving loadNewMindMapScene(): false, could not create IdeaNodeViews from file!"); //$NON-NLS-1$
-                // TODO: close application, no longer in sync?
-                return false;
+            // Use the view plan prepared by the load executor, prepare it
+            // here if the MindMap has been loaded otherwise
+            MindMapViewPlan plan = this.pendingViewPlan;
+            this.pendingViewPlan = null;
+            if (plan == null || plan.getMindMap() != loadedMap) {
+                plan = MindMapViewPlan.create(loadedMap);
             }
 
+            // Build GUI from loaded MindMap objects
+            startViewPlanMaterialization(plan);
+
             log.debug("Leaving loadNewMindMapScene(): true"); //$NON-NLS-1$
             return true;
         }
@@ -2352,209 +2604,160 @@ public class MindMapScene extends AbstractScene implements Observer {
     }
 
     /**
-     * Creates new IdeaNodeViews from a newly loaded model MindMap.
+     * Creates the IdeaNodeViews and RelationViews of a view plan on the render
+     * thread, at most LOAD_VIEWS_PER_FRAME_MAX per frame, so the scene keeps
+     * rendering while a large MindMap is loaded. The loading overlay shows
+     * the progress and is hidden when all views have been created. Creating
+     * the views stops if another MindMap is loaded in the meantime.
      * 
-     * @param loadedMap
-     *            the newly loaded model MindMap instance
-     * @return true if the creation was successful
+     * @param plan
+     *            the view plan of the loaded MindMap
      */
-    private boolean createIdeaNodeViewsFromFile(MindMap loadedMap) {
-
-        log.debug("Entering createIdeaNodeViewsFromFile(" + //$NON-NLS-1$
-                loadedMap + ")"); //$NON-NLS-1$
-
-        if (loadedMap != null) {
+    private void startViewPlanMaterialization(final MindMapViewPlan plan) {
 
-            // Create a new IdeaNodeView for every IdeaNode
-            ArrayList<IdeaNode> ideaNodeList = loadedMap
-                    .getMindMapIdeaNodeList();
-
-            if (ideaNodeList != null) {
-
-                float x;
-                float y;
-                float rotation;
-                String text;
-                long id;
-                int i = 0;
-
-                // Create a new IdeaNodeView for every active IdeaNode
-                for (IdeaNode ideaNode : ideaNodeList) {
-
-                    // TODO: trash bin state for deleted IdeaNodes?
-                    if (ideaNode.getIdeaState() != EIdeaState.DELETED) {
-
-                        // Get data for ideaNode
-                        x = ideaNode.getIdeaPositionX();
-                        y = ideaNode.getIdeaPositionY();
-                        rotation = ideaNode.getIdeaRotationInDegrees();
-                        text = ideaNode.getIdeaText();
-                        id = ideaNode.getIdeaID();
-
-                        // Create new IdeaNodeView with default position (0,0,0)
-                        // (required for correct repositioning)
-                        IdeaNodeView ideaNodeView = new IdeaNodeView(
-                                this.abstractMTapplication, 0, 0,
-                                getCalculatedIdeaNodeWidth(),
-                                getCalculatedIdeaNodeHeight(),
-                                getIdeaNodeViewFontBig(),
-                                getIdeaNodeViewFontSmall(), ideaNode, text);
-
-                        // Set given position and default size
-                        ideaNodeView.setPositionGlobal(new Vector3D(x, y));
-
-                        // Rotate the IdeaNodeView for the stored rotation
-                        ideaNodeView.rotateZ(
-                                ideaNodeView.getCenterPointGlobal(), rotation);
-
-                        // Set ideaNode id as name
-                        // TODO: better name?
-                        ideaNodeView.setName(new Long(id).toString());
-
-                        // Add ideaNodeView to canvas
-                        this.getCanvas().addChild(ideaNodeView);
-
-                        i++;
-                    } // for state DELETED do nothing for now
-                }
+        log.debug("Entering startViewPlanMaterialization(plan=" + plan + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-                log.info("Created " + i + " IdeaNodeViews from file!"); //$NON-NLS-1$//$NON-NLS-2$
+        this.materializingViewPlan = plan;
 
-                log.debug("Leaving createIdeaNodeViewsFromFile(): true"); //$NON-NLS-1$
-                return true;
+        // Set loading overlay visible/send to front
+        this.loadingOverlay.setVisible(true);
+        this.loadingOverlay.sendToFront();
 
-            }
-            log.error("Leaving createIdeaNodeViewsFromFile(): false, ideaNodeList is null!"); //$NON-NLS-1$
-            return false;
-        }
-        log.error("Leaving createIdeaNodeViewsFromFile(): false, invalid null input!"); //$NON-NLS-1$
-        return false;
+        // Register a new pre draw action to the scene, looping until all views
+        // have been created
+        this.registerPreDrawAction(new IPreDrawAction() {
 
-    }
+            /** The created IdeaNodeViews, by plan index */
+            private final IdeaNodeView[] ideaNodeViews = new IdeaNodeView[plan.getIdeaNodeCount()];
 
-    /**
-     * Creates new RelationViews from a newly loaded model MindMap.
-     * 
-     * @param loadedMap
-     *            the newly loaded modelMindMap
-     * @return true if the creation was successful
-     */
-    private boolean createRelationsFromFile(MindMap loadedMap) {
+            /** The number of views created */
+            private int                  created       = 0;
 
-        log.debug("Entering createRelationsFromFile(loadedMap=" + //$NON-NLS-1$
-                loadedMap + ")"); //$NON-NLS-1$
+            /** True, if the action has finished */
+            private boolean              finished      = false;
 
-        if (loadedMap != null) {
+            @Override
+            public void processAction() {
 
-            // Create a new RelationView for every parent-child IdeaNode
-            // relation in the model
-            ArrayList<IdeaNode> ideaNodeList = loadedMap
-                    .getMindMapIdeaNodeList();
+                // Superseded by a newer MindMap
+                if (MindMapScene.this.materializingViewPlan != plan) {
+                    log.debug("Creating views of " + plan + " superseded"); //$NON-NLS-1$ //$NON-NLS-2$
+                    this.finished = true;
+                    return;
+                }
 
-            ArrayList<MTComponent> ideaNodeViewList = getAllIdeaNodeViews();
+                int ideaNodeCount = plan.getIdeaNodeCount();
+                int total = ideaNodeCount + plan.getRelationCount();
+                int end = Math.min(total, this.created
+                        + LOAD_VIEWS_PER_FRAME_MAX);
 
-            if (ideaNodeList != null && ideaNodeViewList != null) {
+                for (; this.created < end; this.created++) {
 
-                log.trace("These are all model nodes: "); //$NON-NLS-1$
-                int i = 0;
-                for (IdeaNode node : ideaNodeList) {
-                    i++;
-                    log.trace("Node Nr. " + i + " is " + node + ", Id: " //$NON-NLS-1$ //$NON-NLS-2$//$NON-NLS-3$
-                            + node.getIdeaID() + ", children: " //$NON-NLS-1$
-                            + node.getChildren().size());
-                }
+                    if (this.created < ideaNodeCount) {
+                        // Create IdeaNodeViews first
+                        this.ideaNodeViews[this.created] = createIdeaNodeViewFromPlan(
+                                plan, this.created);
 
-                log.trace("These are all ideaNodeView nodes: "); //$NON-NLS-1$
-                int j = 0;
-                for (MTComponent ideaNodeView : ideaNodeViewList) {
-                    if (ideaNodeView instanceof IdeaNodeView) {
-                        j++;
-                        log.trace("IdeaNodeView Nr. " //$NON-NLS-1$
-                                + j
-                                + " is " //$NON-NLS-1$
-                                + ((IdeaNodeView) ideaNodeView).getName()
-                                + ", model ideaNode: " //$NON-NLS-1$
-                                + ((IdeaNodeView) ideaNodeView)
-                                        .getModelIdeaNode()
-                                + ", modelIdeaNode id" //$NON-NLS-1$
-                                + ((IdeaNodeView) ideaNodeView)
-                                        .getModelIdeaNode().getIdeaID());
+                    } else {
+                        // Create RelationViews between the created
+                        // IdeaNodeViews
+                        int relation = this.created - ideaNodeCount;
+                        RelationView relationView = createRelationView(
+                                this.ideaNodeViews[plan
+                                        .getRelationParent(relation)],
+                                this.ideaNodeViews[plan
+                                        .getRelationChild(relation)]);
+
+                        if (relationView == null) {
+                            // TODO: Close application, no longer in sync
+                            log.error("Error while creating relation " + relation + " of " + plan + ", relation view null!"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                            finish(false);
+                            return;
+                        }
                     }
                 }
 
-                int relationCount = 0;
+                if (this.created == total) {
+                    log.info("Created " + ideaNodeCount + " IdeaNodeViews and " + plan.getRelationCount() + " RelationViews from file!"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    finish(true);
+                    return;
+                }
 
-                // Create RelationViews for every active IdeaNode
-                for (IdeaNode ideaNode : ideaNodeList) {
+                // Show progress above the created views
+                MindMapScene.this.loadingOverlay.sendToFront();
+                MindMapScene.this.loadingOverlay.setText(Messages
+                        .getString("MindMapScene.load.progress") //$NON-NLS-1$
+                        + (this.created * 100 / total) + "%"); //$NON-NLS-1$
+            }
 
-                    // TODO: trash bin state for deleted IdeaNodes?
-                    if (ideaNode.getIdeaState() != EIdeaState.DELETED) {
-                        if (ideaNode.getChildren().size() > 0) {
+            @Override
+            public boolean isLoop() {
+                return !this.finished;
+            }
 
-                            ArrayList<Node<NodeData>> children = ideaNode
-                                    .getChildren();
+            /**
+             * Finishes the action and shows the result in the next frame.
+             * 
+             * @param success
+             *            true, if all views have been created
+             */
+            private void finish(final boolean success) {
+                this.finished = true;
+                MindMapScene.this.materializingViewPlan = null;
+                getMTApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoadMindMapFinished(success, plan.getMindMap()
+                                .getMindMapTitle());
+                    }
+                });
+            }
+        });
 
-                            // Create RelationViews to all children
-                            for (Node<NodeData> child : children) {
+        log.debug("Leaving startViewPlanMaterialization()"); //$NON-NLS-1$
+    }
 
-                                if (child instanceof IdeaNode) {
+    /**
+     * Creates the IdeaNodeView for an IdeaNode of a view plan and adds it to
+     * the canvas.
+     * 
+     * @param plan
+     *            the view plan of the loaded MindMap
+     * @param index
+     *            the index of the IdeaNode in the plan
+     * @return the created IdeaNodeView
+     */
+    private IdeaNodeView createIdeaNodeViewFromPlan(MindMapViewPlan plan,
+            int index) {
 
-                                    // Find the corresponding IdeaNodeViews
-                                    IdeaNodeView parentView = findIdeaNodeViewByIdeaNode(
-                                            ideaNode, ideaNodeViewList);
-                                    IdeaNodeView childView = findIdeaNodeViewByIdeaNode(
-                                            (IdeaNode) child, ideaNodeViewList);
+        log.trace("Entering createIdeaNodeViewFromPlan(index=" + index + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 
-                                    if (parentView != null && childView != null) {
+        IdeaNode ideaNode = plan.getIdeaNode(index);
 
-                                        // Create a new RelationView
-                                        RelationView relationView = createRelationView(
-                                                parentView, childView);
+        // Create new IdeaNodeView with default position (0,0,0)
+        // (required for correct repositioning)
+        IdeaNodeView ideaNodeView = new IdeaNodeView(this.abstractMTapplication,
+                0, 0, getCalculatedIdeaNodeWidth(),
+                getCalculatedIdeaNodeHeight(), getIdeaNodeViewFontBig(),
+                getIdeaNodeViewFontSmall(), ideaNode, plan.getText(index));
 
-                                        if (relationView != null) {
-                                            relationCount++;
-                                            log.debug("Created new relation from file for " + parentView + " and " + childView); //$NON-NLS-1$ //$NON-NLS-2$
+        // Set given position and default size
+        ideaNodeView.setPositionGlobal(new Vector3D(plan.getPositionX(index),
+                plan.getPositionY(index)));
 
-                                        } else {
-                                            // TODO: Close application, no
-                                            // longer in sync
-                                            log.error("Leaving createRelationsFromFile(): false, Error while creating a relation from file for IdeaNode " //$NON-NLS-1$ 
-                                                    + child
-                                                    + ", relation view null!"); //$NON-NLS-1$
-                                            return false;
-                                        }
+        // Rotate the IdeaNodeView for the stored rotation
+        ideaNodeView.rotateZ(ideaNodeView.getCenterPointGlobal(),
+                plan.getRotation(index));
 
-                                    } else {
-                                        // TODO: Close application, no longer in
-                                        // sync
-                                        log.error("Leaving createRelationsFromFile(): false, Error while creating a relation from file for IdeaNode " //$NON-NLS-1$ 
-                                                + child
-                                                + ", IdeaNodeView(s) null!"); //$NON-NLS-1$
-                                        return false;
-                                    }
-                                } else {
+        // Set ideaNode id as name
+        // TODO: better name?
+        ideaNodeView.setName(Long.toString(ideaNode.getIdeaID()));
 
-                                    log.error("Leaving createRelationsFromFile(): false, Error while creating a relation from file for IdeaNode " //$NON-NLS-1$ 
-                                            + child
-                                            + ", not an instance of IdeaNode!"); //$NON-NLS-1$
-                                    // TODO: Close application, no longer in
-                                    // sync
-                                    return false;
-                                }
-                            }
+        // Add ideaNodeView to canvas
+        this.getCanvas().addChild(ideaNodeView);
 
-                        } // no children, no relation creation!
-                    } // for state DELETED, do nothing (should not occur!)
-                }
-                log.info("Created " + relationCount + " RelationViews from file!"); //$NON-NLS-1$ //$NON-NLS-2$
-                log.debug("Leaving createRelationsFromFile(): true"); //$NON-NLS-1$
-                return true;
-            }
-            log.error("Leaving createRelationsFromFile(): false, ideaNodeList is null!"); //$NON-NLS-1$
-            return false;
-        }
-        log.error("Leaving createRelationsFromFile(): false, invalid null input!"); //$NON-NLS-1$
-        return false;
+        log.trace("Leaving createIdeaNodeViewFromPlan()"); //$NON-NLS-1$
+        return ideaNodeView;
     }
 
     /**
@@ -3440,7 +3643,7 @@ public class MindMapScene extends AbstractScene implements Observer {
 
                             // Create a new model IdeaNode
                             // (Changes in the model will be picked up by the
-                            // Observer!)
+                            // listener!)
                             if (createModelIdeaNode(x, y, rotation,
                                     "", EIdeaNodeCreator.MULTITOUCH_TABLE)) { //$NON-NLS-1$
 
@@ -3683,7 +3886,7 @@ public class MindMapScene extends AbstractScene implements Observer {
     /**
      * Processes a circle or rectangle gesture for creating a new IdeaNode in
      * the model (which then triggers the creation of a corresponding
-     * IdeaNodeView via the Observer pattern)
+     * IdeaNodeView via the model event bus)
      * 
      * @param usEvent
      *            the UnistrokeEvent for the circle or rectangle gesture
@@ -3704,7 +3907,7 @@ public class MindMapScene extends AbstractScene implements Observer {
 
         // Create a new model IdeaNode
         // (Changes in the model will be picked up
-        // by the Observer!)
+        // by the listener!)
         if (createModelIdeaNode(x, y, rotation,
                 "", EIdeaNodeCreator.MULTITOUCH_TABLE)) { //$NON-NLS-1$
 
@@ -3722,7 +3925,7 @@ public class MindMapScene extends AbstractScene implements Observer {
      * <p>
      * Processes an X gesture for deleting an IdeaNode or a relation in the
      * model (which then triggers the deletion of the corresponding IdeaNodeView
-     * or RelationView via the Observer pattern)
+     * or RelationView via the model event bus)
      * </p>
      * <p>
      * TODO: Better return value than boolean??
@@ -4132,7 +4335,7 @@ public class MindMapScene extends AbstractScene implements Observer {
      * <p>
      * Processes an arrow gesture for creating a parent-child relation for two
      * IdeaNodes in the model (which then triggers the creation of a
-     * corresponding RelationView for both IdeaNodes via the Observer pattern)
+     * corresponding RelationView for both IdeaNodes via the model event bus)
      * <p>
      * 
      * <p>
@@ -4364,337 +4567,313 @@ public class MindMapScene extends AbstractScene implements Observer {
 
     }
 
+    /* ******Model listener methods****** */
     /**
-     * Updates the current MindMapScene as a result of changes in the model
-     * depending on the given ObserverNotificationObject.
+     * Updates the current MindMapScene as a result of changes in the loaded
+     * model MindMap.
      * 
-     * @param o
-     *            the observed model object that has communicated a change
-     * @param arg
-     *            an added notification argument (ObserverNotificationObject)
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
      */
-    @SuppressWarnings("unchecked")
-    @Override
-    public void update(Observable o, Object arg) {
-
-        log.debug("Entering update(o=" + o + ", arg=" + arg + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-
-        /* MindMap updates */
+    private void handleMindMapEvent(EMindMapChangeStatus status, Object content) {
 
-        // Check if arguments are valid
-        if (o instanceof MindMap && arg instanceof ObserverNotificationObject) {
+        log.debug("Entering handleMindMapEvent(status=" + status + ", content=" + content + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-            if (((ObserverNotificationObject) arg).getEnumStatus() instanceof EMindMapChangeStatus) {
-                EMindMapChangeStatus status = (EMindMapChangeStatus) ((ObserverNotificationObject) arg)
-                        .getEnumStatus();
+        // Status dependent listener actions
+        switch (status) {
+            case MIND_MAP_IDEA_NODE_ADDED:
+                // Add a new IdeaNodeView for this model ideaNode
+                if (content instanceof IdeaNode) {
 
-                Object content = ((ObserverNotificationObject) arg)
-                        .getContent();
+                    IdeaNode modelIdeaNode = (IdeaNode) content;
 
-                // Status dependent observer actions
-                switch (status) {
-                    case MIND_MAP_IDEA_NODE_ADDED:
-                        // Add a new IdeaNodeView for this model ideaNode
-                        if (content instanceof IdeaNode) {
+                    // Create a new IdeaNodeView dependent on IdeaNode
+                    // creator (MultitouchDevice or BTDevice)
 
-                            IdeaNode modelIdeaNode = (IdeaNode) content;
+                    switch (modelIdeaNode.getIdeaOwner()) {
+                        case BLUETOOTH_SERVER:
 
-                            // Create a new IdeaNodeView dependent on IdeaNode
-                            // creator (MultitouchDevice or BTDevice)
+                            if (!createIdeaNodeViewFromBTDevice(modelIdeaNode)) {
+                                log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                                // TODO: Close Application, fatal error,
+                                // view
+                                // and model no longer in synch
 
-                            switch (modelIdeaNode.getIdeaOwner()) {
-                                case BLUETOOTH_SERVER:
-
-                                    if (!createIdeaNodeViewFromBTDevice(modelIdeaNode)) {
-                                        log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                                        // TODO: Close Application, fatal error,
-                                        // view
-                                        // and model no longer in synch
+                            }
+                            break;
+                        case MULTITOUCH_TABLE:
 
-                                    }
-                                    break;
-                                case MULTITOUCH_TABLE:
+                            if (!createIdeaNodeView(modelIdeaNode)) {
+                                log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                                // TODO: Close Application, fatal error,
+                                // view
+                                // and model no longer in synch
 
-                                    if (!createIdeaNodeView(modelIdeaNode)) {
-                                        log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                                        // TODO: Close Application, fatal error,
-                                        // view
-                                        // and model no longer in synch
+                            }
+                            break;
+                        default:
 
-                                    }
-                                    break;
-                                default:
+                            log.error("Wrong owner enum set in model IdeaNode!"); //$NON-NLS-1$
 
-                                    log.error("Wrong owner enum set in model IdeaNode!"); //$NON-NLS-1$
+                            break;
 
-                                    break;
+                    }
 
-                            }
+                } else {
+                    log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                    // TODO: Close Application, fatal error, view and
+                    // model no longer in synch
+                }
 
-                        } else {
-                            log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                            // TODO: Close Application, fatal error, view and
-                            // model no longer in synch
-                        }
+                break;
+            case MIND_MAP_IDEA_NODE_LIST_SET:
+                // Currently not used
+                // TODO: disable in model!? too complex, not needed
+                break;
+            case MIND_MAP_IDEA_NODE_REMOVED:
+                // Remove corresponding IdeaNodeView from the canvas
+                // (all relations should have been deleted already in
+                // reaction to children lists!!)
+                // see removeIdeaChild() in MindMap
+                ArrayList<MTComponent> ideaNodeViewList = getAllIdeaNodeViews();
 
-                        break;
-                    case MIND_MAP_IDEA_NODE_LIST_SET:
-                        // Currently not used
-                        // TODO: disable in model!? too complex, not needed
-                        break;
-                    case MIND_MAP_IDEA_NODE_REMOVED:
-                        // Remove corresponding IdeaNodeView from the canvas
-                        // (all relations should have been deleted already in
-                        // reaction to children lists!!)
-                        // see removeIdeaChild() in MindMap
-                        ArrayList<MTComponent> ideaNodeViewList = getAllIdeaNodeViews();
+                if (content instanceof IdeaNode) {
 
-                        if (content instanceof IdeaNode) {
+                    // Find the corresponding IdeaNodeView
+                    IdeaNodeView ideaNodeViewToDelete = findIdeaNodeViewByIdeaNode(
+                            (IdeaNode) content, ideaNodeViewList);
 
-                            // Find the corresponding IdeaNodeView
-                            IdeaNodeView ideaNodeViewToDelete = findIdeaNodeViewByIdeaNode(
-                                    (IdeaNode) content, ideaNodeViewList);
+                    if (ideaNodeViewToDelete != null) {
 
-                            if (ideaNodeViewToDelete != null) {
+                        log.debug("Deleting IdeaNodeView: " //$NON-NLS-1$
+                                + ideaNodeViewToDelete);
 
-                                log.debug("Deleting IdeaNodeView: " //$NON-NLS-1$
-                                        + ideaNodeViewToDelete);
+                        // Delete from canvas
+                        deleteIdeaNodeView(ideaNodeViewToDelete);
 
-                                // Delete from canvas
-                                deleteIdeaNodeView(ideaNodeViewToDelete);
+                    } else {
+                        log.error("IdeaNodeView with ideaNode " + content + " could not be found!"); //$NON-NLS-1$//$NON-NLS-2$
+                        // TODO: Close Application, fatal error, view
+                        // and
+                        // model no longer in synch
+                    }
 
-                            } else {
-                                log.error("IdeaNodeView with ideaNode " + content + " could not be found!"); //$NON-NLS-1$//$NON-NLS-2$
-                                // TODO: Close Application, fatal error, view
-                                // and
-                                // model no longer in synch
-                            }
+                } else {
+                    log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                    // TODO: Close Application, fatal error, view and
+                    // model no longer in synch
 
-                        } else {
-                            log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                            // TODO: Close Application, fatal error, view and
-                            // model no longer in synch
+                }
 
+                break;
+            case MIND_MAP_MAP_ADDED:
+                // Do nothing for now
+                // We don't care about Maps in the View at the moment
+                break;
+            case MIND_MAP_MAP_REMOVED:
+                // Do nothing for now
+                // We don't care about Maps in the View at the moment
+                break;
+            case MIND_MAP_MAP_LIST_SET:
+                // Do nothing for now
+                // We don't care about Maps in the View at the moment
+                break;
+            case MIND_MAP_CHANGES_COMMITTED:
+                // Process all changes of the batch in order, consecutive
+                // IdeaNodes from a BT device are shown together
+                if (content instanceof ModelChangeSet) {
+                    List<IdeaNode> btIdeaNodes = new ArrayList<IdeaNode>();
+                    for (ObserverNotificationObject change : ((ModelChangeSet) content)
+                            .getChanges()) {
+                        if (change.getEnumStatus() == EMindMapChangeStatus.MIND_MAP_IDEA_NODE_ADDED
+                                && change.getContent() instanceof IdeaNode
+                                && ((IdeaNode) change.getContent())
+                                        .getIdeaOwner() == EIdeaNodeCreator.BLUETOOTH_SERVER) {
+                            btIdeaNodes.add((IdeaNode) change.getContent());
+                            continue;
                         }
+                        createIdeaNodeViewsFromBTDevice(btIdeaNodes);
+                        handleMindMapEvent(
+                                (EMindMapChangeStatus) change.getEnumStatus(),
+                                change.getContent());
+                    }
+                    createIdeaNodeViewsFromBTDevice(btIdeaNodes);
+                } else {
+                    log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                break;
+            case MIND_MAP_TITLE_SET:
+                // Set MindMapScene name
+                if (content instanceof String) {
 
-                        break;
-                    case MIND_MAP_MAP_ADDED:
-                        // Do nothing for now
-                        // We don't care about Maps in the View at the moment
-                        break;
-                    case MIND_MAP_MAP_REMOVED:
-                        // Do nothing for now
-                        // We don't care about Maps in the View at the moment
-                        break;
-                    case MIND_MAP_MAP_LIST_SET:
-                        // Do nothing for now
-                        // We don't care about Maps in the View at the moment
-                        break;
-                    case MIND_MAP_TITLE_SET:
-                        // Set MindMapScene name
-                        if (content instanceof String) {
+                    this.setName((String) content);
 
-                            this.setName((String) content);
+                }
 
-                        }
+                break;
+            default:
+                log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                // TODO: Close Application, fatal error, view and model
+                // no longer in synch
 
-                        break;
-                    default:
-                        log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                        // TODO: Close Application, fatal error, view and model
-                        // no longer in synch
+                break;
 
-                        break;
+        }
 
-                }
+        log.debug("Leaving handleMindMapEvent()"); //$NON-NLS-1$
+    }
 
-            } else {
-                log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                // TODO: Close Application, fatal error, view and model no
-                // longer in synch
+    /**
+     * Updates the current MindMapScene as a result of changes in the model
+     * MindMapCollection.
+     * 
+     * @param status
+     *            the change status
+     * @param content
+     *            the changed object
+     */
+    private void handleMindMapCollectionEvent(
+            EMindMapCollectionChangeStatus status, Object content) {
 
-            }
+        log.debug("Entering handleMindMapCollectionEvent(status=" + status + ", content=" + content + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-        } else {
+        // Status dependent listener actions
+        switch (status) {
+            case NEW_MIND_MAP_LOADED:
 
-            /* MindMapCollection updates */
-
-            // Check if arguments are valid
-            if (o instanceof MindMapCollection
-                    && arg instanceof ObserverNotificationObject) {
-
-                if (((ObserverNotificationObject) arg).getEnumStatus() instanceof EMindMapCollectionChangeStatus) {
-                    EMindMapCollectionChangeStatus status = (EMindMapCollectionChangeStatus) ((ObserverNotificationObject) arg)
-                            .getEnumStatus();
-
-                    Object content = ((ObserverNotificationObject) arg)
-                            .getContent();
-
-                    // Status dependent observer actions
-                    switch (status) {
-                        case NEW_MIND_MAP_LOADED:
-
-                            // Lock canvas
-                            // lockCanvas(true);
-
-                            // Add this as observer to the new mindMap
-                            // TODO: Remove observer from old MindMap??
-
-                            if (content instanceof MindMap
-                                    && content.equals(this.getModelReference()
-                                            .getLoadedMindMap())) {
-                                ((MindMap) content).addObserver(this);
-
-                                // Load IdeaNodeViews and RelationViews
-                                if (loadNewMindMapScene((MindMap) content)) {
-                                    final String statusMsg = Messages
-                                            .getString("MindMapScene.load.statusMsg.ok.part1") + ((MindMap) content).getMindMapTitle() + Messages.getString("MindMapScene.load.statusMsg.ok.part2"); //$NON-NLS-1$ //$NON-NLS-2$
-
-                                    log.debug("Loading mindMap successful!"); //$NON-NLS-1$
-
-                                    this.registerPreDrawAction(new IPreDrawAction() {
-                                        @Override
-                                        public void processAction() {
-
-                                            // Create a new runnable that calls
-                                            // the
-                                            // loading method
-                                            getMTApplication().invokeLater(
-                                                    new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            // Show info message
-                                                            showStatusMessageOK(
-                                                                    statusMsg,
-                                                                    EStatusMessageType.STATUS_MSG_INFO,
-                                                                    getStatusMessageFontVerySmall(),
-                                                                    getStatusMessageFontMedium(),
-                                                                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
-                                                        }
-                                                    });
-                                        }
-
-                                        @Override
-                                        public boolean isLoop() {
-                                            return false;
-                                        }
-                                    });
+                // Lock canvas
+                // lockCanvas(true);
 
-                                } else {
-                                    final String statusMsgNotOk = Messages
-                                            .getString("MindMapScene.load.statusMsg.notOk.part1") + ((MindMap) content).getMindMapTitle() + Messages.getString("MindMapScene.load.statusMsg.notOk.part2"); //$NON-NLS-1$ //$NON-NLS-2$
-
-                                    log.debug("Loading MindMap not successful!"); //$NON-NLS-1$
-
-                                    this.registerPreDrawAction(new IPreDrawAction() {
-                                        @Override
-                                        public void processAction() {
-
-                                            // Create a new runnable that calls
-                                            // the
-                                            // loading method
-                                            getMTApplication().invokeLater(
-                                                    new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            // Show error
-                                                            // message
-                                                            showStatusMessageOK(
-                                                                    statusMsgNotOk,
-                                                                    EStatusMessageType.STATUS_MSG_ERROR,
-                                                                    getStatusMessageFontVerySmall(),
-                                                                    getStatusMessageFontMedium(),
-                                                                    STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
-                                                        }
-                                                    });
-                                        }
-
-                                        @Override
-                                        public boolean isLoop() {
-                                            return false;
-                                        }
-                                    });
+                // Move the listener from the old to the new mindMap
+                if (content instanceof MindMap
+                        && content.equals(this.getModelReference()
+                                .getLoadedMindMap())) {
+                    addMindMapListener((MindMap) content);
 
-                                }
+                    // Load IdeaNodeViews and RelationViews
+                    if (loadNewMindMapScene((MindMap) content)) {
 
-                            } else {
-                                log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                                // TODO: Close Application, fatal error, view
-                                // and
-                                // model no
-                                // longer in synch
+                        // Info message will be shown by
+                        // onLoadMindMapFinished() when all views have been
+                        // created
+                        log.debug("Creating views of loaded mindMap started"); //$NON-NLS-1$
 
+                    } else {
+                        final String statusMsgNotOk = Messages
+                                .getString("MindMapScene.load.statusMsg.notOk.part1") + ((MindMap) content).getMindMapTitle() + Messages.getString("MindMapScene.load.statusMsg.notOk.part2"); //$NON-NLS-1$ //$NON-NLS-2$
+
+                        log.debug("Loading MindMap not successful!"); //$NON-NLS-1$
+
+                        this.registerPreDrawAction(new IPreDrawAction() {
+                            @Override
+                            public void processAction() {
+
+                                // Create a new runnable that calls
+                                // the
+                                // loading method
+                                getMTApplication().invokeLater(
+                                        new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                // Show error
+                                                // message
+                                                showStatusMessageOK(
+                                                        statusMsgNotOk,
+                                                        EStatusMessageType.STATUS_MSG_ERROR,
+                                                        getStatusMessageFontVerySmall(),
+                                                        getStatusMessageFontMedium(),
+                                                        STATUS_MSG_OK_MORE_TEXT_MAXNUMOFLINES);
+                                            }
+                                        });
                             }
 
-                            // If for whatever reason the status message is not
-                            // open, unlock canvas
-                            // Else unlocking is done by status message box
-                            if (MindMapScene.this.getStatusMessageBox() == null) {
-                                log.debug("Message box not opened, unlock"); //$NON-NLS-1$
-                                MindMapScene.this.lockCanvas(false);
+                            @Override
+                            public boolean isLoop() {
+                                return false;
                             }
+                        });
 
-                            break;
-                        default:
-                            log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                            // TODO: Close Application, fatal error, view and
-                            // model
-                            // no
-                            // longer in synch
-
-                            break;
                     }
 
                 } else {
-                    log.error("Wrong update parameters in Observer " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
-                    // TODO: Close Application, fatal error, view and model no
+                    log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                    // TODO: Close Application, fatal error, view
+                    // and
+                    // model no
                     // longer in synch
 
                 }
 
-            } else if (o instanceof WaitBtThread
-                    && arg instanceof ObserverNotificationObject) {
+                // If for whatever reason the status message is not
+                // open and no views are being created, unlock canvas
+                // Else unlocking is done by status message box or
+                // onLoadMindMapFinished()
+                if (MindMapScene.this.getStatusMessageBox() == null
+                        && !this.loadingOverlay.isVisible()) {
+                    log.debug("Message box not opened, unlock"); //$NON-NLS-1$
+                    MindMapScene.this.lockCanvas(false);
+                }
 
-                if (((ObserverNotificationObject) arg).getEnumStatus() instanceof EBluetoothConnectionListState) {
+                break;
+            default:
+                log.error("Wrong update parameters in listener " + this + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                // TODO: Close Application, fatal error, view and
+                // model
+                // no
+                // longer in synch
 
-                    EBluetoothConnectionListState status = (EBluetoothConnectionListState) ((ObserverNotificationObject) arg)
-                            .getEnumStatus();
+                break;
+        }
 
-                    Object content = ((ObserverNotificationObject) arg)
-                            .getContent();
+        log.debug("Leaving handleMindMapCollectionEvent()"); //$NON-NLS-1$
+    }
 
-                    // Status dependent observer actions
-                    switch (status) {
-                        // as of now
-                        // fall through for all states
-                        case CONNECTION_LIST_SET:
-                        case CONNECTION_ADDED:
-                        case CONNECTION_REMOVED:
+    /**
+     * Updates the bluetooth connection list of the MindMapScene as a result of
+     * changes in the bluetooth wait thread. Called on the render thread by the
+     * pre draw action dispatching the wait thread's deferred events.
+     * 
+     * @param status
+     *            the connection list state
+     * @param content
+     *            the connection string list
+     */
+    @SuppressWarnings("unchecked")
+    private void handleBluetoothConnectionEvent(
+            EBluetoothConnectionListState status, Object content) {
 
-                            if (content.getClass() == this.btConnectionStringList
-                                    .getClass()) {
+        log.debug("Entering handleBluetoothConnectionEvent(status=" + status + ", content=" + content + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-                                // Update bluetooth connection string list
-                                this.btConnectionStringList = (ArrayList<String>) content;
+        // Status dependent listener actions
+        switch (status) {
+            // as of now
+            // fall through for all states
+            case CONNECTION_LIST_SET:
+            case CONNECTION_ADDED:
+            case CONNECTION_REMOVED:
 
-                                // if bluetooth overlay is opened, update cells
-                                if (this.bluetoothOverlay != null) {
-                                    this.bluetoothOverlay.updateCells();
-                                }
+                if (content.getClass() == this.btConnectionStringList
+                        .getClass()) {
 
-                            }
+                    // Update bluetooth connection string list
+                    this.btConnectionStringList = (ArrayList<String>) content;
 
-                            break;
-                        default:
-                            // do nothing
-                            break;
+                    // if bluetooth overlay is opened, update cells
+                    if (this.bluetoothOverlay != null) {
+                        this.bluetoothOverlay.updateCells();
                     }
 
                 }
-            }
 
+                break;
+            default:
+                // do nothing
+                break;
         }
-        log.debug("Leaving update()"); //$NON-NLS-1$
+
+        log.debug("Leaving handleBluetoothConnectionEvent()"); //$NON-NLS-1$
     }
 
 }
@@ -21,12 +21,15 @@
 
 package de.sarahw.ma.pc.mindMapper.view;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.List;
+import java.text.DateFormat;
+import java.util.Date;
 
 import org.apache.log4j.Logger;
 import org.mt4j.AbstractMTApplication;
 import org.mt4j.components.TransformSpace;
+import org.mt4j.components.visibleComponents.shapes.MTRectangle;
 import org.mt4j.components.visibleComponents.widgets.MTListCell;
 import org.mt4j.input.inputProcessors.IGestureEventListener;
 import org.mt4j.input.inputProcessors.MTGestureEvent;
@@ -34,11 +37,18 @@ import org.mt4j.input.inputProcessors.componentProcessors.tapProcessor.TapEvent;
 import org.mt4j.input.inputProcessors.componentProcessors.tapProcessor.TapProcessor;
 import org.mt4j.util.MTColor;
 import org.mt4j.util.font.IFont;
+import org.mt4j.util.math.Vector3D;
 
 import processing.core.PApplet;
+import processing.core.PImage;
 import de.sarahw.ma.pc.mindMapper.model.AppModel;
+import de.sarahw.ma.pc.mindMapper.model.EIdeaNodeCreator;
+import de.sarahw.ma.pc.mindMapper.model.IMindMapThumbnailCallback;
+import de.sarahw.ma.pc.mindMapper.model.MindMapCatalog;
+import de.sarahw.ma.pc.mindMapper.model.MindMapCatalogEntry;
 import de.sarahw.ma.pc.mindMapper.model.MindMapCollection;
-import de.sarahw.ma.pc.mindMapper.model.MindMapSerializer;
+import de.sarahw.ma.pc.mindMapper.model.MindMapFileHeader;
+import de.sarahw.ma.pc.mindMapper.model.MindMapThumbnailCache;
 
 /**
  * <p>
@@ -75,6 +85,9 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
     /** The cell text field width offset */
     private static final float    CELL_LABEL_WIDTH_OFFSET          = 8f;
 
+    /** The thumbnail width in percent of the cell width */
+    private static final float    THUMBNAIL_WIDTH_TO_CELL_PERCENT  = 0.25f;
+
     /* *** Application *** */
     /** The multitouch application instance */
     private AbstractMTApplication mtApplication;
@@ -195,12 +208,13 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
 
                 if (mindMapCollection != null) {
 
-                    // Update files list
-                    mindMapCollection.updateMindMapFilesList();
+                    // Update the catalog, only rescans the save folder if
+                    // it has changed
+                    MindMapCatalog catalog = mindMapCollection.getCatalog();
+                    catalog.refresh();
 
-                    // Get files list
-                    List<File> fileList = mindMapCollection
-                            .getMindMapCollectionFiles();
+                    MindMapThumbnailCache thumbnailCache = model
+                            .getThumbnailCache();
 
                     // Get list width
                     float listWidth = getOverlayList().getWidthXY(
@@ -209,41 +223,36 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
                     float listHeight = getOverlayList().getHeightXY(
                             TransformSpace.GLOBAL);
 
-                    // Create a new list cell for every .mindMap save file
-                    for (File file : fileList) {
-
-                        String fileNameWOExtension;
-                        String fileName = file.getName();
-
-                        if (fileName.endsWith(MindMapSerializer.FILE_EXTENSION)) {
-                            fileNameWOExtension = fileName.substring(
-                                    0,
-                                    fileName.length()
-                                            - MindMapSerializer.FILE_EXTENSION
-                                                    .length());
-                        } else {
-                            // We assume there are only .mindMap files in the
-                            // list
-                            // because
-                            // mindMapCollection.updateMindMapFilesList() makes
-                            // sure of that
-                            fileNameWOExtension = fileName;
-                        }
+                    // Create a new list cell for every .mindMap save file,
+                    // latest first
+                    for (MindMapCatalogEntry entry : catalog.getEntries()) {
+
+                        String fileNameWOExtension = entry.getTitle();
+
+                        // The catalog has read the file header already
+                        MindMapFileHeader header = entry.getHeader();
 
                         // Add cell for every save file
-                        getOverlayList()
-                                .addListElement(
-                                        this.createListCell(
-                                                fileNameWOExtension,
-                                                this.getListContentDefaultFont(),
-                                                this.getListContentSmallerFont(),
-                                                listWidth
-                                                        - (LIST_CELL_PADDING * 2),
-                                                (listHeight * LIST_CELL_HEIGHT_TO_LIST_PERCENT)
-                                                        - (LIST_CELL_PADDING * 2),
-                                                LIST_CELL_FILL_COLOR,
-                                                LIST_CELL_FILL_PRESSED_COLOR,
-                                                LIST_CELL_FONT_COLOR));
+                        MTListCell cell = this.createListCell(
+                                fileNameWOExtension, createDetailsText(header),
+                                this.getListContentDefaultFont(),
+                                this.getListContentSmallerFont(), listWidth
+                                        - (LIST_CELL_PADDING * 2),
+                                (listHeight * LIST_CELL_HEIGHT_TO_LIST_PERCENT)
+                                        - (LIST_CELL_PADDING * 2),
+                                LIST_CELL_FILL_COLOR,
+                                LIST_CELL_FILL_PRESSED_COLOR,
+                                LIST_CELL_FONT_COLOR);
+                        getOverlayList().addListElement(cell);
+
+                        // Thumbnails are loaded on the worker thread of the
+                        // cache, cached ones are added at once
+                        BufferedImage thumbnail = thumbnailCache.request(
+                                entry.getFile(), entry.getLastModified(),
+                                new ThumbnailCallback(cell));
+                        if (thumbnail != null) {
+                            addThumbnail(cell, thumbnail);
+                        }
                     }
 
                     log.debug("Leaving addListCells(): true"); //$NON-NLS-1$
@@ -263,11 +272,42 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
 
     }
 
+    /**
+     * Creates the details text for a list cell from a file header: number of
+     * ideas, number of Maps, number of ideas sent from mobile devices and the
+     * save time.
+     * 
+     * @param header
+     *            the file header or null
+     * @return the details text or null if there is no header
+     */
+    private static String createDetailsText(MindMapFileHeader header) {
+
+        if (header == null) {
+            return null;
+        }
+
+        return header.getIdeaNodeCount()
+                + Messages
+                        .getString("OverlayListLoadMindMap.createDetailsText.ideas.0") //$NON-NLS-1$
+                + header.getMapCount()
+                + Messages
+                        .getString("OverlayListLoadMindMap.createDetailsText.maps.0") //$NON-NLS-1$
+                + header.getIdeaNodeCount(EIdeaNodeCreator.BLUETOOTH_SERVER)
+                + Messages
+                        .getString("OverlayListLoadMindMap.createDetailsText.mobile.0") //$NON-NLS-1$
+                + DateFormat.getDateTimeInstance(DateFormat.SHORT,
+                        DateFormat.SHORT).format(
+                        new Date(header.getLastModified()));
+    }
+
     /**
      * Creates a new list cell with the given label text.
      * 
      * @param label
      *            the text for the cell
+     * @param details
+     *            the details text shown below the label or null
      * @param fontBig
      *            the bigger font for the cell
      * @param fontSmall
@@ -284,12 +324,13 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
      *            the cell font color
      * @return the created cell
      */
-    private MTListCell createListCell(final String label, IFont fontBig,
-            IFont fontSmall, float cellWidth, float cellHeight,
+    private MTListCell createListCell(final String label, String details,
+            IFont fontBig, IFont fontSmall, float cellWidth, float cellHeight,
             final MTColor cellFillColor, final MTColor cellPressedFillColor,
             final MTColor cellFontColor) {
 
-        log.debug("Entering createListCell(label=" + label + ", fontBig=" //$NON-NLS-1$//$NON-NLS-2$
+        log.debug("Entering createListCell(label=" + label + ", details=" //$NON-NLS-1$//$NON-NLS-2$
+                + details + ", fontBig=" //$NON-NLS-1$
                 + fontBig
                 + ", fontSmall=" + fontSmall + ", cellWidth=" //$NON-NLS-1$//$NON-NLS-2$
                 + cellWidth
@@ -306,20 +347,24 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
 
         cell.setFillColor(cellFillColor);
 
+        // Leave space for the thumbnail on the right
+        float labelWidth = cellWidth * (1f - THUMBNAIL_WIDTH_TO_CELL_PERCENT);
+
         MTTextFieldVarLinesFontSwitch listLabel = new MTTextFieldVarLinesFontSwitch(
-                this.mtApplication, 0, 0, cellWidth - CELL_LABEL_WIDTH_OFFSET,
+                this.mtApplication, 0, 0, labelWidth - CELL_LABEL_WIDTH_OFFSET,
                 cellHeight, LIST_CELL_MAX_LINE_NUMBER, fontBig, fontSmall);
 
         listLabel.setNoFill(true);
         listLabel.setNoStroke(true);
-        listLabel.setText(label);
+        listLabel.setText((details != null) ? label + "\n" + details : label); //$NON-NLS-1$
         listLabel.setFontColor(cellFontColor);
 
         // Set cell name the label, also (required for list selection later)
         cell.setName(label);
         cell.addChild(listLabel);
 
-        listLabel.setPositionRelativeToParent(cell.getCenterPointLocal());
+        listLabel.setPositionRelativeToParent(new Vector3D(labelWidth / 2,
+                cellHeight / 2));
 
         cell.unregisterAllInputProcessors();
 
@@ -387,6 +432,42 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
         return cell;
     }
 
+    /**
+     * Adds a thumbnail of the MindMap to the right side of a list cell,
+     * scaled to fit the space left by the label.
+     * 
+     * @param cell
+     *            the list cell
+     * @param thumbnail
+     *            the thumbnail
+     */
+    private void addThumbnail(MTListCell cell, BufferedImage thumbnail) {
+
+        log.debug("Entering addThumbnail(cell=" + cell + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        float cellWidth = cell.getWidthXY(TransformSpace.LOCAL);
+        float cellHeight = cell.getHeightXY(TransformSpace.LOCAL);
+
+        float maxWidth = cellWidth * THUMBNAIL_WIDTH_TO_CELL_PERCENT
+                - (LIST_CELL_PADDING * 2);
+        float maxHeight = cellHeight - (LIST_CELL_PADDING * 2);
+        float scale = Math.min(maxWidth / thumbnail.getWidth(), maxHeight
+                / thumbnail.getHeight());
+
+        MTRectangle thumbnailRec = new MTRectangle(this.mtApplication,
+                new PImage(thumbnail));
+        thumbnailRec.setPickable(false);
+        thumbnailRec.setNoStroke(true);
+        thumbnailRec.setSizeLocal(thumbnail.getWidth() * scale,
+                thumbnail.getHeight() * scale);
+
+        cell.addChild(thumbnailRec);
+        thumbnailRec.setPositionRelativeToParent(new Vector3D(cellWidth
+                - LIST_CELL_PADDING - (maxWidth / 2), cellHeight / 2));
+
+        log.debug("Leaving addThumbnail()"); //$NON-NLS-1$
+    }
+
     /* ********Overridden methods******** */
 
     /**
@@ -416,4 +497,44 @@ public class OverlayListLoadMindMap extends AbstractOverlayDefaultList {
         log.debug("Leaving destroy()"); //$NON-NLS-1$
     }
 
+    /* **********Inner classes********** */
+    /**
+     * Adds a loaded thumbnail to its list cell, unless the overlay has been
+     * closed in the meantime.
+     */
+    private class ThumbnailCallback implements IMindMapThumbnailCallback {
+
+        /** The list cell of the MindMap */
+        private final MTListCell cell;
+
+        /**
+         * Constructor. Instantiates a new ThumbnailCallback.
+         * 
+         * @param cell
+         *            the list cell of the MindMap
+         */
+        ThumbnailCallback(MTListCell cell) {
+            this.cell = cell;
+        }
+
+        /**
+         * Adds the thumbnail to the list cell.
+         * 
+         * @param file
+         *            the .mindMap file
+         * @param thumbnail
+         *            the thumbnail or null
+         */
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void thumbnailLoaded(File file, BufferedImage thumbnail) {
+            if (thumbnail != null
+                    && OverlayListLoadMindMap.this.mindMapScene != null
+                    && OverlayListLoadMindMap.this.mindMapScene
+                            .getLoadMindMapOverlay() == OverlayListLoadMindMap.this) {
+                addThumbnail(this.cell, thumbnail);
+            }
+        }
+    }
+
 }
@@ -150,6 +150,18 @@ public class OverlayPlain extends AbstractOverlay {
         return this.textToSet;
     }
 
+    /**
+     * Replaces the displayed text, e.g. to show the progress of a process.
+     * 
+     * @param text
+     *            the new text
+     */
+    public void setText(String text) {
+        if (this.statusTextField != null && text != null) {
+            this.statusTextField.setText(text);
+        }
+    }
+
     /* **********Object methods********** */
     /**
      * Initializes a new OverlayPlain
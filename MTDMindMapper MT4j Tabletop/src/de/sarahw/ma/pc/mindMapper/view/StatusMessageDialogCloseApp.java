@@ -104,6 +104,15 @@ public class StatusMessageDialogCloseApp extends
         log.debug("Entering onOKButtonTappedAction()"); //$NON-NLS-1$
         // Close application, default close action is handled by superclass
 
+        // Close the bluetooth connections, so no idea arrives while the
+        // model shuts down
+        if (getMindMapScene().getBluetoothServerReference() != null) {
+            getMindMapScene().getBluetoothServerReference().shutdown();
+        }
+
+        // Let the save thread finish running saves before exiting
+        getMindMapScene().getModelReference().shutdown();
+
         System.exit(0);
 
         log.debug("Leaving onOKButtonTappedAction()"); //$NON-NLS-1$